@@ -53,10 +53,12 @@ import org.sonar.ce.log.CeProcessLogging;
 import org.sonar.ce.notification.ReportAnalysisFailureNotificationModule;
 import org.sonar.ce.platform.ComputeEngineExtensionInstaller;
 import org.sonar.ce.queue.CeQueueCleaner;
+import org.sonar.ce.queue.ClusterCeTaskSubmitListener;
 import org.sonar.ce.queue.PurgeCeActivities;
 import org.sonar.ce.settings.ProjectConfigurationFactory;
 import org.sonar.ce.taskprocessor.CeProcessingScheduler;
 import org.sonar.ce.taskprocessor.CeTaskProcessorModule;
+import org.sonar.ce.taskprocessor.ClusterCeWorkerWakeUp;
 import org.sonar.ce.user.CeUserSession;
 import org.sonar.core.component.DefaultResourceTypes;
 import org.sonar.core.config.ConfigurationProvider;
@@ -436,6 +438,10 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
         // system health
         CeDistributedInformationImpl.class,
 
+        // notification of submitted tasks
+        ClusterCeTaskSubmitListener.class,
+        ClusterCeWorkerWakeUp.class,
+
         // system info
         DbSection.class,
         ProcessInfoProvider.class);
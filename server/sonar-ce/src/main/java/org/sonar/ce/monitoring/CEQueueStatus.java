@@ -61,6 +61,18 @@ public interface CEQueueStatus {
    */
   long addError(long processingTime);
 
+  /**
+   * Adds the specified time, elapsed between the submission of a batch report and its pick up by a worker, to the
+   * pick up latency counter. Negative values, which can be caused by clock drifts between the nodes of a cluster, are
+   * counted as 0.
+   *
+   * @param pickupLatency duration between submission and pick up in ms
+   *
+   * @see #getPickupLatency()
+   * @see #getMaxPickupLatency()
+   */
+  void addPickupLatency(long pickupLatency);
+
   /**
    * Count of batch reports waiting for processing since startup, including reports received before instance startup.
    */
@@ -85,4 +97,14 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup, in milliseconds.
    */
   long getProcessingTime();
+
+  /**
+   * Time spent by batch reports waiting to be picked up by a worker since startup, in milliseconds.
+   */
+  long getPickupLatency();
+
+  /**
+   * Longest time a batch report waited to be picked up by a worker since startup, in milliseconds.
+   */
+  long getMaxPickupLatency();
 }
@@ -33,6 +33,8 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final AtomicLong pickupLatency = new AtomicLong(0);
+  private final AtomicLong maxPickupLatency = new AtomicLong(0);
 
   public CEQueueStatusImpl(DbClient dbClient) {
     this.dbClient = dbClient;
@@ -62,6 +64,13 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     processingTime.addAndGet(ms);
   }
 
+  @Override
+  public void addPickupLatency(long latencyInMs) {
+    long ms = Math.max(0L, latencyInMs);
+    pickupLatency.addAndGet(ms);
+    maxPickupLatency.accumulateAndGet(ms, Math::max);
+  }
+
   @Override
   public long getPendingCount() {
     try (DbSession dbSession = dbClient.openSession(false)) {
@@ -88,4 +97,14 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public long getPickupLatency() {
+    return pickupLatency.get();
+  }
+
+  @Override
+  public long getMaxPickupLatency() {
+    return maxPickupLatency.get();
+  }
 }
@@ -23,6 +23,8 @@ public interface CeTasksMBean {
 
   String OBJECT_NAME = "SonarQube:name=ComputeEngineTasks";
 
+  int PROFILE_MAX_ENTRIES = 10;
+
   /**
    * Count of batch reports waiting for processing since startup, including reports received before instance startup.
    */
@@ -48,6 +50,28 @@ public interface CeTasksMBean {
    */
   long getProcessingTime();
 
+  /**
+   * Time spent by reports waiting to be picked up by a worker since startup, in milliseconds.
+   */
+  long getPickupLatency();
+
+  /**
+   * Longest time a report waited to be picked up by a worker since startup, in milliseconds.
+   */
+  long getMaxPickupLatency();
+
+  /**
+   * The {@link #PROFILE_MAX_ENTRIES} steps which took the longest to execute since startup, with their cumulative
+   * duration and memory allocation.
+   */
+  String getStepsProfile();
+
+  /**
+   * The {@link #PROFILE_MAX_ENTRIES} component visitors which took the longest to execute since startup, with their
+   * cumulative duration and memory allocation.
+   */
+  String getVisitorsProfile();
+
   /**
    * Configured maximum number of workers.
    */
@@ -19,15 +19,26 @@
  */
 package org.sonar.ce.monitoring;
 
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import org.picocontainer.Startable;
+import org.sonar.ce.queue.CeTask;
 import org.sonar.process.Jmx;
 import org.sonar.process.systeminfo.SystemInfoSection;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 import org.sonar.ce.configuration.CeConfiguration;
+import org.sonar.server.computation.task.step.ComputationProfileListener;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 
-public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSection {
+import static org.sonar.server.computation.task.step.ComputationProfiler.UNKNOWN_ALLOCATED_BYTES;
+
+public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSection, ComputationProfileListener {
   private final CEQueueStatus queueStatus;
   private final CeConfiguration ceConfiguration;
+  private final Map<String, ComputationProfiler.Entry> stepsProfile = new ConcurrentHashMap<>();
+  private final Map<String, ComputationProfiler.Entry> visitorsProfile = new ConcurrentHashMap<>();
 
   public CeTasksMBeanImpl(CEQueueStatus queueStatus, CeConfiguration ceConfiguration) {
     this.queueStatus = queueStatus;
@@ -72,6 +83,47 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     return queueStatus.getProcessingTime();
   }
 
+  @Override
+  public long getPickupLatency() {
+    return queueStatus.getPickupLatency();
+  }
+
+  @Override
+  public long getMaxPickupLatency() {
+    return queueStatus.getMaxPickupLatency();
+  }
+
+  @Override
+  public void onProfile(CeTask task, ComputationProfiler profiler) {
+    profiler.getSteps().forEach(entry -> stepsProfile.merge(entry.getName(), entry, CeTasksMBeanImpl::add));
+    profiler.getVisitors().forEach(entry -> visitorsProfile.merge(entry.getName(), entry, CeTasksMBeanImpl::add));
+  }
+
+  private static ComputationProfiler.Entry add(ComputationProfiler.Entry e1, ComputationProfiler.Entry e2) {
+    long allocatedBytes = e1.getAllocatedBytes() == UNKNOWN_ALLOCATED_BYTES || e2.getAllocatedBytes() == UNKNOWN_ALLOCATED_BYTES
+      ? UNKNOWN_ALLOCATED_BYTES
+      : (e1.getAllocatedBytes() + e2.getAllocatedBytes());
+    return new ComputationProfiler.Entry(e1.getName(), e1.getDurationInMs() + e2.getDurationInMs(), allocatedBytes);
+  }
+
+  @Override
+  public String getStepsProfile() {
+    return format(stepsProfile);
+  }
+
+  @Override
+  public String getVisitorsProfile() {
+    return format(visitorsProfile);
+  }
+
+  private static String format(Map<String, ComputationProfiler.Entry> profile) {
+    return profile.values().stream()
+      .sorted(Comparator.comparingLong(ComputationProfiler.Entry::getDurationInMs).reversed())
+      .limit(PROFILE_MAX_ENTRIES)
+      .map(ComputationProfiler.Entry::toString)
+      .collect(Collectors.joining(";"));
+  }
+
   @Override
   public int getWorkerMaxCount() {
     return ceConfiguration.getWorkerMaxCount();
@@ -91,6 +143,10 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     builder.addAttributesBuilder().setKey("Processed With Error").setLongValue(getErrorCount()).build();
     builder.addAttributesBuilder().setKey("Processed With Success").setLongValue(getSuccessCount()).build();
     builder.addAttributesBuilder().setKey("Processing Time (ms)").setLongValue(getProcessingTime()).build();
+    builder.addAttributesBuilder().setKey("Pickup Latency (ms)").setLongValue(getPickupLatency()).build();
+    builder.addAttributesBuilder().setKey("Max Pickup Latency (ms)").setLongValue(getMaxPickupLatency()).build();
+    builder.addAttributesBuilder().setKey("Steps Profile").setStringValue(getStepsProfile()).build();
+    builder.addAttributesBuilder().setKey("Visitors Profile").setStringValue(getVisitorsProfile()).build();
     builder.addAttributesBuilder().setKey("Worker Count").setLongValue(getWorkerCount()).build();
     builder.addAttributesBuilder().setKey("Max Worker Count").setLongValue(getWorkerMaxCount()).build();
     return builder.build();
@@ -23,6 +23,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -32,6 +34,7 @@ import org.apache.log4j.Logger;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.configuration.CeConfiguration;
 import org.sonar.ce.container.ComputeEngineStatus;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.core.util.UuidFactory;
@@ -40,6 +43,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDao;
 import org.sonar.db.ce.CeQueueDto;
+import org.sonar.db.ce.EligibleTaskDto;
 import org.sonar.server.computation.task.projectanalysis.component.VisitException;
 import org.sonar.server.computation.task.step.TypedException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
@@ -53,19 +57,36 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   private static final org.sonar.api.utils.log.Logger LOG = Loggers.get(InternalCeQueueImpl.class);
 
   private static final int MAX_EXECUTION_COUNT = 2;
+  /**
+   * Eligible tasks selected ahead are discarded after this delay, so that workers don't keep on trying to peek tasks
+   * which have been peeked by other nodes in the meantime.
+   */
+  private static final long PEEK_CANDIDATES_TTL_IN_MS = 2_000L;
 
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
   private final ComputeEngineStatus computeEngineStatus;
+  private final CeConfiguration ceConfiguration;
+  private final PeekCandidates peekCandidates = new PeekCandidates();
 
+  /**
+   * Used by Pico when there is no {@link CeTaskSubmitListener} in the container.
+   */
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
-    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus) {
-    super(dbClient, uuidFactory, defaultOrganizationProvider);
+    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus, CeConfiguration ceConfiguration) {
+    this(system2, dbClient, uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus, ceConfiguration, new CeTaskSubmitListener[0]);
+  }
+
+  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
+    DefaultOrganizationProvider defaultOrganizationProvider, ComputeEngineStatus computeEngineStatus, CeConfiguration ceConfiguration,
+    CeTaskSubmitListener[] submitListeners) {
+    super(dbClient, uuidFactory, defaultOrganizationProvider, submitListeners);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
     this.computeEngineStatus = computeEngineStatus;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
@@ -81,16 +102,41 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
       if (i > 0) {
         LOG.debug("{} in progress tasks reset for worker uuid {}", i, workerUuid);
       }
-      Optional<CeQueueDto> dto = ceQueueDao.peek(dbSession, workerUuid, MAX_EXECUTION_COUNT);
+      Optional<CeQueueDto> dto = ceConfiguration.getWorkerCount() > 1 ? peekCandidate(dbSession, workerUuid) : ceQueueDao.peek(dbSession, workerUuid, MAX_EXECUTION_COUNT);
       CeTask task = null;
       if (dto.isPresent()) {
         task = loadTask(dbSession, dto.get());
         queueStatus.addInProgress();
+        queueStatus.addPickupLatency(system2.now() - dto.get().getCreatedAt());
       }
       return Optional.ofNullable(task);
     }
   }
 
+  /**
+   * Eligible tasks are selected ahead, as many as there are workers, and then handed out to the workers of this
+   * Compute Engine which peek them one by one. This saves a select per peek and prevents the workers from competing
+   * for the same oldest task. A task is assigned to a worker only when peeked by this worker, so that it is always
+   * assigned to the worker actually processing it.
+   */
+  private Optional<CeQueueDto> peekCandidate(DbSession dbSession, String workerUuid) {
+    boolean selected = false;
+    while (true) {
+      EligibleTaskDto candidate = peekCandidates.poll();
+      if (candidate == null) {
+        if (selected || !peekCandidates.selectIfEmpty(dbSession)) {
+          return Optional.empty();
+        }
+        selected = true;
+      } else {
+        Optional<CeQueueDto> dto = dbClient.ceQueueDao().tryToPeek(dbSession, candidate, workerUuid);
+        if (dto.isPresent()) {
+          return dto;
+        }
+      }
+    }
+  }
+
   @Override
   public int clear() {
     return cancelAll(true);
@@ -255,4 +301,30 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     }
   }
 
+
+  private class PeekCandidates {
+    private final Deque<EligibleTaskDto> candidates = new ArrayDeque<>();
+    private long selectedAt = 0L;
+
+    @CheckForNull
+    synchronized EligibleTaskDto poll() {
+      if (system2.now() - selectedAt > PEEK_CANDIDATES_TTL_IN_MS) {
+        candidates.clear();
+      }
+      return candidates.poll();
+    }
+
+    /**
+     * Concurrent workers may find no candidate at the same time: only the first one selects new candidates.
+     *
+     * @return {@code false} if there is no candidate left
+     */
+    synchronized boolean selectIfEmpty(DbSession dbSession) {
+      if (candidates.isEmpty()) {
+        candidates.addAll(dbClient.ceQueueDao().selectEligibleForPeek(dbSession, MAX_EXECUTION_COUNT, ceConfiguration.getWorkerCount()));
+        selectedAt = system2.now();
+      }
+      return !candidates.isEmpty();
+    }
+  }
 }
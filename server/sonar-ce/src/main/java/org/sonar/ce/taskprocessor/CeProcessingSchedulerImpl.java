@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -36,6 +37,13 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
   private static final Logger LOG = Loggers.get(CeProcessingSchedulerImpl.class);
   private static final long DELAY_BETWEEN_DISABLED_TASKS = 30 * 1000L; // 30 seconds
+  /**
+   * Submits are not the only events which make a task eligible: the release of the lock of a component on another
+   * node, the reset of the tasks of a dead worker or a missed notification are not notified. The back-off is capped
+   * low so that such tasks are still picked up quickly.
+   */
+  private static final long MAX_DELAY_BETWEEN_IDLE_POLLS = 5 * 1000L; // 5 seconds
+  private static final int MAX_BACK_OFF_SHIFT = 16;
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final long delayBetweenEnabledTasks;
@@ -43,11 +51,19 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
   private final ChainingCallback[] chainingCallbacks;
   private final EnabledCeWorkerController ceWorkerController;
   private final int gracefulStopTimeoutInMs;
+  private final CeWorkerWakeUp ceWorkerWakeUp;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
     CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerFactory ceCeWorkerFactory,
     EnabledCeWorkerController ceWorkerController) {
+    this(ceConfiguration, processingExecutorService, ceCeWorkerFactory, ceWorkerController, new CeWorkerWakeUp());
+  }
+
+  public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerFactory ceCeWorkerFactory,
+    EnabledCeWorkerController ceWorkerController, CeWorkerWakeUp ceWorkerWakeUp) {
     this.executorService = processingExecutorService;
+    this.ceWorkerWakeUp = ceWorkerWakeUp;
 
     this.delayBetweenEnabledTasks = ceConfiguration.getQueuePollingDelay();
     this.gracefulStopTimeoutInMs = ceConfiguration.getGracefulStopTimeoutInMs();
@@ -68,6 +84,29 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
       ListenableScheduledFuture<CeWorker.Result> future = executorService.schedule(chainingCallback.worker, delayBetweenEnabledTasks, timeUnit);
       addCallback(future, chainingCallback);
     }
+    ceWorkerWakeUp.setWakeUpHandler(this::wakeUpIdleWorkers);
+  }
+
+  /**
+   * Makes up to {@code taskCount} idle workers poll the queue right away. If there are not enough idle workers,
+   * all the other workers poll the queue again right after their current execution, whatever its result.
+   */
+  private void wakeUpIdleWorkers(int taskCount) {
+    int remaining = taskCount;
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (remaining == 0) {
+        return;
+      }
+      if (chainingCallback.wakeUpIfIdle()) {
+        remaining--;
+      }
+    }
+    if (remaining == 0) {
+      return;
+    }
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.requestPollAfterCurrentExecution();
+    }
   }
 
   /**
@@ -76,6 +115,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
   @Override
   public void stopScheduling() {
     LOG.debug("Stopping compute engine");
+    ceWorkerWakeUp.setWakeUpHandler(null);
     // Requesting all workers to stop
     for (ChainingCallback chainingCallback : chainingCallbacks) {
       chainingCallback.stop(false);
@@ -104,19 +144,28 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
     }
   }
 
+  /**
+   * Chains the executions of a worker. When the queue is empty, the worker polls it again after a delay which doubles
+   * with each consecutive empty poll, up to {@link #MAX_DELAY_BETWEEN_IDLE_POLLS}, if submitted tasks are
+   * notified to {@link CeWorkerWakeUp}. Otherwise, the delay is the configured polling delay.
+   */
   private class ChainingCallback implements FutureCallback<CeWorker.Result> {
     private volatile boolean keepRunning = true;
     private final CeWorker worker;
+    private int consecutiveIdlePolls = 0;
+    private boolean pollAfterCurrentExecution = false;
 
     @CheckForNull
     private ListenableFuture<CeWorker.Result> workerFuture;
+    @CheckForNull
+    private IdlePoll pendingIdlePoll;
 
     public ChainingCallback(CeWorker worker) {
       this.worker = worker;
     }
 
     @Override
-    public void onSuccess(@Nullable CeWorker.Result result) {
+    public synchronized void onSuccess(@Nullable CeWorker.Result result) {
       if (keepRunning) {
         if (result == null) {
           chainWithEnabledTaskDelay();
@@ -130,6 +179,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
               break;
             case TASK_PROCESSED:
             default:
+              consecutiveIdlePolls = 0;
               chainWithoutDelay();
           }
         }
@@ -137,40 +187,138 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler {
     }
 
     @Override
-    public void onFailure(Throwable t) {
+    public synchronized void onFailure(Throwable t) {
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else if (keepRunning) {
+        consecutiveIdlePolls = 0;
         chainWithoutDelay();
       }
     }
 
     private void chainWithoutDelay() {
+      pendingIdlePoll = null;
+      pollAfterCurrentExecution = false;
       workerFuture = executorService.submit(worker);
-      addCallback();
+      addCallback(this);
     }
 
     private void chainWithEnabledTaskDelay() {
-      workerFuture = executorService.schedule(worker, delayBetweenEnabledTasks, timeUnit);
-      addCallback();
+      if (pollAfterCurrentExecution) {
+        chainWithoutDelay();
+        return;
+      }
+      IdlePoll idlePoll = new IdlePoll(worker);
+      pendingIdlePoll = idlePoll;
+      workerFuture = executorService.schedule(idlePoll, nextIdlePollDelay(), timeUnit);
+      addCallback(new FutureCallback<CeWorker.Result>() {
+        @Override
+        public void onSuccess(@Nullable CeWorker.Result result) {
+          if (!idlePoll.isObsolete()) {
+            ChainingCallback.this.onSuccess(result);
+          }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          if (!idlePoll.isObsolete()) {
+            ChainingCallback.this.onFailure(t);
+          }
+        }
+      });
+    }
+
+    private long nextIdlePollDelay() {
+      long maxDelay = ceWorkerWakeUp.isRemoteSubmitsNotified() ? Math.max(MAX_DELAY_BETWEEN_IDLE_POLLS, delayBetweenEnabledTasks) : delayBetweenEnabledTasks;
+      long delay = delayBetweenEnabledTasks << Math.min(consecutiveIdlePolls, MAX_BACK_OFF_SHIFT);
+      consecutiveIdlePolls++;
+      return Math.min(delay, maxDelay);
     }
 
     private void chainWithDisabledTaskDelay() {
+      pendingIdlePoll = null;
       workerFuture = executorService.schedule(worker, DELAY_BETWEEN_DISABLED_TASKS, timeUnit);
-      addCallback();
+      addCallback(this);
     }
 
-    private void addCallback() {
+    private void addCallback(FutureCallback<CeWorker.Result> callback) {
       if (workerFuture != null) {
-        Futures.addCallback(workerFuture, this);
+        Futures.addCallback(workerFuture, callback);
       }
     }
 
-    public void stop(boolean interrupt) {
+    /**
+     * @return {@code true} if the worker was waiting for its next poll of the queue and now polls it right away
+     */
+    synchronized boolean wakeUpIfIdle() {
+      IdlePoll idlePoll = this.pendingIdlePoll;
+      // once obsolete, the delayed poll will never call the worker, nor chain its execution
+      if (!keepRunning || idlePoll == null || !idlePoll.makeObsolete()) {
+        return false;
+      }
+      if (workerFuture != null) {
+        workerFuture.cancel(false);
+      }
+      consecutiveIdlePolls = 0;
+      chainWithoutDelay();
+      return true;
+    }
+
+    synchronized void requestPollAfterCurrentExecution() {
+      if (keepRunning) {
+        pollAfterCurrentExecution = true;
+      }
+    }
+
+    public synchronized void stop(boolean interrupt) {
       keepRunning = false;
       if (workerFuture != null) {
         workerFuture.cancel(interrupt);
       }
     }
   }
+
+  /**
+   * Delayed poll of the queue by a worker which can be made obsolete, ie. be replaced by an immediate poll, as long as
+   * it has not started.
+   */
+  static final class IdlePoll implements Callable<CeWorker.Result> {
+    private final CeWorker worker;
+    private boolean started = false;
+    private boolean obsolete = false;
+
+    IdlePoll(CeWorker worker) {
+      this.worker = worker;
+    }
+
+    CeWorker getWorker() {
+      return worker;
+    }
+
+    @Override
+    public CeWorker.Result call() throws Exception {
+      synchronized (this) {
+        if (obsolete) {
+          return CeWorker.Result.NO_TASK;
+        }
+        started = true;
+      }
+      return worker.call();
+    }
+
+    /**
+     * @return {@code false} if the poll has already started
+     */
+    synchronized boolean makeObsolete() {
+      if (started) {
+        return false;
+      }
+      obsolete = true;
+      return true;
+    }
+
+    synchronized boolean isObsolete() {
+      return obsolete;
+    }
+  }
 }
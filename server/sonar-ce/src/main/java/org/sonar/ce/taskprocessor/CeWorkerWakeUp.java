@@ -0,0 +1,72 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.taskprocessor;
+
+import java.util.Collection;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.ce.queue.CeTaskSubmitListener;
+
+/**
+ * Relays notifications of submitted tasks to the {@link CeProcessingScheduler} so that idle workers poll the queue
+ * right away instead of waiting for their next scheduled polling.
+ * <p>
+ * Tasks submitted by this Compute Engine are always notified, directly. Tasks submitted by other processes (Web Server,
+ * other nodes) are notified only in cluster mode, see {@link ClusterCeWorkerWakeUp}.
+ * </p>
+ */
+public class CeWorkerWakeUp implements CeTaskSubmitListener {
+  @Nullable
+  private volatile IntConsumer wakeUpHandler;
+  private volatile boolean remoteSubmitsNotified = false;
+
+  @Override
+  public void onSubmit(Collection<CeTask> tasks) {
+    wakeUp(tasks.size());
+  }
+
+  /**
+   * Requests up to {@code taskCount} idle workers to poll the queue right away. Does nothing if scheduling has not
+   * started yet or is stopped.
+   */
+  public void wakeUp(int taskCount) {
+    IntConsumer handler = this.wakeUpHandler;
+    if (handler != null && taskCount > 0) {
+      handler.accept(taskCount);
+    }
+  }
+
+  void setWakeUpHandler(@Nullable IntConsumer wakeUpHandler) {
+    this.wakeUpHandler = wakeUpHandler;
+  }
+
+  /**
+   * Whether tasks submitted by other processes are notified. When they are not, workers can't rely on wake-ups and
+   * must keep polling the queue at the configured rate.
+   */
+  public boolean isRemoteSubmitsNotified() {
+    return remoteSubmitsNotified;
+  }
+
+  void setRemoteSubmitsNotified(boolean remoteSubmitsNotified) {
+    this.remoteSubmitsNotified = remoteSubmitsNotified;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.taskprocessor;
+
+import com.hazelcast.core.EntryAdapter;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.ReplicatedMap;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.process.cluster.hz.HazelcastMember;
+
+import static org.sonar.process.cluster.hz.HazelcastObjects.CE_TASK_SUBMITS;
+
+/**
+ * Wakes up the workers of this Compute Engine when another process of the cluster notifies the submission of tasks, see
+ * {@link org.sonar.ce.queue.ClusterCeTaskSubmitListener}. Submissions of this Compute Engine are already notified
+ * directly to {@link CeWorkerWakeUp}.
+ */
+public class ClusterCeWorkerWakeUp implements Startable {
+  private final HazelcastMember hazelcastMember;
+  private final CeWorkerWakeUp ceWorkerWakeUp;
+
+  @CheckForNull
+  private String listenerId;
+
+  public ClusterCeWorkerWakeUp(HazelcastMember hazelcastMember, CeWorkerWakeUp ceWorkerWakeUp) {
+    this.hazelcastMember = hazelcastMember;
+    this.ceWorkerWakeUp = ceWorkerWakeUp;
+  }
+
+  @Override
+  public void start() {
+    listenerId = getSubmits().addEntryListener(new SubmitListener());
+    ceWorkerWakeUp.setRemoteSubmitsNotified(true);
+  }
+
+  @Override
+  public void stop() {
+    ceWorkerWakeUp.setRemoteSubmitsNotified(false);
+    if (listenerId != null) {
+      getSubmits().removeEntryListener(listenerId);
+      listenerId = null;
+    }
+  }
+
+  private ReplicatedMap<String, Integer> getSubmits() {
+    return (ReplicatedMap<String, Integer>) hazelcastMember.<String, Integer>getReplicatedMap(CE_TASK_SUBMITS);
+  }
+
+  private class SubmitListener extends EntryAdapter<String, Integer> {
+    @Override
+    public void entryAdded(EntryEvent<String, Integer> event) {
+      Member member = event.getMember();
+      if (member != null && member.localMember()) {
+        return;
+      }
+      Integer taskCount = event.getValue();
+      ceWorkerWakeUp.wakeUp(taskCount == null ? 1 : taskCount);
+    }
+  }
+}
@@ -97,7 +97,7 @@ public class ComputeEngineContainerImplTest {
           + 4 // content of CeHttpModule
           + 3 // content of CeTaskCommonsModule
           + 4 // content of ProjectAnalysisTaskModule
-          + 7 // content of CeTaskProcessorModule
+          + 8 // content of CeTaskProcessorModule
           + 4 // content of ReportAnalysisFailureNotificationModule
           + 3 // CeCleaningModule + its content
           + 4 // WebhookModule
@@ -50,6 +50,8 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(0);
     assertThat(underTest.getSuccessCount()).isEqualTo(0);
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
+    assertThat(underTest.getPickupLatency()).isEqualTo(0);
+    assertThat(underTest.getMaxPickupLatency()).isEqualTo(0);
   }
 
   @Test
@@ -133,6 +135,25 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getProcessingTime()).isEqualTo(calls);
   }
 
+  @Test
+  public void addPickupLatency_sums_latencies_and_keeps_the_max() {
+    underTest.addPickupLatency(20);
+    underTest.addPickupLatency(100);
+    underTest.addPickupLatency(30);
+
+    assertThat(underTest.getPickupLatency()).isEqualTo(150);
+    assertThat(underTest.getMaxPickupLatency()).isEqualTo(100);
+    assertThat(underTest.getInProgressCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void addPickupLatency_counts_negative_latency_as_0() {
+    underTest.addPickupLatency(-10);
+
+    assertThat(underTest.getPickupLatency()).isEqualTo(0);
+    assertThat(underTest.getMaxPickupLatency()).isEqualTo(0);
+  }
+
   @Test
   public void count_Pending_from_database() {
     when(dbClient.ceQueueDao().countByStatus(any(DbSession.class), eq(CeQueueDto.Status.PENDING))).thenReturn(42);
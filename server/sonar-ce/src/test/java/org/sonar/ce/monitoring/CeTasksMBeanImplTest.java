@@ -26,9 +26,13 @@ import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import org.junit.Test;
 import org.sonar.ce.configuration.CeConfiguration;
+import org.sonar.ce.queue.CeTask;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.sonar.server.computation.task.step.ComputationProfiler.UNKNOWN_ALLOCATED_BYTES;
 
 public class CeTasksMBeanImplTest {
   private static final long PENDING_COUNT = 2;
@@ -36,6 +40,8 @@ public class CeTasksMBeanImplTest {
   private static final long ERROR_COUNT = 10;
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
+  private static final long PICKUP_LATENCY = 4_321;
+  private static final long MAX_PICKUP_LATENCY = 1_234;
   private static final int WORKER_MAX_COUNT = 666;
   private static final int WORKER_COUNT = 56;
 
@@ -72,6 +78,8 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getPickupLatency()).isEqualTo(PICKUP_LATENCY);
+    assertThat(underTest.getMaxPickupLatency()).isEqualTo(MAX_PICKUP_LATENCY);
   }
 
   @Test
@@ -88,7 +96,47 @@ public class CeTasksMBeanImplTest {
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
     assertThat(section.getName()).isEqualTo("Compute Engine Tasks");
-    assertThat(section.getAttributesCount()).isEqualTo(7);
+    assertThat(section.getAttributesCount()).isEqualTo(11);
+  }
+
+  @Test
+  public void profiles_are_empty_when_no_task_has_been_profiled() {
+    assertThat(underTest.getStepsProfile()).isEmpty();
+    assertThat(underTest.getVisitorsProfile()).isEmpty();
+  }
+
+  @Test
+  public void onProfile_accumulates_durations_and_allocations_of_steps_and_visitors() {
+    ComputationProfiler profiler1 = new ComputationProfiler();
+    profiler1.addStep("step A", 10, 2048);
+    profiler1.addStep("step B", 50, UNKNOWN_ALLOCATED_BYTES);
+    profiler1.addVisitor("visitor A", 3, 1024);
+    ComputationProfiler profiler2 = new ComputationProfiler();
+    profiler2.addStep("step A", 100, 1024);
+    profiler2.addStep("step B", 5, 1024);
+    profiler2.addVisitor("visitor A", 4, 1024);
+    profiler2.addVisitor("visitor B", 8, 3072);
+
+    underTest.onProfile(mock(CeTask.class), profiler1);
+    underTest.onProfile(mock(CeTask.class), profiler2);
+
+    assertThat(underTest.getStepsProfile()).isEqualTo("step A=110ms/3KB;step B=55ms");
+    assertThat(underTest.getVisitorsProfile()).isEqualTo("visitor B=8ms/3KB;visitor A=7ms/2KB");
+  }
+
+  @Test
+  public void profiles_are_limited_to_the_slowest_entries() {
+    ComputationProfiler profiler = new ComputationProfiler();
+    for (int i = 0; i < CeTasksMBean.PROFILE_MAX_ENTRIES + 5; i++) {
+      profiler.addStep("step " + i, i, 0);
+    }
+
+    underTest.onProfile(mock(CeTask.class), profiler);
+
+    assertThat(underTest.getStepsProfile().split(";"))
+      .hasSize(CeTasksMBean.PROFILE_MAX_ENTRIES)
+      .startsWith("step 14=14ms/0KB")
+      .endsWith("step 5=5ms/0KB");
   }
   private static class DumbCEQueueStatus implements CEQueueStatus {
 
@@ -132,6 +180,21 @@ public class CeTasksMBeanImplTest {
     public long getProcessingTime() {
       return PROCESSING_TIME;
     }
+
+    @Override
+    public void addPickupLatency(long pickupLatency) {
+      methodNotImplemented();
+    }
+
+    @Override
+    public long getPickupLatency() {
+      return PICKUP_LATENCY;
+    }
+
+    @Override
+    public long getMaxPickupLatency() {
+      return MAX_PICKUP_LATENCY;
+    }
     private long methodNotImplemented() {
       throw new UnsupportedOperationException("Not Implemented");
     }
@@ -32,6 +32,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.AlwaysIncreasingSystem2;
+import org.sonar.ce.configuration.CeConfigurationRule;
 import org.sonar.ce.container.ComputeEngineStatus;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.monitoring.CEQueueStatusImpl;
@@ -76,7 +77,10 @@ public class InternalCeQueueImplTest {
   private CEQueueStatus queueStatus = new CEQueueStatusImpl(db.getDbClient());
   private DefaultOrganizationProvider defaultOrganizationProvider = mock(DefaultOrganizationProvider.class);
   private ComputeEngineStatus computeEngineStatus = mock(ComputeEngineStatus.class);
-  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, db.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
+  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, db.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus,
+    ceConfiguration);
 
   @Before
   public void setUp() throws Exception {
@@ -313,6 +317,67 @@ public class InternalCeQueueImplTest {
     assertThat(peek.isPresent()).isFalse();
   }
 
+  @Test
+  public void peek_hands_out_tasks_selected_ahead_when_there_are_several_workers() {
+    ceConfiguration.setWorkerCount(2);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task1.getUuid());
+    assertThat(underTest.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task2.getUuid());
+    assertThat(underTest.peek("worker uuid 3").get().getUuid()).isEqualTo(task3.getUuid());
+    assertThat(underTest.peek("worker uuid 4")).isEmpty();
+    verifyPeekedBy(task1, WORKER_UUID_1);
+    verifyPeekedBy(task2, WORKER_UUID_2);
+    verifyPeekedBy(task3, "worker uuid 3");
+  }
+
+  @Test
+  public void peek_skips_tasks_selected_ahead_which_have_been_peeked_by_another_node() {
+    ceConfiguration.setWorkerCount(2);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task1.getUuid());
+    // another node peeks task2
+    InternalCeQueue otherNode = new InternalCeQueueImpl(system2, db.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider, computeEngineStatus,
+      new CeConfigurationRule());
+    assertThat(otherNode.peek("other node worker").get().getUuid()).isEqualTo(task2.getUuid());
+
+    assertThat(underTest.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task3.getUuid());
+    verifyPeekedBy(task2, "other node worker");
+    verifyPeekedBy(task3, WORKER_UUID_2);
+  }
+
+  @Test
+  public void peek_does_not_hand_out_two_tasks_of_the_same_component_selected_ahead() {
+    ceConfiguration.setWorkerCount(3);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    assertThat(underTest.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task1.getUuid());
+    assertThat(underTest.peek(WORKER_UUID_2)).isEmpty();
+  }
+
+  @Test
+  public void peek_records_pickup_latency_of_task() {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+
+    underTest.peek(WORKER_UUID_1);
+
+    assertThat(queueStatus.getPickupLatency()).isPositive();
+    assertThat(queueStatus.getMaxPickupLatency()).isEqualTo(queueStatus.getPickupLatency());
+  }
+
+  @Test
+  public void peek_does_not_record_pickup_latency_if_there_is_no_task() {
+    underTest.peek(WORKER_UUID_1);
+
+    assertThat(queueStatus.getPickupLatency()).isEqualTo(0);
+  }
+
   @Test
   public void peek_overrides_workerUuid_to_argument() {
     db.getDbClient().ceQueueDao().insert(session, new CeQueueDto()
@@ -706,6 +771,12 @@ public class InternalCeQueueImplTest {
     assertThat(underTest.isSubmitPaused()).isFalse();
   }
 
+  private void verifyPeekedBy(CeTask task, String workerUuid) {
+    CeQueueDto dto = db.getDbClient().ceQueueDao().selectByUuid(session, task.getUuid()).get();
+    assertThat(dto.getStatus()).isEqualTo(CeQueueDto.Status.IN_PROGRESS);
+    assertThat(dto.getWorkerUuid()).isEqualTo(workerUuid);
+  }
+
   private void verifyCeTask(CeTaskSubmit taskSubmit, CeTask task, @Nullable ComponentDto componentDto) {
     if (componentDto == null) {
       assertThat(task.getOrganizationUuid()).isEqualTo(defaultOrganizationProvider.get().getUuid());
@@ -79,8 +79,10 @@ public class CeProcessingSchedulerImplTest {
   private SchedulerCall extendedDelayedPoll = new SchedulerCall(ceWorker, 30000L, MILLISECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorker);
   private EnabledCeWorkerController ceWorkerController = new EnabledCeWorkerControllerImpl(ceConfiguration);
+  private CeWorkerWakeUp ceWorkerWakeUp = new CeWorkerWakeUp();
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController);
+  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerFactory, ceWorkerController,
+    ceWorkerWakeUp);
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_TASK_PROCESSED() throws Exception {
@@ -201,6 +203,154 @@ public class CeProcessingSchedulerImplTest {
       regularDelayedPoll);
   }
 
+  @Test
+  public void polls_with_increasing_delay_when_CeWorkerCallable_returns_NO_TASK_and_remote_submits_are_notified() throws Exception {
+    ceWorkerWakeUp.setRemoteSubmitsNotified(true);
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenReturn(NO_TASK)
+      .thenReturn(TASK_PROCESSED)
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      regularDelayedPoll,
+      new SchedulerCall(ceWorker, 4000L, MILLISECONDS),
+      new SchedulerCall(ceWorker, 5000L, MILLISECONDS),
+      new SchedulerCall(ceWorker, 5000L, MILLISECONDS),
+      new SchedulerCall(ceWorker, 5000L, MILLISECONDS),
+      notDelayedPoll,
+      regularDelayedPoll);
+  }
+
+  @Test
+  public void wakeUp_polls_without_delay_when_worker_waits_for_its_next_poll() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    processingExecutorService.futures.poll().get();
+    ceWorkerWakeUp.wakeUp(1);
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      regularDelayedPoll,
+      notDelayedPoll);
+    // delayed poll has been cancelled
+    verify(ceWorker, times(2)).call();
+  }
+
+  @Test
+  public void wakeUp_during_execution_polls_without_delay_after_execution() throws Exception {
+    when(ceWorker.call())
+      .thenAnswer(invocation -> {
+        ceWorkerWakeUp.wakeUp(1);
+        return NO_TASK;
+      })
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll);
+  }
+
+  @Test
+  public void wakeUp_wakes_up_at_most_as_many_idle_workers_as_submitted_tasks() throws Exception {
+    ceConfiguration.setWorkerThreadCount(3);
+    CeWorker[] workers = new CeWorker[3];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = mock(CeWorker.class);
+      when(workers[i].call())
+        .thenReturn(NO_TASK)
+        .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    }
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, new TestCeWorkerFactory(workers),
+      ceWorkerController, ceWorkerWakeUp);
+
+    underTest.startScheduling();
+    for (int i = 0; i < workers.length; i++) {
+      processingExecutorService.futures.poll().get();
+    }
+    ceWorkerWakeUp.wakeUp(2);
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      new SchedulerCall(workers[0], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[1], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[2], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[0], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[1], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[2], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[0]),
+      new SchedulerCall(workers[1]));
+  }
+
+  @Test
+  public void wakeUp_does_not_request_poll_after_execution_when_as_many_workers_as_submitted_tasks_are_idle() throws Exception {
+    ceConfiguration.setWorkerThreadCount(3);
+    CeWorker[] workers = new CeWorker[3];
+    workers[0] = mock(CeWorker.class);
+    when(workers[0].call())
+      .thenAnswer(invocation -> {
+        // the two other workers are idle
+        ceWorkerWakeUp.wakeUp(2);
+        return NO_TASK;
+      })
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    for (int i = 1; i < workers.length; i++) {
+      workers[i] = mock(CeWorker.class);
+      when(workers[i].call())
+        .thenReturn(NO_TASK)
+        .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+    }
+    CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, new TestCeWorkerFactory(workers),
+      ceWorkerController, ceWorkerWakeUp);
+
+    underTest.startScheduling();
+    Future<?> firstWorkerPoll = processingExecutorService.futures.poll();
+    processingExecutorService.futures.poll().get();
+    processingExecutorService.futures.poll().get();
+    firstWorkerPoll.get();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      new SchedulerCall(workers[0], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[1], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[2], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[1], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[2], 2000L, MILLISECONDS),
+      new SchedulerCall(workers[1]),
+      new SchedulerCall(workers[2]),
+      // the first worker has not been requested to poll right after its execution
+      new SchedulerCall(workers[0], 2000L, MILLISECONDS));
+  }
+
+  @Test
+  public void wakeUp_does_nothing_once_scheduling_is_stopped() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(NO_TASK)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    processingExecutorService.futures.poll().get();
+    underTest.stopScheduling();
+    ceWorkerWakeUp.wakeUp(1);
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      regularDelayedPoll);
+    verify(ceWorker, times(1)).call();
+  }
+
   @Test
   public void when_workerCount_is_more_than_1_as_many_CeWorkerCallable_are_scheduled() throws Exception {
     int workerCount = Math.abs(new Random().nextInt(10)) + 1;
@@ -557,7 +707,7 @@ public class CeProcessingSchedulerImplTest {
     private final TimeUnit unit;
 
     private SchedulerCall(Callable<?> callable, long delay, TimeUnit unit) {
-      this.callable = callable;
+      this.callable = callable instanceof CeProcessingSchedulerImpl.IdlePoll ? ((CeProcessingSchedulerImpl.IdlePoll) callable).getWorker() : callable;
       this.delay = delay;
       this.unit = unit;
     }
@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.taskprocessor;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryListener;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.ReplicatedMap;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.process.cluster.hz.HazelcastMember;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.process.cluster.hz.HazelcastObjects.CE_TASK_SUBMITS;
+
+public class ClusterCeWorkerWakeUpTest {
+  private static final String LISTENER_ID = "listener id";
+
+  private HazelcastMember hazelcastMember = mock(HazelcastMember.class);
+  private ReplicatedMap<String, Integer> submits = mock(ReplicatedMap.class);
+  private CeWorkerWakeUp ceWorkerWakeUp = new CeWorkerWakeUp();
+  private ClusterCeWorkerWakeUp underTest = new ClusterCeWorkerWakeUp(hazelcastMember, ceWorkerWakeUp);
+
+  @Test
+  public void start_listens_to_submits_of_the_cluster_and_stop_unregisters_listener() {
+    when(hazelcastMember.<String, Integer>getReplicatedMap(CE_TASK_SUBMITS)).thenReturn(submits);
+    when(submits.addEntryListener(any(EntryListener.class))).thenReturn(LISTENER_ID);
+
+    underTest.start();
+    assertThat(ceWorkerWakeUp.isRemoteSubmitsNotified()).isTrue();
+
+    underTest.stop();
+    assertThat(ceWorkerWakeUp.isRemoteSubmitsNotified()).isFalse();
+    verify(submits).removeEntryListener(LISTENER_ID);
+  }
+
+  @Test
+  public void added_entry_wakes_up_as_many_workers_as_submitted_tasks() {
+    when(hazelcastMember.<String, Integer>getReplicatedMap(CE_TASK_SUBMITS)).thenReturn(submits);
+    ArgumentCaptor<EntryListener> listenerCaptor = ArgumentCaptor.forClass(EntryListener.class);
+    int[] wokenUp = new int[1];
+    ceWorkerWakeUp.setWakeUpHandler(taskCount -> wokenUp[0] += taskCount);
+
+    underTest.start();
+    verify(submits).addEntryListener(listenerCaptor.capture());
+    EntryEvent<String, Integer> event = mock(EntryEvent.class);
+    when(event.getValue()).thenReturn(3);
+    listenerCaptor.getValue().entryAdded(event);
+
+    assertThat(wokenUp[0]).isEqualTo(3);
+  }
+
+  @Test
+  public void entries_added_by_this_compute_engine_are_ignored() {
+    when(hazelcastMember.<String, Integer>getReplicatedMap(CE_TASK_SUBMITS)).thenReturn(submits);
+    ArgumentCaptor<EntryListener> listenerCaptor = ArgumentCaptor.forClass(EntryListener.class);
+    int[] wokenUp = new int[1];
+    ceWorkerWakeUp.setWakeUpHandler(taskCount -> wokenUp[0] += taskCount);
+
+    underTest.start();
+    verify(submits).addEntryListener(listenerCaptor.capture());
+    Member localMember = mock(Member.class);
+    when(localMember.localMember()).thenReturn(true);
+    EntryEvent<String, Integer> event = mock(EntryEvent.class);
+    when(event.getValue()).thenReturn(3);
+    when(event.getMember()).thenReturn(localMember);
+    listenerCaptor.getValue().entryAdded(event);
+
+    assertThat(wokenUp[0]).isEqualTo(0);
+  }
+}
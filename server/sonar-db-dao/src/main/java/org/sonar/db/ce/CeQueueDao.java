@@ -19,6 +19,8 @@
  */
 package org.sonar.db.ce;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -145,7 +147,32 @@ public class CeQueueDao implements Dao {
     return tryToPeek(session, eligible, workerUuid);
   }
 
-  private Optional<CeQueueDto> tryToPeek(DbSession session, EligibleTaskDto eligible, String workerUuid) {
+  /**
+   * Selects, in a single statement, up to {@code limit} of the oldest tasks which can be peeked, ordered from oldest
+   * to newest. Only the oldest task of a given component is returned since a single task can be peeked by component.
+   * <p>
+   * Tasks are not claimed: they must be peeked with {@link #tryToPeek(DbSession, EligibleTaskDto, String)}, which
+   * fails if a task has been peeked by another worker in the meantime.
+   * </p>
+   */
+  public List<EligibleTaskDto> selectEligibleForPeek(DbSession session, int maxExecutionCount, int limit) {
+    List<EligibleTaskDto> eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, Pagination.forPage(1).andSize(limit));
+    Set<String> componentUuids = new HashSet<>();
+    List<EligibleTaskDto> res = new ArrayList<>(eligibles.size());
+    for (EligibleTaskDto eligible : eligibles) {
+      String componentUuid = eligible.getComponentUuid();
+      if (componentUuid == null || componentUuids.add(componentUuid)) {
+        res.add(eligible);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Assigns the specified task to the specified worker and changes its status to
+   * {@link CeQueueDto.Status#IN_PROGRESS}, unless the task has been peeked by another worker in the meantime.
+   */
+  public Optional<CeQueueDto> tryToPeek(DbSession session, EligibleTaskDto eligible, String workerUuid) {
     long now = system2.now();
     int touchedRows = mapper(session).updateIf(eligible.getUuid(),
       new UpdateIf.NewProperties(IN_PROGRESS, workerUuid, eligible.getExecutionCount() + 1, now, now),
@@ -23,6 +23,8 @@ public class CeTaskCharacteristicDto {
 
   public static final String BRANCH_KEY = "branch";
   public static final String BRANCH_TYPE_KEY = "branchType";
+  public static final String STEPS_PROFILE_KEY = "stepsProfile";
+  public static final String VISITORS_PROFILE_KEY = "visitorsProfile";
 
   private String uuid;
   private String taskUuid;
@@ -19,9 +19,13 @@
  */
 package org.sonar.db.ce;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 public class EligibleTaskDto {
   private String uuid;
   private int executionCount;
+  private String componentUuid;
 
   public String getUuid() {
     return uuid;
@@ -41,11 +45,22 @@ public class EligibleTaskDto {
     return this;
   }
 
+  @CheckForNull
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public EligibleTaskDto setComponentUuid(@Nullable String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
   @Override
   public String toString() {
     return "EligibleTaskDto{" +
         "uuid='" + uuid + '\'' +
         ", executionCount=" + executionCount +
+        ", componentUuid='" + componentUuid + '\'' +
         '}';
   }
 }
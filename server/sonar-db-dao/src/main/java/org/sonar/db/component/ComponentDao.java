@@ -260,6 +260,14 @@ public class ComponentDao implements Dao {
     return mapper(dbSession).selectAllRootsByOrganization(organizationUuid);
   }
 
+  /**
+   * Distinct values of column project_uuid, sorted in ascending order. It includes the
+   * uuids of projects, branches, views and applications, whatever the organization.
+   */
+  public List<String> selectAllProjectUuids(DbSession dbSession) {
+    return mapper(dbSession).selectAllProjectUuids();
+  }
+
   public List<ComponentDto> selectGhostProjects(DbSession session, String organizationUuid, @Nullable String query, int offset, int limit) {
     return mapper(session).selectGhostProjects(organizationUuid, buildUpperLikeSql(query), new RowBounds(offset, limit));
   }
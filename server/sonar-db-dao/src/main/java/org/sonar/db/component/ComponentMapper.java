@@ -84,6 +84,8 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectAllRootsByOrganization(@Param("organizationUuid") String organizationUuid);
 
+  List<String> selectAllProjectUuids();
+
   /**
    * Return all descendant modules (including itself) from a given component uuid and scope
    */
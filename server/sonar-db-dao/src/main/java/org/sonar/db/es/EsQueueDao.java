@@ -19,8 +19,11 @@
  */
 package org.sonar.db.es;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.UuidFactory;
@@ -46,12 +49,24 @@ public class EsQueueDao implements Dao {
     return item;
   }
 
+  /**
+   * Items which have the same document type, id, id type and routing are inserted
+   * only once. They share the same uuid, so deleting any of them deletes the row.
+   */
   public Collection<EsQueueDto> insert(DbSession dbSession, Collection<EsQueueDto> items) {
     long now = system2.now();
     EsQueueMapper mapper = mapper(dbSession);
+    Map<List<String>, String> uuidsByKey = new HashMap<>();
     items.forEach(item -> {
-      item.setUuid(uuidFactory.create());
-      mapper.insert(item, now);
+      List<String> key = Arrays.asList(item.getDocType(), item.getDocId(), item.getDocIdType(), item.getDocRouting());
+      String uuid = uuidsByKey.get(key);
+      if (uuid == null) {
+        item.setUuid(uuidFactory.create());
+        mapper.insert(item, now);
+        uuidsByKey.put(key, item.getUuid());
+      } else {
+        item.setUuid(uuid);
+      }
     });
     return items;
   }
@@ -70,7 +85,26 @@ public class EsQueueDao implements Dao {
   }
 
   public Collection<EsQueueDto> selectForRecovery(DbSession dbSession, long beforeDate, long limit) {
-    return mapper(dbSession).selectForRecovery(beforeDate, limit);
+    return mapper(dbSession).selectForRecovery(null, beforeDate, limit);
+  }
+
+  /**
+   * Same as {@link #selectForRecovery(DbSession, long, long)} but restricted to the items
+   * of the given document type. Most recent items are returned first.
+   */
+  public Collection<EsQueueDto> selectForRecovery(DbSession dbSession, String docType, long beforeDate, long limit) {
+    return mapper(dbSession).selectForRecovery(docType, beforeDate, limit);
+  }
+
+  /**
+   * Distinct document types of the items created before the given date.
+   */
+  public List<String> selectDocTypesForRecovery(DbSession dbSession, long beforeDate) {
+    return mapper(dbSession).selectDocTypesForRecovery(beforeDate);
+  }
+
+  public long countAll(DbSession dbSession) {
+    return mapper(dbSession).countAll();
   }
 
   private static EsQueueMapper mapper(DbSession dbSession) {
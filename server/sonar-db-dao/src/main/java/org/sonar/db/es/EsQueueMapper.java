@@ -21,6 +21,7 @@ package org.sonar.db.es;
 
 import java.util.Collection;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.ibatis.annotations.Param;
 
 public interface EsQueueMapper {
@@ -29,5 +30,9 @@ public interface EsQueueMapper {
 
   void delete(@Param("uuids") List<String> uuids);
 
-  Collection<EsQueueDto> selectForRecovery(@Param("beforeDate") long beforeDate, @Param("limit") long limit);
+  Collection<EsQueueDto> selectForRecovery(@Nullable @Param("docType") String docType, @Param("beforeDate") long beforeDate, @Param("limit") long limit);
+
+  List<String> selectDocTypesForRecovery(@Param("beforeDate") long beforeDate);
+
+  long countAll();
 }
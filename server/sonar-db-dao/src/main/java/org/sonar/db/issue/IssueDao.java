@@ -98,6 +98,13 @@ public class IssueDao implements Dao {
     mapper(dbSession).scrollNonClosedByComponentUuid(componentUuid, handler);
   }
 
+  /**
+   * Scrolls the non-closed issues of a project or branch, ordered by component uuid.
+   */
+  public void scrollNonClosedByProjectUuid(DbSession dbSession, String projectUuid, ResultHandler<IssueDto> handler) {
+    mapper(dbSession).scrollNonClosedByProjectUuid(projectUuid, handler);
+  }
+
   public void scrollNonClosedByModuleOrProject(DbSession dbSession, ComponentDto module, ResultHandler<IssueDto> handler) {
     String likeModuleUuidPath = buildLikeValue(module.moduleUuidPath(), WildcardPosition.AFTER);
     mapper(dbSession).scrollNonClosedByModuleOrProject(module.projectUuid(), likeModuleUuidPath, handler);
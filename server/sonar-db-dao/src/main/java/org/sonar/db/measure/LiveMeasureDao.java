@@ -33,6 +33,7 @@ import org.sonar.db.component.ComponentDto;
 
 import static java.util.Collections.singletonList;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
 
 public class LiveMeasureDao implements Dao {
 
@@ -52,6 +53,26 @@ public class LiveMeasureDao implements Dao {
       componentUuids -> mapper(dbSession).selectByComponentUuidsAndMetricIds(componentUuids, metricIds));
   }
 
+  /**
+   * Measures of all the metrics of the specified components
+   */
+  public List<LiveMeasureDto> selectByComponentUuids(DbSession dbSession, Collection<String> largeComponentUuids) {
+    if (largeComponentUuids.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    return executeLargeInputs(
+      largeComponentUuids,
+      componentUuids -> mapper(dbSession).selectByComponentUuids(componentUuids));
+  }
+
+  /**
+   * Uuids of the components which have at least one measure in the specified project
+   */
+  public List<String> selectComponentUuidsByProjectUuid(DbSession dbSession, String projectUuid) {
+    return mapper(dbSession).selectComponentUuidsByProjectUuid(projectUuid);
+  }
+
   public List<LiveMeasureDto> selectByComponentUuidsAndMetricKeys(DbSession dbSession, Collection<String> largeComponentUuids, Collection<String> metricKeys) {
     if (largeComponentUuids.isEmpty() || metricKeys.isEmpty()) {
       return Collections.emptyList();
@@ -90,6 +111,36 @@ public class LiveMeasureDao implements Dao {
     }
   }
 
+  /**
+   * Updates the measure of the component and metric of the specified DTO, without checking whether it exists.
+   * Unlike {@link #insertOrUpdate(DbSession, LiveMeasureDto, String)}, can be used with a batch session.
+   */
+  public void update(DbSession dbSession, LiveMeasureDto dto) {
+    mapper(dbSession).update(dto, null, system2.now());
+  }
+
+  public void deleteByComponentUuidAndMetricId(DbSession dbSession, String componentUuid, int metricId) {
+    mapper(dbSession).deleteByComponentUuidAndMetricId(componentUuid, metricId);
+  }
+
+  /**
+   * Number of measures of the specified components in the specified project
+   */
+  public int countByProjectUuidAndComponentUuids(DbSession dbSession, String projectUuid, Collection<String> largeComponentUuids) {
+    return executeLargeInputs(
+      largeComponentUuids,
+      componentUuids -> singletonList(mapper(dbSession).countByProjectUuidAndComponentUuids(projectUuid, componentUuids)))
+        .stream()
+        .mapToInt(Integer::intValue)
+        .sum();
+  }
+
+  public void deleteByProjectUuidAndComponentUuids(DbSession dbSession, String projectUuid, Collection<String> largeComponentUuids) {
+    executeLargeUpdates(
+      largeComponentUuids,
+      componentUuids -> mapper(dbSession).deleteByProjectUuidAndComponentUuids(projectUuid, componentUuids));
+  }
+
   public void deleteByProjectUuidExcludingMarker(DbSession dbSession, String projectUuid, String marker) {
     mapper(dbSession).deleteByProjectUuidExcludingMarker(projectUuid, marker);
   }
@@ -31,6 +31,10 @@ public interface LiveMeasureMapper {
     @Param("componentUuids") List<String> componentUuids,
     @Param("metricIds") Collection<Integer> metricIds);
 
+  List<LiveMeasureDto> selectByComponentUuids(@Param("componentUuids") List<String> componentUuids);
+
+  List<String> selectComponentUuidsByProjectUuid(@Param("projectUuid") String projectUuid);
+
   List<LiveMeasureDto> selectByComponentUuidsAndMetricKeys(
     @Param("componentUuids") List<String> componentUuids,
     @Param("metricKeys") Collection<String> metricKeys);
@@ -52,6 +56,18 @@ public interface LiveMeasureMapper {
     @Nullable @Param("marker") String marker,
     @Param("now") long now);
 
+  void deleteByComponentUuidAndMetricId(
+    @Param("componentUuid") String componentUuid,
+    @Param("metricId") int metricId);
+
+  int countByProjectUuidAndComponentUuids(
+    @Param("projectUuid") String projectUuid,
+    @Param("componentUuids") List<String> componentUuids);
+
+  void deleteByProjectUuidAndComponentUuids(
+    @Param("projectUuid") String projectUuid,
+    @Param("componentUuids") List<String> componentUuids);
+
   void deleteByProjectUuidExcludingMarker(
     @Param("projectUuid") String projectUuid,
     @Param("marker") String marker);
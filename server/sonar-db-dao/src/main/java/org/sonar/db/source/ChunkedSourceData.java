@@ -0,0 +1,106 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Layout of column FILE_SOURCES.BINARY_DATA where the lines of the file are split into chunks of a fixed number of
+ * lines, each one serialized and compressed independently, so that a range of lines can be read without
+ * decompressing and deserializing the whole file.
+ * <p>
+ * The layout is:
+ * <ul>
+ *   <li>the 8 bytes of {@link #MAGIC}, which can't start a LZ4 block stream as written in the regular layout</li>
+ *   <li>the number of chunks</li>
+ *   <li>for each chunk, the number of its first line and its size in bytes</li>
+ *   <li>the chunks, as in the regular layout: compressed protobuf messages {@link DbFileSources.Data}</li>
+ * </ul>
+ * </p>
+ */
+final class ChunkedSourceData {
+
+  private static final byte[] MAGIC = "SQChunk1".getBytes(UTF_8);
+
+  private ChunkedSourceData() {
+    // only static stuff
+  }
+
+  static boolean isChunked(byte[] binaryData) {
+    return binaryData.length >= MAGIC.length && Arrays.equals(MAGIC, Arrays.copyOf(binaryData, MAGIC.length));
+  }
+
+  static byte[] encode(DbFileSources.Data data, int linesPerChunk) throws IOException {
+    List<DbFileSources.Line> lines = data.getLinesList();
+    int chunkCount = (lines.size() + linesPerChunk - 1) / linesPerChunk;
+    List<byte[]> chunks = new ArrayList<>(chunkCount);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.write(MAGIC);
+    output.writeInt(chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      List<DbFileSources.Line> chunkLines = lines.subList(i * linesPerChunk, Math.min(lines.size(), (i + 1) * linesPerChunk));
+      byte[] chunk = FileSourceDto.encodeSourceData(DbFileSources.Data.newBuilder().addAllLines(chunkLines).build());
+      chunks.add(chunk);
+      output.writeInt(chunkLines.get(0).getLine());
+      output.writeInt(chunk.length);
+    }
+    for (byte[] chunk : chunks) {
+      output.write(chunk);
+    }
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes only the chunks which contain lines of the specified range.
+   */
+  static DbFileSources.Data decode(byte[] binaryData, int from, int toInclusive) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(binaryData, MAGIC.length, binaryData.length - MAGIC.length));
+    int chunkCount = input.readInt();
+    int[] firstLines = new int[chunkCount];
+    int[] sizes = new int[chunkCount];
+    for (int i = 0; i < chunkCount; i++) {
+      firstLines[i] = input.readInt();
+      sizes[i] = input.readInt();
+    }
+
+    DbFileSources.Data.Builder res = DbFileSources.Data.newBuilder();
+    int offset = MAGIC.length + Integer.BYTES + 2 * Integer.BYTES * chunkCount;
+    for (int i = 0; i < chunkCount; i++) {
+      int lastLine = i + 1 < chunkCount ? (firstLines[i + 1] - 1) : Integer.MAX_VALUE;
+      if (firstLines[i] <= toInclusive && lastLine >= from) {
+        res.addAllLines(FileSourceDto.decodeRegularSourceData(binaryData, offset, sizes[i]).getLinesList());
+      }
+      offset += sizes[i];
+    }
+    return res.build();
+  }
+}
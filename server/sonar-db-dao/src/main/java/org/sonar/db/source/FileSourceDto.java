@@ -48,6 +48,7 @@ public class FileSourceDto {
   private long updatedAt;
   private String lineHashes;
   private String srcHash;
+  private String reportHash;
   private byte[] binaryData;
   private String dataType;
   private String dataHash;
@@ -94,8 +95,15 @@ public class FileSourceDto {
   }
 
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
+    return decodeSourceData(binaryData, 1, Integer.MAX_VALUE);
+  }
+
+  private DbFileSources.Data decodeSourceData(byte[] binaryData, int from, int toInclusive) {
     try {
-      return decodeRegularSourceData(binaryData);
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decode(binaryData, from, toInclusive);
+      }
+      return decodeRegularSourceData(binaryData, 0, binaryData.length);
     } catch (IOException e) {
       throw new IllegalStateException(
         format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
@@ -103,19 +111,19 @@ public class FileSourceDto {
     }
   }
 
-  private static DbFileSources.Data decodeRegularSourceData(byte[] binaryData) throws IOException {
-    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+  static DbFileSources.Data decodeRegularSourceData(byte[] binaryData, int offset, int length) throws IOException {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData, offset, length))) {
       return DbFileSources.Data.parseFrom(lz4Input);
     } catch (InvalidProtocolBufferException e) {
       if (SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE.equals(e.getMessage())) {
-        return decodeHugeSourceData(binaryData);
+        return decodeHugeSourceData(binaryData, offset, length);
       }
       throw e;
     }
   }
 
-  private static DbFileSources.Data decodeHugeSourceData(byte[] binaryData) throws IOException {
-    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
+  private static DbFileSources.Data decodeHugeSourceData(byte[] binaryData, int offset, int length) throws IOException {
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData, offset, length))) {
       CodedInputStream input = CodedInputStream.newInstance(lz4Input);
       input.setSizeLimit(Integer.MAX_VALUE);
       return DbFileSources.Data.parseFrom(input);
@@ -140,6 +148,23 @@ public class FileSourceDto {
     }
   }
 
+  /**
+   * Same as {@link #encodeSourceData(DbFileSources.Data)} when {@code linesPerChunk} is not positive or when the
+   * data has no more than {@code linesPerChunk} lines. Otherwise, lines are split into chunks of {@code linesPerChunk}
+   * lines which are compressed independently, so that a range of lines can be decoded without decoding the whole
+   * file. See {@link #getSourceData(int, int)}.
+   */
+  public static byte[] encodeSourceData(DbFileSources.Data data, int linesPerChunk) {
+    if (linesPerChunk <= 0 || data.getLinesCount() <= linesPerChunk) {
+      return encodeSourceData(data);
+    }
+    try {
+      return ChunkedSourceData.encode(data, linesPerChunk);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to serialize and compress source data", e);
+    }
+  }
+
   public static List<DbFileSources.Test> decodeTestData(byte[] binaryData) {
     // stream is always closed
     return decodeTestData(new ByteArrayInputStream(binaryData));
@@ -212,6 +237,17 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * The lines of the specified range, possibly with some lines before and after it. Only the lines
+   * stored in the chunks which contain the range are decompressed and deserialized, when data has been encoded
+   * in chunks by {@link #encodeSourceData(DbFileSources.Data, int)}.
+   * @param from starts from 1
+   * @param toInclusive starts from 1, must be greater than or equal param {@code from}
+   */
+  public DbFileSources.Data getSourceData(int from, int toInclusive) {
+    return decodeSourceData(binaryData, from, toInclusive);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
@@ -254,6 +290,20 @@ public class FileSourceDto {
     return this;
   }
 
+  @CheckForNull
+  public String getReportHash() {
+    return reportHash;
+  }
+
+  /**
+   * Hash of the analysis report data (coverage, highlighting, symbols, SCM, duplications) the row has been computed from.
+   * Value is computed by the Compute Engine.
+   */
+  public FileSourceDto setReportHash(@Nullable String reportHash) {
+    this.reportHash = reportHash;
+    return this;
+  }
+
   public long getCreatedAt() {
     return createdAt;
   }
@@ -42,6 +42,7 @@ import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
@@ -426,6 +427,50 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getExecutionCount()).isEqualTo(1);
   }
 
+  @Test
+  public void selectEligibleForPeek_returns_oldest_eligible_tasks_up_to_limit() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, "PROJECT_3", PENDING);
+
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), MAX_EXECUTION_COUNT, 2))
+      .extracting(EligibleTaskDto::getUuid, EligibleTaskDto::getComponentUuid)
+      .containsExactly(tuple(TASK_UUID_1, COMPONENT_UUID_1), tuple(TASK_UUID_2, COMPONENT_UUID_2));
+    verifyCeQueueStatuses(TASK_UUID_1, PENDING, TASK_UUID_2, PENDING, TASK_UUID_3, PENDING);
+  }
+
+  @Test
+  public void selectEligibleForPeek_returns_only_oldest_task_of_a_component() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 3_000);
+    insert("TASK_4", null, PENDING);
+    system2.setNow(INIT_TIME + 4_000);
+    insert("TASK_5", null, PENDING);
+
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), MAX_EXECUTION_COUNT, 10))
+      .extracting(EligibleTaskDto::getUuid)
+      .containsExactly(TASK_UUID_1, TASK_UUID_3, "TASK_4", "TASK_5");
+  }
+
+  @Test
+  public void tryToPeek_fails_if_task_has_already_been_peeked() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    EligibleTaskDto eligible = underTest.selectEligibleForPeek(db.getSession(), MAX_EXECUTION_COUNT, 1).get(0);
+
+    Optional<CeQueueDto> peek = underTest.tryToPeek(db.getSession(), eligible, WORKER_UUID_1);
+    assertThat(peek.get().getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+    assertThat(peek.get().getStatus()).isEqualTo(IN_PROGRESS);
+
+    assertThat(underTest.tryToPeek(db.getSession(), eligible, WORKER_UUID_2)).isEmpty();
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_1).get().getWorkerUuid()).isEqualTo(WORKER_UUID_1);
+  }
+
   @Test
   public void peek_ignores_rows_with_executionCount_greater_or_equal_to_specified_maxExecutionCount_0() {
     peek_ignores_rows_with_executionCount_greater_or_equal_to_specified_maxExecutionCount(0, null);
@@ -628,7 +673,7 @@ public class CeQueueDaoTest {
     return dto;
   }
 
-  private CeQueueDto insert(String uuid, String componentUuid, CeQueueDto.Status status) {
+  private CeQueueDto insert(String uuid, @Nullable String componentUuid, CeQueueDto.Status status) {
     CeQueueDto dto = new CeQueueDto();
     dto.setUuid(uuid);
     dto.setTaskType(CeTaskTypes.REPORT);
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.assertj.core.api.ListAssert;
 import org.junit.Rule;
@@ -719,6 +720,18 @@ public class ComponentDaoTest {
       .doesNotContain(branch.uuid());
   }
 
+  @Test
+  public void select_all_project_uuids_returns_sorted_uuids_of_roots_and_branches() {
+    OrganizationDto organization = db.organizations().insert();
+    ComponentDto project = db.components().insertMainBranch(organization);
+    db.components().insertComponent(newFileDto(project));
+    ComponentDto branch = db.components().insertProjectBranch(project);
+    ComponentDto view = db.components().insertView(organization);
+
+    assertThat(underTest.selectAllProjectUuids(dbSession))
+      .containsExactlyElementsOf(Stream.of(project.uuid(), branch.uuid(), view.uuid()).sorted().collect(Collectors.toList()));
+  }
+
   @Test
   public void select_provisioned() {
     OrganizationDto organization = db.organizations().insert();
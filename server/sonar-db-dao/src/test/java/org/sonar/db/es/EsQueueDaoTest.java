@@ -30,6 +30,7 @@ import org.sonar.core.util.UuidFactoryFast;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class EsQueueDaoTest {
@@ -84,6 +85,24 @@ public class EsQueueDaoTest {
     assertThat(dbTester.countSql(dbSession, "select count(*) from es_queue")).isEqualTo(0);
   }
 
+  @Test
+  public void insert_duplicated_items_only_once() {
+    EsQueueDto item1 = EsQueueDto.create("foo", "doc1", "idType", "routing");
+    EsQueueDto item2 = EsQueueDto.create("foo", "doc1", "idType", "routing");
+    EsQueueDto otherRouting = EsQueueDto.create("foo", "doc1", "idType", null);
+    EsQueueDto otherType = EsQueueDto.create("bar", "doc1", "idType", "routing");
+
+    underTest.insert(dbSession, asList(item1, item2, otherRouting, otherType));
+
+    assertThat(dbTester.countSql(dbSession, "select count(*) from es_queue")).isEqualTo(3);
+    assertThat(item2.getUuid()).isEqualTo(item1.getUuid());
+    assertThat(otherRouting.getUuid()).isNotEqualTo(item1.getUuid());
+    assertThat(otherType.getUuid()).isNotEqualTo(item1.getUuid());
+
+    underTest.delete(dbSession, asList(item1, item2));
+    assertThat(dbTester.countSql(dbSession, "select count(*) from es_queue")).isEqualTo(2);
+  }
+
   @Test
   public void selectForRecovery_must_return_limit_when_there_are_more_rows()  {
     system2.setNow(1_000L);
@@ -126,4 +145,48 @@ public class EsQueueDaoTest {
       .extracting(EsQueueDto::getUuid)
       .containsExactly(i3.getUuid(), i2.getUuid(), i1.getUuid());
   }
+
+  @Test
+  public void selectForRecovery_of_doc_type_returns_only_rows_of_this_type() {
+    system2.setNow(1_000L);
+    EsQueueDto foo1 = underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_001L);
+    underTest.insert(dbSession, EsQueueDto.create("bar", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_002L);
+    EsQueueDto foo2 = underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+
+    assertThat(underTest.selectForRecovery(dbSession, "foo", 2_000, LIMIT))
+      .extracting(EsQueueDto::getUuid)
+      .containsExactly(foo2.getUuid(), foo1.getUuid());
+    assertThat(underTest.selectForRecovery(dbSession, "foo", 2_000, 1))
+      .extracting(EsQueueDto::getUuid)
+      .containsExactly(foo2.getUuid());
+    assertThat(underTest.selectForRecovery(dbSession, "foo", 1_000, LIMIT))
+      .extracting(EsQueueDto::getUuid)
+      .containsExactly(foo1.getUuid());
+    assertThat(underTest.selectForRecovery(dbSession, "other", 2_000, LIMIT)).isEmpty();
+  }
+
+  @Test
+  public void selectDocTypesForRecovery_returns_distinct_types_of_rows_created_before_date() {
+    system2.setNow(1_000L);
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    system2.setNow(1_001L);
+    underTest.insert(dbSession, EsQueueDto.create("bar", UuidFactoryFast.getInstance().create()));
+
+    assertThat(underTest.selectDocTypesForRecovery(dbSession, 999)).isEmpty();
+    assertThat(underTest.selectDocTypesForRecovery(dbSession, 1_000)).containsExactly("foo");
+    assertThat(underTest.selectDocTypesForRecovery(dbSession, 2_000)).containsExactlyInAnyOrder("foo", "bar");
+  }
+
+  @Test
+  public void countAll_returns_number_of_rows() {
+    assertThat(underTest.countAll(dbSession)).isEqualTo(0L);
+
+    underTest.insert(dbSession, EsQueueDto.create("foo", UuidFactoryFast.getInstance().create()));
+    underTest.insert(dbSession, EsQueueDto.create("bar", UuidFactoryFast.getInstance().create()));
+
+    assertThat(underTest.countAll(dbSession)).isEqualTo(2L);
+  }
 }
@@ -155,6 +155,31 @@ public class IssueDaoTest {
     assertThat(accumulator.list).isEmpty();
   }
 
+  @Test
+  public void scrollNonClosedByProjectUuid_returns_issues_ordered_by_component_uuid() {
+    RuleDefinitionDto rule = db.rules().insert();
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto anotherProject = db.components().insertPrivateProject();
+    ComponentDto file1 = db.components().insertComponent(newFileDto(project));
+    ComponentDto file2 = db.components().insertComponent(newFileDto(project));
+    IssueDto openIssueOnFile1 = db.issues().insert(rule, project, file1, i -> i.setStatus("OPEN").setResolution(null));
+    IssueDto openIssueOnFile2 = db.issues().insert(rule, project, file2, i -> i.setStatus("OPEN").setResolution(null));
+    IssueDto closedIssueOnFile2 = db.issues().insert(rule, project, file2, i -> i.setStatus("CLOSED").setResolution("FIXED"));
+    IssueDto confirmedIssueOnProject = db.issues().insert(rule, project, project, i -> i.setStatus("CONFIRMED").setResolution(null));
+    IssueDto openIssueOnFile1Again = db.issues().insert(rule, project, file1, i -> i.setStatus("REOPENED").setResolution(null));
+    IssueDto openIssueOnAnotherProject = db.issues().insert(rule, anotherProject, anotherProject, i -> i.setStatus("OPEN").setResolution(null));
+
+    Accumulator accumulator = new Accumulator();
+    underTest.scrollNonClosedByProjectUuid(db.getSession(), project.uuid(), accumulator);
+
+    accumulator.assertThatContainsOnly(openIssueOnFile1, openIssueOnFile2, confirmedIssueOnProject, openIssueOnFile1Again);
+    assertThat(accumulator.list).extracting(IssueDto::getComponentUuid).isSorted();
+
+    accumulator.clear();
+    underTest.scrollNonClosedByProjectUuid(db.getSession(), "does_not_exist", accumulator);
+    assertThat(accumulator.list).isEmpty();
+  }
+
   @Test
   public void scrollNonClosedByModuleOrProject() {
     RuleDefinitionDto rule = db.rules().insert();
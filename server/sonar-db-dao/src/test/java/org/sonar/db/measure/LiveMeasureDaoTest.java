@@ -28,6 +28,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.metric.MetricDto;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.db.measure.MeasureTesting.newLiveMeasure;
@@ -76,6 +77,33 @@ public class LiveMeasureDaoTest {
     assertThat(selected).isEmpty();
   }
 
+  @Test
+  public void selectByComponentUuids_returns_measures_of_all_metrics() {
+    LiveMeasureDto measure1 = newLiveMeasure().setComponentUuid("C1").setMetricId(10);
+    LiveMeasureDto measure2 = newLiveMeasure().setComponentUuid("C1").setMetricId(11);
+    LiveMeasureDto measure3 = newLiveMeasure().setComponentUuid("C2").setMetricId(10);
+    LiveMeasureDto measureOfOtherComponent = newLiveMeasure().setComponentUuid("C3").setMetricId(10);
+    asList(measure1, measure2, measure3, measureOfOtherComponent).forEach(m -> underTest.insert(db.getSession(), m));
+
+    List<LiveMeasureDto> selected = underTest.selectByComponentUuids(db.getSession(), asList("C1", "C2"));
+
+    assertThat(selected)
+      .extracting(LiveMeasureDto::getComponentUuid, LiveMeasureDto::getMetricId)
+      .containsExactlyInAnyOrder(Tuple.tuple("C1", 10), Tuple.tuple("C1", 11), Tuple.tuple("C2", 10));
+    assertThat(underTest.selectByComponentUuids(db.getSession(), emptyList())).isEmpty();
+  }
+
+  @Test
+  public void selectComponentUuidsByProjectUuid() {
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C1").setMetricId(10));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C1").setMetricId(11));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C2").setMetricId(10));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P2").setComponentUuid("C3").setMetricId(10));
+
+    assertThat(underTest.selectComponentUuidsByProjectUuid(db.getSession(), "P1")).containsExactlyInAnyOrder("C1", "C2");
+    assertThat(underTest.selectComponentUuidsByProjectUuid(db.getSession(), "P3")).isEmpty();
+  }
+
   @Test
   public void test_selectMeasure() {
     MetricDto metric = db.measures().insertMetric();
@@ -134,6 +162,62 @@ public class LiveMeasureDaoTest {
     verifyPersisted(measure5OtherProject);
   }
 
+  @Test
+  public void update_updates_values_of_existing_measure() {
+    LiveMeasureDto dto = newLiveMeasure();
+    underTest.insert(db.getSession(), dto);
+
+    dto.setValue(dto.getValue() + 1);
+    dto.setVariation(dto.getVariation() + 10);
+    dto.setData(dto.getDataAsString() + "_new");
+    underTest.update(db.getSession(), dto);
+
+    verifyPersisted(dto);
+    verifyTableSize(1);
+  }
+
+  @Test
+  public void deleteByComponentUuidAndMetricId() {
+    LiveMeasureDto measure1 = newLiveMeasure().setComponentUuid("C1").setMetricId(10);
+    LiveMeasureDto measure2 = newLiveMeasure().setComponentUuid("C1").setMetricId(11);
+    LiveMeasureDto measure3 = newLiveMeasure().setComponentUuid("C2").setMetricId(10);
+    asList(measure1, measure2, measure3).forEach(m -> underTest.insert(db.getSession(), m));
+
+    underTest.deleteByComponentUuidAndMetricId(db.getSession(), "C1", 10);
+
+    verifyTableSize(2);
+    verifyPersisted(measure2);
+    verifyPersisted(measure3);
+  }
+
+  @Test
+  public void countByProjectUuidAndComponentUuids() {
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C1").setMetricId(10));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C1").setMetricId(11));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C2").setMetricId(10));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P1").setComponentUuid("C3").setMetricId(10));
+    underTest.insert(db.getSession(), newLiveMeasure().setProjectUuid("P2").setComponentUuid("C1").setMetricId(12));
+
+    assertThat(underTest.countByProjectUuidAndComponentUuids(db.getSession(), "P1", asList("C1", "C2"))).isEqualTo(3);
+    assertThat(underTest.countByProjectUuidAndComponentUuids(db.getSession(), "P2", asList("C1", "C2"))).isEqualTo(1);
+    assertThat(underTest.countByProjectUuidAndComponentUuids(db.getSession(), "P1", singletonList("C4"))).isEqualTo(0);
+  }
+
+  @Test
+  public void deleteByProjectUuidAndComponentUuids() {
+    LiveMeasureDto measure1 = newLiveMeasure().setProjectUuid("P1").setComponentUuid("C1");
+    LiveMeasureDto measure2 = newLiveMeasure().setProjectUuid("P1").setComponentUuid("C2");
+    LiveMeasureDto measure3 = newLiveMeasure().setProjectUuid("P1").setComponentUuid("C3");
+    LiveMeasureDto measureOfOtherProject = newLiveMeasure().setProjectUuid("P2").setComponentUuid("C1");
+    asList(measure1, measure2, measure3, measureOfOtherProject).forEach(m -> underTest.insert(db.getSession(), m));
+
+    underTest.deleteByProjectUuidAndComponentUuids(db.getSession(), "P1", asList("C1", "C2"));
+
+    verifyTableSize(2);
+    verifyPersisted(measure3);
+    verifyPersisted(measureOfOtherProject);
+  }
+
   private void verifyTableSize(int expectedSize) {
     assertThat(db.countRowsOfTable(db.getSession(), "live_measures")).isEqualTo(expectedSize);
   }
@@ -71,6 +71,46 @@ public class FileSourceDtoTest {
     underTest.getSourceData();
   }
 
+  @Test
+  public void encode_in_chunks_and_decode_all_lines() {
+    DbFileSources.Data data = newData(25);
+    byte[] bytes = FileSourceDto.encodeSourceData(data, 10);
+
+    assertThat(bytes).isNotEqualTo(FileSourceDto.encodeSourceData(data));
+    assertThat(new FileSourceDto().decodeSourceData(bytes)).isEqualTo(data);
+    assertThat(new FileSourceDto().setBinaryData(bytes).getSourceData()).isEqualTo(data);
+  }
+
+  @Test
+  public void encodeSourceData_does_not_use_chunks_if_data_has_no_more_lines_than_a_chunk_or_if_chunks_are_disabled() {
+    DbFileSources.Data data = newData(10);
+
+    assertThat(FileSourceDto.encodeSourceData(data, 10)).isEqualTo(FileSourceDto.encodeSourceData(data));
+    assertThat(FileSourceDto.encodeSourceData(newData(25), 0)).isEqualTo(FileSourceDto.encodeSourceData(newData(25)));
+  }
+
+  @Test
+  public void getSourceData_of_range_decodes_only_chunks_containing_lines_of_range() {
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(FileSourceDto.encodeSourceData(newData(25), 10));
+
+    assertThat(underTest.getSourceData(12, 15).getLinesList()).extracting(DbFileSources.Line::getLine)
+      .containsExactly(11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+    assertThat(underTest.getSourceData(10, 21).getLinesList()).extracting(DbFileSources.Line::getLine)
+      .hasSize(25);
+    assertThat(underTest.getSourceData(25, 30).getLinesList()).extracting(DbFileSources.Line::getLine)
+      .containsExactly(21, 22, 23, 24, 25);
+    assertThat(underTest.getSourceData(26, 30).getLinesList()).extracting(DbFileSources.Line::getLine)
+      .containsExactly(21, 22, 23, 24, 25);
+  }
+
+  @Test
+  public void getSourceData_of_range_decodes_all_lines_when_data_is_not_encoded_in_chunks() {
+    DbFileSources.Data data = newData(25);
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data);
+
+    assertThat(underTest.getSourceData(12, 15)).isEqualTo(data);
+  }
+
   @Test
   public void getSourceData_reads_Data_object_bigger_than_default_size_limit() {
     DbFileSources.Data build = createOver64MBDataStructure();
@@ -80,6 +120,17 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  private static DbFileSources.Data newData(int lineCount) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int line = 1; line <= lineCount; line++) {
+      dataBuilder.addLinesBuilder()
+        .setLine(line)
+        .setSource("line " + line)
+        .build();
+    }
+    return dataBuilder.build();
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
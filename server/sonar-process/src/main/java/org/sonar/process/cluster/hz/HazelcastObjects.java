@@ -58,4 +58,8 @@ public final class HazelcastObjects {
    * THe key of the replicated map holding the health state information of all SQ nodes.
    */
   public static final String SQ_HEALTH_STATE = "sq_health_state";
+  /**
+   * The key of the replicated map through which the nodes notify the Compute Engines of newly submitted tasks
+   */
+  public static final String CE_TASK_SUBMITS = "CE_TASK_SUBMITS";
 }
@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.Collection;
+import java.util.Map;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.process.cluster.hz.HazelcastMember;
+
+import static org.sonar.process.cluster.hz.HazelcastObjects.CE_TASK_SUBMITS;
+
+/**
+ * Broadcasts the submission of tasks to the Compute Engines of all the nodes of the cluster.
+ * <p>
+ * An entry, keyed by the uuid of the first submitted task and valued with the number of submitted tasks, is added to
+ * the replicated map {@link org.sonar.process.cluster.hz.HazelcastObjects#CE_TASK_SUBMITS} and removed right away:
+ * Compute Engines only listen to entry additions.
+ * </p>
+ */
+@ServerSide
+@ComputeEngineSide
+public class ClusterCeTaskSubmitListener implements CeTaskSubmitListener {
+  private static final Logger LOG = Loggers.get(ClusterCeTaskSubmitListener.class);
+
+  private final HazelcastMember hazelcastMember;
+
+  public ClusterCeTaskSubmitListener(HazelcastMember hazelcastMember) {
+    this.hazelcastMember = hazelcastMember;
+  }
+
+  @Override
+  public void onSubmit(Collection<CeTask> tasks) {
+    String key = tasks.iterator().next().getUuid();
+    try {
+      Map<String, Integer> submits = hazelcastMember.getReplicatedMap(CE_TASK_SUBMITS);
+      submits.put(key, tasks.size());
+      submits.remove(key);
+    } catch (RuntimeException e) {
+      // workers will pick up the tasks on their next polling of the queue
+      LOG.warn("Failed to notify Compute Engines of the submission of task {}", key, e);
+    }
+  }
+}
@@ -46,21 +46,21 @@ public class ShortBranchComponentsWithIssues {
     this.dbClient = dbClient;
   }
 
-  private void loadUuidsByKey() {
-    uuidsByKey = new HashMap<>();
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      List<KeyWithUuidDto> components = dbClient.componentDao().selectComponentKeysHavingIssuesToMerge(dbSession, uuid);
-      for (KeyWithUuidDto dto : components) {
-        uuidsByKey.computeIfAbsent(removeBranchFromKey(dto.key()), s -> new HashSet<>()).add(dto.uuid());
+  private synchronized Map<String, Set<String>> lazyInit() {
+    if (uuidsByKey == null) {
+      Map<String, Set<String>> result = new HashMap<>();
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        List<KeyWithUuidDto> components = dbClient.componentDao().selectComponentKeysHavingIssuesToMerge(dbSession, uuid);
+        for (KeyWithUuidDto dto : components) {
+          result.computeIfAbsent(removeBranchFromKey(dto.key()), s -> new HashSet<>()).add(dto.uuid());
+        }
       }
+      uuidsByKey = result;
     }
+    return uuidsByKey;
   }
 
   public Set<String> getUuids(String componentKey) {
-    if (uuidsByKey == null) {
-      loadUuidsByKey();
-    }
-
-    return uuidsByKey.getOrDefault(componentKey, Collections.emptySet());
+    return lazyInit().getOrDefault(componentKey, Collections.emptySet());
   }
 }
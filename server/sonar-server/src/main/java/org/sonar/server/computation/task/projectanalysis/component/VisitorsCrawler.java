@@ -30,6 +30,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Iterables.concat;
@@ -66,6 +67,17 @@ public class VisitorsCrawler implements ComponentCrawler {
     return Collections.emptyMap();
   }
 
+  /**
+   * Memory allocated by each visitor, {@link ComputationProfiler#UNKNOWN_ALLOCATED_BYTES} if the JVM does not support
+   * measuring it.
+   */
+  public Map<ComponentVisitor, Long> getCumulativeAllocatedBytes() {
+    if (computeDuration) {
+      return ImmutableMap.copyOf(Maps.transformValues(this.visitorCumulativeDurations, VisitorDuration::getAllocatedBytes));
+    }
+    return Collections.emptyMap();
+  }
+
   @Override
   public void visit(final Component component) {
     try {
@@ -114,6 +126,7 @@ public class VisitorsCrawler implements ComponentCrawler {
   private void visitNode(Component component, VisitorWrapper visitor) {
     Profiler profiler = Profiler.create(Loggers.get(visitor.getWrappedVisitor().getClass()))
       .startTrace("Visiting component {}", component.getKey());
+    long allocatedBytesAtStart = computeDuration ? ComputationProfiler.currentThreadAllocatedBytes() : ComputationProfiler.UNKNOWN_ALLOCATED_BYTES;
     visitor.visitAny(component);
     switch (component.getType()) {
       case PROJECT:
@@ -141,12 +154,12 @@ public class VisitorsCrawler implements ComponentCrawler {
         throw new IllegalStateException(String.format("Unknown type %s", component.getType().name()));
     }
     long duration = profiler.stopTrace();
-    incrementDuration(visitor, duration);
+    incrementDuration(visitor, duration, allocatedBytesAtStart);
   }
 
-  private void incrementDuration(VisitorWrapper visitorWrapper, long duration) {
+  private void incrementDuration(VisitorWrapper visitorWrapper, long duration, long allocatedBytesAtStart) {
     if (computeDuration) {
-      visitorCumulativeDurations.get(visitorWrapper.getWrappedVisitor()).increment(duration);
+      visitorCumulativeDurations.get(visitorWrapper.getWrappedVisitor()).increment(duration, ComputationProfiler.allocatedBytesSince(allocatedBytesAtStart));
     }
   }
 
@@ -212,14 +225,24 @@ public class VisitorsCrawler implements ComponentCrawler {
 
   private static final class VisitorDuration {
     private long duration = 0;
+    private long allocatedBytes = 0;
 
-    public void increment(long duration) {
+    public void increment(long duration, long allocatedBytes) {
       this.duration += duration;
+      if (allocatedBytes == ComputationProfiler.UNKNOWN_ALLOCATED_BYTES || this.allocatedBytes == ComputationProfiler.UNKNOWN_ALLOCATED_BYTES) {
+        this.allocatedBytes = ComputationProfiler.UNKNOWN_ALLOCATED_BYTES;
+      } else {
+        this.allocatedBytes += allocatedBytes;
+      }
     }
 
     public long getDuration() {
       return duration;
     }
+
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
   }
 
   private enum VisitorWrapperToInitialDuration implements Function<ComponentVisitor, VisitorDuration> {
@@ -51,6 +51,7 @@ import org.sonar.server.computation.task.projectanalysis.filemove.MutableMovedFi
 import org.sonar.server.computation.task.projectanalysis.filemove.SourceSimilarityImpl;
 import org.sonar.server.computation.task.projectanalysis.filesystem.ComputationTempFolderProvider;
 import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesLoader;
+import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesPreloader;
 import org.sonar.server.computation.task.projectanalysis.issue.CloseIssuesOnRemovedComponentsVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesLoader;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepositoryImpl;
@@ -66,7 +67,6 @@ import org.sonar.server.computation.task.projectanalysis.issue.IssueCreationDate
 import org.sonar.server.computation.task.projectanalysis.issue.IssueLifecycle;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueTrackingDelegator;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueVisitors;
-import org.sonar.server.computation.task.projectanalysis.issue.IssuesRepositoryVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.LoadComponentUuidsHavingOpenIssuesVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.MergeBranchTrackerExecution;
 import org.sonar.server.computation.task.projectanalysis.issue.MovedIssueVisitor;
@@ -118,6 +118,8 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepos
 import org.sonar.server.computation.task.projectanalysis.step.ReportComputationSteps;
 import org.sonar.server.computation.task.projectanalysis.step.SmallChangesetQualityGateSpecialCase;
 import org.sonar.server.computation.task.projectanalysis.webhook.WebhookPostTask;
+import org.sonar.server.computation.task.step.ComputationProfilePublisher;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 import org.sonar.server.computation.task.step.ComputationStepExecutor;
 import org.sonar.server.computation.task.step.ComputationSteps;
 import org.sonar.server.computation.taskprocessor.MutableTaskResultHolderImpl;
@@ -155,6 +157,8 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
   private static List<Object> componentClasses() {
     return Arrays.asList(
       PostProjectAnalysisTasksExecutor.class,
+      ComputationProfiler.class,
+      ComputationProfilePublisher.class,
       ComputationStepExecutor.class,
 
       // File System
@@ -225,7 +229,6 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       IssueAssigner.class,
       IssueCounter.class,
       MovedIssueVisitor.class,
-      IssuesRepositoryVisitor.class,
       RemoveProcessedComponentsVisitor.class,
 
       // visitors : order is important, measure computers must be executed at the end in order to access to every measures / issues
@@ -248,6 +251,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       ShortBranchTrackerExecution.class,
       MergeBranchTrackerExecution.class,
       ComponentIssuesLoader.class,
+      BaseIssuesPreloader.class,
       BaseIssuesLoader.class,
       IssueTrackingDelegator.class,
       BranchPersisterImpl.class,
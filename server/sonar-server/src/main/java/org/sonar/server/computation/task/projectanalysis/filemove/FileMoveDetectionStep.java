@@ -26,11 +26,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -63,6 +65,14 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class FileMoveDetectionStep implements ComputationStep {
   protected static final int MIN_REQUIRED_SCORE = 85;
+  /**
+   * Above this number of pairs of removed and added files, only the pairs of files likely to be similar are scored.
+   */
+  static final long MAX_PAIRS_TO_SCORE_EXHAUSTIVELY = 100_000;
+  /**
+   * Maximum number of added files a removed file is scored against, when not scoring exhaustively.
+   */
+  static final int MAX_CANDIDATES_PER_FILE = 50;
   private static final Logger LOG = Loggers.get(FileMoveDetectionStep.class);
   private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
   private static final Splitter LINES_HASHES_SPLITTER = on('\n');
@@ -195,32 +205,59 @@ public class FileMoveDetectionStep implements ComputationStep {
   }
 
   private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
+    String[] dbFileKeysArray = dbFileKeys.toArray(new String[dbFileKeys.size()]);
+    String[] reportFileKeys = reportFileSourcesByKey.keySet().toArray(new String[reportFileSourcesByKey.size()]);
+    File[] reportFiles = reportFileSourcesByKey.values().toArray(new File[reportFileSourcesByKey.size()]);
+    ScoreMatrix.Builder scoreMatrix = new ScoreMatrix.Builder(dbFileKeysArray, reportFileKeys);
+    CandidateSelector candidateSelector = createCandidateSelector(dbFileKeysArray.length, reportFiles);
 
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
+      for (int dbFileIndex = 0; dbFileIndex < dbFileKeysArray.length; dbFileIndex++) {
+        File fileInDb = getFile(dbSession, dtosByKey.get(dbFileKeysArray[dbFileIndex]));
         if (fileInDb == null) {
           continue;
         }
 
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
-          }
-          reportFileIndex++;
+        int[] reportFileIndexes = candidateSelector.select(fileInDb);
+        int[] scores = new int[reportFileIndexes.length];
+        for (int i = 0; i < reportFileIndexes.length; i++) {
+          scores[i] = fileSimilarity.score(fileInDb, reportFiles[reportFileIndexes[i]]);
         }
-        dbFileIndex++;
+        scoreMatrix.setRow(dbFileIndex, reportFileIndexes, scores);
       }
     }
 
-    return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
+    return scoreMatrix.build();
+  }
+
+  /**
+   * Every pair of files is scored when there are few of them. Otherwise, a db file is scored only against the report
+   * files that {@link LineHashesIndex} finds likely to be similar, which bounds both computation and memory.
+   */
+  private static CandidateSelector createCandidateSelector(int dbFileCount, File[] reportFiles) {
+    if ((long) dbFileCount * reportFiles.length <= MAX_PAIRS_TO_SCORE_EXHAUSTIVELY) {
+      int[] allReportFileIndexes = IntStream.range(0, reportFiles.length).toArray();
+      return fileInDb -> allReportFileIndexes;
+    }
+    LOG.debug("{} removed files and {} added files. Scoring only candidates with similar lines.", dbFileCount, reportFiles.length);
+    LineHashesIndex index = new LineHashesIndex();
+    for (File reportFile : reportFiles) {
+      index.add(reportFile.getLineHashes());
+    }
+    return fileInDb -> {
+      int[] candidates = index.candidates(fileInDb.getLineHashes(), MAX_CANDIDATES_PER_FILE);
+      // preserve order of report files in score matrix
+      Arrays.sort(candidates);
+      return candidates;
+    };
+  }
+
+  @FunctionalInterface
+  private interface CandidateSelector {
+    /**
+     * @return indexes of the report files to be scored against the specified db file, in ascending order
+     */
+    int[] select(File fileInDb);
   }
 
   @CheckForNull
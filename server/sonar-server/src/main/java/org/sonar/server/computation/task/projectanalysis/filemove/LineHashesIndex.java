@@ -0,0 +1,154 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Index of files based on the MinHash signatures of the sets of their line hashes, bucketed with locality-sensitive
+ * hashing (LSH). It allows to find the files likely to be similar to a given file without comparing it with every
+ * indexed file.
+ * <p>
+ * Signatures are made of {@link #BANDS} bands of {@link #ROWS} values. Two files are candidates if all the values of
+ * at least one band are equal, ie. with a probability of {@code 1 - (1 - J^ROWS)^BANDS} where {@code J} is the
+ * Jaccard similarity of their sets of line hashes: more than 99.99% for files sharing 75% of their lines,
+ * less than 25% for files sharing 30% of their lines.
+ * </p>
+ */
+final class LineHashesIndex {
+  static final int BANDS = 32;
+  static final int ROWS = 4;
+  private static final int SIGNATURE_SIZE = BANDS * ROWS;
+  /**
+   * Seeds of the hash functions, constant so that signatures are reproducible
+   */
+  private static final long[] SEEDS = new Random(0x5EED_F11E_A0E5L).longs(SIGNATURE_SIZE).toArray();
+
+  private final List<int[]> signatures = new ArrayList<>();
+  private final Map<Long, List<Integer>> fileIndexesByBucket = new HashMap<>();
+
+  /**
+   * Adds a file to the index. Files are identified by their order of addition, starting at 0.
+   */
+  void add(List<String> lineHashes) {
+    int fileIndex = signatures.size();
+    int[] signature = signature(lineHashes);
+    signatures.add(signature);
+    if (signature == null) {
+      return;
+    }
+    for (int band = 0; band < BANDS; band++) {
+      fileIndexesByBucket.computeIfAbsent(bucket(signature, band), k -> new ArrayList<>(1)).add(fileIndex);
+    }
+  }
+
+  /**
+   * @return the indexes of the indexed files which are likely to be similar to the specified file, the most similar
+   * first, limited to {@code maxCandidates}
+   */
+  int[] candidates(List<String> lineHashes, int maxCandidates) {
+    int[] signature = signature(lineHashes);
+    if (signature == null) {
+      return new int[0];
+    }
+    Set<Integer> candidates = new HashSet<>();
+    for (int band = 0; band < BANDS; band++) {
+      List<Integer> fileIndexes = fileIndexesByBucket.get(bucket(signature, band));
+      if (fileIndexes != null) {
+        candidates.addAll(fileIndexes);
+      }
+    }
+    return candidates.stream()
+      .sorted(Comparator.comparingInt((Integer fileIndex) -> -agreement(signature, signatures.get(fileIndex))).thenComparing(fileIndex -> fileIndex))
+      .limit(maxCandidates)
+      .mapToInt(Integer::intValue)
+      .toArray();
+  }
+
+  /**
+   * Number of equal values of two signatures, which divided by the size of the signatures is an estimation of the
+   * Jaccard similarity of the sets of line hashes.
+   */
+  private static int agreement(int[] signature1, int[] signature2) {
+    int res = 0;
+    for (int i = 0; i < SIGNATURE_SIZE; i++) {
+      if (signature1[i] == signature2[i]) {
+        res++;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Empty lines are ignored as they are frequent in every file.
+   *
+   * @return {@code null} if there is no line to sign
+   */
+  @CheckForNull
+  static int[] signature(List<String> lineHashes) {
+    int[] signature = new int[SIGNATURE_SIZE];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    boolean empty = true;
+    for (String lineHash : lineHashes) {
+      if (lineHash.isEmpty()) {
+        continue;
+      }
+      empty = false;
+      long hash = lineHash.hashCode();
+      for (int i = 0; i < SIGNATURE_SIZE; i++) {
+        int value = (int) mix(hash ^ SEEDS[i]);
+        if (value < signature[i]) {
+          signature[i] = value;
+        }
+      }
+    }
+    return empty ? null : signature;
+  }
+
+  private static long bucket(int[] signature, int band) {
+    long res = band;
+    for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+      res = 31 * res + signature[i];
+    }
+    return mix(res);
+  }
+
+  /**
+   * Finalizer of MurmurHash3, spreading the bits of the specified value
+   */
+  private static long mix(long value) {
+    long res = value;
+    res ^= res >>> 33;
+    res *= 0xff51afd7ed558ccdL;
+    res ^= res >>> 33;
+    res *= 0xc4ceb9fe1a85ec53L;
+    res ^= res >>> 33;
+    return res;
+  }
+}
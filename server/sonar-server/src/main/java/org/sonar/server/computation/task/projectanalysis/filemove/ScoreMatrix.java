@@ -19,56 +19,82 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
+/**
+ * Scores of the pairs of a removed file (from db) and an added file (from report). Only the pairs which have been scored
+ * are stored, so that memory depends on the number of candidate pairs rather than on the size of the full matrix.
+ */
 final class ScoreMatrix {
-  private final Set<String> dbFileKeys;
-  private final Map<String, FileSimilarity.File> reportFileSourcesByKey;
+  private static final int[] NO_INDEX = new int[0];
+
+  private final String[] dbFileKeys;
+  private final String[] reportFileKeys;
+  /**
+   * for each db file, the indexes in {@link #reportFileKeys} of the report files it has been scored against
+   */
+  private final int[][] reportFileIndexes;
+  /**
+   * for each db file, the scores against the report files of {@link #reportFileIndexes}
+   */
   private final int[][] scores;
   private final int maxScore;
 
   public ScoreMatrix(Set<String> dbFileKeys, Map<String, FileSimilarity.File> reportFileSourcesByKey, int[][] scores, int maxScore) {
+    this.dbFileKeys = dbFileKeys.toArray(new String[dbFileKeys.size()]);
+    this.reportFileKeys = reportFileSourcesByKey.keySet().toArray(new String[reportFileSourcesByKey.size()]);
+    int[] allReportFileIndexes = new int[reportFileKeys.length];
+    Arrays.setAll(allReportFileIndexes, i -> i);
+    this.reportFileIndexes = new int[scores.length][];
+    Arrays.fill(this.reportFileIndexes, allReportFileIndexes);
+    this.scores = scores;
+    this.maxScore = maxScore;
+  }
+
+  private ScoreMatrix(String[] dbFileKeys, String[] reportFileKeys, int[][] reportFileIndexes, int[][] scores, int maxScore) {
     this.dbFileKeys = dbFileKeys;
-    this.reportFileSourcesByKey = reportFileSourcesByKey;
+    this.reportFileKeys = reportFileKeys;
+    this.reportFileIndexes = reportFileIndexes;
     this.scores = scores;
     this.maxScore = maxScore;
   }
 
   public void accept(ScoreMatrixVisitor visitor) {
-    int dbFileIndex = 0;
-    for (String dbFileKey : dbFileKeys) {
-      int reportFileIndex = 0;
-      for (Map.Entry<String, FileSimilarity.File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-        int score = scores[dbFileIndex][reportFileIndex];
-        visitor.visit(dbFileKey, reportFileSourceAndKey.getKey(), score);
-        reportFileIndex++;
+    for (int dbFileIndex = 0; dbFileIndex < scores.length; dbFileIndex++) {
+      int[] rowIndexes = reportFileIndexes[dbFileIndex];
+      int[] rowScores = scores[dbFileIndex];
+      for (int i = 0; i < rowScores.length; i++) {
+        visitor.visit(dbFileKeys[dbFileIndex], reportFileKeys[rowIndexes[i]], rowScores[i]);
       }
-      dbFileIndex++;
     }
   }
 
+  /**
+   * Pairs which have not been scored are represented by an empty value.
+   */
   public String toCsv(char separator) {
     StringBuilder res = new StringBuilder();
     // first row: empty column, then one column for each report file (its key)
     res.append(separator);
-    for (Map.Entry<String, FileSimilarity.File> reportEntry : reportFileSourcesByKey.entrySet()) {
-      res.append(reportEntry.getKey()).append(separator);
+    for (String reportFileKey : reportFileKeys) {
+      res.append(reportFileKey).append(separator);
     }
     // rows with data: column with db file (its key), then one column for each value
-    accept(new ScoreMatrixVisitor() {
-      private String previousDbFileKey = null;
-
-      @Override
-      public void visit(String dbFileKey, String reportFileKey, int score) {
-        if (!Objects.equals(previousDbFileKey, dbFileKey)) {
-          res.append('\n').append(dbFileKey).append(separator);
-          previousDbFileKey = dbFileKey;
-        }
-        res.append(score).append(separator);
+    String[] row = new String[reportFileKeys.length];
+    for (int dbFileIndex = 0; dbFileIndex < scores.length; dbFileIndex++) {
+      Arrays.fill(row, "");
+      int[] rowIndexes = reportFileIndexes[dbFileIndex];
+      int[] rowScores = scores[dbFileIndex];
+      for (int i = 0; i < rowScores.length; i++) {
+        row[rowIndexes[i]] = String.valueOf(rowScores[i]);
       }
-    });
+      res.append('\n').append(dbFileKeys[dbFileIndex]).append(separator);
+      for (String value : row) {
+        res.append(value).append(separator);
+      }
+    }
     return res.toString();
   }
 
@@ -80,4 +106,37 @@ final class ScoreMatrix {
   public int getMaxScore() {
     return maxScore;
   }
+
+  /**
+   * Builds a {@link ScoreMatrix} row by row, ie. db file by db file, in the order of the db file keys.
+   */
+  static final class Builder {
+    private final String[] dbFileKeys;
+    private final String[] reportFileKeys;
+    private final int[][] reportFileIndexes;
+    private final int[][] scores;
+    private int maxScore = 0;
+
+    Builder(String[] dbFileKeys, String[] reportFileKeys) {
+      this.dbFileKeys = dbFileKeys;
+      this.reportFileKeys = reportFileKeys;
+      this.reportFileIndexes = new int[dbFileKeys.length][];
+      this.scores = new int[dbFileKeys.length][];
+      Arrays.fill(reportFileIndexes, NO_INDEX);
+      Arrays.fill(scores, NO_INDEX);
+    }
+
+    Builder setRow(int dbFileIndex, int[] rowReportFileIndexes, int[] rowScores) {
+      reportFileIndexes[dbFileIndex] = rowReportFileIndexes;
+      scores[dbFileIndex] = rowScores;
+      for (int score : rowScores) {
+        maxScore = Math.max(maxScore, score);
+      }
+      return this;
+    }
+
+    ScoreMatrix build() {
+      return new ScoreMatrix(dbFileKeys, reportFileKeys, reportFileIndexes, scores, maxScore);
+    }
+  }
 }
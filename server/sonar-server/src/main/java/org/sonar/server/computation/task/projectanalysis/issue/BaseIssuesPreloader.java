@@ -0,0 +1,149 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.util.cache.DiskCache;
+
+/**
+ * Loads the open issues of the project from database with a single query, when the issues of
+ * a component are requested for the first time, instead of one query per component.
+ * <p>
+ * Issues are kept in memory as long as their number does not exceed {@link #MAX_ISSUES_IN_MEMORY_PROPERTY}.
+ * Otherwise they are stored in a temporary {@link DiskCache} indexed by component uuid. As the query
+ * is ordered by component uuid, the issues of a component are stored in contiguous blocks.
+ * </p>
+ * <p>
+ * Only components of the analyzed project or branch are supported. The issues of a component are
+ * returned only once, and are loaded from database by {@link ComponentIssuesLoader} if requested again.
+ * </p>
+ */
+public class BaseIssuesPreloader {
+
+  static final String MAX_ISSUES_IN_MEMORY_PROPERTY = "sonar.ce.issueTracking.maxPreloadedIssuesInMemory";
+  private static final int DEFAULT_MAX_ISSUES_IN_MEMORY = 10_000;
+  private static final Logger LOG = Loggers.get(BaseIssuesPreloader.class);
+
+  private final TreeRootHolder treeRootHolder;
+  private final ComponentIssuesLoader issuesLoader;
+  private final TempFolder tempFolder;
+  private final System2 system2;
+  private final int maxIssuesInMemory;
+
+  private boolean preloaded = false;
+  private final Map<String, List<DefaultIssue>> issuesByComponentUuid = new HashMap<>();
+  private final Set<String> returnedComponentUuids = new HashSet<>();
+  @CheckForNull
+  private DiskCache<DefaultIssue> diskCache;
+
+  public BaseIssuesPreloader(TreeRootHolder treeRootHolder, ComponentIssuesLoader issuesLoader, TempFolder tempFolder, System2 system2,
+    Configuration config) {
+    this.treeRootHolder = treeRootHolder;
+    this.issuesLoader = issuesLoader;
+    this.tempFolder = tempFolder;
+    this.system2 = system2;
+    this.maxIssuesInMemory = config.getInt(MAX_ISSUES_IN_MEMORY_PROPERTY).orElse(DEFAULT_MAX_ISSUES_IN_MEMORY);
+  }
+
+  public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
+    DiskCache<DefaultIssue> cache;
+    synchronized (this) {
+      ensurePreloaded();
+      if (!returnedComponentUuids.add(componentUuid)) {
+        cache = null;
+      } else if (diskCache == null) {
+        List<DefaultIssue> issues = issuesByComponentUuid.remove(componentUuid);
+        return issues == null ? new ArrayList<>() : issues;
+      } else {
+        cache = diskCache;
+      }
+    }
+    if (cache == null) {
+      return issuesLoader.loadForComponentUuid(componentUuid);
+    }
+    List<DefaultIssue> issues = new ArrayList<>();
+    try (CloseableIterator<DefaultIssue> it = cache.traverse(componentUuid)) {
+      it.forEachRemaining(issues::add);
+    }
+    return issues;
+  }
+
+  private void ensurePreloaded() {
+    if (preloaded) {
+      return;
+    }
+    String projectUuid = treeRootHolder.getRoot().getUuid();
+    Preloader preloader = new Preloader();
+    try {
+      issuesLoader.scrollForProjectUuid(projectUuid, preloader::add);
+    } finally {
+      preloader.close();
+    }
+    preloaded = true;
+    LOG.debug("{} open issues preloaded {}", preloader.count, diskCache == null ? "in memory" : "on disk");
+  }
+
+  private class Preloader {
+    private int count = 0;
+    @CheckForNull
+    private DiskCache<DefaultIssue>.DiskAppender appender;
+
+    void add(DefaultIssue issue) {
+      count++;
+      if (appender != null) {
+        appender.append(issue);
+        return;
+      }
+      issuesByComponentUuid.computeIfAbsent(issue.componentUuid(), k -> new ArrayList<>()).add(issue);
+      if (count > maxIssuesInMemory) {
+        spillToDisk();
+      }
+    }
+
+    private void spillToDisk() {
+      diskCache = new DiskCache<>(tempFolder.newFile("base-issues", ".dat"), system2, new ProtobufIssueCodec(), DefaultIssue::componentUuid);
+      appender = diskCache.newAppender();
+      for (List<DefaultIssue> issues : issuesByComponentUuid.values()) {
+        issues.forEach(appender::append);
+      }
+      issuesByComponentUuid.clear();
+    }
+
+    void close() {
+      if (appender != null) {
+        appender.close();
+      }
+    }
+  }
+}
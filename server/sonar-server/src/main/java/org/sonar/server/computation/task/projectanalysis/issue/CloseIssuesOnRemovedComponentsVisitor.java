@@ -34,12 +34,12 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  */
 public class CloseIssuesOnRemovedComponentsVisitor extends TypeAwareVisitorAdapter {
 
-  private final ComponentIssuesLoader issuesLoader;
+  private final BaseIssuesPreloader issuesLoader;
   private final ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues;
   private final IssueCache issueCache;
   private final IssueLifecycle issueLifecycle;
 
-  public CloseIssuesOnRemovedComponentsVisitor(ComponentIssuesLoader issuesLoader, ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, IssueCache issueCache,
+  public CloseIssuesOnRemovedComponentsVisitor(BaseIssuesPreloader issuesLoader, ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, IssueCache issueCache,
     IssueLifecycle issueLifecycle) {
     super(CrawlerDepthLimit.PROJECT, POST_ORDER);
     this.issuesLoader = issuesLoader;
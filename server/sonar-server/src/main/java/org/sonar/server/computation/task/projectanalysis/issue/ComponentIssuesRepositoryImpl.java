@@ -19,23 +19,41 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * When an {@link IssueCache} is provided, the issues of a component are read from the cache, which seeks directly
+ * to the issues of the component (see {@link IssueCache#traverse(String)}). The issues of the last requested component
+ * are kept, as they are requested by several visitors of the same component.
+ */
 public class ComponentIssuesRepositoryImpl implements MutableComponentIssuesRepository {
 
+  @CheckForNull
+  private final IssueCache issueCache;
+
   @CheckForNull
   private List<DefaultIssue> issues;
 
   @CheckForNull
   private Component component;
 
+  public ComponentIssuesRepositoryImpl() {
+    this.issueCache = null;
+  }
+
+  public ComponentIssuesRepositoryImpl(IssueCache issueCache) {
+    this.issueCache = issueCache;
+  }
+
   @Override
   public void setIssues(Component component, List<DefaultIssue> issues) {
     this.issues = requireNonNull(issues, "issues cannot be null");
@@ -44,10 +62,21 @@ public class ComponentIssuesRepositoryImpl implements MutableComponentIssuesRepo
 
   @Override
   public List<DefaultIssue> getIssues(Component component) {
+    if (issueCache != null && !component.equals(this.component)) {
+      setIssues(component, loadIssues(component));
+    }
     checkState(this.component != null && this.issues != null, "Issues have not been initialized");
     checkArgument(component.equals(this.component),
       "Only issues from component '%s' are available, but wanted component is '%s'.",
       this.component.getReportAttributes().getRef(), component.getReportAttributes().getRef());
     return issues;
   }
+
+  private List<DefaultIssue> loadIssues(Component component) {
+    List<DefaultIssue> result = new ArrayList<>();
+    try (CloseableIterator<DefaultIssue> componentIssues = issueCache.traverse(component.getUuid())) {
+      componentIssues.forEachRemaining(result::add);
+    }
+    return result;
+  }
 }
@@ -19,20 +19,48 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.slf4j.MDC;
+import org.sonar.api.config.Configuration;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.MergeBranchComponentUuids;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.util.cache.DiskCache;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
+/**
+ * Tracks the issues of each component and applies the lifecycle and the {@link IssueVisitors} to them.
+ * <p>
+ * When property {@link #PARALLELISM_PROPERTY} is greater than 1, the loading of raw and base issues and
+ * their tracking are executed ahead of the crawler by a pool of workers, for a bounded number of components.
+ * Lifecycle, visitors and {@link IssueCache} are still processed on the crawler thread, in the order of the crawl.
+ * </p>
+ */
+public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter implements Startable {
+
+  /**
+   * Number of threads tracking issues. The value 1 tracks the issues of each component when it is visited.
+   */
+  static final String PARALLELISM_PROPERTY = "sonar.ce.issueTracking.parallelism";
+  private static final int DEFAULT_PARALLELISM = 1;
+  private static final int IN_FLIGHT_COMPONENTS_PER_THREAD = 4;
 
   private final IssueCache issueCache;
   private final IssueLifecycle issueLifecycle;
@@ -41,10 +69,32 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   private final ShortBranchIssueMerger issueStatusCopier;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final MergeBranchComponentUuids mergeBranchComponentUuids;
+  @CheckForNull
+  private final TreeRootHolder treeRootHolder;
+  private final int parallelism;
+  private final Map<String, Future<TrackingResult>> trackingsByComponentUuid = new HashMap<>();
+  @CheckForNull
+  private ExecutorService executor;
+  @CheckForNull
+  private Iterator<Component> componentsToTrack;
 
   public IntegrateIssuesVisitor(IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors,
     AnalysisMetadataHolder analysisMetadataHolder, IssueTrackingDelegator issueTracking, ShortBranchIssueMerger issueStatusCopier,
     MergeBranchComponentUuids mergeBranchComponentUuids) {
+    this(issueCache, issueLifecycle, issueVisitors, analysisMetadataHolder, issueTracking, issueStatusCopier, mergeBranchComponentUuids,
+      null, DEFAULT_PARALLELISM);
+  }
+
+  public IntegrateIssuesVisitor(IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors,
+    AnalysisMetadataHolder analysisMetadataHolder, IssueTrackingDelegator issueTracking, ShortBranchIssueMerger issueStatusCopier,
+    MergeBranchComponentUuids mergeBranchComponentUuids, TreeRootHolder treeRootHolder, Configuration config) {
+    this(issueCache, issueLifecycle, issueVisitors, analysisMetadataHolder, issueTracking, issueStatusCopier, mergeBranchComponentUuids,
+      treeRootHolder, config.getInt(PARALLELISM_PROPERTY).orElse(DEFAULT_PARALLELISM));
+  }
+
+  private IntegrateIssuesVisitor(IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors,
+    AnalysisMetadataHolder analysisMetadataHolder, IssueTrackingDelegator issueTracking, ShortBranchIssueMerger issueStatusCopier,
+    MergeBranchComponentUuids mergeBranchComponentUuids, @Nullable TreeRootHolder treeRootHolder, int parallelism) {
     super(CrawlerDepthLimit.FILE, POST_ORDER);
     this.issueCache = issueCache;
     this.issueLifecycle = issueLifecycle;
@@ -53,6 +103,18 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     this.issueTracking = issueTracking;
     this.issueStatusCopier = issueStatusCopier;
     this.mergeBranchComponentUuids = mergeBranchComponentUuids;
+    this.treeRootHolder = treeRootHolder;
+    this.parallelism = treeRootHolder == null ? DEFAULT_PARALLELISM : parallelism;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do, workers are started when the first component is visited
+  }
+
+  @Override
+  public void stop() {
+    shutdownWorkers();
   }
 
   @Override
@@ -60,7 +122,7 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     try (DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender()) {
       issueVisitors.beforeComponent(component);
 
-      TrackingResult tracking = issueTracking.track(component);
+      TrackingResult tracking = track(component);
       fillNewOpenIssues(component, tracking.newIssues(), cacheAppender);
       fillExistingOpenIssues(component, tracking.issuesToMerge(), cacheAppender);
       closeIssues(component, tracking.issuesToClose(), cacheAppender);
@@ -68,7 +130,83 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
       issueVisitors.afterComponent(component);
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to process issues of component '%s'", component.getKey()), e);
+    } finally {
+      if (executor != null && component.getUuid().equals(treeRootHolder.getRoot().getUuid())) {
+        // root is the last component to be visited
+        shutdownWorkers();
+      }
+    }
+  }
+
+  private TrackingResult track(Component component) {
+    if (parallelism <= 1) {
+      return issueTracking.track(component);
+    }
+    scheduleTrackings();
+    Future<TrackingResult> future = trackingsByComponentUuid.remove(component.getUuid());
+    if (future == null) {
+      return issueTracking.track(component);
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while tracking issues", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * Submits the tracking of the next components in the order of the crawl, so that at most
+   * {@code parallelism * IN_FLIGHT_COMPONENTS_PER_THREAD} components are tracked ahead.
+   */
+  private void scheduleTrackings() {
+    if (componentsToTrack == null) {
+      List<Component> components = new ArrayList<>();
+      addInPostOrder(treeRootHolder.getRoot(), components);
+      componentsToTrack = components.iterator();
+      executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+        .setNameFormat("CE_IssueTracking-%d")
+        .setDaemon(true)
+        .build());
+    }
+    Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+    int maxInFlight = parallelism * IN_FLIGHT_COMPONENTS_PER_THREAD;
+    while (trackingsByComponentUuid.size() < maxInFlight && componentsToTrack.hasNext()) {
+      Component next = componentsToTrack.next();
+      trackingsByComponentUuid.put(next.getUuid(), executor.submit(() -> trackInWorker(next, loggingContext)));
+    }
+  }
+
+  private TrackingResult trackInWorker(Component component, @Nullable Map<String, String> loggingContext) {
+    if (loggingContext != null) {
+      MDC.setContextMap(loggingContext);
+    }
+    try {
+      return issueTracking.track(component);
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  private static void addInPostOrder(Component component, List<Component> result) {
+    for (Component child : component.getChildren()) {
+      addInPostOrder(child, result);
+    }
+    result.add(component);
+  }
+
+  private void shutdownWorkers() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
     }
+    trackingsByComponentUuid.clear();
   }
 
   private void fillNewOpenIssues(Component component, Iterable<DefaultIssue> newIssues, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
@@ -0,0 +1,393 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.computation.task.projectanalysis.issue.protobuf.CeIssueCache;
+import org.sonar.server.util.cache.DiskCacheCodec;
+
+/**
+ * Encodes {@link DefaultIssue} as protobuf messages. Much more compact and faster than
+ * Java serialization, which writes class descriptors for each issue stored in {@link IssueCache}.
+ */
+public class ProtobufIssueCodec implements DiskCacheCodec<DefaultIssue> {
+
+  @Override
+  public void encode(DefaultIssue issue, OutputStream output) throws IOException {
+    toProtobuf(issue).writeTo(output);
+  }
+
+  @Override
+  public DefaultIssue decode(byte[] bytes, int offset, int length) throws IOException {
+    return toDefaultIssue(CeIssueCache.Issue.PARSER.parseFrom(bytes, offset, length));
+  }
+
+  static CeIssueCache.Issue toProtobuf(DefaultIssue issue) throws IOException {
+    CeIssueCache.Issue.Builder builder = CeIssueCache.Issue.newBuilder();
+    setIfNotNull(issue.key(), builder::setKey);
+    if (issue.type() != null) {
+      builder.setRuleType(issue.type().getDbConstant());
+    }
+    setIfNotNull(issue.componentUuid(), builder::setComponentUuid);
+    setIfNotNull(issue.componentKey(), builder::setComponentKey);
+    setIfNotNull(issue.moduleUuid(), builder::setModuleUuid);
+    setIfNotNull(issue.moduleUuidPath(), builder::setModuleUuidPath);
+    setIfNotNull(issue.projectUuid(), builder::setProjectUuid);
+    setIfNotNull(issue.projectKey(), builder::setProjectKey);
+    if (issue.ruleKey() != null) {
+      builder.setRuleKey(issue.ruleKey().toString());
+    }
+    setIfNotNull(issue.language(), builder::setLanguage);
+    setIfNotNull(issue.severity(), builder::setSeverity);
+    builder.setManualSeverity(issue.manualSeverity());
+    setIfNotNull(issue.message(), builder::setMessage);
+    setIfNotNull(issue.line(), builder::setLine);
+    setIfNotNull(issue.gap(), builder::setGap);
+    if (issue.effort() != null) {
+      builder.setEffort(issue.effort().toMinutes());
+    }
+    setIfNotNull(issue.status(), builder::setStatus);
+    setIfNotNull(issue.resolution(), builder::setResolution);
+    setIfNotNull(issue.assignee(), builder::setAssignee);
+    setIfNotNull(issue.checksum(), builder::setChecksum);
+    for (Map.Entry<String, String> attribute : issue.attributes().entrySet()) {
+      builder.addAttributes(CeIssueCache.Attribute.newBuilder().setKey(attribute.getKey()).setValue(attribute.getValue()));
+    }
+    setIfNotNull(issue.authorLogin(), builder::setAuthorLogin);
+    for (IssueComment comment : issue.comments()) {
+      builder.addComments(toProtobuf(comment));
+    }
+    builder.addAllTags(issue.tags());
+    Object locations = issue.getLocations();
+    if (locations instanceof DbIssues.Locations) {
+      builder.setLocations(((DbIssues.Locations) locations).toByteString());
+    } else if (locations != null) {
+      builder.setSerializedLocations(serialize((Serializable) locations));
+    }
+    setIfNotNull(issue.creationDate(), d -> builder.setCreationDate(d.getTime()));
+    setIfNotNull(issue.updateDate(), d -> builder.setUpdateDate(d.getTime()));
+    setIfNotNull(issue.closeDate(), d -> builder.setCloseDate(d.getTime()));
+    addChanges(issue, builder);
+    builder.setIsNew(issue.isNew());
+    builder.setIsCopied(issue.isCopied());
+    builder.setBeingClosed(issue.isBeingClosed());
+    builder.setOnDisabledRule(issue.isOnDisabledRule());
+    builder.setIsChanged(issue.isChanged());
+    builder.setSendNotifications(issue.mustSendNotifications());
+    setIfNotNull(issue.selectedAt(), builder::setSelectedAt);
+    return builder.build();
+  }
+
+  /**
+   * The current change is also referenced by the list of changes, and is mutated by
+   * later calls to {@link DefaultIssue#setFieldChange}. Instances are shared, as
+   * Java serialization does.
+   */
+  private static void addChanges(DefaultIssue issue, CeIssueCache.Issue.Builder builder) throws IOException {
+    Map<FieldDiffs, Integer> indices = new IdentityHashMap<>();
+    for (FieldDiffs change : issue.changes()) {
+      builder.addChanges(indexOf(change, indices, builder));
+    }
+    FieldDiffs currentChange = issue.currentChange();
+    if (currentChange != null) {
+      builder.setCurrentChange(indexOf(currentChange, indices, builder));
+    }
+  }
+
+  private static int indexOf(FieldDiffs diffs, Map<FieldDiffs, Integer> indices, CeIssueCache.Issue.Builder builder) throws IOException {
+    Integer index = indices.get(diffs);
+    if (index == null) {
+      index = indices.size();
+      indices.put(diffs, index);
+      builder.addFieldDiffs(toProtobuf(diffs));
+    }
+    return index;
+  }
+
+  private static CeIssueCache.Comment toProtobuf(IssueComment comment) {
+    CeIssueCache.Comment.Builder builder = CeIssueCache.Comment.newBuilder();
+    setIfNotNull(comment.key(), builder::setKey);
+    setIfNotNull(comment.issueKey(), builder::setIssueKey);
+    setIfNotNull(comment.userLogin(), builder::setUserLogin);
+    setIfNotNull(comment.markdownText(), builder::setMarkdownText);
+    setIfNotNull(comment.createdAt(), d -> builder.setCreatedAt(d.getTime()));
+    setIfNotNull(comment.updatedAt(), d -> builder.setUpdatedAt(d.getTime()));
+    if (comment instanceof DefaultIssueComment) {
+      builder.setIsNew(((DefaultIssueComment) comment).isNew());
+    }
+    return builder.build();
+  }
+
+  private static CeIssueCache.FieldDiffs toProtobuf(FieldDiffs diffs) throws IOException {
+    CeIssueCache.FieldDiffs.Builder builder = CeIssueCache.FieldDiffs.newBuilder();
+    setIfNotNull(diffs.issueKey(), builder::setIssueKey);
+    setIfNotNull(diffs.userLogin(), builder::setUserLogin);
+    setIfNotNull(diffs.creationDate(), d -> builder.setCreationDate(d.getTime()));
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.diffs().entrySet()) {
+      CeIssueCache.Diff.Builder diff = CeIssueCache.Diff.newBuilder().setField(entry.getKey());
+      Serializable oldValue = entry.getValue().oldValue();
+      if (oldValue != null) {
+        diff.setOldValue(toProtobuf(oldValue));
+      }
+      Serializable newValue = entry.getValue().newValue();
+      if (newValue != null) {
+        diff.setNewValue(toProtobuf(newValue));
+      }
+      builder.addDiffs(diff);
+    }
+    return builder.build();
+  }
+
+  private static CeIssueCache.Value toProtobuf(Serializable value) throws IOException {
+    CeIssueCache.Value.Builder builder = CeIssueCache.Value.newBuilder();
+    if (value instanceof String) {
+      builder.setStringValue((String) value);
+    } else if (value instanceof Long) {
+      builder.setLongValue((Long) value);
+    } else if (value instanceof Integer) {
+      builder.setIntValue((Integer) value);
+    } else {
+      builder.setSerializedValue(serialize(value));
+    }
+    return builder.build();
+  }
+
+  static DefaultIssue toDefaultIssue(CeIssueCache.Issue issue) throws IOException {
+    DefaultIssue result = new DefaultIssue();
+    if (issue.hasKey()) {
+      result.setKey(issue.getKey());
+    }
+    if (issue.hasRuleType()) {
+      result.setType(RuleType.valueOf(issue.getRuleType()));
+    }
+    if (issue.hasComponentUuid()) {
+      result.setComponentUuid(issue.getComponentUuid());
+    }
+    if (issue.hasComponentKey()) {
+      result.setComponentKey(issue.getComponentKey());
+    }
+    if (issue.hasModuleUuid()) {
+      result.setModuleUuid(issue.getModuleUuid());
+    }
+    if (issue.hasModuleUuidPath()) {
+      result.setModuleUuidPath(issue.getModuleUuidPath());
+    }
+    if (issue.hasProjectUuid()) {
+      result.setProjectUuid(issue.getProjectUuid());
+    }
+    if (issue.hasProjectKey()) {
+      result.setProjectKey(issue.getProjectKey());
+    }
+    if (issue.hasRuleKey()) {
+      result.setRuleKey(RuleKey.parse(issue.getRuleKey()));
+    }
+    if (issue.hasLanguage()) {
+      result.setLanguage(issue.getLanguage());
+    }
+    if (issue.hasSeverity()) {
+      result.setSeverity(issue.getSeverity());
+    }
+    result.setManualSeverity(issue.getManualSeverity());
+    if (issue.hasMessage()) {
+      result.setMessage(issue.getMessage());
+    }
+    if (issue.hasLine()) {
+      result.setLine(issue.getLine());
+    }
+    if (issue.hasGap()) {
+      result.setGap(issue.getGap());
+    }
+    if (issue.hasEffort()) {
+      result.setEffort(Duration.create(issue.getEffort()));
+    }
+    if (issue.hasStatus()) {
+      result.setStatus(issue.getStatus());
+    }
+    if (issue.hasResolution()) {
+      result.setResolution(issue.getResolution());
+    }
+    if (issue.hasAssignee()) {
+      result.setAssignee(issue.getAssignee());
+    }
+    if (issue.hasChecksum()) {
+      result.setChecksum(issue.getChecksum());
+    }
+    for (CeIssueCache.Attribute attribute : issue.getAttributesList()) {
+      result.setAttribute(attribute.getKey(), attribute.getValue());
+    }
+    if (issue.hasAuthorLogin()) {
+      result.setAuthorLogin(issue.getAuthorLogin());
+    }
+    for (CeIssueCache.Comment comment : issue.getCommentsList()) {
+      result.addComment(toDefaultIssueComment(comment));
+    }
+    if (issue.getTagsCount() > 0) {
+      result.setTags(issue.getTagsList());
+    }
+    if (issue.hasLocations()) {
+      result.setLocations(DbIssues.Locations.parseFrom(issue.getLocations()));
+    } else if (issue.hasSerializedLocations()) {
+      result.setLocations(deserialize(issue.getSerializedLocations()));
+    }
+    if (issue.hasCreationDate()) {
+      result.setCreationDate(new Date(issue.getCreationDate()));
+    }
+    if (issue.hasUpdateDate()) {
+      result.setUpdateDate(new Date(issue.getUpdateDate()));
+    }
+    if (issue.hasCloseDate()) {
+      result.setCloseDate(new Date(issue.getCloseDate()));
+    }
+    setChanges(issue, result);
+    result.setNew(issue.getIsNew());
+    result.setCopied(issue.getIsCopied());
+    result.setBeingClosed(issue.getBeingClosed());
+    result.setOnDisabledRule(issue.getOnDisabledRule());
+    result.setChanged(issue.getIsChanged());
+    result.setSendNotifications(issue.getSendNotifications());
+    if (issue.hasSelectedAt()) {
+      result.setSelectedAt(issue.getSelectedAt());
+    }
+    return result;
+  }
+
+  private static void setChanges(CeIssueCache.Issue issue, DefaultIssue result) throws IOException {
+    if (issue.getFieldDiffsCount() == 0) {
+      return;
+    }
+    List<FieldDiffs> fieldDiffs = new ArrayList<>(issue.getFieldDiffsCount());
+    for (CeIssueCache.FieldDiffs diffs : issue.getFieldDiffsList()) {
+      fieldDiffs.add(toFieldDiffs(diffs));
+    }
+    List<FieldDiffs> changes = new ArrayList<>(issue.getChangesCount());
+    for (int index : issue.getChangesList()) {
+      changes.add(fieldDiffs.get(index));
+    }
+    if (issue.hasCurrentChange()) {
+      // also appends the current change to the list of changes, which is replaced just after
+      result.setCurrentChange(fieldDiffs.get(issue.getCurrentChange()));
+    }
+    result.setChanges(changes);
+  }
+
+  private static DefaultIssueComment toDefaultIssueComment(CeIssueCache.Comment comment) {
+    DefaultIssueComment result = new DefaultIssueComment();
+    if (comment.hasKey()) {
+      result.setKey(comment.getKey());
+    }
+    if (comment.hasIssueKey()) {
+      result.setIssueKey(comment.getIssueKey());
+    }
+    if (comment.hasUserLogin()) {
+      result.setUserLogin(comment.getUserLogin());
+    }
+    if (comment.hasMarkdownText()) {
+      result.setMarkdownText(comment.getMarkdownText());
+    }
+    if (comment.hasCreatedAt()) {
+      result.setCreatedAt(new Date(comment.getCreatedAt()));
+    }
+    if (comment.hasUpdatedAt()) {
+      result.setUpdatedAt(new Date(comment.getUpdatedAt()));
+    }
+    result.setNew(comment.getIsNew());
+    return result;
+  }
+
+  private static FieldDiffs toFieldDiffs(CeIssueCache.FieldDiffs diffs) throws IOException {
+    FieldDiffs result = new FieldDiffs();
+    if (diffs.hasIssueKey()) {
+      result.setIssueKey(diffs.getIssueKey());
+    }
+    if (diffs.hasUserLogin()) {
+      result.setUserLogin(diffs.getUserLogin());
+    }
+    if (diffs.hasCreationDate()) {
+      result.setCreationDate(new Date(diffs.getCreationDate()));
+    }
+    for (CeIssueCache.Diff diff : diffs.getDiffsList()) {
+      result.setDiff(diff.getField(),
+        diff.hasOldValue() ? toSerializable(diff.getOldValue()) : null,
+        diff.hasNewValue() ? toSerializable(diff.getNewValue()) : null);
+    }
+    return result;
+  }
+
+  @CheckForNull
+  private static Serializable toSerializable(CeIssueCache.Value value) throws IOException {
+    switch (value.getValueCase()) {
+      case STRING_VALUE:
+        return value.getStringValue();
+      case LONG_VALUE:
+        return value.getLongValue();
+      case INT_VALUE:
+        return value.getIntValue();
+      case SERIALIZED_VALUE:
+        return deserialize(value.getSerializedValue());
+      default:
+        return null;
+    }
+  }
+
+  private static ByteString serialize(Serializable object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(object);
+    }
+    return ByteString.copyFrom(bytes.toByteArray());
+  }
+
+  private static Serializable deserialize(ByteString bytes) throws IOException {
+    try (ObjectInputStream input = new ObjectInputStream(bytes.newInput())) {
+      return (Serializable) input.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new InvalidProtocolBufferException("Fail to deserialize value: " + e.getMessage());
+    }
+  }
+
+  private static <T> void setIfNotNull(@Nullable T value, Consumer<T> setter) {
+    if (value != null) {
+      setter.accept(value);
+    }
+  }
+}
@@ -0,0 +1,329 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures, with the same behavior as
+ * {@link MapBasedRawMeasureRepository} but a much smaller memory footprint.
+ * <p>
+ * Components are identified by an int (usually their report ref) and metrics by a dense index. Numeric measures
+ * (no value, boolean, int, long and double) without developer nor QualityGate status, which are by far the most common ones,
+ * are stored in primitive columns, one per metric, split in pages allocated on first write. Other measures are
+ * stored as objects, as in {@link MapBasedRawMeasureRepository}.
+ * <p>
+ * {@link Measure} objects of numeric measures are created on read, so they must not be compared by identity.
+ */
+public final class ColumnarRawMeasureRepository implements MeasureRepository {
+  private final Function<Component, Integer> componentToKey;
+  private final Map<String, Integer> metricIndexes = new HashMap<>();
+  private final List<String> metricKeys = new ArrayList<>();
+  private final List<NumericColumn> numericColumns = new ArrayList<>();
+  private final Map<Integer, Map<MeasureKey, Measure>> otherMeasures = new HashMap<>();
+
+  public ColumnarRawMeasureRepository(Function<Component, Integer> componentToKey) {
+    this.componentToKey = requireNonNull(componentToKey);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(componentToKey.apply(component), metric.getKey(), null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(componentToKey.apply(component), metric.getKey(), measure.getDeveloper()) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(componentToKey.apply(component), metric.getKey(), measure.getDeveloper()) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+      measure.getValueType(), metric.getType().getValueType());
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int componentKey = componentToKey.apply(component);
+
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    Integer metricIndex = metricIndexes.get(metric.getKey());
+    if (metricIndex != null) {
+      Measure measure = numericColumns.get(metricIndex).get(componentKey);
+      if (measure != null) {
+        builder.add(measure);
+      }
+    }
+    Map<MeasureKey, Measure> measuresOfComponent = otherMeasures.get(componentKey);
+    if (measuresOfComponent != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfComponent.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int componentKey = componentToKey.apply(component);
+
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (int metricIndex = 0; metricIndex < numericColumns.size(); metricIndex++) {
+      Measure measure = numericColumns.get(metricIndex).get(componentKey);
+      if (measure != null) {
+        builder.put(metricKeys.get(metricIndex), measure);
+      }
+    }
+    Map<MeasureKey, Measure> measuresOfComponent = otherMeasures.get(componentKey);
+    if (measuresOfComponent != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfComponent.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  @CheckForNull
+  private Measure find(int componentKey, String metricKey, @Nullable Developer developer) {
+    if (developer == null) {
+      Integer metricIndex = metricIndexes.get(metricKey);
+      if (metricIndex != null) {
+        Measure measure = numericColumns.get(metricIndex).get(componentKey);
+        if (measure != null) {
+          return measure;
+        }
+      }
+    }
+    Map<MeasureKey, Measure> measuresOfComponent = otherMeasures.get(componentKey);
+    if (measuresOfComponent == null) {
+      return null;
+    }
+    return measuresOfComponent.get(new MeasureKey(metricKey, developer));
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int componentKey = componentToKey.apply(component);
+    String metricKey = metric.getKey();
+    Developer developer = measure.getDeveloper();
+    if (overridePolicy == OverridePolicy.DO_NOT_OVERRIDE && find(componentKey, metricKey, developer) != null) {
+      return;
+    }
+
+    if (NumericColumn.accepts(measure)) {
+      removeOtherMeasure(componentKey, new MeasureKey(metricKey, null));
+      numericColumn(metricKey).set(componentKey, measure);
+    } else {
+      if (developer == null) {
+        Integer metricIndex = metricIndexes.get(metricKey);
+        if (metricIndex != null) {
+          numericColumns.get(metricIndex).remove(componentKey);
+        }
+      }
+      otherMeasures.computeIfAbsent(componentKey, k -> new HashMap<>()).put(new MeasureKey(metricKey, developer), measure);
+    }
+  }
+
+  private void removeOtherMeasure(int componentKey, MeasureKey measureKey) {
+    Map<MeasureKey, Measure> measuresOfComponent = otherMeasures.get(componentKey);
+    if (measuresOfComponent != null) {
+      measuresOfComponent.remove(measureKey);
+    }
+  }
+
+  private NumericColumn numericColumn(String metricKey) {
+    Integer metricIndex = metricIndexes.get(metricKey);
+    if (metricIndex == null) {
+      metricIndex = numericColumns.size();
+      metricIndexes.put(metricKey, metricIndex);
+      metricKeys.add(metricKey);
+      numericColumns.add(new NumericColumn());
+    }
+    return numericColumns.get(metricIndex);
+  }
+
+  /**
+   * Numeric measures of a single metric, indexed by component key. Each page holds {@link #PAGE_SIZE} components and
+   * its arrays are allocated on first write: value types (0 when there is no measure), values and variations.
+   */
+  private static final class NumericColumn {
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final byte HAS_VARIATION = 0x10;
+    private static final byte VALUE_TYPE_MASK = 0x0F;
+    private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+
+    private byte[][] flags = new byte[0][];
+    private double[][] values = new double[0][];
+    private double[][] variations = new double[0][];
+
+    static boolean accepts(Measure measure) {
+      switch (measure.getValueType()) {
+        case NO_VALUE:
+        case BOOLEAN:
+        case INT:
+        case LONG:
+        case DOUBLE:
+          return measure.getDeveloper() == null && measure.getData() == null && !measure.hasQualityGateStatus();
+        default:
+          return false;
+      }
+    }
+
+    @CheckForNull
+    Measure get(int componentKey) {
+      int page = componentKey >>> PAGE_SHIFT;
+      if (componentKey < 0 || page >= flags.length || flags[page] == null) {
+        return null;
+      }
+      int offset = componentKey & PAGE_MASK;
+      byte flag = flags[page][offset];
+      if (flag == 0) {
+        return null;
+      }
+      Measure.ValueType valueType = VALUE_TYPES[(flag & VALUE_TYPE_MASK) - 1];
+      Double value = valueType == Measure.ValueType.NO_VALUE ? null : values[page][offset];
+      Double variation = (flag & HAS_VARIATION) == 0 ? null : variations[page][offset];
+      return Measure.restoreNumeric(valueType, value, variation);
+    }
+
+    void set(int componentKey, Measure measure) {
+      checkArgument(componentKey >= 0, "Component key must be positive: %s", componentKey);
+      int page = componentKey >>> PAGE_SHIFT;
+      int offset = componentKey & PAGE_MASK;
+      ensureCapacity(page);
+      if (flags[page] == null) {
+        flags[page] = new byte[PAGE_SIZE];
+      }
+      byte flag = (byte) (measure.getValueType().ordinal() + 1);
+      if (measure.getValueType() != Measure.ValueType.NO_VALUE) {
+        if (values[page] == null) {
+          values[page] = new double[PAGE_SIZE];
+        }
+        values[page][offset] = valueOf(measure);
+      }
+      if (measure.hasVariation()) {
+        if (variations[page] == null) {
+          variations[page] = new double[PAGE_SIZE];
+        }
+        variations[page][offset] = measure.getVariation();
+        flag |= HAS_VARIATION;
+      }
+      flags[page][offset] = flag;
+    }
+
+    void remove(int componentKey) {
+      int page = componentKey >>> PAGE_SHIFT;
+      if (componentKey >= 0 && page < flags.length && flags[page] != null) {
+        flags[page][componentKey & PAGE_MASK] = 0;
+      }
+    }
+
+    private void ensureCapacity(int page) {
+      if (page >= flags.length) {
+        int length = Math.max(page + 1, flags.length * 2);
+        flags = Arrays.copyOf(flags, length);
+        values = Arrays.copyOf(values, length);
+        variations = Arrays.copyOf(variations, length);
+      }
+    }
+
+    private static double valueOf(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          throw new IllegalArgumentException("Unsupported value type " + measure.getValueType());
+      }
+    }
+  }
+}
@@ -100,6 +100,14 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Creates a measure with no developer, data nor QualityGate status from values which have already been
+   * validated and scaled, see {@link ColumnarRawMeasureRepository}.
+   */
+  static Measure restoreNumeric(ValueType valueType, @Nullable Double value, @Nullable Double variation) {
+    return new Measure(valueType, null, value, null, null, null, variation);
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private QualityGateStatus qualityGateStatus;
@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import com.google.protobuf.MessageLite;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+
+/**
+ * Computes a hash of all the data of the analysis report, except source code, from which the file source data
+ * of a file is built: coverage, SCM changesets, syntax highlighting, symbols and duplications.
+ * <p>
+ * Computing this hash is much cheaper than building and encoding {@link org.sonar.db.protobuf.DbFileSources.Data}, so
+ * that it can be used to detect that nothing changed for a file whose source code is unchanged.
+ * </p>
+ */
+public class ReportHashComputer {
+
+  /**
+   * To be incremented whenever the way file source data is built from the report changes, so that the
+   * data of all files is built again.
+   */
+  private static final int VERSION = 1;
+
+  private static final byte COVERAGE = 1;
+  private static final byte CHANGESETS = 2;
+  private static final byte HIGHLIGHTING = 3;
+  private static final byte SYMBOLS = 4;
+  private static final byte DUPLICATIONS = 5;
+
+  private final BatchReportReader reportReader;
+  private final DuplicationRepository duplicationRepository;
+
+  public ReportHashComputer(BatchReportReader reportReader, DuplicationRepository duplicationRepository) {
+    this.reportReader = reportReader;
+    this.duplicationRepository = duplicationRepository;
+  }
+
+  public String compute(Component file) {
+    MessageDigest md5 = DigestUtils.getMd5Digest();
+    updateInt(md5, VERSION);
+    updateInt(md5, file.getFileAttributes().getLines());
+
+    int ref = file.getReportAttributes().getRef();
+    try (CloseableIterator<ScannerReport.LineCoverage> it = reportReader.readComponentCoverage(ref)) {
+      updateMessages(md5, COVERAGE, it);
+    }
+    md5.update(CHANGESETS);
+    ScannerReport.Changesets changesets = reportReader.readChangesets(ref);
+    if (changesets != null) {
+      updateMessage(md5, changesets);
+    }
+    try (CloseableIterator<ScannerReport.SyntaxHighlightingRule> it = reportReader.readComponentSyntaxHighlighting(ref)) {
+      updateMessages(md5, HIGHLIGHTING, it);
+    }
+    try (CloseableIterator<ScannerReport.Symbol> it = reportReader.readComponentSymbols(ref)) {
+      updateMessages(md5, SYMBOLS, it);
+    }
+    updateDuplications(md5, duplicationRepository.getDuplications(file));
+    return Hex.encodeHexString(md5.digest());
+  }
+
+  private static void updateMessages(MessageDigest md5, byte section, CloseableIterator<? extends MessageLite> messages) {
+    md5.update(section);
+    while (messages.hasNext()) {
+      updateMessage(md5, messages.next());
+    }
+  }
+
+  private static void updateMessage(MessageDigest md5, MessageLite message) {
+    byte[] bytes = message.toByteArray();
+    updateInt(md5, bytes.length);
+    md5.update(bytes);
+  }
+
+  /**
+   * Same text blocks as the ones used by {@link DuplicationLineReader}, sorted so that the hash does not depend on
+   * the order of the duplications.
+   */
+  private static void updateDuplications(MessageDigest md5, Iterable<Duplication> duplications) {
+    md5.update(DUPLICATIONS);
+    List<TextBlock> textBlocks = new ArrayList<>();
+    for (Duplication duplication : duplications) {
+      textBlocks.add(duplication.getOriginal());
+      duplication.getDuplicates().stream()
+        .filter(InnerDuplicate.class::isInstance)
+        .forEach(duplicate -> textBlocks.add(duplicate.getTextBlock()));
+    }
+    Collections.sort(textBlocks);
+    for (TextBlock textBlock : textBlocks) {
+      updateInt(md5, textBlock.getStart());
+      updateInt(md5, textBlock.getEnd());
+    }
+  }
+
+  private static void updateInt(MessageDigest md5, int value) {
+    md5.update(ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+  }
+}
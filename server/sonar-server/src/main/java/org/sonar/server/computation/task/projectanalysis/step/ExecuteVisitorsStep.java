@@ -21,23 +21,35 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.List;
 import java.util.Map;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawler;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 public class ExecuteVisitorsStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(ExecuteVisitorsStep.class);
 
+  /**
+   * When {@code true}, the duration and the memory allocated by each visitor are recorded in the profile of the task.
+   * Measuring them for each visited component has a cost, so they are otherwise only measured when DEBUG logs are enabled.
+   */
+  static final String PROFILE_VISITORS_PROPERTY = "sonar.ce.profileVisitors";
+
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
+  private final ComputationProfiler profiler;
+  private final Configuration config;
 
-  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors) {
+  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors, ComputationProfiler profiler, Configuration config) {
     this.treeRootHolder = treeRootHolder;
     this.visitors = visitors;
+    this.profiler = profiler;
+    this.config = config;
   }
 
   @Override
@@ -47,11 +59,23 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
+    boolean profileVisitors = config.getBoolean(PROFILE_VISITORS_PROPERTY).orElse(false);
+    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, profileVisitors || LOGGER.isDebugEnabled());
     visitorsCrawler.visit(treeRootHolder.getRoot());
+    if (profileVisitors) {
+      profileVisitors(visitorsCrawler);
+    }
     logVisitorExecutionDurations(visitors, visitorsCrawler);
   }
 
+  private void profileVisitors(VisitorsCrawler visitorsCrawler) {
+    Map<ComponentVisitor, Long> cumulativeDurations = visitorsCrawler.getCumulativeDurations();
+    Map<ComponentVisitor, Long> cumulativeAllocatedBytes = visitorsCrawler.getCumulativeAllocatedBytes();
+    for (ComponentVisitor visitor : visitors) {
+      profiler.addVisitor(visitor.getClass().getSimpleName(), cumulativeDurations.get(visitor), cumulativeAllocatedBytes.get(visitor));
+    }
+  }
+
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("  Execution time for each component visitor:");
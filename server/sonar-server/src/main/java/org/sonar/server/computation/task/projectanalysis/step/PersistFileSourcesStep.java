@@ -21,19 +21,31 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDao;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -53,58 +65,299 @@ import org.sonar.server.computation.task.projectanalysis.source.DuplicationLineR
 import org.sonar.server.computation.task.projectanalysis.source.HighlightingLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.LineReader;
 import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter;
+import org.sonar.server.computation.task.projectanalysis.source.ReportHashComputer;
 import org.sonar.server.computation.task.projectanalysis.source.ScmLineReader;
+import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ComputationProfiler;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
-public class PersistFileSourcesStep implements ComputationStep {
+public class PersistFileSourcesStep implements ConcurrentComputationStep {
+
+  /**
+   * Number of threads computing file source data. The default value 1 keeps the step fully sequential.
+   */
+  static final String PARALLELISM_PROPERTY = "sonar.ce.fileSources.parallelism";
+  /**
+   * Maximum number of source lines of the files being computed but not yet persisted when
+   * {@link #PARALLELISM_PROPERTY} is greater than 1. A single file bigger than this limit is still processed, alone.
+   */
+  static final String MAX_PENDING_LINES_PROPERTY = "sonar.ce.fileSources.maxPendingLines";
+  /**
+   * When positive, the lines of files bigger than this number of lines are persisted in chunks of this number of lines,
+   * so that ranges of lines can be read without decoding the whole file. The default value 0 disables chunks.
+   */
+  static final String LINES_PER_CHUNK_PROPERTY = "sonar.ce.fileSources.linesPerChunk";
+  private static final int DEFAULT_PARALLELISM = 1;
+  private static final int DEFAULT_MAX_PENDING_LINES = 500_000;
+  private static final int COMMIT_BATCH_SIZE = 100;
 
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
   private final BatchReportReader reportReader;
   private final SourceLinesRepository sourceLinesRepository;
+  private final SourceHashRepository sourceHashRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final Configuration config;
+  private final ComputationProfiler profiler;
+  private final ReportHashComputer reportHashComputer;
+  private int linesPerChunk = 0;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    SourceHashRepository sourceHashRepository, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Configuration config,
+    ComputationProfiler profiler) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.sourceLinesRepository = sourceLinesRepository;
+    this.sourceHashRepository = sourceHashRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.config = config;
+    this.profiler = profiler;
+    this.reportHashComputer = new ReportHashComputer(reportReader, duplicationRepository);
   }
 
   @Override
   public void execute() {
+    int parallelism = config.getInt(PARALLELISM_PROPERTY).orElse(DEFAULT_PARALLELISM);
+    linesPerChunk = config.getInt(LINES_PER_CHUNK_PROPERTY).orElse(0);
     // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
     try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
+      FileSourceWriter writer = new FileSourceWriter(dbSession);
+      if (parallelism <= 1) {
+        new DepthTraversalTypeAwareCrawler(new SequentialFileSourceVisitor(writer))
+          .visit(treeRootHolder.getRoot());
+      } else {
+        persistInParallel(writer, parallelism);
+      }
+      writer.addStatistics();
+    }
+  }
+
+  private void persistInParallel(FileSourceWriter writer, int parallelism) {
+    long maxPendingLines = config.getLong(MAX_PENDING_LINES_PROPERTY).orElse((long) DEFAULT_MAX_PENDING_LINES);
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+      .setNameFormat("CE_FileSources-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      ParallelFileSourceVisitor visitor = new ParallelFileSourceVisitor(writer, executor, 2 * parallelism, maxPendingLines);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.persistPending();
+    } finally {
+      executor.shutdownNow();
     }
   }
 
-  private class FileSourceVisitor extends TypeAwareVisitorAdapter {
+  /**
+   * Reads the report and repositories of the specified file and builds the data to be persisted. Does not
+   * access the DB session of the step, so that it can be called concurrently for different files.
+   * <p>
+   * Building the data is skipped when both the source code of the file and the report data it is built from have the
+   * same hashes as the ones persisted by the previous analysis. The status of the file is not used, as it is computed by
+   * the scanner against a reference which is not always the persisted data (target branch of short-living branches,
+   * SCM changed files).
+   * </p>
+   */
+  private FileSource computeFileSource(Component file, @Nullable FileSourceDto previousDto) {
+    try {
+      long start = System.nanoTime();
+      String reportHash = reportHashComputer.compute(file);
+      FileSource fileSource;
+      if (previousDto != null && reportHash.equals(previousDto.getReportHash())
+        && sourceHashRepository.getRawSourceHash(file).equals(previousDto.getSrcHash())) {
+        fileSource = FileSource.unchanged(file.getUuid());
+      } else {
+        fileSource = buildFileSource(file, reportHash);
+      }
+      fileSource.computationNanos = System.nanoTime() - start;
+      return fileSource;
+    } catch (Exception e) {
+      throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+    }
+  }
 
-    private final DbSession session;
+  private FileSource buildFileSource(Component file, String reportHash) {
+    try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
+      LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file)) {
+      ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
+      ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
+      byte[] data = FileSourceDto.encodeSourceData(fileSourceData.getFileSourceData(), linesPerChunk);
+      return new FileSource(file.getUuid(), data, DigestUtils.md5Hex(data), fileSourceData.getSrcHash(), fileSourceData.getLineHashes(),
+        reportHash, computeRevision(lineReaders.getLatestChange()));
+    }
+  }
 
-    private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
-    private String projectUuid;
+  @CheckForNull
+  private static String computeRevision(@Nullable Changeset latestChange) {
+    if (latestChange == null) {
+      return null;
+    }
+    return latestChange.getRevision();
+  }
+
+  private abstract static class FileSourceVisitor extends TypeAwareVisitorAdapter {
+    protected final FileSourceWriter writer;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(FileSourceWriter writer) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
-      this.session = session;
+      this.writer = writer;
     }
 
     @Override
     public void visitProject(Component project) {
-      this.projectUuid = project.getUuid();
+      writer.loadPreviousHashes(project.getUuid());
+    }
+  }
+
+  private class SequentialFileSourceVisitor extends FileSourceVisitor {
+
+    private SequentialFileSourceVisitor(FileSourceWriter writer) {
+      super(writer);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      if (writer.write(computeFileSource(file, writer.getPrevious(file)))) {
+        writer.commit();
+      }
+    }
+  }
+
+  /**
+   * Computes file sources on the executor while the crawling thread, as the single writer, persists the results
+   * in traversal order. Computation is throttled both by number of files and by number of lines waiting to be persisted.
+   */
+  private class ParallelFileSourceVisitor extends FileSourceVisitor {
+    private final ExecutorService executor;
+    private final int maxPendingFiles;
+    private final long maxPendingLines;
+    private final Deque<PendingFileSource> pending = new ArrayDeque<>();
+    private long pendingLines = 0;
+    private int uncommitted = 0;
+
+    private ParallelFileSourceVisitor(FileSourceWriter writer, ExecutorService executor, int maxPendingFiles, long maxPendingLines) {
+      super(writer);
+      this.executor = executor;
+      this.maxPendingFiles = maxPendingFiles;
+      this.maxPendingLines = maxPendingLines;
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      int lines = file.getFileAttributes().getLines();
+      while (!pending.isEmpty() && (pending.size() >= maxPendingFiles || pendingLines + lines > maxPendingLines)) {
+        persistOldest();
+      }
+      FileSourceDto previousDto = writer.getPrevious(file);
+      pending.add(new PendingFileSource(file, lines, executor.submit(() -> computeFileSource(file, previousDto))));
+      pendingLines += lines;
+    }
+
+    void persistPending() {
+      while (!pending.isEmpty()) {
+        persistOldest();
+      }
+      writer.commit();
+    }
+
+    private void persistOldest() {
+      PendingFileSource oldest = pending.remove();
+      pendingLines -= oldest.lines;
+      if (writer.write(oldest.get())) {
+        uncommitted++;
+      }
+      if (uncommitted >= COMMIT_BATCH_SIZE) {
+        writer.commit();
+        uncommitted = 0;
+      }
+    }
+  }
+
+  private static class PendingFileSource {
+    private final Component file;
+    private final int lines;
+    private final Future<FileSource> future;
+
+    private PendingFileSource(Component file, int lines, Future<FileSource> future) {
+      this.file = file;
+      this.lines = lines;
+      this.future = future;
+    }
+
+    FileSource get() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Interrupted while computing sources of %s", file.getKey()), e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), cause);
+      }
+    }
+  }
+
+  private static class FileSource {
+    private final String fileUuid;
+    private final boolean unchanged;
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
+    private final String reportHash;
+    @CheckForNull
+    private final String revision;
+    private long computationNanos = 0L;
+
+    private FileSource(String fileUuid, byte[] data, String dataHash, String srcHash, String lineHashes, String reportHash, @Nullable String revision) {
+      this(fileUuid, false, data, dataHash, srcHash, lineHashes, reportHash, revision);
+    }
+
+    private FileSource(String fileUuid, boolean unchanged, @Nullable byte[] data, @Nullable String dataHash, @Nullable String srcHash, @Nullable String lineHashes,
+      @Nullable String reportHash, @Nullable String revision) {
+      this.fileUuid = fileUuid;
+      this.unchanged = unchanged;
+      this.data = data;
+      this.dataHash = dataHash;
+      this.srcHash = srcHash;
+      this.lineHashes = lineHashes;
+      this.reportHash = reportHash;
+      this.revision = revision;
+    }
+
+    static FileSource unchanged(String fileUuid) {
+      return new FileSource(fileUuid, true, null, null, null, null, null, null);
+    }
+  }
+
+  private class FileSourceWriter {
+    private final DbSession session;
+    private final Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
+    private String projectUuid;
+    private int persisted = 0;
+    private int unchanged = 0;
+    private int skipped = 0;
+    private long skippedNanos = 0L;
+    private long builtNanos = 0L;
+
+    private FileSourceWriter(DbSession session) {
+      this.session = session;
+    }
+
+    void loadPreviousHashes(String projectUuid) {
+      this.projectUuid = projectUuid;
       session.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
         context -> {
           FileSourceDto dto = (FileSourceDto) context.getResultObject();
@@ -112,67 +365,77 @@ public class PersistFileSourcesStep implements ComputationStep {
         });
     }
 
-    @Override
-    public void visitFile(Component file) {
-      try (CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-        LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file)) {
-        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
-        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
-      }
+    @CheckForNull
+    FileSourceDto getPrevious(Component file) {
+      return previousFileSourcesByUuid.get(file.getUuid());
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
-
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
+    /**
+     * @return {@code true} if a row has been inserted or updated
+     */
+    boolean write(FileSource fileSource) {
+      if (fileSource.unchanged) {
+        skipped++;
+        skippedNanos += fileSource.computationNanos;
+        unchanged++;
+        return false;
+      }
+      builtNanos += fileSource.computationNanos;
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(fileSource.fileUuid);
 
       if (previousDto == null) {
         FileSourceDto dto = new FileSourceDto()
           .setProjectUuid(projectUuid)
-          .setFileUuid(componentUuid)
+          .setFileUuid(fileSource.fileUuid)
           .setDataType(Type.SOURCE)
-          .setBinaryData(data)
-          .setSrcHash(srcHash)
-          .setDataHash(dataHash)
-          .setLineHashes(lineHashes)
+          .setBinaryData(fileSource.data)
+          .setSrcHash(fileSource.srcHash)
+          .setReportHash(fileSource.reportHash)
+          .setDataHash(fileSource.dataHash)
+          .setLineHashes(fileSource.lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(fileSource.revision);
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
-      } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
-        }
+        persisted++;
+        return true;
+      }
+      // Update only if data_hash has changed or if src_hash, report_hash or revision is missing (progressive migration)
+      boolean binaryDataUpdated = !fileSource.dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !fileSource.srcHash.equals(previousDto.getSrcHash());
+      boolean reportHashUpdated = !fileSource.reportHash.equals(previousDto.getReportHash());
+      boolean revisionUpdated = !ObjectUtils.equals(fileSource.revision, previousDto.getRevision());
+      if (binaryDataUpdated || srcHashUpdated || reportHashUpdated || revisionUpdated) {
+        previousDto
+          .setBinaryData(fileSource.data)
+          .setDataHash(fileSource.dataHash)
+          .setSrcHash(fileSource.srcHash)
+          .setReportHash(fileSource.reportHash)
+          .setLineHashes(fileSource.lineHashes)
+          .setRevision(fileSource.revision)
+          .setUpdatedAt(system2.now());
+        dbClient.fileSourceDao().update(session, previousDto);
+        persisted++;
+        return true;
       }
+      unchanged++;
+      return false;
     }
 
-    @CheckForNull
-    private String computeRevision(@Nullable Changeset latestChange) {
-      if (latestChange == null) {
-        return null;
-      }
-      return latestChange.getRevision();
+    void commit() {
+      session.commit();
+    }
+
+    /**
+     * Times are cumulated over the threads computing file sources.
+     */
+    void addStatistics() {
+      String step = getDescription();
+      profiler.addStepStatistic(step, "persisted", persisted);
+      profiler.addStepStatistic(step, "unchanged", unchanged);
+      profiler.addStepStatistic(step, "skipped", skipped);
+      profiler.addStepStatistic(step, "skippedTime", TimeUnit.NANOSECONDS.toMillis(skippedNanos) + "ms");
+      profiler.addStepStatistic(step, "builtTime", TimeUnit.NANOSECONDS.toMillis(builtNanos) + "ms");
     }
   }
 
@@ -227,6 +490,16 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<Class<?>> getReadDependencies() {
+    return ImmutableSet.of(TreeRootHolder.class, BatchReportReader.class, SourceLinesRepository.class, SourceHashRepository.class, ScmInfoRepository.class, DuplicationRepository.class);
+  }
+
+  @Override
+  public Set<Class<?>> getWriteDependencies() {
+    return ImmutableSet.of(FileSourceDao.class);
+  }
+
   @Override
   public String getDescription() {
     return "Persist sources";
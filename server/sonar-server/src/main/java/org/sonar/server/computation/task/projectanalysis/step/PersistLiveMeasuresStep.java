@@ -20,16 +20,28 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.Uuids;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.LiveMeasureDao;
+import org.sonar.db.measure.LiveMeasureDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
@@ -60,19 +72,30 @@ public class PersistLiveMeasuresStep implements ComputationStep {
     FUNCTION_COMPLEXITY_DISTRIBUTION_KEY,
     CLASS_COMPLEXITY_DISTRIBUTION_KEY)));
 
+  /**
+   * When enabled, the default, the live measures of the project are loaded and compared with the computed ones by
+   * batches of components, so that only new, changed and obsolete measures are written to DB. When disabled, all
+   * the computed measures are written.
+   */
+  static final String DIFF_PROPERTY = "sonar.ce.liveMeasures.diff";
+  private static final int COMPONENT_BATCH_SIZE = 1_000;
+  private static final Logger LOGGER = Loggers.get(PersistLiveMeasuresStep.class);
+
   private final DbClient dbClient;
   private final MetricRepository metricRepository;
   private final MeasureToMeasureDto measureToMeasureDto;
   private final TreeRootHolder treeRootHolder;
   private final MeasureRepository measureRepository;
+  private final Configuration config;
 
   public PersistLiveMeasuresStep(DbClient dbClient, MetricRepository metricRepository, MeasureToMeasureDto measureToMeasureDto,
-    TreeRootHolder treeRootHolder, MeasureRepository measureRepository) {
+    TreeRootHolder treeRootHolder, MeasureRepository measureRepository, Configuration config) {
     this.dbClient = dbClient;
     this.metricRepository = metricRepository;
     this.measureToMeasureDto = measureToMeasureDto;
     this.treeRootHolder = treeRootHolder;
     this.measureRepository = measureRepository;
+    this.config = config;
   }
 
   @Override
@@ -82,43 +105,151 @@ public class PersistLiveMeasuresStep implements ComputationStep {
 
   @Override
   public void execute() {
+    if (config.getBoolean(DIFF_PROPERTY).orElse(true)) {
+      persistChangedMeasures();
+    } else {
+      persistAllMeasures();
+    }
+  }
+
+  private void persistAllMeasures() {
     try (DbSession dbSession = dbClient.openSession(false)) {
       String marker = Uuids.create();
       Component root = treeRootHolder.getRoot();
-      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(dbSession, marker)).visit(root);
-      dbClient.liveMeasureDao().deleteByProjectUuidExcludingMarker(dbSession, root.getUuid(), marker);
+      LiveMeasureDao dao = dbClient.liveMeasureDao();
+      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(component -> toLiveMeasureDtos(component)
+        .forEach(dto -> dao.insertOrUpdate(dbSession, dto, marker))))
+          .visit(root);
+      dao.deleteByProjectUuidExcludingMarker(dbSession, root.getUuid(), marker);
       dbSession.commit();
     }
   }
 
-  private class MeasureVisitor extends TypeAwareVisitorAdapter {
-    private final DbSession dbSession;
-    private final String marker;
+  private void persistChangedMeasures() {
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      Component root = treeRootHolder.getRoot();
+      MeasureDiffer differ = new MeasureDiffer(dbSession, root.getUuid());
+      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(differ::add)).visit(root);
+      differ.flush();
+      differ.deleteMeasuresOfRemovedComponents();
+      dbSession.commit();
+      LOGGER.debug("Live measures: {} inserted, {} updated, {} deleted, {} unchanged",
+        differ.inserted, differ.updated, differ.deleted, differ.unchanged);
+    }
+  }
+
+  private List<LiveMeasureDto> toLiveMeasureDtos(Component component) {
+    List<LiveMeasureDto> res = new ArrayList<>();
+    Multimap<String, Measure> measures = measureRepository.getRawMeasures(component);
+    for (Map.Entry<String, Collection<Measure>> measuresByMetricKey : measures.asMap().entrySet()) {
+      String metricKey = measuresByMetricKey.getKey();
+      if (NOT_TO_PERSIST_ON_FILE_METRIC_KEYS.contains(metricKey) && component.getType() == Component.Type.FILE) {
+        continue;
+      }
+      Metric metric = metricRepository.getByKey(metricKey);
+      Predicate<Measure> notBestValueOptimized = BestValueOptimization.from(metric, component).negate();
+      measuresByMetricKey.getValue().stream()
+        .filter(NonEmptyMeasure.INSTANCE)
+        .filter(notBestValueOptimized)
+        .map(measure -> measureToMeasureDto.toLiveMeasureDto(measure, metric, component))
+        .forEach(res::add);
+    }
+    return res;
+  }
+
+  private static class MeasureVisitor extends TypeAwareVisitorAdapter {
+    private final Consumer<Component> consumer;
 
-    private MeasureVisitor(DbSession dbSession, String marker) {
+    private MeasureVisitor(Consumer<Component> consumer) {
       super(CrawlerDepthLimit.LEAVES, PRE_ORDER);
-      this.dbSession = dbSession;
-      this.marker = marker;
+      this.consumer = consumer;
     }
 
     @Override
     public void visitAny(Component component) {
+      consumer.accept(component);
+    }
+  }
+
+  /**
+   * Compares the computed measures of a batch of components with the ones in DB and writes only the differences.
+   */
+  private class MeasureDiffer {
+    private final DbSession dbSession;
+    private final String projectUuid;
+    private final List<Component> components = new ArrayList<>(COMPONENT_BATCH_SIZE);
+    private final Set<String> visitedComponentUuids = new HashSet<>();
+    private int inserted = 0;
+    private int updated = 0;
+    private int deleted = 0;
+    private int unchanged = 0;
+
+    private MeasureDiffer(DbSession dbSession, String projectUuid) {
+      this.dbSession = dbSession;
+      this.projectUuid = projectUuid;
+    }
+
+    private void add(Component component) {
+      components.add(component);
+      visitedComponentUuids.add(component.getUuid());
+      if (components.size() >= COMPONENT_BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    private void flush() {
+      if (components.isEmpty()) {
+        return;
+      }
       LiveMeasureDao dao = dbClient.liveMeasureDao();
-      Multimap<String, Measure> measures = measureRepository.getRawMeasures(component);
-      for (Map.Entry<String, Collection<Measure>> measuresByMetricKey : measures.asMap().entrySet()) {
-        String metricKey = measuresByMetricKey.getKey();
-        if (NOT_TO_PERSIST_ON_FILE_METRIC_KEYS.contains(metricKey) && component.getType() == Component.Type.FILE) {
-          continue;
+      Map<String, Map<Integer, LiveMeasureDto>> existingDtosByComponentUuid = new HashMap<>();
+      dao.selectByComponentUuids(dbSession, components.stream().map(Component::getUuid).collect(Collectors.toList()))
+        .forEach(dto -> existingDtosByComponentUuid.computeIfAbsent(dto.getComponentUuid(), k -> new HashMap<>()).put(dto.getMetricId(), dto));
+
+      for (Component component : components) {
+        Map<Integer, LiveMeasureDto> existingDtos = existingDtosByComponentUuid.getOrDefault(component.getUuid(), Collections.emptyMap());
+        for (LiveMeasureDto dto : toLiveMeasureDtos(component)) {
+          LiveMeasureDto existingDto = existingDtos.remove(dto.getMetricId());
+          if (existingDto == null) {
+            dao.insert(dbSession, dto);
+            inserted++;
+          } else if (hasSameValues(existingDto, dto)) {
+            unchanged++;
+          } else {
+            dao.update(dbSession, dto);
+            updated++;
+          }
         }
-        Metric metric = metricRepository.getByKey(metricKey);
-        Predicate<Measure> notBestValueOptimized = BestValueOptimization.from(metric, component).negate();
-        measuresByMetricKey.getValue().stream()
-          .filter(NonEmptyMeasure.INSTANCE)
-          .filter(notBestValueOptimized)
-          .map(measure -> measureToMeasureDto.toLiveMeasureDto(measure, metric, component))
-          .forEach(dto -> dao.insertOrUpdate(dbSession, dto, marker));
+        // measures which are not computed anymore
+        existingDtos.values().stream()
+          .filter(dto -> projectUuid.equals(dto.getProjectUuid()))
+          .forEach(dto -> {
+            dao.deleteByComponentUuidAndMetricId(dbSession, dto.getComponentUuid(), dto.getMetricId());
+            deleted++;
+          });
       }
+      components.clear();
     }
+
+    private void deleteMeasuresOfRemovedComponents() {
+      LiveMeasureDao dao = dbClient.liveMeasureDao();
+      List<String> removedComponentUuids = dao.selectComponentUuidsByProjectUuid(dbSession, projectUuid).stream()
+        .filter(uuid -> !visitedComponentUuids.contains(uuid))
+        .collect(Collectors.toList());
+      if (removedComponentUuids.isEmpty()) {
+        return;
+      }
+      // rows are counted beforehand, as batch sessions do not return the number of deleted rows
+      deleted += dao.countByProjectUuidAndComponentUuids(dbSession, projectUuid, removedComponentUuids);
+      dao.deleteByProjectUuidAndComponentUuids(dbSession, projectUuid, removedComponentUuids);
+    }
+  }
+
+  private static boolean hasSameValues(LiveMeasureDto dto1, LiveMeasureDto dto2) {
+    return Objects.equals(dto1.getValue(), dto2.getValue())
+      && Objects.equals(dto1.getVariation(), dto2.getVariation())
+      && Objects.equals(dto1.getTextValue(), dto2.getTextValue())
+      && Arrays.equals(dto1.getData(), dto2.getData());
   }
 
   private enum NonEmptyMeasure implements Predicate<Measure> {
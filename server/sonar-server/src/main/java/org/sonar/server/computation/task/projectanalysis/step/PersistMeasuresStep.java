@@ -20,9 +20,11 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import org.sonar.core.config.PurgeConstants;
@@ -30,9 +32,11 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.MeasureDao;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ConfigurationRepository;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DbIdsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
@@ -41,11 +45,11 @@ import org.sonar.server.computation.task.projectanalysis.measure.MeasureReposito
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureToMeasureDto;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
-public class PersistMeasuresStep implements ComputationStep {
+public class PersistMeasuresStep implements ConcurrentComputationStep {
 
   private final DbClient dbClient;
   private final MetricRepository metricRepository;
@@ -71,6 +75,20 @@ public class PersistMeasuresStep implements ComputationStep {
     this.persistDirectories = persistDirectories;
   }
 
+  /**
+   * {@link AnalysisMetadataHolder} is read by {@link MeasureToMeasureDto}. {@link DbIdsRepository} is populated once the
+   * components referenced by the measures are persisted.
+   */
+  @Override
+  public Set<Class<?>> getReadDependencies() {
+    return ImmutableSet.of(TreeRootHolder.class, MetricRepository.class, MeasureRepository.class, AnalysisMetadataHolder.class, DbIdsRepository.class);
+  }
+
+  @Override
+  public Set<Class<?>> getWriteDependencies() {
+    return ImmutableSet.of(MeasureDao.class);
+  }
+
   @Override
   public String getDescription() {
     return "Persist measures";
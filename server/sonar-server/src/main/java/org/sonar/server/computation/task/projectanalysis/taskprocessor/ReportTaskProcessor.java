@@ -30,6 +30,7 @@ import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.plugin.ce.ReportAnalysisComponentProvider;
 import org.sonar.server.computation.task.container.TaskContainer;
 import org.sonar.server.computation.task.projectanalysis.container.ContainerFactory;
+import org.sonar.server.computation.task.step.ComputationProfilePublisher;
 import org.sonar.server.computation.task.step.ComputationStepExecutor;
 import org.sonar.server.computation.taskprocessor.TaskResultHolder;
 
@@ -70,7 +71,11 @@ public class ReportTaskProcessor implements CeTaskProcessor {
     try (TaskContainer ceContainer = containerFactory.create(serverContainer, task, componentProviders)) {
       ceContainer.bootup();
 
-      ceContainer.getComponentByType(ComputationStepExecutor.class).execute();
+      try {
+        ceContainer.getComponentByType(ComputationStepExecutor.class).execute();
+      } finally {
+        ceContainer.getComponentByType(ComputationProfilePublisher.class).publish();
+      }
       return ceContainer.getComponentByType(TaskResultHolder.class).getResult();
     }
   }
@@ -0,0 +1,115 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeTaskCharacteristicDto;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Persists the profile of a task, ie. the durations and memory allocations recorded by {@link ComputationProfiler},
+ * as characteristics of the task and notifies the {@link ComputationProfileListener}s.
+ */
+public class ComputationProfilePublisher {
+  private static final Logger LOG = Loggers.get(ComputationProfilePublisher.class);
+  private static final int MAX_CHARACTERISTIC_LENGTH = 4000;
+  private static final String ENTRY_SEPARATOR = ";";
+
+  private final CeTask task;
+  private final ComputationProfiler profiler;
+  private final DbClient dbClient;
+  private final UuidFactory uuidFactory;
+  private final ComputationProfileListener[] listeners;
+
+  /**
+   * Used when no {@link ComputationProfileListener} is available in pico container.
+   */
+  public ComputationProfilePublisher(CeTask task, ComputationProfiler profiler, DbClient dbClient, UuidFactory uuidFactory) {
+    this(task, profiler, dbClient, uuidFactory, new ComputationProfileListener[0]);
+  }
+
+  public ComputationProfilePublisher(CeTask task, ComputationProfiler profiler, DbClient dbClient, UuidFactory uuidFactory,
+    ComputationProfileListener[] listeners) {
+    this.task = task;
+    this.profiler = profiler;
+    this.dbClient = dbClient;
+    this.uuidFactory = uuidFactory;
+    this.listeners = listeners;
+  }
+
+  /**
+   * Never fails: the profile of a task is only informative.
+   */
+  public void publish() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.ceTaskCharacteristicsDao().insert(dbSession, asList(
+        toCharacteristic(CeTaskCharacteristicDto.STEPS_PROFILE_KEY, profiler.getSteps()),
+        toCharacteristic(CeTaskCharacteristicDto.VISITORS_PROFILE_KEY, profiler.getVisitors())));
+      dbSession.commit();
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to persist profile of task {}", task.getUuid(), e);
+    }
+    for (ComputationProfileListener listener : listeners) {
+      try {
+        listener.onProfile(task, profiler);
+      } catch (RuntimeException e) {
+        LOG.warn("Execution of listener {} of profile failed", listener.getClass().getName(), e);
+      }
+    }
+  }
+
+  private CeTaskCharacteristicDto toCharacteristic(String key, List<ComputationProfiler.Entry> entries) {
+    return new CeTaskCharacteristicDto()
+      .setUuid(uuidFactory.create())
+      .setTaskUuid(task.getUuid())
+      .setKey(key)
+      .setValue(format(entries, MAX_CHARACTERISTIC_LENGTH));
+  }
+
+  /**
+   * Formats as many entries as possible, slowest first, within the specified maximum length.
+   */
+  static String format(List<ComputationProfiler.Entry> entries, int maxLength) {
+    List<ComputationProfiler.Entry> sortedEntries = new ArrayList<>(entries);
+    sortedEntries.sort(Comparator.comparingLong(ComputationProfiler.Entry::getDurationInMs).reversed());
+    StringBuilder res = new StringBuilder();
+    for (ComputationProfiler.Entry entry : sortedEntries) {
+      String formattedEntry = entry.toString();
+      int separatorLength = res.length() == 0 ? 0 : ENTRY_SEPARATOR.length();
+      if (res.length() + separatorLength + formattedEntry.length() > maxLength) {
+        break;
+      }
+      if (separatorLength > 0) {
+        res.append(ENTRY_SEPARATOR);
+      }
+      res.append(formattedEntry);
+    }
+    return res.toString();
+  }
+}
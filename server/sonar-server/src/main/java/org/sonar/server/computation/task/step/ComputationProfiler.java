@@ -0,0 +1,163 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records the duration and the memory allocated by each {@link ComputationStep} and by each component visitor
+ * executed by a Compute Engine task.
+ * <p>
+ * Allocated memory only counts the thread executing the step or the visitor. The memory allocated by the threads of
+ * the pools a step may delegate to (file sources, issue tracking, concurrent steps themselves being measured on their
+ * own thread) is not included.
+ * </p>
+ */
+public class ComputationProfiler {
+  /**
+   * Value of allocated bytes when the JVM does not support measuring the memory allocated by a thread.
+   */
+  public static final long UNKNOWN_ALLOCATED_BYTES = -1L;
+
+  private final List<Entry> steps = new ArrayList<>();
+  private final List<Entry> visitors = new ArrayList<>();
+  private final Map<String, Map<String, Object>> statisticsByStep = new HashMap<>();
+
+  public synchronized void addStep(String description, long durationInMs, long allocatedBytes) {
+    Map<String, Object> statistics = statisticsByStep.remove(description);
+    steps.add(new Entry(description, durationInMs, allocatedBytes, statistics == null ? Collections.<String, Object>emptyMap() : statistics));
+  }
+
+  /**
+   * Adds a statistic to the entry of the step with the specified description. Must be called by the step itself,
+   * during its execution.
+   */
+  public synchronized void addStepStatistic(String stepDescription, String key, Object value) {
+    statisticsByStep.computeIfAbsent(stepDescription, k -> new LinkedHashMap<>()).put(key, value);
+  }
+
+  public synchronized void addVisitor(String name, long durationInMs, long allocatedBytes) {
+    visitors.add(new Entry(name, durationInMs, allocatedBytes));
+  }
+
+  /**
+   * In order of end of execution
+   */
+  public synchronized List<Entry> getSteps() {
+    return Collections.unmodifiableList(new ArrayList<>(steps));
+  }
+
+  /**
+   * In order of end of execution
+   */
+  public synchronized List<Entry> getVisitors() {
+    return Collections.unmodifiableList(new ArrayList<>(visitors));
+  }
+
+  /**
+   * Total number of bytes allocated so far by the current thread or {@link #UNKNOWN_ALLOCATED_BYTES} if the JVM
+   * does not support it.
+   */
+  public static long currentThreadAllocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return UNKNOWN_ALLOCATED_BYTES;
+  }
+
+  /**
+   * @return the bytes allocated since {@code allocatedBytesAtStart} or {@link #UNKNOWN_ALLOCATED_BYTES} if unknown
+   */
+  public static long allocatedBytesSince(long allocatedBytesAtStart) {
+    if (allocatedBytesAtStart == UNKNOWN_ALLOCATED_BYTES) {
+      return UNKNOWN_ALLOCATED_BYTES;
+    }
+    return currentThreadAllocatedBytes() - allocatedBytesAtStart;
+  }
+
+  public static final class Entry {
+    private final String name;
+    private final long durationInMs;
+    private final long allocatedBytes;
+    private final Map<String, Object> statistics;
+
+    public Entry(String name, long durationInMs, long allocatedBytes) {
+      this(name, durationInMs, allocatedBytes, Collections.emptyMap());
+    }
+
+    public Entry(String name, long durationInMs, long allocatedBytes, Map<String, Object> statistics) {
+      this.name = requireNonNull(name, "name can't be null");
+      this.durationInMs = durationInMs;
+      this.allocatedBytes = allocatedBytes;
+      this.statistics = Collections.unmodifiableMap(new LinkedHashMap<>(statistics));
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getDurationInMs() {
+      return durationInMs;
+    }
+
+    /**
+     * Memory allocated by the calling thread only, see {@link ComputationProfiler}.
+     *
+     * @return {@link #UNKNOWN_ALLOCATED_BYTES} if unknown
+     */
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    /**
+     * Statistics specific to the step, in order of addition. Empty for visitors.
+     */
+    public Map<String, Object> getStatistics() {
+      return statistics;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder res = new StringBuilder(name).append('=').append(durationInMs).append("ms");
+      if (allocatedBytes != UNKNOWN_ALLOCATED_BYTES) {
+        res.append('/').append(allocatedBytes / 1024).append("KB");
+      }
+      if (!statistics.isEmpty()) {
+        res.append('(');
+        statistics.forEach((key, value) -> res.append(key).append('=').append(value).append(','));
+        res.setCharAt(res.length() - 1, ')');
+      }
+      return res.toString();
+    }
+  }
+}
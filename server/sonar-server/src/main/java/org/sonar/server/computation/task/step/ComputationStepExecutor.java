@@ -19,37 +19,76 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+import static java.util.Collections.disjoint;
+
 public final class ComputationStepExecutor {
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
 
+  /**
+   * Maximum number of adjacent {@link ConcurrentComputationStep}s executed concurrently. The default value 1 keeps the
+   * execution of steps fully sequential.
+   */
+  static final String PARALLELISM_PROPERTY = "sonar.ce.computationSteps.parallelism";
+  private static final int DEFAULT_PARALLELISM = 1;
+
   private final ComputationSteps steps;
   @CheckForNull
   private final Listener listener;
+  private final ComputationProfiler profiler;
+  private final int parallelism;
 
   /**
    * Used when no {@link ComputationStepExecutor.Listener} is available in pico
    * container.
    */
   public ComputationStepExecutor(ComputationSteps steps) {
-    this(steps, null);
+    this(steps, new ComputationProfiler(), DEFAULT_PARALLELISM, null);
   }
 
   public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener) {
+    this(steps, new ComputationProfiler(), DEFAULT_PARALLELISM, listener);
+  }
+
+  /**
+   * Used when no {@link ComputationStepExecutor.Listener} is available in pico
+   * container.
+   */
+  public ComputationStepExecutor(ComputationSteps steps, ComputationProfiler profiler, Configuration config) {
+    this(steps, profiler, config, null);
+  }
+
+  public ComputationStepExecutor(ComputationSteps steps, ComputationProfiler profiler, Configuration config, @Nullable Listener listener) {
+    this(steps, profiler, config.getInt(PARALLELISM_PROPERTY).orElse(DEFAULT_PARALLELISM), listener);
+  }
+
+  private ComputationStepExecutor(ComputationSteps steps, ComputationProfiler profiler, int parallelism, @Nullable Listener listener) {
     this.steps = steps;
+    this.profiler = profiler;
+    this.parallelism = parallelism;
     this.listener = listener;
   }
 
   public void execute() {
-    Profiler stepProfiler = Profiler.create(LOGGER);
     boolean allStepsExecuted = false;
     try {
-      executeSteps(stepProfiler);
+      executeSteps();
       allStepsExecuted = true;
     } finally {
       if (listener != null) {
@@ -58,11 +97,103 @@ public final class ComputationStepExecutor {
     }
   }
 
-  private void executeSteps(Profiler stepProfiler) {
+  private void executeSteps() {
+    List<ConcurrentComputationStep> concurrentSteps = new ArrayList<>();
     for (ComputationStep step : steps.instances()) {
-      stepProfiler.start();
-      step.execute();
-      stepProfiler.stopDebug(step.getDescription());
+      if (parallelism > 1 && step instanceof ConcurrentComputationStep) {
+        concurrentSteps.add((ConcurrentComputationStep) step);
+      } else {
+        executeConcurrently(concurrentSteps);
+        concurrentSteps.clear();
+        executeStep(step);
+      }
+    }
+    executeConcurrently(concurrentSteps);
+  }
+
+  private void executeStep(ComputationStep step) {
+    Profiler stepProfiler = Profiler.create(LOGGER).start();
+    long allocatedBytesAtStart = ComputationProfiler.currentThreadAllocatedBytes();
+    step.execute();
+    long allocatedBytes = ComputationProfiler.allocatedBytesSince(allocatedBytesAtStart);
+    String description = step.getDescription();
+    long duration = stepProfiler.stopDebug(description);
+    profiler.addStep(description, duration, allocatedBytes);
+  }
+
+  /**
+   * Executes the specified steps on a dedicated pool of threads. A step is started only once the preceding steps it
+   * conflicts with are successfully executed.
+   * This method returns once all the steps are executed or skipped. The first failure, in order of steps,
+   * is then rethrown.
+   */
+  private void executeConcurrently(List<ConcurrentComputationStep> concurrentSteps) {
+    if (concurrentSteps.isEmpty()) {
+      return;
+    }
+    if (concurrentSteps.size() == 1) {
+      executeStep(concurrentSteps.iterator().next());
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, concurrentSteps.size()), new ThreadFactoryBuilder()
+      .setNameFormat("CE_Steps-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+      List<CompletableFuture<Void>> futures = new ArrayList<>(concurrentSteps.size());
+      for (int i = 0; i < concurrentSteps.size(); i++) {
+        ConcurrentComputationStep step = concurrentSteps.get(i);
+        CompletableFuture<?>[] predecessors = IntStream.range(0, i)
+          .filter(j -> conflict(concurrentSteps.get(j), step))
+          .mapToObj(futures::get)
+          .toArray(CompletableFuture[]::new);
+        futures.add(CompletableFuture.allOf(predecessors)
+          .thenRunAsync(() -> executeStep(step, loggingContext), executor));
+      }
+      awaitTermination(futures);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void executeStep(ComputationStep step, @Nullable Map<String, String> loggingContext) {
+    if (loggingContext != null) {
+      MDC.setContextMap(loggingContext);
+    }
+    try {
+      executeStep(step);
+    } finally {
+      MDC.clear();
+    }
+  }
+
+  private static boolean conflict(ConcurrentComputationStep step1, ConcurrentComputationStep step2) {
+    return !disjoint(step1.getWriteDependencies(), step2.getReadDependencies())
+      || !disjoint(step1.getWriteDependencies(), step2.getWriteDependencies())
+      || !disjoint(step1.getReadDependencies(), step2.getWriteDependencies());
+  }
+
+  private static void awaitTermination(List<CompletableFuture<Void>> futures) {
+    Throwable firstFailure = null;
+    for (CompletableFuture<Void> future : futures) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        if (firstFailure == null) {
+          firstFailure = e.getCause();
+        }
+      }
+    }
+    if (firstFailure instanceof RuntimeException) {
+      throw (RuntimeException) firstFailure;
+    }
+    if (firstFailure instanceof Error) {
+      throw (Error) firstFailure;
+    }
+    if (firstFailure != null) {
+      throw new IllegalStateException(firstFailure);
     }
   }
 
@@ -0,0 +1,207 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Tunes the size of bulk requests and the number of concurrent bulk requests of a
+ * {@link BulkIndexer} from the responses of Elasticsearch.
+ * <p>
+ * Decisions are taken every {@link #WINDOW} bulk requests:
+ * <ul>
+ *   <li>if some requests have been rejected because the cluster is saturated, then both the size and the
+ *   concurrency are decreased</li>
+ *   <li>if the average latency is greater than the target, then the size is decreased</li>
+ *   <li>if the average latency is lower than half of the target, then the size is increased and, once the
+ *   maximum size is reached, the concurrency is increased</li>
+ * </ul>
+ * As applying new settings waits for the completion of the pending bulk requests, increases are applied at most
+ * once every {@code minChangeIntervalMs}, while decreases are applied immediately to relieve the cluster.
+ * <p>
+ * The controller also accumulates the metrics logged when the bulk indexer is stopped.
+ */
+@ThreadSafe
+class AdaptiveBulkController {
+
+  static final int WINDOW = 5;
+
+  private final long minBytes;
+  private final long maxBytes;
+  private final int minConcurrency;
+  private final int maxConcurrency;
+  private final long targetLatencyMs;
+  private final long minChangeIntervalMs;
+
+  private long bulkSizeInBytes;
+  private int concurrentRequests;
+  private long appliedBulkSizeInBytes;
+  private int appliedConcurrentRequests;
+  private long appliedAt = Long.MIN_VALUE;
+
+  // current window
+  private int windowBulks = 0;
+  private long windowLatencyMs = 0L;
+  private long windowRejections = 0L;
+
+  // totals
+  private long bulks = 0L;
+  private long items = 0L;
+  private long bytes = 0L;
+  private long rejections = 0L;
+  private long latencyMs = 0L;
+
+  AdaptiveBulkController(long minBytes, long maxBytes, long initialBytes, int minConcurrency, int maxConcurrency, int initialConcurrency,
+    long targetLatencyMs, long minChangeIntervalMs) {
+    this.minBytes = minBytes;
+    this.maxBytes = maxBytes;
+    this.minConcurrency = minConcurrency;
+    this.maxConcurrency = maxConcurrency;
+    this.targetLatencyMs = targetLatencyMs;
+    this.minChangeIntervalMs = minChangeIntervalMs;
+    this.bulkSizeInBytes = Math.min(maxBytes, Math.max(minBytes, initialBytes));
+    this.concurrentRequests = Math.min(maxConcurrency, Math.max(minConcurrency, initialConcurrency));
+    this.appliedBulkSizeInBytes = bulkSizeInBytes;
+    this.appliedConcurrentRequests = concurrentRequests;
+  }
+
+  synchronized long getBulkSizeInBytes() {
+    return bulkSizeInBytes;
+  }
+
+  synchronized int getConcurrentRequests() {
+    return concurrentRequests;
+  }
+
+  /**
+   * Size as of the last call to {@link #pollChange(long)} which returned {@code true}, or initial size
+   */
+  synchronized long getAppliedBulkSizeInBytes() {
+    return appliedBulkSizeInBytes;
+  }
+
+  /**
+   * Concurrency as of the last call to {@link #pollChange(long)} which returned {@code true}, or initial concurrency
+   */
+  synchronized int getAppliedConcurrentRequests() {
+    return appliedConcurrentRequests;
+  }
+
+  /**
+   * Returns {@code true} if the size or the concurrency differ from the ones applied by the last call which returned
+   * {@code true}, and if they must be applied now. The current values are then considered as applied.
+   */
+  synchronized boolean pollChange(long nowMs) {
+    if (bulkSizeInBytes == appliedBulkSizeInBytes && concurrentRequests == appliedConcurrentRequests) {
+      return false;
+    }
+    boolean decrease = bulkSizeInBytes < appliedBulkSizeInBytes || concurrentRequests < appliedConcurrentRequests;
+    if (!decrease && nowMs < appliedAt + minChangeIntervalMs) {
+      return false;
+    }
+    appliedBulkSizeInBytes = bulkSizeInBytes;
+    appliedConcurrentRequests = concurrentRequests;
+    appliedAt = nowMs;
+    return true;
+  }
+
+  /**
+   * @param rejectedItems number of items rejected because the cluster is saturated
+   */
+  synchronized void onBulkResponse(long durationMs, int nbItems, long nbBytes, int rejectedItems) {
+    bulks++;
+    items += nbItems;
+    bytes += nbBytes;
+    rejections += rejectedItems;
+    latencyMs += durationMs;
+
+    windowBulks++;
+    windowLatencyMs += durationMs;
+    windowRejections += rejectedItems;
+    if (windowRejections > 0L) {
+      // do not wait for the end of window to slow down
+      slowDown();
+    } else if (windowBulks >= WINDOW) {
+      adjust(windowLatencyMs / windowBulks);
+    }
+  }
+
+  /**
+   * Whole bulk request rejected because the cluster is saturated.
+   */
+  synchronized void onBulkRejected() {
+    bulks++;
+    rejections++;
+    slowDown();
+  }
+
+  private void adjust(long averageLatencyMs) {
+    if (averageLatencyMs > targetLatencyMs) {
+      setBulkSizeInBytes(bulkSizeInBytes / 2);
+    } else if (averageLatencyMs < targetLatencyMs / 2) {
+      if (bulkSizeInBytes < maxBytes) {
+        setBulkSizeInBytes(bulkSizeInBytes * 2);
+      } else {
+        setConcurrentRequests(concurrentRequests + 1);
+      }
+    }
+    resetWindow();
+  }
+
+  private void slowDown() {
+    setBulkSizeInBytes(bulkSizeInBytes / 2);
+    setConcurrentRequests(concurrentRequests - 1);
+    resetWindow();
+  }
+
+  private void setBulkSizeInBytes(long l) {
+    bulkSizeInBytes = Math.min(maxBytes, Math.max(minBytes, l));
+  }
+
+  private void setConcurrentRequests(int i) {
+    concurrentRequests = Math.min(maxConcurrency, Math.max(minConcurrency, i));
+  }
+
+  private void resetWindow() {
+    windowBulks = 0;
+    windowLatencyMs = 0L;
+    windowRejections = 0L;
+  }
+
+  synchronized long getBulks() {
+    return bulks;
+  }
+
+  synchronized long getItems() {
+    return items;
+  }
+
+  synchronized long getBytes() {
+    return bytes;
+  }
+
+  synchronized long getRejections() {
+    return rejections;
+  }
+
+  synchronized long getLatencyMs() {
+    return latencyMs;
+  }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.DocWriteRequest;
@@ -44,6 +45,8 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -51,84 +54,157 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than a threshold, initially 1Mb</li>
+ *   <li>the threshold and the number of concurrent bulk requests are adapted to the latency of Elasticsearch
+ *   and to the rejections of requests when the cluster is saturated, see {@link AdaptiveBulkController}</li>
+ *   <li>producers are blocked while the cluster is saturated, instead of failing</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  * </ul>
  */
 public class BulkIndexer {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
-  private static final ByteSizeValue FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB);
+  private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).getBytes();
+  private static final long MIN_FLUSH_BYTE_SIZE = new ByteSizeValue(256, ByteSizeUnit.KB).getBytes();
+  private static final long MAX_FLUSH_BYTE_SIZE = new ByteSizeValue(16, ByteSizeUnit.MB).getBytes();
+  private static final long TARGET_BULK_LATENCY_MS = 2_000L;
+  /**
+   * Minimum interval between two increases of the size or of the concurrency of bulk requests, as applying them
+   * waits for the completion of the pending requests
+   */
+  private static final long MIN_CONTROLLER_CHANGE_INTERVAL_MS = 10_000L;
+  /**
+   * Rejected requests are retried 11 times, with delays growing exponentially from 100ms to about 30s, which
+   * is about 55s in total, before being considered as failures.
+   */
+  private static final BackoffPolicy BACKOFF_POLICY = BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(100), 11);
   private static final int FLUSH_ACTIONS = -1;
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final int DEFAULT_NUMBER_OF_SHARDS = 5;
 
   private final EsClient client;
   private final IndexType indexType;
-  private final BulkProcessor bulkProcessor;
   private final IndexingResult result = new IndexingResult();
   private final IndexingListener indexingListener;
   private final SizeHandler sizeHandler;
+  private final AdaptiveBulkController controller;
+  private BulkProcessor bulkProcessor;
+  private long startedAt;
 
   public BulkIndexer(EsClient client, IndexType indexType, Size size) {
     this(client, indexType, size, IndexingListener.FAIL_ON_ERROR);
   }
 
   public BulkIndexer(EsClient client, IndexType indexType, Size size, IndexingListener indexingListener) {
+    this(client, indexType, size.createHandler(Runtime2.INSTANCE), indexingListener);
+  }
+
+  /**
+   * Large indexing, as {@link Size#LARGE}, with temporary settings of the index shared with the other bulk indexers
+   * of {@code sharedSettings} running in parallel.
+   */
+  public BulkIndexer(EsClient client, IndexType indexType, SharedIndexSettings sharedSettings, IndexingListener indexingListener) {
+    this(client, indexType, new LargeSizeHandler(Runtime2.INSTANCE, sharedSettings), indexingListener);
+  }
+
+  private BulkIndexer(EsClient client, IndexType indexType, SizeHandler sizeHandler, IndexingListener indexingListener) {
     this.client = client;
     this.indexType = indexType;
-    this.sizeHandler = size.createHandler(Runtime2.INSTANCE);
+    this.sizeHandler = sizeHandler;
     this.indexingListener = indexingListener;
-    BulkProcessorListener bulkProcessorListener = new BulkProcessorListener();
-    this.bulkProcessor = BulkProcessor.builder(client.nativeClient(), bulkProcessorListener)
-      .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
-      .setBulkSize(FLUSH_BYTE_SIZE)
+    this.controller = new AdaptiveBulkController(MIN_FLUSH_BYTE_SIZE, MAX_FLUSH_BYTE_SIZE, FLUSH_BYTE_SIZE,
+      0, sizeHandler.getMaxConcurrentRequests(), sizeHandler.getConcurrentRequests(), TARGET_BULK_LATENCY_MS,
+      MIN_CONTROLLER_CHANGE_INTERVAL_MS);
+    this.bulkProcessor = buildBulkProcessor();
+  }
+
+  /**
+   * Each bulk processor has its own listener, as execution ids are only unique per bulk processor
+   */
+  private BulkProcessor buildBulkProcessor() {
+    return BulkProcessor.builder(client.nativeClient(), new BulkProcessorListener())
+      .setBackoffPolicy(BACKOFF_POLICY)
+      .setBulkSize(new ByteSizeValue(controller.getAppliedBulkSizeInBytes()))
       .setBulkActions(FLUSH_ACTIONS)
-      .setConcurrentRequests(sizeHandler.getConcurrentRequests())
+      .setConcurrentRequests(controller.getAppliedConcurrentRequests())
       .build();
   }
 
+  /**
+   * Applies the new settings decided by {@link AdaptiveBulkController}. The pending bulk requests
+   * are sent and the producer waits for their completion, which also slows it down when
+   * the cluster is saturated.
+   */
+  private void applyController() {
+    if (controller.pollChange(System.currentTimeMillis())) {
+      if (!awaitClose()) {
+        LOGGER.warn("Bulk requests of index [{}] still being executed after 1 minute", indexType.getIndex());
+      }
+      LOGGER.debug("Bulk requests of index [{}] are now limited to {} bytes and {} concurrent requests",
+        indexType.getIndex(), controller.getAppliedBulkSizeInBytes(), controller.getAppliedConcurrentRequests());
+      bulkProcessor = buildBulkProcessor();
+    }
+  }
+
+  /**
+   * @return {@code false} if some bulk requests are still being executed after 1 minute
+   */
+  private boolean awaitClose() {
+    try {
+      return bulkProcessor.awaitClose(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for Elasticsearch bulk requests", e);
+    }
+  }
+
   public IndexType getIndexType() {
     return indexType;
   }
 
   public void start() {
     result.clear();
+    startedAt = System.currentTimeMillis();
     sizeHandler.beforeStart(this);
   }
 
   /**
+   * Settings of the index changed by {@link #start()} are restored even if the pending requests fail.
+   *
    * @return the number of documents successfully indexed
    */
   public IndexingResult stop() {
     try {
-      bulkProcessor.awaitClose(1, TimeUnit.MINUTES);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 1 minute", e);
+      checkState(awaitClose(), "Elasticsearch bulk requests of index [%s] still being executed after 1 minute", indexType.getIndex());
+      client.prepareRefresh(indexType.getIndex()).get();
+    } finally {
+      sizeHandler.afterStop(this);
     }
-    client.prepareRefresh(indexType.getIndex()).get();
-    sizeHandler.afterStop(this);
+    sizeHandler.logMetrics(this);
     indexingListener.onFinish(result);
     return result;
   }
 
-  public void add(IndexRequest request) {
+  public synchronized void add(IndexRequest request) {
+    applyController();
     result.incrementRequests();
     bulkProcessor.add(request);
   }
 
-  public void add(DeleteRequest request) {
+  public synchronized void add(DeleteRequest request) {
+    applyController();
     result.incrementRequests();
     bulkProcessor.add(request);
   }
 
-  public void add(DocWriteRequest request) {
+  public synchronized void add(DocWriteRequest request) {
+    applyController();
     result.incrementRequests();
     bulkProcessor.add(request);
   }
@@ -189,30 +265,56 @@ public class BulkIndexer {
     return bulk.stop();
   }
 
+  private String formatMetrics() {
+    long durationMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+    long bulks = controller.getBulks();
+    return format("Index [%s]: %d documents in %d ms (%d docs/sec, %d KB/sec), %d bulk requests (%d ms in average), %d rejections",
+      indexType.getIndex(), controller.getItems(), durationMs,
+      1000L * controller.getItems() / durationMs, 1000L * controller.getBytes() / 1024L / durationMs,
+      bulks, bulks == 0L ? 0L : (controller.getLatencyMs() / bulks), controller.getRejections());
+  }
+
   private final class BulkProcessorListener implements Listener {
+    // execution ids are unique per BulkProcessor, see buildBulkProcessor()
+    private final Map<Long, Long> startDatesByExecutionId = new ConcurrentHashMap<>();
+
     @Override
     public void beforeBulk(long executionId, BulkRequest request) {
-      // no action required
+      startDatesByExecutionId.put(executionId, System.currentTimeMillis());
     }
 
     @Override
     public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
       List<DocId> successDocIds = new ArrayList<>();
+      int rejected = 0;
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
+          if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+            rejected++;
+          }
           LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
         } else {
           result.incrementSuccess();
           successDocIds.add(new DocId(item.getIndex(), item.getType(), item.getId()));
         }
       }
+      controller.onBulkResponse(duration(executionId), request.numberOfActions(), request.estimatedSizeInBytes(), rejected);
       indexingListener.onSuccess(successDocIds);
     }
 
     @Override
     public void afterBulk(long executionId, BulkRequest req, Throwable e) {
+      startDatesByExecutionId.remove(executionId);
+      if (e instanceof EsRejectedExecutionException) {
+        controller.onBulkRejected();
+      }
       LOGGER.error("Fail to execute bulk index request: " + req, e);
     }
+
+    private long duration(long executionId) {
+      Long startDate = startDatesByExecutionId.remove(executionId);
+      return startDate == null ? 0L : (System.currentTimeMillis() - startDate);
+    }
   }
 
   public enum Size {
@@ -232,7 +334,7 @@ public class BulkIndexer {
     LARGE {
       @Override
       SizeHandler createHandler(Runtime2 runtime2) {
-        return new LargeSizeHandler(runtime2);
+        return new LargeSizeHandler(runtime2, new SharedIndexSettings());
       }
     };
 
@@ -257,6 +359,19 @@ public class BulkIndexer {
       return 0;
     }
 
+    /**
+     * Upper bound of {@link #getConcurrentRequests()} when adapted to the responses of Elasticsearch
+     */
+    int getMaxConcurrentRequests() {
+      return getConcurrentRequests();
+    }
+
+    void logMetrics(BulkIndexer bulkIndexer) {
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug(bulkIndexer.formatMetrics());
+      }
+    }
+
     void beforeStart(BulkIndexer bulkIndexer) {
       // nothing to do, to be overridden if needed
     }
@@ -266,29 +381,40 @@ public class BulkIndexer {
     }
   }
 
-  static class LargeSizeHandler extends SizeHandler {
-
-    private final Map<String, Object> initialSettings = new HashMap<>();
-    private final Runtime2 runtime2;
-    private ProgressLogger progress;
-
-    LargeSizeHandler(Runtime2 runtime2) {
-      this.runtime2 = runtime2;
+  /**
+   * Temporary settings of an index shared by bulk indexers of size {@link Size#LARGE} which run in parallel,
+   * for example to index issues at startup. Temporary settings are applied when the first one starts and the
+   * initial settings are restored when the last one stops. An instance must not be shared by different runs,
+   * so that the failure of a run can not leave the settings of the index changed for the following ones.
+   */
+  public static final class SharedIndexSettings {
+    // guarded by this
+    private int running = 0;
+    private Map<String, Object> initialSettings = new HashMap<>();
+
+    synchronized void acquire(BulkIndexer bulkIndexer) {
+      if (running == 0) {
+        initialSettings = applyTemporarySettings(bulkIndexer);
+      }
+      running++;
     }
 
-    @Override
-    int getConcurrentRequests() {
-      // see SONAR-8075
-      int cores = runtime2.getCores();
-      // FIXME do not use DEFAULT_NUMBER_OF_SHARDS
-      return Math.max(1, cores / DEFAULT_NUMBER_OF_SHARDS) - 1;
+    synchronized void release(BulkIndexer bulkIndexer) {
+      running--;
+      if (running == 0) {
+        // optimize lucene segments and revert index settings
+        // Optimization must be done before re-applying replicas:
+        // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
+        try {
+          bulkIndexer.client.prepareForceMerge(bulkIndexer.indexType.getIndex()).get();
+        } finally {
+          updateSettings(bulkIndexer, initialSettings);
+        }
+      }
     }
 
-    @Override
-    void beforeStart(BulkIndexer bulkIndexer) {
-      this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", bulkIndexer.indexType.getIndex()), bulkIndexer.result.total, LOGGER)
-        .setPluralLabel("requests");
-      this.progress.start();
+    private static Map<String, Object> applyTemporarySettings(BulkIndexer bulkIndexer) {
+      Map<String, Object> initialSettings = new HashMap<>();
       Map<String, Object> temporarySettings = new HashMap<>();
       GetSettingsResponse settingsResp = bulkIndexer.client.nativeClient().admin().indices().prepareGetSettings(bulkIndexer.indexType.getIndex()).get();
 
@@ -305,17 +431,7 @@ public class BulkIndexer {
       temporarySettings.put(REFRESH_INTERVAL_SETTING, "-1");
 
       updateSettings(bulkIndexer, temporarySettings);
-    }
-
-    @Override
-    void afterStop(BulkIndexer bulkIndexer) {
-      // optimize lucene segments and revert index settings
-      // Optimization must be done before re-applying replicas:
-      // http://www.elasticsearch.org/blog/performance-considerations-elasticsearch-indexing/
-      bulkIndexer.client.prepareForceMerge(bulkIndexer.indexType.getIndex()).get();
-
-      updateSettings(bulkIndexer, initialSettings);
-      this.progress.stop();
+      return initialSettings;
     }
 
     private static void updateSettings(BulkIndexer bulkIndexer, Map<String, Object> settings) {
@@ -324,4 +440,51 @@ public class BulkIndexer {
       req.get();
     }
   }
+
+  static class LargeSizeHandler extends SizeHandler {
+
+    private final Runtime2 runtime2;
+    private final SharedIndexSettings sharedSettings;
+    private ProgressLogger progress;
+
+    LargeSizeHandler(Runtime2 runtime2, SharedIndexSettings sharedSettings) {
+      this.runtime2 = runtime2;
+      this.sharedSettings = sharedSettings;
+    }
+
+    @Override
+    int getConcurrentRequests() {
+      // see SONAR-8075
+      int cores = runtime2.getCores();
+      // FIXME do not use DEFAULT_NUMBER_OF_SHARDS
+      return Math.max(1, cores / DEFAULT_NUMBER_OF_SHARDS) - 1;
+    }
+
+    @Override
+    int getMaxConcurrentRequests() {
+      return Math.max(1, runtime2.getCores() / 2);
+    }
+
+    @Override
+    void logMetrics(BulkIndexer bulkIndexer) {
+      LOGGER.info(bulkIndexer.formatMetrics());
+    }
+
+    @Override
+    void beforeStart(BulkIndexer bulkIndexer) {
+      this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", bulkIndexer.indexType.getIndex()), bulkIndexer.result.total, LOGGER)
+        .setPluralLabel("requests");
+      this.progress.start();
+      sharedSettings.acquire(bulkIndexer);
+    }
+
+    @Override
+    void afterStop(BulkIndexer bulkIndexer) {
+      try {
+        sharedSettings.release(bulkIndexer);
+      } finally {
+        this.progress.stop();
+      }
+    }
+  }
 }
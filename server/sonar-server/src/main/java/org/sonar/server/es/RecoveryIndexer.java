@@ -21,15 +21,24 @@
 package org.sonar.server.es;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang.math.RandomUtils;
 import org.sonar.api.Startable;
 import org.sonar.api.config.Configuration;
@@ -37,13 +46,27 @@ import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
-import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.es.EsQueueDto;
 
 import static java.lang.String.format;
 
+/**
+ * Periodically re-indexes the documents of table es_queue that failed to be indexed
+ * synchronously.
+ * <p>
+ * Each index type is recovered by its own task, so that a large backlog of a type
+ * (for example issues after an outage of Elasticsearch) does not delay the other
+ * types. Up to {@code sonar.search.recovery.parallelism} types are recovered
+ * simultaneously. Most recent items are processed first. The size of batches is
+ * adapted to the time spent by the indexer to process the previous batch, between
+ * {@code sonar.search.recovery.minLoopLimit} and {@code sonar.search.recovery.loopLimit}.
+ * <p>
+ * Items referencing the same document are coalesced: a document is indexed once per batch
+ * and the older items of a document already indexed during the run are deleted without
+ * being indexed again.
+ */
 public class RecoveryIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(RecoveryIndexer.class);
@@ -52,22 +75,34 @@ public class RecoveryIndexer implements Startable {
   private static final String PROPERTY_DELAY = "sonar.search.recovery.delayInMs";
   private static final String PROPERTY_MIN_AGE = "sonar.search.recovery.minAgeInMs";
   private static final String PROPERTY_LOOP_LIMIT = "sonar.search.recovery.loopLimit";
+  private static final String PROPERTY_MIN_LOOP_LIMIT = "sonar.search.recovery.minLoopLimit";
+  private static final String PROPERTY_TARGET_LOOP_DURATION = "sonar.search.recovery.targetLoopDurationInMs";
+  private static final String PROPERTY_PARALLELISM = "sonar.search.recovery.parallelism";
   private static final long DEFAULT_DELAY_IN_MS = 5L * 60 * 1000;
   private static final long DEFAULT_MIN_AGE_IN_MS = 5L * 60 * 1000;
   private static final int DEFAULT_LOOP_LIMIT = 10_000;
+  private static final int DEFAULT_MIN_LOOP_LIMIT = 100;
+  private static final long DEFAULT_TARGET_LOOP_DURATION_IN_MS = 10_000L;
+  private static final int DEFAULT_PARALLELISM = 1;
   private static final double CIRCUIT_BREAKER_IN_PERCENT = 0.7;
+  private static final int MAX_RECOVERED_DOCS_PER_RUN = 100_000;
 
   private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1,
     new ThreadFactoryBuilder()
       .setPriority(Thread.MIN_PRIORITY)
       .setNameFormat("RecoveryIndexer-%d")
       .build());
+  private final ExecutorService workers;
   private final System2 system2;
   private final Configuration config;
   private final DbClient dbClient;
   private final Map<IndexType, ResilientIndexer> indexersByType;
+  private final Map<IndexType, Long> loopLimitsByType = new ConcurrentHashMap<>();
+  private final AtomicLong coalescedItems = new AtomicLong();
   private final long minAgeInMs;
   private final long loopLimit;
+  private final long minLoopLimit;
+  private final long targetLoopDurationInMs;
 
   public RecoveryIndexer(System2 system2, Configuration config, DbClient dbClient, ResilientIndexer... indexers) {
     this.system2 = system2;
@@ -77,6 +112,15 @@ public class RecoveryIndexer implements Startable {
     Arrays.stream(indexers).forEach(i -> i.getIndexTypes().forEach(indexType -> indexersByType.put(indexType, i)));
     this.minAgeInMs = getSetting(PROPERTY_MIN_AGE, DEFAULT_MIN_AGE_IN_MS);
     this.loopLimit = getSetting(PROPERTY_LOOP_LIMIT, DEFAULT_LOOP_LIMIT);
+    this.minLoopLimit = Math.max(1L, Math.min(loopLimit, getSetting(PROPERTY_MIN_LOOP_LIMIT, DEFAULT_MIN_LOOP_LIMIT)));
+    this.targetLoopDurationInMs = getSetting(PROPERTY_TARGET_LOOP_DURATION, DEFAULT_TARGET_LOOP_DURATION_IN_MS);
+    int parallelism = (int) Math.max(1L, getSetting(PROPERTY_PARALLELISM, DEFAULT_PARALLELISM));
+    this.workers = Executors.newFixedThreadPool(parallelism,
+      new ThreadFactoryBuilder()
+        .setPriority(Thread.MIN_PRIORITY)
+        .setNameFormat("RecoveryIndexer-worker-%d")
+        .setDaemon(true)
+        .build());
   }
 
   @Override
@@ -98,60 +142,182 @@ public class RecoveryIndexer implements Startable {
   public void stop() {
     try {
       executorService.shutdown();
+      workers.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      workers.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       LOGGER.error(LOG_PREFIX + "Unable to stop recovery indexer in timely fashion", e);
       executorService.shutdownNow();
+      workers.shutdownNow();
       Thread.currentThread().interrupt();
     }
   }
 
+  /**
+   * Number of documents waiting in table es_queue, whatever their age.
+   */
+  public long getBacklogSize() {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.esQueueDao().countAll(dbSession);
+    }
+  }
+
+  /**
+   * Number of items of table es_queue that did not require to index documents
+   * because they were redundant with other items, since startup.
+   */
+  public long getCoalescedItems() {
+    return coalescedItems.get();
+  }
+
   @VisibleForTesting
   void recover() {
-    try (DbSession dbSession = dbClient.openSession(false)) {
+    try {
       Profiler profiler = Profiler.create(LOGGER).start();
+      long coalescedBefore = coalescedItems.get();
       long beforeDate = system2.now() - minAgeInMs;
       IndexingResult result = new IndexingResult();
 
-      Collection<EsQueueDto> items = dbClient.esQueueDao().selectForRecovery(dbSession, beforeDate, loopLimit);
-      while (!items.isEmpty()) {
-        IndexingResult loopResult = new IndexingResult();
-
-        groupItemsByType(items).asMap().forEach((type, typeItems) -> loopResult.add(doIndex(dbSession, type, typeItems)));
-        result.add(loopResult);
-
-        if (loopResult.getSuccessRatio() <= CIRCUIT_BREAKER_IN_PERCENT) {
-          LOGGER.error(LOG_PREFIX + "too many failures [{}/{} documents], waiting for next run", loopResult.getFailures(), loopResult.getTotal());
-          break;
-        }
+      List<String> docTypes;
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        docTypes = dbClient.esQueueDao().selectDocTypesForRecovery(dbSession, beforeDate);
+      }
 
-        if (loopResult.getTotal() == 0L) {
-          break;
+      Map<IndexType, Future<IndexingResult>> futures = new HashMap<>();
+      for (String docType : docTypes) {
+        IndexType type = IndexType.parse(docType);
+        ResilientIndexer indexer = indexersByType.get(type);
+        if (indexer == null) {
+          logUnsupportedType(docType, beforeDate);
+        } else {
+          futures.put(type, workers.submit(() -> recover(indexer, type, beforeDate)));
         }
-
-        items = dbClient.esQueueDao().selectForRecovery(dbSession, beforeDate, loopLimit);
       }
+      for (Map.Entry<IndexType, Future<IndexingResult>> future : futures.entrySet()) {
+        waitFor(future.getKey(), future.getValue()).ifPresent(result::add);
+      }
+
       if (result.getTotal() > 0L) {
         profiler.stopInfo(LOG_PREFIX + format("%d documents processed [%d failures]", result.getTotal(), result.getFailures()));
       }
+      long coalesced = coalescedItems.get() - coalescedBefore;
+      if (coalesced > 0L) {
+        LOGGER.info(LOG_PREFIX + "{} redundant items coalesced", coalesced);
+      }
     } catch (Throwable t) {
       LOGGER.error(LOG_PREFIX + "fail to recover documents", t);
     }
   }
 
-  private IndexingResult doIndex(DbSession dbSession, IndexType type, Collection<EsQueueDto> typeItems) {
-    LOGGER.trace(LOG_PREFIX + "processing {} {}", typeItems.size(), type);
+  private IndexingResult recover(ResilientIndexer indexer, IndexType type, long beforeDate) {
+    IndexingResult result = new IndexingResult();
+    // Documents successfully indexed during this run. Their remaining items are older than
+    // beforeDate, so older than the data read from db when the documents were indexed.
+    Set<String> recoveredDocs = new HashSet<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      long limit = loopLimitsByType.getOrDefault(type, loopLimit);
+      Collection<EsQueueDto> items = dbClient.esQueueDao().selectForRecovery(dbSession, type.format(), beforeDate, limit);
+      while (!items.isEmpty()) {
+        Batch batch = coalesce(dbSession, type, items, recoveredDocs);
+        if (!batch.itemsToIndex.isEmpty()) {
+          LOGGER.trace(LOG_PREFIX + "processing {} {}", batch.itemsToIndex.size(), type);
+          long startedAt = System.currentTimeMillis();
+          IndexingResult loopResult = indexer.index(dbSession, batch.itemsToIndex);
+          limit = adaptLoopLimit(limit, System.currentTimeMillis() - startedAt);
+          loopLimitsByType.put(type, limit);
+          result.add(loopResult);
+
+          if (loopResult.isSuccess()) {
+            // the documents of the duplicates have been indexed
+            deleteRedundantItems(dbSession, type, batch.duplicates);
+          }
+
+          if (loopResult.getSuccessRatio() <= CIRCUIT_BREAKER_IN_PERCENT) {
+            LOGGER.error(LOG_PREFIX + "too many failures [{}/{} documents], waiting for next run", loopResult.getFailures(), loopResult.getTotal());
+            break;
+          }
+
+          if (loopResult.getTotal() == 0L) {
+            break;
+          }
+
+          if (loopResult.isSuccess() && recoveredDocs.size() < MAX_RECOVERED_DOCS_PER_RUN) {
+            batch.itemsToIndex.forEach(item -> recoveredDocs.add(coalescingKey(item)));
+          }
+        }
+
+        items = dbClient.esQueueDao().selectForRecovery(dbSession, type.format(), beforeDate, limit);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Deletes the items of the documents already recovered during the run and keeps a single
+   * item per document, the most recent one, in the items to be indexed. The other items of
+   * these documents are deleted only once the batch is successfully indexed.
+   */
+  private Batch coalesce(DbSession dbSession, IndexType type, Collection<EsQueueDto> items, Set<String> recoveredDocs) {
+    Batch batch = new Batch(items.size());
+    List<EsQueueDto> recoveredItems = new ArrayList<>();
+    Set<String> docsToIndex = new HashSet<>();
+    for (EsQueueDto item : items) {
+      String key = coalescingKey(item);
+      if (recoveredDocs.contains(key)) {
+        recoveredItems.add(item);
+      } else if (docsToIndex.add(key)) {
+        batch.itemsToIndex.add(item);
+      } else {
+        batch.duplicates.add(item);
+      }
+    }
+    deleteRedundantItems(dbSession, type, recoveredItems);
+    return batch;
+  }
 
-    ResilientIndexer indexer = indexersByType.get(type);
-    if (indexer == null) {
-      LOGGER.error(LOG_PREFIX + "ignore {} items with unsupported type {}", typeItems.size(), type);
-      return new IndexingResult();
+  private void deleteRedundantItems(DbSession dbSession, IndexType type, List<EsQueueDto> items) {
+    if (items.isEmpty()) {
+      return;
     }
-    return indexer.index(dbSession, typeItems);
+    dbClient.esQueueDao().delete(dbSession, items);
+    dbSession.commit();
+    LOGGER.trace(LOG_PREFIX + "coalescing {} redundant items {}", items.size(), type);
+    coalescedItems.addAndGet(items.size());
+  }
+
+  private static String coalescingKey(EsQueueDto item) {
+    return item.getDocIdType() + ':' + item.getDocId();
   }
 
-  private static ListMultimap<IndexType, EsQueueDto> groupItemsByType(Collection<EsQueueDto> items) {
-    return items.stream().collect(MoreCollectors.index(i -> IndexType.parse(i.getDocType())));
+  /**
+   * Halves the size of batches when the indexer is slower than expected, for example
+   * when Elasticsearch is overloaded, and doubles it back when it is fast enough.
+   */
+  @VisibleForTesting
+  long adaptLoopLimit(long currentLimit, long durationInMs) {
+    if (durationInMs > targetLoopDurationInMs) {
+      return Math.max(minLoopLimit, currentLimit / 2);
+    }
+    if (durationInMs < targetLoopDurationInMs / 2) {
+      return Math.min(loopLimit, currentLimit * 2);
+    }
+    return currentLimit;
+  }
+
+  private void logUnsupportedType(String docType, long beforeDate) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      int count = dbClient.esQueueDao().selectForRecovery(dbSession, docType, beforeDate, loopLimit).size();
+      LOGGER.error(LOG_PREFIX + "ignore {} items with unsupported type {}", count, IndexType.parse(docType));
+    }
+  }
+
+  private static Optional<IndexingResult> waitFor(IndexType type, Future<IndexingResult> future) throws InterruptedException {
+    try {
+      return Optional.of(future.get());
+    } catch (ExecutionException e) {
+      LOGGER.error(LOG_PREFIX + "fail to recover documents " + type, e.getCause());
+      return Optional.empty();
+    }
   }
 
   private long getSetting(String key, long defaultValue) {
@@ -159,4 +325,13 @@ public class RecoveryIndexer implements Startable {
     LOGGER.debug(LOG_PREFIX + "{}={}", key, val);
     return val;
   }
+
+  private static class Batch {
+    private final List<EsQueueDto> itemsToIndex;
+    private final List<EsQueueDto> duplicates = new ArrayList<>();
+
+    private Batch(int size) {
+      this.itemsToIndex = new ArrayList<>(size);
+    }
+  }
 }
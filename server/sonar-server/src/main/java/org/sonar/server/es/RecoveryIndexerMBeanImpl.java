@@ -17,38 +17,36 @@
  * along with this program; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
  */
-package org.sonar.server.util;
+package org.sonar.server.es;
 
-import com.google.common.base.Throwables;
-import org.apache.commons.io.IOUtils;
+import org.picocontainer.Startable;
+import org.sonar.process.Jmx;
 
-import java.io.EOFException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import org.sonar.core.util.CloseableIterator;
+public class RecoveryIndexerMBeanImpl implements RecoveryIndexerMBean, Startable {
 
-public class ObjectInputStreamIterator<E> extends CloseableIterator<E> {
+  private final RecoveryIndexer recoveryIndexer;
 
-  private ObjectInputStream stream;
+  public RecoveryIndexerMBeanImpl(RecoveryIndexer recoveryIndexer) {
+    this.recoveryIndexer = recoveryIndexer;
+  }
 
-  public ObjectInputStreamIterator(InputStream stream) throws IOException {
-    this.stream = new ObjectInputStream(stream);
+  @Override
+  public void start() {
+    Jmx.register(OBJECT_NAME, this);
+  }
+
+  @Override
+  public void stop() {
+    Jmx.unregister(OBJECT_NAME);
   }
 
   @Override
-  protected E doNext() {
-    try {
-      return (E) stream.readObject();
-    } catch (EOFException e) {
-      return null;
-    } catch (Exception e) {
-      throw Throwables.propagate(e);
-    }
+  public long getBacklogSize() {
+    return recoveryIndexer.getBacklogSize();
   }
 
   @Override
-  protected void doClose() {
-    IOUtils.closeQuietly(stream);
+  public long getCoalescedItems() {
+    return recoveryIndexer.getCoalescedItems();
   }
 }
@@ -23,12 +23,21 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -49,6 +58,7 @@ import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
 
+import static java.lang.String.format;
 import static java.util.Collections.emptyList;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
@@ -57,6 +67,18 @@ import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE
 
 public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
 
+  /**
+   * Number of threads used to index all the issues at startup. Each thread reads the issues of
+   * a range of projects at a time and sends them through its own {@link BulkIndexer}.
+   */
+  public static final String STARTUP_INDEXING_PARALLELISM_PROPERTY = "sonar.search.issues.startupIndexing.parallelism";
+  private static final int DEFAULT_STARTUP_INDEXING_PARALLELISM = 1;
+  /**
+   * Projects are split in more ranges than threads, so that threads which
+   * index small projects are not idle while others index large ones.
+   */
+  private static final int RANGES_PER_THREAD = 8;
+
   /**
    * Indicates that es_queue.doc_id references an issue. Only this issue must be indexed.
    */
@@ -72,11 +94,22 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
   private final EsClient esClient;
   private final DbClient dbClient;
   private final IssueIteratorFactory issueIteratorFactory;
+  private final int startupIndexingParallelism;
 
   public IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory) {
+    this(esClient, dbClient, issueIteratorFactory, DEFAULT_STARTUP_INDEXING_PARALLELISM);
+  }
+
+  public IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory, Configuration config) {
+    this(esClient, dbClient, issueIteratorFactory,
+      config.getInt(STARTUP_INDEXING_PARALLELISM_PROPERTY).orElse(DEFAULT_STARTUP_INDEXING_PARALLELISM));
+  }
+
+  private IssueIndexer(EsClient esClient, DbClient dbClient, IssueIteratorFactory issueIteratorFactory, int startupIndexingParallelism) {
     this.esClient = esClient;
     this.dbClient = dbClient;
     this.issueIteratorFactory = issueIteratorFactory;
+    this.startupIndexingParallelism = Math.max(1, startupIndexingParallelism);
   }
 
   @Override
@@ -91,11 +124,80 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
 
   @Override
   public void indexOnStartup(Set<IndexType> uninitializedIndexTypes) {
+    if (startupIndexingParallelism > 1) {
+      indexOnStartupInParallel();
+      return;
+    }
     try (IssueIterator issues = issueIteratorFactory.createForAll()) {
       doIndex(issues, Size.LARGE, IndexingListener.FAIL_ON_ERROR);
     }
   }
 
+  private void indexOnStartupInParallel() {
+    List<ProjectUuidRange> ranges;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      ranges = ProjectUuidRange.partition(dbClient.componentDao().selectAllProjectUuids(dbSession), startupIndexingParallelism * RANGES_PER_THREAD);
+    }
+    Queue<ProjectUuidRange> pendingRanges = new ConcurrentLinkedQueue<>(ranges);
+    int nbThreads = Math.min(startupIndexingParallelism, ranges.size());
+    LOGGER.info("Index issues of {} ranges of projects with {} threads", ranges.size(), nbThreads);
+
+    long startedAt = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads,
+      new ThreadFactoryBuilder()
+        .setNameFormat("IssueIndexer-%d")
+        .setDaemon(true)
+        .build());
+    IndexingResult result = new IndexingResult();
+    // bulk indexers running in parallel share the temporary settings of the index
+    BulkIndexer.SharedIndexSettings sharedSettings = new BulkIndexer.SharedIndexSettings();
+    try {
+      List<Future<IndexingResult>> futures = new ArrayList<>(nbThreads);
+      for (int i = 0; i < nbThreads; i++) {
+        futures.add(executor.submit(() -> indexRanges(pendingRanges, ranges.size(), sharedSettings)));
+      }
+      for (Future<IndexingResult> future : futures) {
+        result.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while indexing issues", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to index issues", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long durationInMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+    LOGGER.info(format("%d issues indexed in %d ms (%d issues/sec)", result.getSuccess(), durationInMs, 1000L * result.getSuccess() / durationInMs));
+  }
+
+  private IndexingResult indexRanges(Queue<ProjectUuidRange> pendingRanges, int nbRanges, BulkIndexer.SharedIndexSettings sharedSettings) {
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX_TYPE_ISSUE, sharedSettings, IndexingListener.FAIL_ON_ERROR);
+    bulk.start();
+    try {
+      ProjectUuidRange range = pendingRanges.poll();
+      while (range != null) {
+        try (IssueIterator issues = issueIteratorFactory.createForProjectUuidRange(range)) {
+          while (issues.hasNext()) {
+            bulk.add(newIndexRequest(issues.next()));
+          }
+        }
+        LOGGER.debug("Issues of range {} of projects are sent to index, {} ranges remaining out of {}", range, pendingRanges.size(), nbRanges);
+        range = pendingRanges.poll();
+      }
+    } catch (RuntimeException e) {
+      // the temporary settings of the index must be released even if indexing fails
+      try {
+        bulk.stop();
+      } catch (RuntimeException stopFailure) {
+        e.addSuppressed(stopFailure);
+      }
+      throw e;
+    }
+    return bulk.stop();
+  }
+
   @Override
   public void indexOnAnalysis(String branchUuid) {
     try (IssueIterator issues = issueIteratorFactory.createForProject(branchUuid)) {
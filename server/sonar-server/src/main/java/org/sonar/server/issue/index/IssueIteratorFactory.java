@@ -39,6 +39,13 @@ public class IssueIteratorFactory {
     return new IssueIteratorForSingleChunk(dbClient, projectUuid, null);
   }
 
+  /**
+   * Issues of the components which column project_uuid is in the given range.
+   */
+  public IssueIterator createForProjectUuidRange(ProjectUuidRange range) {
+    return new IssueIteratorForSingleChunk(dbClient, null, null, range);
+  }
+
   public IssueIterator createForIssueKeys(Collection<String> issueKeys) {
     return new IssueIteratorForMultipleChunks(dbClient, issueKeys);
   }
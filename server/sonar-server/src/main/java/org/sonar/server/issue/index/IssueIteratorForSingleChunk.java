@@ -87,6 +87,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     "inner join projects c on c.uuid = i.component_uuid ";
 
   private static final String PROJECT_FILTER = " and c.project_uuid = ?";
+  private static final String PROJECT_RANGE_START_FILTER = " and c.project_uuid >= ?";
+  private static final String PROJECT_RANGE_END_FILTER = " and c.project_uuid < ?";
   private static final String ISSUE_KEY_FILTER_PREFIX = " and i.kee in (";
   private static final String ISSUE_KEY_FILTER_SUFFIX = ")";
 
@@ -101,14 +103,23 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   @CheckForNull
   private final Collection<String> issueKeys;
 
+  @CheckForNull
+  private final ProjectUuidRange projectUuidRange;
+
   private final PreparedStatement stmt;
   private final ResultSetIterator<IssueDoc> iterator;
 
   IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys) {
+    this(dbClient, projectUuid, issueKeys, null);
+  }
+
+  IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys,
+    @Nullable ProjectUuidRange projectUuidRange) {
     checkArgument(issueKeys == null || issueKeys.size() <= DatabaseUtils.PARTITION_SIZE_FOR_ORACLE,
       "Cannot search for more than " + DatabaseUtils.PARTITION_SIZE_FOR_ORACLE + " issue keys at once. Please provide the keys in smaller chunks.");
     this.projectUuid = projectUuid;
     this.issueKeys = issueKeys;
+    this.projectUuidRange = projectUuidRange;
     this.session = dbClient.openSession(false);
 
     try {
@@ -144,6 +155,10 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private String createSql() {
     String sql = SQL_ALL;
     sql += projectUuid == null ? "" : PROJECT_FILTER;
+    if (projectUuidRange != null) {
+      sql += projectUuidRange.getStartInclusive() == null ? "" : PROJECT_RANGE_START_FILTER;
+      sql += projectUuidRange.getEndExclusive() == null ? "" : PROJECT_RANGE_END_FILTER;
+    }
     if (issueKeys != null && !issueKeys.isEmpty()) {
       sql += ISSUE_KEY_FILTER_PREFIX;
       sql += IntStream.range(0, issueKeys.size()).mapToObj(i -> "?").collect(Collectors.joining(","));
@@ -158,6 +173,9 @@ class IssueIteratorForSingleChunk implements IssueIterator {
       stmt.setString(index, projectUuid);
       index++;
     }
+    if (projectUuidRange != null) {
+      index = setRangeParameters(stmt, index, projectUuidRange);
+    }
     if (issueKeys != null) {
       for (String key : issueKeys) {
         stmt.setString(index, key);
@@ -166,6 +184,19 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     }
   }
 
+  private static int setRangeParameters(PreparedStatement stmt, int startIndex, ProjectUuidRange range) throws SQLException {
+    int index = startIndex;
+    if (range.getStartInclusive() != null) {
+      stmt.setString(index, range.getStartInclusive());
+      index++;
+    }
+    if (range.getEndExclusive() != null) {
+      stmt.setString(index, range.getEndExclusive());
+      index++;
+    }
+    return index;
+  }
+
   @Override
   public void close() {
     try {
@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.singletonList;
+
+/**
+ * Range of values of column projects.project_uuid. Bounds are optional, so that
+ * the first and the last ranges of a partition cover all the possible values.
+ */
+@Immutable
+public class ProjectUuidRange {
+
+  private static final ProjectUuidRange ALL = new ProjectUuidRange(null, null);
+
+  private final String startInclusive;
+  private final String endExclusive;
+
+  ProjectUuidRange(@Nullable String startInclusive, @Nullable String endExclusive) {
+    this.startInclusive = startInclusive;
+    this.endExclusive = endExclusive;
+  }
+
+  @CheckForNull
+  public String getStartInclusive() {
+    return startInclusive;
+  }
+
+  @CheckForNull
+  public String getEndExclusive() {
+    return endExclusive;
+  }
+
+  /**
+   * Splits the values into at most {@code maxRanges} contiguous ranges having the same number of
+   * values (plus or minus one). The returned ranges cover all the possible values, including
+   * the ones that are not in {@code sortedProjectUuids}.
+   *
+   * @param sortedProjectUuids distinct values sorted in ascending order
+   */
+  public static List<ProjectUuidRange> partition(List<String> sortedProjectUuids, int maxRanges) {
+    checkArgument(maxRanges > 0, "Number of ranges must be positive: %s", maxRanges);
+    int nbRanges = Math.min(maxRanges, sortedProjectUuids.size());
+    if (nbRanges <= 1) {
+      return singletonList(ALL);
+    }
+    List<ProjectUuidRange> ranges = new ArrayList<>(nbRanges);
+    String start = null;
+    for (int i = 1; i < nbRanges; i++) {
+      String end = sortedProjectUuids.get((int) ((long) i * sortedProjectUuids.size() / nbRanges));
+      ranges.add(new ProjectUuidRange(start, end));
+      start = end;
+    }
+    ranges.add(new ProjectUuidRange(start, null));
+    return ranges;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + (startInclusive == null ? "" : startInclusive) + ", " + (endExclusive == null ? "" : endExclusive) + "[";
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.cache.CacheStats;
+import org.sonar.api.server.ServerSide;
+import org.sonar.process.systeminfo.SystemInfoSection;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.source.SourceDataCache;
+
+import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
+import static org.sonar.process.systeminfo.SystemInfoUtils.setAttribute;
+
+/**
+ * Usage of the cache of source data of the web server
+ */
+@ServerSide
+public class SourceDataCacheSection implements SystemInfoSection {
+  private final SourceDataCache sourceDataCache;
+
+  public SourceDataCacheSection(SourceDataCache sourceDataCache) {
+    this.sourceDataCache = sourceDataCache;
+  }
+
+  @Override
+  public ProtobufSystemInfo.Section toProtobuf() {
+    ProtobufSystemInfo.Section.Builder protobuf = ProtobufSystemInfo.Section.newBuilder();
+    protobuf.setName("Web Source Cache");
+    CacheStats stats = sourceDataCache.getStats();
+    setAttribute(protobuf, "Enabled", sourceDataCache.isEnabled());
+    setAttribute(protobuf, "Max Size", byteCountToDisplaySize(sourceDataCache.getMaxSizeInBytes()));
+    setAttribute(protobuf, "Files", sourceDataCache.getSize());
+    setAttribute(protobuf, "Hits", stats.hitCount());
+    setAttribute(protobuf, "Misses", stats.missCount());
+    setAttribute(protobuf, "Evictions", stats.evictionCount());
+    return protobuf.build();
+  }
+}
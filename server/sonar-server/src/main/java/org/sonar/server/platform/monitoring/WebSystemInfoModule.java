@@ -51,6 +51,7 @@ public class WebSystemInfoModule {
       LoggingSection.class,
       PluginsSection.class,
       SettingsSection.class,
+      SourceDataCacheSection.class,
       StandaloneSystemSection.class,
 
       OfficialDistribution.class,
@@ -73,6 +74,7 @@ public class WebSystemInfoModule {
       NodeSystemSection.class,
       PluginsSection.class,
       SettingsSection.class,
+      SourceDataCacheSection.class,
 
       OfficialDistribution.class,
 
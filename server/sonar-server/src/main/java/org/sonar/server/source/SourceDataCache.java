@@ -0,0 +1,135 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Cache of the decoded source data of files, shared by web services which usually request the same file several
+ * times in a row. Entries are identified by the uuid of the file and the hash of its data, so that data
+ * updated by a new analysis is never returned.
+ * <p>
+ * The size of the cache is bounded by the serialized size of the data it contains, which is an approximation of
+ * its size in memory. As the cache is split in {@link #CONCURRENCY_LEVEL} segments which share its maximum size, the data
+ * of a file is not cached when it would take more than half of a segment: it would otherwise evict most of the segment,
+ * or be evicted as soon as inserted.
+ * </p>
+ */
+@ServerSide
+public class SourceDataCache {
+
+  /**
+   * Maximum size of the cache in MB. The value 0 disables the cache.
+   */
+  static final String MAX_SIZE_IN_MB_PROPERTY = "sonar.web.sourceCache.maxSizeInMb";
+  private static final long DEFAULT_MAX_SIZE_IN_MB = 50L;
+  private static final int CONCURRENCY_LEVEL = 4;
+  /**
+   * Conservative ratio between the size of decoded data and the size of its compressed form in DB
+   */
+  private static final int COMPRESSION_RATIO = 4;
+
+  private final long maxSizeInBytes;
+  private final long maxEntrySizeInBytes;
+  private final Cache<Key, DbFileSources.Data> cache;
+
+  public SourceDataCache(Configuration config) {
+    this.maxSizeInBytes = config.getLong(MAX_SIZE_IN_MB_PROPERTY).orElse(DEFAULT_MAX_SIZE_IN_MB) * 1024L * 1024L;
+    this.maxEntrySizeInBytes = maxSizeInBytes / CONCURRENCY_LEVEL / 2;
+    this.cache = CacheBuilder.newBuilder()
+      .concurrencyLevel(CONCURRENCY_LEVEL)
+      .maximumWeight(maxSizeInBytes)
+      .weigher((Key key, DbFileSources.Data data) -> data.getSerializedSize())
+      .recordStats()
+      .build();
+  }
+
+  @CheckForNull
+  public DbFileSources.Data get(String fileUuid, String dataHash) {
+    return cache.getIfPresent(new Key(fileUuid, dataHash));
+  }
+
+  /**
+   * Does nothing if the data is too big to be cached.
+   */
+  public void put(String fileUuid, String dataHash, DbFileSources.Data data) {
+    if (isEnabled() && data.getSerializedSize() <= maxEntrySizeInBytes) {
+      cache.put(new Key(fileUuid, dataHash), data);
+    }
+  }
+
+  public boolean isEnabled() {
+    return maxSizeInBytes > 0;
+  }
+
+  /**
+   * Whether the data of a file, given the size of its compressed form, is small enough to be cached. When it is not,
+   * callers should decode only the range of lines they need.
+   */
+  public boolean isCacheable(long compressedSizeInBytes) {
+    return isEnabled() && compressedSizeInBytes * COMPRESSION_RATIO <= maxEntrySizeInBytes;
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public long getSize() {
+    return cache.size();
+  }
+
+  public long getMaxSizeInBytes() {
+    return maxSizeInBytes;
+  }
+
+  private static final class Key {
+    private final String fileUuid;
+    private final String dataHash;
+
+    private Key(String fileUuid, String dataHash) {
+      this.fileUuid = fileUuid;
+      this.dataHash = dataHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return fileUuid.equals(key.fileUuid) && dataHash.equals(key.dataHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fileUuid, dataHash);
+    }
+  }
+}
@@ -33,10 +33,12 @@ public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final SourceDataCache sourceDataCache;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, SourceDataCache sourceDataCache) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.sourceDataCache = sourceDataCache;
   }
 
   /**
@@ -63,17 +65,41 @@ public class SourceService {
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
     verifyLine(from);
     checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
-    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
-    if (dto == null) {
+    Optional<DbFileSources.Data> data = loadSourceData(dbSession, fileUuid, from, toInclusive);
+    if (!data.isPresent()) {
       return Optional.empty();
     }
-    return Optional.of(dto.getSourceData().getLinesList().stream()
+    return Optional.of(data.get().getLinesList().stream()
       .filter(line -> line.hasLine() && line.getLine() >= from)
       .limit((toInclusive - from) + 1L)
       .map(function)
       .collect(MoreCollectors.toList()));
   }
 
+  /**
+   * Data of the file, from cache when possible. Data loaded from DB is fully decoded and put in cache if it is small
+   * enough to be cached, otherwise only the requested range is decoded.
+   */
+  private Optional<DbFileSources.Data> loadSourceData(DbSession dbSession, String fileUuid, int from, int toInclusive) {
+    String dataHash = dbClient.fileSourceDao().selectSourceDataHash(dbSession, fileUuid);
+    if (dataHash != null) {
+      DbFileSources.Data cachedData = sourceDataCache.get(fileUuid, dataHash);
+      if (cachedData != null) {
+        return Optional.of(cachedData);
+      }
+    }
+    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+    if (dto == null) {
+      return Optional.empty();
+    }
+    if (dto.getDataHash() == null || !sourceDataCache.isCacheable(dto.getBinaryData().length)) {
+      return Optional.of(dto.getSourceData(from, toInclusive));
+    }
+    DbFileSources.Data data = dto.getSourceData();
+    sourceDataCache.put(fileUuid, dto.getDataHash(), data);
+    return Optional.of(data);
+  }
+
   private static void verifyLine(int line) {
     checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
@@ -19,36 +19,83 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
+
+import static com.google.common.base.Preconditions.checkState;
 
 /**
- * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * Serialize and deserialize objects on disk. Supports traversal (full scan) and, when an index key is
+ * provided, traversal of the objects related to a single key.
+ * <p>
+ * Objects are encoded by a {@link DiskCacheCodec}, then prefixed by their length (varint) and grouped
+ * in LZ4-compressed blocks of about {@link #BLOCK_SIZE} bytes. Each block is stored as its raw length (int),
+ * its compressed length (int) and the compressed bytes. As appenders only write complete blocks,
+ * {@link #newAppender()} can be called multiple times.
+ * <p>
+ * When indexed, a block contains objects of a single key and the offsets of the blocks of each key
+ * are kept in memory, so that {@link #traverse(String)} reads only the related blocks.
  */
 public class DiskCache<O extends Serializable> {
 
+  static final int BLOCK_SIZE = 64 * 1024;
+  private static final int BLOCK_HEADER_SIZE = 8;
+
+  private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
   private final File file;
   private final System2 system2;
+  private final DiskCacheCodec<O> codec;
+  @Nullable
+  private final Function<O, String> indexKey;
+  private final Map<String, List<Long>> blockOffsetsByKey = new HashMap<>();
+  private long fileLength = 0L;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, new JavaSerializationCodec<>());
+  }
+
+  public DiskCache(File file, System2 system2, DiskCacheCodec<O> codec) {
+    this(file, system2, codec, null);
+  }
+
+  /**
+   * @param indexKey if not null, the function which gives the key used to index objects. See {@link #traverse(String)}.
+   */
+  public DiskCache(File file, System2 system2, DiskCacheCodec<O> codec, @Nullable Function<O, String> indexKey) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
+    this.indexKey = indexKey;
     OutputStream output = null;
     boolean threw = true;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
-      output.flush();
+      // creates or truncates the file, so that "traverse()" can be called on empty cache
+      output = new FileOutputStream(file);
       threw = false;
     } catch (IOException e) {
       throw new IllegalStateException("Fail to write into file: " + file, e);
@@ -69,23 +116,57 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      return new SequentialBlockIterator(new DataInputStream(new BufferedInputStream(FileUtils.openInputStream(file), BLOCK_SIZE)));
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
+  /**
+   * Traverses only the objects with the specified index key, in the order they have been appended.
+   *
+   * @throws IllegalStateException if the cache is not indexed
+   */
+  public CloseableIterator<O> traverse(String key) {
+    checkState(indexKey != null, "Cache is not indexed: %s", file);
+    List<Long> blockOffsets;
+    synchronized (this) {
+      blockOffsets = new ArrayList<>(blockOffsetsByKey.getOrDefault(key, Collections.emptyList()));
+    }
+    if (blockOffsets.isEmpty()) {
+      return CloseableIterator.emptyCloseableIterator();
+    }
+    try {
+      return new IndexedBlockIterator(new RandomAccessFile(file, "r"), blockOffsets.iterator());
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to traverse file: " + file, e);
+    }
+  }
+
+  /**
+   * Blocks are written in a single operation and offsets are registered at the same time, so that
+   * concurrent appenders do not corrupt the file nor the index.
+   */
+  private synchronized void writeBlock(OutputStream output, byte[] bytes, int length, @Nullable String key) throws IOException {
+    output.write(bytes, 0, length);
+    if (indexKey != null) {
+      blockOffsetsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(fileLength);
+    }
+    fileLength += length;
+  }
+
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final OutputStream output;
+    private final LZ4Compressor compressor = LZ4.fastCompressor();
+    private final BlockBuffer record = new BlockBuffer();
+    private final BlockBuffer block = new BlockBuffer();
+    private byte[] compressed = new byte[0];
+    @Nullable
+    private String blockKey = null;
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        this.output = new FileOutputStream(file, true);
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
@@ -93,17 +174,201 @@ public class DiskCache<O extends Serializable> {
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        if (indexKey != null) {
+          String key = indexKey.apply(object);
+          if (block.size() > 0 && !Objects.equals(key, blockKey)) {
+            flushBlock();
+          }
+          blockKey = key;
+        }
+        record.reset();
+        codec.encode(object, record);
+        writeVarint(block, record.size());
+        block.write(record.bytes(), 0, record.size());
+        if (block.size() >= BLOCK_SIZE) {
+          flushBlock();
+        }
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
       }
     }
 
+    private void flushBlock() throws IOException {
+      int rawLength = block.size();
+      int maxLength = BLOCK_HEADER_SIZE + compressor.maxCompressedLength(rawLength);
+      if (compressed.length < maxLength) {
+        compressed = new byte[maxLength];
+      }
+      int compressedLength = compressor.compress(block.bytes(), 0, rawLength, compressed, BLOCK_HEADER_SIZE, maxLength - BLOCK_HEADER_SIZE);
+      writeInt(compressed, 0, rawLength);
+      writeInt(compressed, 4, compressedLength);
+      writeBlock(output, compressed, BLOCK_HEADER_SIZE + compressedLength, blockKey);
+      block.reset();
+    }
+
     @Override
     public void close() {
+      try {
+        if (block.size() > 0) {
+          flushBlock();
+        }
+      } catch (IOException e) {
+        IOUtils.closeQuietly(output);
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
       system2.close(output);
     }
   }
+
+  private abstract class BlockIterator extends CloseableIterator<O> {
+    private final LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+    private byte[] compressed = new byte[0];
+    private byte[] raw = new byte[0];
+    private int rawLength = 0;
+    private int position = 0;
+
+    /**
+     * Moves to the beginning of the next block.
+     *
+     * @return false if there are no more blocks
+     */
+    abstract boolean seekNextBlock() throws IOException;
+
+    abstract DataInput input();
+
+    @Override
+    protected O doNext() {
+      try {
+        if (position >= rawLength && !readBlock()) {
+          return null;
+        }
+        int length = readVarint();
+        O object = codec.decode(raw, position, length);
+        position += length;
+        return object;
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    private boolean readBlock() throws IOException {
+      if (!seekNextBlock()) {
+        return false;
+      }
+      DataInput input = input();
+      int nextRawLength = input.readInt();
+      int compressedLength = input.readInt();
+      if (compressed.length < compressedLength) {
+        compressed = new byte[compressedLength];
+      }
+      if (raw.length < nextRawLength) {
+        raw = new byte[nextRawLength];
+      }
+      input.readFully(compressed, 0, compressedLength);
+      decompressor.decompress(compressed, 0, raw, 0, nextRawLength);
+      rawLength = nextRawLength;
+      position = 0;
+      return true;
+    }
+
+    private int readVarint() {
+      int result = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = raw[position];
+        position++;
+        result |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return result;
+    }
+  }
+
+  private class SequentialBlockIterator extends BlockIterator {
+    private final DataInputStream input;
+
+    private SequentialBlockIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    boolean seekNextBlock() throws IOException {
+      input.mark(1);
+      if (input.read() < 0) {
+        return false;
+      }
+      input.reset();
+      return true;
+    }
+
+    @Override
+    DataInput input() {
+      return input;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private class IndexedBlockIterator extends BlockIterator {
+    private final RandomAccessFile input;
+    private final Iterator<Long> blockOffsets;
+
+    private IndexedBlockIterator(RandomAccessFile input, Iterator<Long> blockOffsets) {
+      this.input = input;
+      this.blockOffsets = blockOffsets;
+    }
+
+    @Override
+    boolean seekNextBlock() throws IOException {
+      if (!blockOffsets.hasNext()) {
+        return false;
+      }
+      input.seek(blockOffsets.next());
+      return true;
+    }
+
+    @Override
+    DataInput input() {
+      return input;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static void writeInt(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) (value >>> 24);
+    bytes[offset + 1] = (byte) (value >>> 16);
+    bytes[offset + 2] = (byte) (value >>> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+
+  private static void writeVarint(OutputStream output, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      output.write((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    output.write(remaining);
+  }
+
+  /**
+   * Gives access to the internal array, so that blocks are compressed without copy.
+   */
+  private static class BlockBuffer extends ByteArrayOutputStream {
+    private BlockBuffer() {
+      super(BLOCK_SIZE);
+    }
+
+    byte[] bytes() {
+      return buf;
+    }
+  }
 }
@@ -0,0 +1,65 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.ce.queue;
+
+import java.util.Map;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.process.cluster.hz.HazelcastMember;
+
+import static java.util.Arrays.asList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.process.cluster.hz.HazelcastObjects.CE_TASK_SUBMITS;
+
+public class ClusterCeTaskSubmitListenerTest {
+  private HazelcastMember hazelcastMember = mock(HazelcastMember.class);
+  private Map<String, Integer> submits = mock(Map.class);
+  private ClusterCeTaskSubmitListener underTest = new ClusterCeTaskSubmitListener(hazelcastMember);
+
+  @Test
+  public void onSubmit_publishes_number_of_submitted_tasks_to_the_cluster() {
+    when(hazelcastMember.<String, Integer>getReplicatedMap(CE_TASK_SUBMITS)).thenReturn(submits);
+
+    underTest.onSubmit(asList(newTask("TASK_1"), newTask("TASK_2")));
+
+    InOrder inOrder = inOrder(submits);
+    inOrder.verify(submits).put("TASK_1", 2);
+    inOrder.verify(submits).remove("TASK_1");
+  }
+
+  @Test
+  public void onSubmit_does_not_fail_if_cluster_can_not_be_notified() {
+    when(hazelcastMember.<String, Integer>getReplicatedMap(CE_TASK_SUBMITS)).thenReturn(submits);
+    doThrow(new IllegalStateException("faking a Hazelcast failure")).when(submits).put("TASK_1", 1);
+
+    underTest.onSubmit(asList(newTask("TASK_1")));
+  }
+
+  private static CeTask newTask(String uuid) {
+    return new CeTask.Builder()
+      .setOrganizationUuid("ORG")
+      .setUuid(uuid)
+      .setType("TYPE")
+      .build();
+  }
+}
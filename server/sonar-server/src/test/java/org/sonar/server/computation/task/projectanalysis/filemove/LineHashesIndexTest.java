@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineHashesIndexTest {
+
+  private static final int FILES = 2_000;
+  private static final int LINES = 100;
+
+  private Random random = new Random(42);
+  private LineHashesIndex underTest = new LineHashesIndex();
+
+  @Test
+  public void no_candidate_when_index_is_empty() {
+    assertThat(underTest.candidates(asList("a", "b"), 10)).isEmpty();
+  }
+
+  @Test
+  public void files_without_lines_are_never_candidates() {
+    underTest.add(emptyList());
+    underTest.add(asList("", ""));
+
+    assertThat(underTest.candidates(emptyList(), 10)).isEmpty();
+    assertThat(underTest.candidates(asList("", ""), 10)).isEmpty();
+  }
+
+  @Test
+  public void identical_file_is_the_best_candidate() {
+    underTest.add(asList("a", "b", "c"));
+    underTest.add(asList("d", "e", "f"));
+
+    assertThat(underTest.candidates(asList("d", "e", "f"), 10)).containsExactly(1);
+  }
+
+  @Test
+  public void find_moved_files_among_many_synthetic_renames() {
+    List<List<String>> originalFiles = new ArrayList<>();
+    for (int i = 0; i < FILES; i++) {
+      List<String> file = randomFile();
+      originalFiles.add(file);
+      underTest.add(file);
+    }
+
+    for (int i = 0; i < FILES; i++) {
+      // 10% of lines are modified: such files always get a score of at least 90
+      List<String> movedFile = new ArrayList<>(originalFiles.get(i));
+      for (int line = 0; line < LINES / 10; line++) {
+        movedFile.set(random.nextInt(LINES), randomLine());
+      }
+
+      int[] candidates = underTest.candidates(movedFile, FileMoveDetectionStep.MAX_CANDIDATES_PER_FILE);
+
+      assertThat(candidates).isNotEmpty();
+      assertThat(candidates[0]).isEqualTo(i);
+      // unrelated files are (almost) never candidates
+      assertThat(candidates.length).isLessThan(5);
+    }
+  }
+
+  @Test
+  public void number_of_candidates_is_limited() {
+    List<String> file = randomFile();
+    for (int i = 0; i < 20; i++) {
+      underTest.add(file);
+    }
+
+    assertThat(underTest.candidates(file, 5)).containsExactly(0, 1, 2, 3, 4);
+  }
+
+  private List<String> randomFile() {
+    List<String> res = new ArrayList<>(LINES);
+    for (int line = 0; line < LINES; line++) {
+      res.add(randomLine());
+    }
+    return res;
+  }
+
+  private String randomLine() {
+    return Long.toHexString(random.nextLong());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolderRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
+
+public class BaseIssuesPreloaderTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+  @Rule
+  public ActiveRulesHolderRule activeRulesHolder = new ActiveRulesHolderRule();
+  @Rule
+  public RuleRepositoryRule ruleRepository = new RuleRepositoryRule();
+
+  private MapSettings settings = new MapSettings();
+  private ComponentIssuesLoader issuesLoader;
+  private ComponentDto project;
+  private ComponentDto file1;
+  private ComponentDto file2;
+  private RuleDefinitionDto rule;
+
+  @Before
+  public void setUp() {
+    issuesLoader = spy(new ComponentIssuesLoader(db.getDbClient(), ruleRepository, activeRulesHolder));
+    rule = db.rules().insert();
+    ruleRepository.add(rule.getKey());
+    project = db.components().insertPrivateProject();
+    file1 = db.components().insertComponent(newFileDto(project));
+    file2 = db.components().insertComponent(newFileDto(project));
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 1)
+      .setUuid(project.uuid())
+      .setKey(project.getDbKey())
+      .build());
+  }
+
+  @Test
+  public void load_issues_of_components_from_memory() throws Exception {
+    IssueDto issue1 = insertOpenIssue(file1);
+    IssueDto issue2 = insertOpenIssue(file1);
+    IssueDto issue3 = insertOpenIssue(file2);
+    insertClosedIssue(file2);
+    BaseIssuesPreloader underTest = newPreloader();
+
+    assertThat(underTest.loadForComponentUuid(file1.uuid())).extracting(DefaultIssue::key).containsOnly(issue1.getKey(), issue2.getKey());
+    assertThat(underTest.loadForComponentUuid(file2.uuid())).extracting(DefaultIssue::key).containsOnly(issue3.getKey());
+    assertThat(underTest.loadForComponentUuid(project.uuid())).isEmpty();
+
+    verify(issuesLoader, times(0)).loadForComponentUuid(anyString());
+  }
+
+  @Test
+  public void load_issues_of_components_from_disk_if_too_many_issues() throws Exception {
+    settings.setProperty(BaseIssuesPreloader.MAX_ISSUES_IN_MEMORY_PROPERTY, 1);
+    IssueDto issue1 = insertOpenIssue(file1);
+    IssueDto issue2 = insertOpenIssue(file1);
+    IssueDto issue3 = insertOpenIssue(file2);
+    BaseIssuesPreloader underTest = newPreloader();
+
+    List<DefaultIssue> issuesOfFile1 = underTest.loadForComponentUuid(file1.uuid());
+    assertThat(issuesOfFile1).extracting(DefaultIssue::key).containsOnly(issue1.getKey(), issue2.getKey());
+    assertThat(issuesOfFile1).extracting(DefaultIssue::ruleKey).containsOnly(rule.getKey());
+    assertThat(issuesOfFile1).extracting(DefaultIssue::selectedAt).doesNotContainNull();
+    assertThat(underTest.loadForComponentUuid(file2.uuid())).extracting(DefaultIssue::key).containsOnly(issue3.getKey());
+    assertThat(underTest.loadForComponentUuid(project.uuid())).isEmpty();
+
+    verify(issuesLoader, times(0)).loadForComponentUuid(anyString());
+  }
+
+  @Test
+  public void load_issues_from_database_if_component_is_requested_again() throws Exception {
+    IssueDto issue = insertOpenIssue(file1);
+    BaseIssuesPreloader underTest = newPreloader();
+
+    List<DefaultIssue> first = underTest.loadForComponentUuid(file1.uuid());
+    List<DefaultIssue> second = underTest.loadForComponentUuid(file1.uuid());
+
+    assertThat(second).extracting(DefaultIssue::key).containsOnly(issue.getKey());
+    assertThat(second.get(0)).isNotSameAs(first.get(0));
+    verify(issuesLoader).loadForComponentUuid(file1.uuid());
+  }
+
+  private BaseIssuesPreloader newPreloader() throws Exception {
+    return new BaseIssuesPreloader(treeRootHolder, issuesLoader, new DefaultTempFolder(temp.newFolder()), System2.INSTANCE, settings.asConfig());
+  }
+
+  private IssueDto insertOpenIssue(ComponentDto file) {
+    return db.issues().insert(rule, project, file, i -> i.setStatus("OPEN").setResolution(null));
+  }
+
+  private IssueDto insertClosedIssue(ComponentDto file) {
+    return db.issues().insert(rule, project, file, i -> i.setStatus("CLOSED").setResolution("FIXED"));
+  }
+}
@@ -48,7 +48,7 @@ public class CloseIssuesOnRemovedComponentsVisitorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
-  ComponentIssuesLoader issuesLoader = mock(ComponentIssuesLoader.class);
+  BaseIssuesPreloader issuesLoader = mock(BaseIssuesPreloader.class);
   ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues = mock(ComponentsWithUnprocessedIssues.class);
   IssueLifecycle issueLifecycle = mock(IssueLifecycle.class);
   IssueCache issueCache;
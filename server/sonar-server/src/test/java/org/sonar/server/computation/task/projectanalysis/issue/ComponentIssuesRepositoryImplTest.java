@@ -23,19 +23,28 @@ import java.util.Arrays;
 import java.util.Collections;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
 
 public class ComponentIssuesRepositoryImplTest {
 
   @org.junit.Rule
   public ExpectedException thrown = ExpectedException.none();
+  @org.junit.Rule
+  public TemporaryFolder temp = new TemporaryFolder();
 
   static final Component FILE_1 = builder(Component.Type.FILE, 1).build();
   static final Component FILE_2 = builder(Component.Type.FILE, 2).build();
+  static final Component FILE_3 = builder(Component.Type.FILE, 3).build();
 
   static final DefaultIssue DUMB_ISSUE = new DefaultIssue().setKey("ISSUE");
 
@@ -87,4 +96,35 @@ public class ComponentIssuesRepositoryImplTest {
 
     sut.getIssues(FILE_1);
   }
+
+  @Test
+  public void get_issues_of_component_from_cache_without_full_scan() throws Exception {
+    IssueCache issueCache = spy(new IssueCache(temp.newFile(), System2.INSTANCE));
+    issueCache.newAppender()
+      .append(new DefaultIssue().setKey("ISSUE_1").setComponentUuid(FILE_1.getUuid()))
+      .append(new DefaultIssue().setKey("ISSUE_2").setComponentUuid(FILE_2.getUuid()))
+      .append(new DefaultIssue().setKey("ISSUE_3").setComponentUuid(FILE_1.getUuid()))
+      .close();
+    ComponentIssuesRepositoryImpl underTest = new ComponentIssuesRepositoryImpl(issueCache);
+
+    assertThat(underTest.getIssues(FILE_1)).extracting(DefaultIssue::key).containsExactly("ISSUE_1", "ISSUE_3");
+    assertThat(underTest.getIssues(FILE_2)).extracting(DefaultIssue::key).containsExactly("ISSUE_2");
+    assertThat(underTest.getIssues(FILE_3)).isEmpty();
+
+    verify(issueCache).traverse(FILE_1.getUuid());
+    verify(issueCache).traverse(FILE_2.getUuid());
+    verify(issueCache, never()).traverse();
+  }
+
+  @Test
+  public void read_issues_of_component_from_cache_only_once_when_requested_several_times() throws Exception {
+    IssueCache issueCache = spy(new IssueCache(temp.newFile(), System2.INSTANCE));
+    issueCache.newAppender().append(new DefaultIssue().setKey("ISSUE_1").setComponentUuid(FILE_1.getUuid())).close();
+    ComponentIssuesRepositoryImpl underTest = new ComponentIssuesRepositoryImpl(issueCache);
+
+    underTest.getIssues(FILE_1);
+    assertThat(underTest.getIssues(FILE_1)).extracting(DefaultIssue::key).containsExactly("ISSUE_1");
+
+    verify(issueCache, times(1)).traverse(FILE_1.getUuid());
+  }
 }
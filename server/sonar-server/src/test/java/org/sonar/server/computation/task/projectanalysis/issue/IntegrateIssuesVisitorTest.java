@@ -25,14 +25,17 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.DefaultTempFolder;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.db.DbTester;
@@ -61,9 +64,11 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepos
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
@@ -93,6 +98,8 @@ public class IntegrateIssuesVisitorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
   @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
@@ -130,19 +137,22 @@ public class IntegrateIssuesVisitorTest {
   ShortBranchTrackerExecution shortBranchTracker;
   MergeBranchTrackerExecution mergeBranchTracker;
   IssueCache issueCache;
+  IssueVisitors issueVisitors;
 
   TypeAwareVisitor underTest;
 
   @Before
   public void setUp() throws Exception {
     MockitoAnnotations.initMocks(this);
-    IssueVisitors issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
+    issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
 
     defaultIssueCaptor = ArgumentCaptor.forClass(DefaultIssue.class);
     when(movedFilesRepository.getOriginalFile(any(Component.class))).thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
 
     TrackerRawInputFactory rawInputFactory = new TrackerRawInputFactory(treeRootHolder, reportReader, fileSourceRepository, new CommonRuleEngineImpl(), issueFilter);
-    TrackerBaseInputFactory baseInputFactory = new TrackerBaseInputFactory(issuesLoader, dbTester.getDbClient(), movedFilesRepository);
+    TrackerBaseInputFactory baseInputFactory = new TrackerBaseInputFactory(
+      new BaseIssuesPreloader(treeRootHolder, issuesLoader, new DefaultTempFolder(temp.newFolder()), System2.INSTANCE, new MapSettings().asConfig()),
+      dbTester.getDbClient(), movedFilesRepository);
     TrackerMergeBranchInputFactory mergeInputFactory = new TrackerMergeBranchInputFactory(issuesLoader, mergeBranchComponentsUuids, dbTester.getDbClient());
     tracker = new TrackerExecution(baseInputFactory, rawInputFactory, new Tracker<>());
     shortBranchTracker = new ShortBranchTrackerExecution(baseInputFactory, rawInputFactory, mergeInputFactory, new Tracker<>());
@@ -298,6 +308,59 @@ public class IntegrateIssuesVisitorTest {
     assertThat(issues.get(0).severity()).isEqualTo(Severity.BLOCKER);
   }
 
+  @Test
+  public void track_issues_of_components_ahead_if_parallelism_is_greater_than_1() throws Exception {
+    RuleKey ruleKey = RuleTesting.XOO_X1;
+    addBaseIssue(ruleKey);
+    ScannerReport.Issue reportIssue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository(ruleKey.repository())
+      .setRuleKey(ruleKey.rule())
+      .setSeverity(Constants.Severity.BLOCKER)
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+    IntegrateIssuesVisitor underTest = newParallelVisitor();
+
+    underTest.visitAny(FILE);
+    underTest.visitAny(PROJECT);
+    underTest.stop();
+
+    verify(issueLifecycle).mergeExistingOpenIssue(any(DefaultIssue.class), any(DefaultIssue.class));
+    verify(issueLifecycle, never()).initNewOpenIssue(any(DefaultIssue.class));
+    verify(issueVisitor).beforeComponent(FILE);
+    verify(issueVisitor).onIssue(eq(FILE), any(DefaultIssue.class));
+    verify(issueVisitor).afterComponent(PROJECT);
+    List<DefaultIssue> issues = newArrayList(issueCache.traverse());
+    assertThat(issues).extracting(DefaultIssue::severity).containsExactly(Severity.BLOCKER);
+  }
+
+  @Test
+  public void fail_with_component_key_if_tracking_ahead_fails() throws Exception {
+    IllegalStateException failure = new IllegalStateException("BOOM");
+    ScannerReport.Issue reportIssue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository("xoo")
+      .setRuleKey("S001")
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+    when(issueFilter.accept(any(DefaultIssue.class), eq(FILE))).thenThrow(failure);
+    IntegrateIssuesVisitor underTest = newParallelVisitor();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to process issues of component 'FILE_KEY'");
+    expectedException.expectCause(sameInstance(failure));
+
+    underTest.visitAny(FILE);
+  }
+
+  private IntegrateIssuesVisitor newParallelVisitor() {
+    MapSettings settings = new MapSettings().setProperty(IntegrateIssuesVisitor.PARALLELISM_PROPERTY, 2);
+    return new IntegrateIssuesVisitor(issueCache, issueLifecycle, issueVisitors, analysisMetadataHolder, trackingDelegator, issueStatusCopier,
+      mergeBranchComponentUuids, treeRootHolder, settings.asConfig());
+  }
+
   private void addBaseIssue(RuleKey ruleKey) {
     ComponentDto project = ComponentTesting.newPrivateProjectDto(dbTester.organizations().insert(), PROJECT_UUID).setDbKey(PROJECT_KEY);
     ComponentDto file = ComponentTesting.newFileDto(project, null, FILE_UUID).setDbKey(FILE_KEY);
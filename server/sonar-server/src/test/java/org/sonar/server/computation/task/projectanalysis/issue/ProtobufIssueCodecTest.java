@@ -0,0 +1,213 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.JavaSerializationCodec;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ProtobufIssueCodecTest {
+
+  private static final Date DATE = new Date(1_500_000_000_000L);
+
+  private ProtobufIssueCodec underTest = new ProtobufIssueCodec();
+
+  @Test
+  public void encode_and_decode_all_fields() throws Exception {
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(2).setEndLine(3))
+      .build();
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_KEY")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("FILE_KEY")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT_KEY")
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setLanguage("xoo")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(12)
+      .setGap(1.5)
+      .setEffort(Duration.create(10L))
+      .setStatus("OPEN")
+      .setResolution("FIXED")
+      .setAssignee("simon")
+      .setChecksum("CHECKSUM")
+      .setAttribute("JIRA", "FOO-123")
+      .setAuthorLogin("julien")
+      .setTags(asList("foo", "bar"))
+      .setLocations(locations)
+      .setCreationDate(DATE)
+      .setUpdateDate(DATE)
+      .setCloseDate(DATE)
+      .setNew(false)
+      .setCopied(true)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L)
+      .addComment(new DefaultIssueComment().setKey("COMMENT_KEY").setIssueKey("ISSUE_KEY").setUserLogin("simon")
+        .setMarkdownText("a comment").setCreatedAt(DATE).setUpdatedAt(DATE).setNew(true));
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE_KEY");
+    assertThat(decoded.type()).isEqualTo(RuleType.BUG);
+    assertThat(decoded.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(decoded.componentKey()).isEqualTo("FILE_KEY");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("xoo", "S001"));
+    assertThat(decoded.language()).isEqualTo("xoo");
+    assertThat(decoded.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message");
+    assertThat(decoded.line()).isEqualTo(12);
+    assertThat(decoded.gap()).isEqualTo(1.5);
+    assertThat(decoded.effort()).isEqualTo(Duration.create(10L));
+    assertThat(decoded.status()).isEqualTo("OPEN");
+    assertThat(decoded.resolution()).isEqualTo("FIXED");
+    assertThat(decoded.assignee()).isEqualTo("simon");
+    assertThat(decoded.checksum()).isEqualTo("CHECKSUM");
+    assertThat(decoded.attributes()).containsOnly(entry("JIRA", "FOO-123"));
+    assertThat(decoded.authorLogin()).isEqualTo("julien");
+    assertThat(decoded.tags()).containsExactly("foo", "bar");
+    assertThat((DbIssues.Locations) decoded.getLocations()).isEqualTo(locations);
+    assertThat(decoded.creationDate()).isEqualTo(DATE);
+    assertThat(decoded.updateDate()).isEqualTo(DATE);
+    assertThat(decoded.closeDate()).isEqualTo(DATE);
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isCopied()).isTrue();
+    assertThat(decoded.isBeingClosed()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.selectedAt()).isEqualTo(1_000L);
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT_KEY");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE_KEY");
+    assertThat(comment.userLogin()).isEqualTo("simon");
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.createdAt()).isEqualTo(DATE);
+    assertThat(comment.updatedAt()).isEqualTo(DATE);
+    assertThat(comment.isNew()).isTrue();
+  }
+
+  @Test
+  public void encode_and_decode_issue_without_optional_fields() throws Exception {
+    DefaultIssue decoded = encodeAndDecode(new DefaultIssue().setKey("ISSUE_KEY"));
+
+    assertThat(decoded.key()).isEqualTo("ISSUE_KEY");
+    assertThat(decoded.type()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.gap()).isNull();
+    assertThat(decoded.effort()).isNull();
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat((Object) decoded.getLocations()).isNull();
+    assertThat(decoded.updateDate()).isNull();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.isNew()).isTrue();
+  }
+
+  @Test
+  public void current_change_is_shared_with_changes() throws Exception {
+    IssueChangeContext context = IssueChangeContext.createUser(DATE, "simon");
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_KEY")
+      .addChange(new FieldDiffs().setIssueKey("ISSUE_KEY").setCreationDate(DATE).setDiff("status", "OPEN", "CONFIRMED"))
+      .setFieldChange(context, "severity", Severity.MAJOR, Severity.BLOCKER)
+      .setFieldChange(context, "effort", 10L, 20L)
+      .setFieldChange(context, "type", RuleType.BUG, RuleType.VULNERABILITY);
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    List<FieldDiffs> changes = decoded.changes();
+    assertThat(changes).hasSize(4);
+    assertThat(changes.get(0).toString()).isEqualTo("status=OPEN|CONFIRMED");
+    assertThat(changes.get(1)).isSameAs(decoded.currentChange());
+    assertThat(changes.get(2)).isSameAs(decoded.currentChange());
+    assertThat(changes.get(3)).isSameAs(decoded.currentChange());
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("simon");
+    assertThat(currentChange.creationDate()).isEqualTo(DATE);
+    assertThat(currentChange.get("severity").newValue()).isEqualTo(Severity.BLOCKER);
+    assertThat(currentChange.get("effort").oldValue()).isEqualTo(10L);
+    assertThat(currentChange.get("effort").newValue()).isEqualTo(20L);
+    assertThat(currentChange.get("type").oldValue()).isEqualTo(RuleType.BUG);
+    assertThat(currentChange.get("type").newValue()).isEqualTo(RuleType.VULNERABILITY);
+  }
+
+  @Test
+  public void encoding_is_smaller_than_java_serialization() throws Exception {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_KEY")
+      .setType(RuleType.CODE_SMELL)
+      .setComponentUuid("FILE_UUID")
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setSeverity(Severity.MAJOR)
+      .setMessage("the message")
+      .setLine(12)
+      .setStatus("OPEN")
+      .setCreationDate(DATE);
+
+    ByteArrayOutputStream protobuf = new ByteArrayOutputStream();
+    underTest.encode(issue, protobuf);
+    ByteArrayOutputStream java = new ByteArrayOutputStream();
+    new JavaSerializationCodec<DefaultIssue>().encode(issue, java);
+
+    assertThat(protobuf.size()).isLessThan(java.size() / 5);
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    underTest.encode(issue, output);
+    byte[] bytes = output.toByteArray();
+    return underTest.decode(bytes, 0, bytes.length);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import java.util.Set;
+import org.junit.Test;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).setKey("other").build();
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private static final Metric INT_METRIC = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private static final Metric LONG_METRIC = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(3, "double", "double", Metric.MetricType.FLOAT);
+  private static final Metric BOOLEAN_METRIC = new MetricImpl(4, "boolean", "boolean", Metric.MetricType.BOOL);
+  private static final Metric STRING_METRIC = new MetricImpl(5, "string", "string", Metric.MetricType.STRING);
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository(toReportRef());
+
+  @Test
+  public void store_numeric_measures() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(12));
+    underTest.add(FILE_COMPONENT, LONG_METRIC, newMeasureBuilder().create(123_456_789_012L));
+    underTest.add(FILE_COMPONENT, DOUBLE_METRIC, newMeasureBuilder().create(1.256d, 2));
+    underTest.add(FILE_COMPONENT, BOOLEAN_METRIC, newMeasureBuilder().create(true));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(12);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, LONG_METRIC).get().getLongValue()).isEqualTo(123_456_789_012L);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, DOUBLE_METRIC).get().getDoubleValue()).isEqualTo(1.26d);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, BOOLEAN_METRIC).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().hasVariation()).isFalse();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, INT_METRIC)).isAbsent();
+  }
+
+  @Test
+  public void store_no_value_measure_with_variation() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().setVariation(3.5d).createNoValue());
+
+    Measure measure = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get();
+    assertThat(measure.getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+    assertThat(measure.getVariation()).isEqualTo(3.5d);
+  }
+
+  @Test
+  public void store_non_numeric_measures_as_is() {
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    Measure measureWithData = newMeasureBuilder().create(12, "data");
+    Measure measureWithQualityGateStatus = newMeasureBuilder().setQualityGateStatus(new QualityGateStatus(Measure.Level.OK)).create(1.0d, 1);
+    underTest.add(FILE_COMPONENT, STRING_METRIC, stringMeasure);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measureWithData);
+    underTest.add(FILE_COMPONENT, DOUBLE_METRIC, measureWithQualityGateStatus);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, STRING_METRIC).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isSameAs(measureWithData);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, DOUBLE_METRIC).get()).isSameAs(measureWithQualityGateStatus);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void add_throws_UOE_if_numeric_measure_already_exists() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(2));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    underTest.update(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+  }
+
+  @Test
+  public void update_moves_measure_between_numeric_and_object_storage() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+    Measure withData = newMeasureBuilder().create(2, "data");
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, withData);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isSameAs(withData);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).get(INT_METRIC.getKey())).containsOnly(withData);
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(3));
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(3);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).get(INT_METRIC.getKey())).hasSize(1);
+  }
+
+  @Test
+  public void update_keeps_variation_set_through_UpdateMeasureBuilder() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+    Measure measure = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get();
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, Measure.updatedMeasureBuilder(measure).setVariation(-2d).create());
+
+    Measure updated = underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get();
+    assertThat(updated.getIntValue()).isEqualTo(1);
+    assertThat(updated.getVariation()).isEqualTo(-2d);
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_keeps_existing_measure() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void getRawMeasures_of_metric_returns_numeric_and_developer_measures() {
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(5);
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, INT_METRIC, devMeasure);
+
+    Set<Measure> measures = underTest.getRawMeasures(FILE_COMPONENT, INT_METRIC);
+
+    assertThat(measures).hasSize(2);
+    assertThat(measures).contains(devMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasures(OTHER_COMPONENT, INT_METRIC)).isEmpty();
+  }
+
+  @Test
+  public void getRawMeasures_returns_all_measures_of_component() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, STRING_METRIC, newMeasureBuilder().create("foo"));
+    underTest.add(OTHER_COMPONENT, DOUBLE_METRIC, newMeasureBuilder().create(1d, 1));
+
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT).keySet()).containsOnly(INT_METRIC.getKey(), STRING_METRIC.getKey());
+    assertThat(underTest.getRawMeasures(OTHER_COMPONENT).keySet()).containsOnly(DOUBLE_METRIC.getKey());
+  }
+
+  @Test
+  public void store_measures_of_many_components() {
+    int nbComponents = 200_000;
+    for (int ref = 1; ref <= nbComponents; ref++) {
+      underTest.add(ReportComponent.builder(Component.Type.FILE, ref).build(), INT_METRIC, newMeasureBuilder().create(ref));
+    }
+
+    for (int ref = 1; ref <= nbComponents; ref += 997) {
+      Optional<Measure> measure = underTest.getRawMeasure(ReportComponent.builder(Component.Type.FILE, ref).build(), INT_METRIC);
+      assertThat(measure.get().getIntValue()).isEqualTo(ref);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportHashComputerTest {
+
+  private static final int FILE_REF = 2;
+  private static final Component FILE = ReportComponent.builder(Component.Type.FILE, FILE_REF)
+    .setFileAttributes(new FileAttributes(false, null, 10))
+    .build();
+  private static final int OTHER_FILE_REF = 3;
+  private static final Component OTHER_FILE = ReportComponent.builder(Component.Type.FILE, OTHER_FILE_REF)
+    .setFileAttributes(new FileAttributes(false, null, 10))
+    .build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+  @Rule
+  public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create(treeRootHolder);
+
+  private ReportHashComputer underTest = new ReportHashComputer(reportReader, duplicationRepository);
+
+  @Before
+  public void setUp() {
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).addChildren(FILE, OTHER_FILE).build());
+  }
+
+  @Test
+  public void hash_is_stable() {
+    reportReader.putCoverage(FILE_REF, singletonList(ScannerReport.LineCoverage.newBuilder().setLine(1).setHits(true).build()));
+
+    assertThat(underTest.compute(FILE)).isEqualTo(underTest.compute(FILE));
+  }
+
+  @Test
+  public void hash_changes_with_coverage() {
+    String noCoverage = underTest.compute(FILE);
+
+    reportReader.putCoverage(FILE_REF, singletonList(ScannerReport.LineCoverage.newBuilder().setLine(1).setHits(true).build()));
+
+    assertThat(underTest.compute(FILE)).isNotEqualTo(noCoverage);
+  }
+
+  @Test
+  public void hash_changes_with_changesets() {
+    String noChangesets = underTest.compute(FILE);
+
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_REF)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder().setRevision("rev-1").build())
+      .build());
+
+    assertThat(underTest.compute(FILE)).isNotEqualTo(noChangesets);
+  }
+
+  @Test
+  public void hash_changes_with_highlighting_and_symbols() {
+    String initial = underTest.compute(FILE);
+
+    reportReader.putSyntaxHighlighting(FILE_REF, singletonList(ScannerReport.SyntaxHighlightingRule.newBuilder()
+      .setType(ScannerReport.SyntaxHighlightingRule.HighlightingType.KEYWORD)
+      .build()));
+    String withHighlighting = underTest.compute(FILE);
+    reportReader.putSymbols(FILE_REF, singletonList(ScannerReport.Symbol.newBuilder().build()));
+    String withSymbols = underTest.compute(FILE);
+
+    assertThat(withHighlighting).isNotEqualTo(initial);
+    assertThat(withSymbols).isNotEqualTo(withHighlighting);
+  }
+
+  @Test
+  public void hash_changes_with_duplications() {
+    String noDuplication = underTest.compute(FILE);
+
+    duplicationRepository.addDuplication(FILE_REF, new TextBlock(1, 2), new TextBlock(4, 5));
+
+    assertThat(underTest.compute(FILE)).isNotEqualTo(noDuplication);
+  }
+
+  @Test
+  public void hash_does_not_depend_on_order_of_duplications() {
+    duplicationRepository.addDuplication(FILE_REF, new TextBlock(1, 2), new TextBlock(4, 5));
+    duplicationRepository.addDuplication(FILE_REF, new TextBlock(7, 8), new TextBlock(9, 10));
+    duplicationRepository.addDuplication(OTHER_FILE_REF, new TextBlock(7, 8), new TextBlock(9, 10));
+    duplicationRepository.addDuplication(OTHER_FILE_REF, new TextBlock(1, 2), new TextBlock(4, 5));
+
+    assertThat(underTest.compute(FILE)).isEqualTo(underTest.compute(OTHER_FILE));
+  }
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
@@ -36,6 +37,7 @@ import org.sonar.server.computation.task.projectanalysis.measure.MeasureReposito
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
@@ -70,6 +72,9 @@ public class ExecuteVisitorsStepTest {
   @Rule
   public LogTester logTester = new LogTester();
 
+  private ComputationProfiler profiler = new ComputationProfiler();
+  private MapSettings settings = new MapSettings();
+
   @Before
   public void setUp() throws Exception {
     treeRootHolder.setRoot(
@@ -88,7 +93,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_type_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()), profiler, settings.asConfig());
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(2));
@@ -107,7 +112,7 @@ public class ExecuteVisitorsStepTest {
 
   @Test
   public void execute_with_path_aware_visitor() throws Exception {
-    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestPathAwareVisitor()));
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestPathAwareVisitor()), profiler, settings.asConfig());
 
     measureRepository.addRawMeasure(FILE_1_REF, NCLOC_KEY, newMeasureBuilder().create(1));
     measureRepository.addRawMeasure(FILE_2_REF, NCLOC_KEY, newMeasureBuilder().create(1));
@@ -129,7 +134,9 @@ public class ExecuteVisitorsStepTest {
       ChangeLogLevel step3 = new ChangeLogLevel(VisitorB.class, LoggerLevel.DEBUG)) {
       ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(
         treeRootHolder,
-        asList(new VisitorA(), new VisitorB(), new VisitorC()));
+        asList(new VisitorA(), new VisitorB(), new VisitorC()),
+        profiler,
+        settings.asConfig());
 
       underStep.execute();
 
@@ -143,6 +150,31 @@ public class ExecuteVisitorsStepTest {
     }
   }
 
+  @Test
+  public void execute_records_duration_and_allocated_memory_of_all_visitors_in_profiler_when_enabled() {
+    settings.setProperty("sonar.ce.profileVisitors", true);
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, asList(new VisitorA(), new VisitorB(), new VisitorC()), profiler, settings.asConfig());
+
+    underStep.execute();
+
+    assertThat(profiler.getVisitors())
+      .extracting(ComputationProfiler.Entry::getName)
+      .containsExactly("VisitorA", "VisitorB", "VisitorC");
+    assertThat(profiler.getVisitors())
+      .extracting(ComputationProfiler.Entry::getDurationInMs)
+      .allMatch(duration -> duration >= 0);
+    assertThat(profiler.getSteps()).isEmpty();
+  }
+
+  @Test
+  public void execute_does_not_profile_visitors_by_default() {
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, asList(new VisitorA(), new VisitorB(), new VisitorC()), profiler, settings.asConfig());
+
+    underStep.execute();
+
+    assertThat(profiler.getVisitors()).isEmpty();
+  }
+
   private static class VisitorA extends TypeAwareVisitorAdapter {
     public VisitorA() {
       super(CrawlerDepthLimit.PROJECT, Order.PRE_ORDER);
@@ -20,10 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.Arrays;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -46,7 +49,10 @@ import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplic
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.source.ReportHashComputer;
+import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryRule;
+import org.sonar.server.computation.task.step.ComputationProfiler;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -84,14 +90,17 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
+  private MapSettings settings = new MapSettings();
+  private ComputationProfiler profiler = new ComputationProfiler();
 
   private PersistFileSourcesStep underTest;
 
   @Before
   public void setup() {
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository,
-      duplicationRepository);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, new SourceHashRepositoryImpl(fileSourceRepository),
+      scmInfoRepository,
+      duplicationRepository, settings.asConfig(), profiler);
   }
 
   @Override
@@ -123,6 +132,20 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_in_chunks_of_lines() {
+    initBasicReport(5);
+    settings.setProperty("sonar.ce.fileSources.linesPerChunk", 2);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getSourceData().getLinesList()).extracting(DbFileSources.Line::getSource)
+      .containsExactly("line1", "line2", "line3", "line4", "line5");
+    assertThat(fileSourceDto.getSourceData(3, 3).getLinesList()).extracting(DbFileSources.Line::getSource)
+      .containsExactly("line3", "line4");
+  }
+
   @Test
   public void persist_source_hashes() {
     initBasicReport(2);
@@ -280,6 +303,9 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
   @Test
   public void not_update_sources_when_nothing_has_changed() {
+    // Sources from the report
+    initBasicReport(1);
+
     // Existing sources
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
@@ -290,6 +316,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
       .setProjectUuid(PROJECT_UUID)
       .setFileUuid(FILE1_UUID)
       .setSrcHash(srcHash)
+      .setReportHash(reportHashOf(FILE1_REF))
       .setLineHashes(lineHashes)
       .setDataHash(dataHash)
       .setSourceData(DbFileSources.Data.newBuilder()
@@ -302,9 +329,6 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
       .setUpdatedAt(past));
     dbTester.getSession().commit();
 
-    // Sources from the report
-    initBasicReport(1);
-
     underTest.execute();
 
     assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(1);
@@ -459,10 +483,203 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  @Test
+  public void persist_report_hash() {
+    initBasicReport(1);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getReportHash()).isEqualTo(reportHashOf(FILE1_REF));
+  }
+
+  @Test
+  public void update_sources_when_report_hash_is_missing() {
+    initBasicReport(1);
+    insertPreviousSource(null);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getReportHash()).isEqualTo(reportHashOf(FILE1_REF));
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void skip_unchanged_file_without_building_its_data() {
+    initBasicReport(1, Component.Status.SAME);
+    // data hash does not match the report: the row would be updated if the data of the file was built
+    insertPreviousSource(reportHashOf(FILE1_REF));
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("OLD_DATA_HASH");
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(150000L);
+  }
+
+  @Test
+  public void add_number_of_persisted_and_skipped_files_to_step_profile() {
+    initBasicReport(1, Component.Status.SAME);
+    insertPreviousSource(reportHashOf(FILE1_REF));
+
+    underTest.execute();
+    profiler.addStep(underTest.getDescription(), 10L, ComputationProfiler.UNKNOWN_ALLOCATED_BYTES);
+
+    Map<String, Object> statistics = profiler.getSteps().get(0).getStatistics();
+    assertThat(statistics.keySet()).containsExactly("persisted", "unchanged", "skipped", "skippedTime", "builtTime");
+    assertThat(statistics).containsEntry("persisted", 0).containsEntry("unchanged", 1).containsEntry("skipped", 1);
+  }
+
+  @Test
+  public void build_data_of_unchanged_file_when_report_data_changed() {
+    initBasicReport(1, Component.Status.SAME);
+    insertPreviousSource(reportHashOf(FILE1_REF));
+    reportReader.putCoverage(FILE1_REF, newArrayList(ScannerReport.LineCoverage.newBuilder()
+      .setLine(1)
+      .setHits(true)
+      .build()));
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getReportHash()).isEqualTo(reportHashOf(FILE1_REF));
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getLineHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void build_data_of_changed_file_even_if_report_hash_is_unchanged() {
+    initBasicReport(1, Component.Status.CHANGED);
+    insertPreviousSource(reportHashOf(FILE1_REF), "OLD_SRC_HASH", "old line1");
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getDataHash()).isNotEqualTo("OLD_DATA_HASH");
+    assertThat(fileSourceDto.getSrcHash()).isEqualTo("137f72c3708c6bd0de00a0e5a69c699b");
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void build_data_of_file_with_status_same_on_short_living_branch_when_source_differs_from_persisted_one() {
+    // on short-living branches, status SAME is relative to the target branch: a file reverted on the branch is SAME
+    // while its persisted source is the one of the previous analysis of the branch
+    initBasicReport(1, Component.Status.SAME);
+    insertPreviousSource(reportHashOf(FILE1_REF), "OLD_SRC_HASH", "old line1");
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE1_UUID);
+    assertThat(fileSourceDto.getDataHash()).isNotEqualTo("OLD_DATA_HASH");
+    assertThat(fileSourceDto.getSrcHash()).isEqualTo("137f72c3708c6bd0de00a0e5a69c699b");
+    assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line1");
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  private void insertPreviousSource(@Nullable String reportHash) {
+    insertPreviousSource(reportHash, "137f72c3708c6bd0de00a0e5a69c699b", "line1");
+  }
+
+  private void insertPreviousSource(@Nullable String reportHash, String srcHash, String source) {
+    dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
+      .setProjectUuid(PROJECT_UUID)
+      .setFileUuid(FILE1_UUID)
+      .setSrcHash(srcHash)
+      .setReportHash(reportHash)
+      .setLineHashes("137f72c3708c6bd0de00a0e5a69c699b")
+      .setDataHash("OLD_DATA_HASH")
+      .setSourceData(DbFileSources.Data.newBuilder()
+        .addLines(DbFileSources.Line.newBuilder()
+          .setLine(1)
+          .setSource(source)
+          .build())
+        .build())
+      .setCreatedAt(150000L)
+      .setUpdatedAt(150000L));
+    dbTester.getSession().commit();
+  }
+
+  private String reportHashOf(int fileRef) {
+    return new ReportHashComputer(reportReader, duplicationRepository).compute(treeRootHolder.getComponentByRef(fileRef));
+  }
+
+  @Test
+  public void persist_sources_of_files_in_parallel() {
+    int nbFiles = 30;
+    initReportWithFiles(nbFiles);
+    settings.setProperty("sonar.ce.fileSources.parallelism", 4);
+    // lower than the size of the biggest files, which must still be persisted
+    settings.setProperty("sonar.ce.fileSources.maxPendingLines", 20);
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(nbFiles);
+    for (int i = 0; i < nbFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      assertThat(fileSourceDto.getProjectUuid()).isEqualTo(PROJECT_UUID);
+      DbFileSources.Data data = fileSourceDto.getSourceData();
+      assertThat(data.getLinesCount()).isEqualTo(i + 1);
+      assertThat(data.getLines(i).getSource()).isEqualTo("file" + i + "_line" + (i + 1));
+    }
+  }
+
+  @Test
+  public void parallel_and_sequential_executions_persist_same_data() {
+    int nbFiles = 10;
+    initReportWithFiles(nbFiles);
+    underTest.execute();
+    String[] sequentialHashes = new String[nbFiles];
+    for (int i = 0; i < nbFiles; i++) {
+      sequentialHashes[i] = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i).getDataHash();
+    }
+    dbTester.executeUpdateSql("delete from file_sources");
+
+    settings.setProperty("sonar.ce.fileSources.parallelism", 3);
+    underTest.execute();
+
+    for (int i = 0; i < nbFiles; i++) {
+      assertThat(dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i).getDataHash()).isEqualTo(sequentialHashes[i]);
+    }
+  }
+
+  private void initReportWithFiles(int nbFiles) {
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    ScannerReport.Component.Builder reportModule = ScannerReport.Component.newBuilder()
+      .setRef(2)
+      .setType(ComponentType.MODULE);
+    for (int i = 0; i < nbFiles; i++) {
+      int ref = 10 + i;
+      int numberOfLines = i + 1;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("MODULE_KEY:src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, numberOfLines)).build());
+      reportModule.addChildRef(ref);
+      reportReader.putComponent(ScannerReport.Component.newBuilder()
+        .setRef(ref)
+        .setType(ComponentType.FILE)
+        .setLines(numberOfLines)
+        .build());
+      for (int line = 1; line <= numberOfLines; line++) {
+        fileSourceRepository.addLine(ref, "file" + i + "_line" + line);
+      }
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+    reportReader.putComponent(ScannerReport.Component.newBuilder()
+      .setRef(1)
+      .setType(ComponentType.PROJECT)
+      .addChildRef(2)
+      .build());
+    reportReader.putComponent(reportModule.build());
+  }
+
   private void initBasicReport(int numberOfLines) {
+    initBasicReport(numberOfLines, Component.Status.UNAVAILABLE);
+  }
+
+  private void initBasicReport(int numberOfLines, Component.Status status) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
-        ReportComponent.builder(Component.Type.FILE, FILE1_REF).setUuid(FILE1_UUID).setKey("MODULE_KEY:src/Foo.java")
+        ReportComponent.builder(Component.Type.FILE, FILE1_REF).setUuid(FILE1_UUID).setKey("MODULE_KEY:src/Foo.java").setStatus(status)
           .setFileAttributes(new FileAttributes(false, null, numberOfLines)).build())
         .build())
       .build());
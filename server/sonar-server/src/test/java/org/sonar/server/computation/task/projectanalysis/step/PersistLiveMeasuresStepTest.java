@@ -23,8 +23,11 @@ import java.util.Optional;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
@@ -76,8 +79,11 @@ public class PersistLiveMeasuresStepTest extends BaseStepTest {
   public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
   @Rule
   public MutableAnalysisMetadataHolderRule analysisMetadataHolder = new MutableAnalysisMetadataHolderRule();
+  @Rule
+  public LogTester logTester = new LogTester();
 
   private DbClient dbClient = db.getDbClient();
+  private MapSettings settings = new MapSettings();
 
   @Before
   public void setUp() {
@@ -156,6 +162,59 @@ public class PersistLiveMeasuresStepTest extends BaseStepTest {
     assertThatMeasureHasValue(measureInOtherProject, (int)measureInOtherProject.getValue().doubleValue());
   }
 
+  @Test
+  public void delete_measures_from_db_if_no_more_computed_when_diff_is_disabled() {
+    settings.setProperty(PersistLiveMeasuresStep.DIFF_PROPERTY, false);
+
+    delete_measures_from_db_if_no_more_computed();
+  }
+
+  @Test
+  public void only_new_changed_and_obsolete_measures_are_written() {
+    prepareProject();
+    LiveMeasureDto unchangedMeasure = insertMeasure("project-uuid", "project-uuid", INT_METRIC).setValue(10.0).setVariation(null).setData((String) null);
+    dbClient.liveMeasureDao().update(db.getSession(), unchangedMeasure);
+    insertMeasure("file-uuid", "project-uuid", INT_METRIC);
+    insertMeasure("file-uuid", "project-uuid", STRING_METRIC);
+    db.commit();
+    measureRepository.addRawMeasure(REF_1, INT_METRIC.getKey(), newMeasureBuilder().create(10));
+    measureRepository.addRawMeasure(REF_2, INT_METRIC.getKey(), newMeasureBuilder().create(20));
+    measureRepository.addRawMeasure(REF_4, INT_METRIC.getKey(), newMeasureBuilder().create(30));
+    logTester.setLevel(LoggerLevel.DEBUG);
+
+    step().execute();
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Live measures: 1 inserted, 1 updated, 1 deleted, 1 unchanged");
+    assertThat(db.countRowsOfTable("live_measures")).isEqualTo(3);
+    assertThatMeasureHasValue("project-uuid", INT_METRIC, 10);
+    assertThatMeasureHasValue("module-uuid", INT_METRIC, 20);
+    assertThatMeasureHasValue("file-uuid", INT_METRIC, 30);
+    assertThatMeasureIsNotPersisted("file-uuid", STRING_METRIC);
+  }
+
+  @Test
+  public void measures_of_removed_components_are_deleted_and_counted() {
+    prepareProject();
+    insertMeasure("file-uuid", "project-uuid", INT_METRIC);
+    insertMeasure("removed-file-uuid", "project-uuid", INT_METRIC);
+    insertMeasure("removed-file-uuid", "project-uuid", STRING_METRIC);
+    insertMeasure("other-removed-file-uuid", "project-uuid", INT_METRIC);
+    LiveMeasureDto measureInOtherProject = insertMeasure("other-file-uuid", "other-project-uuid", INT_METRIC);
+    db.commit();
+    measureRepository.addRawMeasure(REF_4, INT_METRIC.getKey(), newMeasureBuilder().create(30));
+    logTester.setLevel(LoggerLevel.DEBUG);
+
+    step().execute();
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Live measures: 0 inserted, 1 updated, 3 deleted, 0 unchanged");
+    assertThat(db.countRowsOfTable("live_measures")).isEqualTo(2);
+    assertThatMeasureHasValue("file-uuid", INT_METRIC, 30);
+    assertThatMeasureIsNotPersisted("removed-file-uuid", INT_METRIC);
+    assertThatMeasureIsNotPersisted("removed-file-uuid", STRING_METRIC);
+    assertThatMeasureIsNotPersisted("other-removed-file-uuid", INT_METRIC);
+    assertThatMeasureHasValue(measureInOtherProject, (int) measureInOtherProject.getValue().doubleValue());
+  }
+
   @Test
   public void do_not_persist_file_measures_with_best_value() {
     prepareProject();
@@ -284,7 +343,8 @@ public class PersistLiveMeasuresStepTest extends BaseStepTest {
 
   @Override
   protected ComputationStep step() {
-    return new PersistLiveMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(analysisMetadataHolder, treeRootHolder), treeRootHolder, measureRepository);
+    return new PersistLiveMeasuresStep(dbClient, metricRepository, new MeasureToMeasureDto(analysisMetadataHolder, treeRootHolder), treeRootHolder, measureRepository,
+      settings.asConfig());
   }
 
 }
@@ -0,0 +1,102 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.ce.queue.CeTask;
+import org.sonar.core.util.UuidFactoryFast;
+import org.sonar.db.DbTester;
+import org.sonar.db.ce.CeTaskCharacteristicDto;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.sonar.server.computation.task.step.ComputationProfiler.UNKNOWN_ALLOCATED_BYTES;
+
+public class ComputationProfilePublisherTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private CeTask ceTask = new CeTask.Builder()
+    .setOrganizationUuid("org1")
+    .setType("type")
+    .setUuid("task uuid")
+    .build();
+  private ComputationProfiler profiler = new ComputationProfiler();
+  private ComputationProfileListener listener1 = mock(ComputationProfileListener.class);
+  private ComputationProfileListener listener2 = mock(ComputationProfileListener.class);
+
+  @Test
+  public void publish_persists_steps_and_visitors_slowest_first_as_characteristics_of_task() {
+    profiler.addStep("step 1", 5, 2048);
+    profiler.addStep("step 2", 20, UNKNOWN_ALLOCATED_BYTES);
+    profiler.addVisitor("visitor 1", 3, 1024);
+
+    new ComputationProfilePublisher(ceTask, profiler, db.getDbClient(), UuidFactoryFast.getInstance()).publish();
+
+    Map<String, String> characteristics = db.getDbClient().ceTaskCharacteristicsDao().selectByTaskUuid(db.getSession(), "task uuid")
+      .stream()
+      .collect(toMap(CeTaskCharacteristicDto::getKey, CeTaskCharacteristicDto::getValue));
+    assertThat(characteristics).containsOnly(
+      entry(CeTaskCharacteristicDto.STEPS_PROFILE_KEY, "step 2=20ms;step 1=5ms/2KB"),
+      entry(CeTaskCharacteristicDto.VISITORS_PROFILE_KEY, "visitor 1=3ms/1KB"));
+  }
+
+  @Test
+  public void publish_notifies_all_listeners_even_if_one_fails() {
+    doThrow(new IllegalStateException("Faking listener failing")).when(listener1).onProfile(ceTask, profiler);
+
+    new ComputationProfilePublisher(ceTask, profiler, db.getDbClient(), UuidFactoryFast.getInstance(),
+      new ComputationProfileListener[] {listener1, listener2}).publish();
+
+    verify(listener1).onProfile(ceTask, profiler);
+    verify(listener2).onProfile(ceTask, profiler);
+    assertThat(logTester.logs(LoggerLevel.WARN)).hasSize(1);
+  }
+
+  @Test
+  public void format_keeps_only_whole_entries_within_max_length() {
+    assertThat(ComputationProfilePublisher.format(asList(
+      new ComputationProfiler.Entry("a", 1, UNKNOWN_ALLOCATED_BYTES),
+      new ComputationProfiler.Entry("b", 3, UNKNOWN_ALLOCATED_BYTES),
+      new ComputationProfiler.Entry("c", 2, UNKNOWN_ALLOCATED_BYTES)), 13))
+        .isEqualTo("b=3ms;c=2ms");
+  }
+
+  @Test
+  public void format_step_statistics_after_duration_and_memory() {
+    assertThat(ComputationProfilePublisher.format(asList(
+      new ComputationProfiler.Entry("a", 1, 2048L, ImmutableMap.of("persisted", 3, "skipped", 5))), 100))
+        .isEqualTo("a=1ms/2KB(persisted=3,skipped=5)");
+  }
+}
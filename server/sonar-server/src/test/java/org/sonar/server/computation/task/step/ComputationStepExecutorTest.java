@@ -19,12 +19,18 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableSet;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
@@ -32,6 +38,7 @@ import org.sonar.server.computation.task.ChangeLogLevel;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
@@ -49,6 +56,7 @@ public class ComputationStepExecutorTest {
   private final ComputationStep computationStep1 = mockComputationStep("step1");
   private final ComputationStep computationStep2 = mockComputationStep("step2");
   private final ComputationStep computationStep3 = mockComputationStep("step3");
+  private final ComputationProfiler profiler = new ComputationProfiler();
 
   @Test
   public void execute_call_execute_on_each_ComputationStep_in_order_returned_by_instances_method() {
@@ -65,6 +73,19 @@ public class ComputationStepExecutorTest {
     inOrder.verifyNoMoreInteractions();
   }
 
+  @Test
+  public void execute_records_duration_and_allocated_memory_of_each_ComputationStep_in_profiler() {
+    new ComputationStepExecutor(mockComputationSteps(computationStep1, computationStep2), profiler, new MapSettings().asConfig())
+      .execute();
+
+    assertThat(profiler.getSteps())
+      .extracting(ComputationProfiler.Entry::getName)
+      .containsExactly("step1", "step2");
+    assertThat(profiler.getSteps())
+      .extracting(ComputationProfiler.Entry::getDurationInMs)
+      .allMatch(duration -> duration >= 0);
+  }
+
   @Test
   public void execute_let_exception_thrown_by_ComputationStep_go_up_as_is() {
     String message = "Exception should go up";
@@ -152,6 +173,159 @@ public class ComputationStepExecutorTest {
     new ComputationStepExecutor(mockComputationSteps(computationStep1), listener).execute();
   }
 
+  @Test
+  public void execute_runs_adjacent_ConcurrentComputationSteps_without_conflict_concurrently() {
+    CountDownLatch latch = new CountDownLatch(1);
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", reads(String.class), writes(Integer.class), () -> await(latch));
+    TestConcurrentStep step2 = new TestConcurrentStep("step2", reads(String.class), writes(Long.class), latch::countDown);
+
+    newConcurrentExecutor(2, step1, step2).execute();
+
+    assertThat(step1.executed).isTrue();
+    assertThat(step2.executed).isTrue();
+    assertThat(step1.thread).isNotSameAs(step2.thread).isNotSameAs(Thread.currentThread());
+    assertThat(profiler.getSteps()).extracting(ComputationProfiler.Entry::getName).containsOnly("step1", "step2");
+  }
+
+  @Test
+  public void execute_runs_ConcurrentComputationStep_after_preceding_steps_it_conflicts_with() {
+    List<String> executions = new CopyOnWriteArrayList<>();
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", reads(), writes(Integer.class), () -> {
+      sleep();
+      executions.add("step1");
+    });
+    TestConcurrentStep step2 = new TestConcurrentStep("step2", reads(), writes(Long.class), () -> {
+      sleep();
+      executions.add("step2");
+    });
+    TestConcurrentStep step3 = new TestConcurrentStep("step3", reads(Integer.class), writes(), () -> executions.add("step3"));
+
+    newConcurrentExecutor(3, step1, step2, step3).execute();
+
+    assertThat(executions).containsOnly("step1", "step2", "step3");
+    assertThat(executions.indexOf("step3")).isGreaterThan(executions.indexOf("step1"));
+  }
+
+  @Test
+  public void execute_runs_ConcurrentComputationSteps_sequentially_when_separated_by_a_ComputationStep() {
+    List<String> executions = new CopyOnWriteArrayList<>();
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", reads(), writes(), () -> {
+      sleep();
+      executions.add("step1");
+    });
+    ComputationStep step2 = mockComputationStep("step2");
+    doAnswer(invocation -> executions.add("step2")).when(step2).execute();
+    TestConcurrentStep step3 = new TestConcurrentStep("step3", reads(), writes(), () -> executions.add("step3"));
+
+    newConcurrentExecutor(3, step1, step2, step3).execute();
+
+    assertThat(executions).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_runs_ConcurrentComputationSteps_sequentially_in_calling_thread_by_default() {
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", reads(), writes(), () -> {
+    });
+    TestConcurrentStep step2 = new TestConcurrentStep("step2", reads(), writes(), () -> {
+    });
+
+    new ComputationStepExecutor(mockComputationSteps(step1, step2), profiler, new MapSettings().asConfig()).execute();
+
+    assertThat(step1.thread).isSameAs(Thread.currentThread());
+    assertThat(step2.thread).isSameAs(Thread.currentThread());
+    assertThat(profiler.getSteps()).extracting(ComputationProfiler.Entry::getName).containsExactly("step1", "step2");
+  }
+
+  @Test
+  public void execute_rethrows_failure_of_ConcurrentComputationStep_once_other_steps_are_executed_and_skips_conflicting_steps() {
+    IllegalStateException failure = new IllegalStateException("Faking step failing");
+    TestConcurrentStep step1 = new TestConcurrentStep("step1", reads(), writes(Integer.class), () -> {
+      throw failure;
+    });
+    TestConcurrentStep step2 = new TestConcurrentStep("step2", reads(), writes(Long.class), ComputationStepExecutorTest::sleep);
+    TestConcurrentStep step3 = new TestConcurrentStep("step3", reads(Integer.class), writes(), () -> {
+    });
+
+    try {
+      newConcurrentExecutor(3, step1, step2, step3).execute();
+      fail("failure of step1 should have been rethrown");
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(failure);
+      assertThat(step2.executed).isTrue();
+      assertThat(step3.executed).isFalse();
+    }
+  }
+
+  private ComputationStepExecutor newConcurrentExecutor(int parallelism, ComputationStep... computationSteps) {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(ComputationStepExecutor.PARALLELISM_PROPERTY, parallelism);
+    return new ComputationStepExecutor(mockComputationSteps(computationSteps), profiler, settings.asConfig());
+  }
+
+  private static Set<Class<?>> reads(Class<?>... classes) {
+    return ImmutableSet.copyOf(classes);
+  }
+
+  private static Set<Class<?>> writes(Class<?>... classes) {
+    return ImmutableSet.copyOf(classes);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(50);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class TestConcurrentStep implements ConcurrentComputationStep {
+    private final String description;
+    private final Set<Class<?>> readDependencies;
+    private final Set<Class<?>> writeDependencies;
+    private final Runnable action;
+    private volatile boolean executed = false;
+    private volatile Thread thread;
+
+    private TestConcurrentStep(String description, Set<Class<?>> readDependencies, Set<Class<?>> writeDependencies, Runnable action) {
+      this.description = description;
+      this.readDependencies = readDependencies;
+      this.writeDependencies = writeDependencies;
+      this.action = action;
+    }
+
+    @Override
+    public Set<Class<?>> getReadDependencies() {
+      return readDependencies;
+    }
+
+    @Override
+    public Set<Class<?>> getWriteDependencies() {
+      return writeDependencies;
+    }
+
+    @Override
+    public void execute() {
+      thread = Thread.currentThread();
+      action.run();
+      executed = true;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
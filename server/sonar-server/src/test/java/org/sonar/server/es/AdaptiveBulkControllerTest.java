@@ -0,0 +1,159 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.AdaptiveBulkController.WINDOW;
+
+public class AdaptiveBulkControllerTest {
+
+  private static final long TARGET_LATENCY = 1_000L;
+  private static final long MIN_CHANGE_INTERVAL = 10_000L;
+  private static final long NOW = 1_000_000L;
+
+  private AdaptiveBulkController underTest = new AdaptiveBulkController(100, 1_000, 400, 0, 3, 1, TARGET_LATENCY, MIN_CHANGE_INTERVAL);
+
+  @Test
+  public void initial_values_are_bounded() {
+    AdaptiveBulkController controller = new AdaptiveBulkController(100, 1_000, 5_000, 1, 3, 0, TARGET_LATENCY, MIN_CHANGE_INTERVAL);
+
+    assertThat(controller.getBulkSizeInBytes()).isEqualTo(1_000);
+    assertThat(controller.getConcurrentRequests()).isEqualTo(1);
+    assertThat(controller.pollChange(NOW)).isFalse();
+  }
+
+  @Test
+  public void nothing_changes_before_end_of_window() {
+    IntStream.range(0, WINDOW - 1).forEach(i -> underTest.onBulkResponse(10, 1, 10, 0));
+
+    assertThat(underTest.pollChange(NOW)).isFalse();
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(400);
+  }
+
+  @Test
+  public void fast_responses_increase_size_then_concurrency() {
+    respond(10);
+    assertThat(underTest.pollChange(NOW)).isTrue();
+    assertThat(underTest.pollChange(NOW)).isFalse();
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(800);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(1);
+
+    respond(10);
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(1_000);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(1);
+
+    respond(10);
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(1_000);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(2);
+
+    respond(10);
+    respond(10);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(3);
+  }
+
+  @Test
+  public void slow_responses_decrease_size() {
+    respond(TARGET_LATENCY + 1);
+    assertThat(underTest.pollChange(NOW)).isTrue();
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(200);
+
+    respond(TARGET_LATENCY + 1);
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(100);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void responses_close_to_target_do_not_change_anything() {
+    respond(TARGET_LATENCY * 3 / 4);
+
+    assertThat(underTest.pollChange(NOW)).isFalse();
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(400);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void rejections_decrease_size_and_concurrency_immediately() {
+    underTest.onBulkResponse(10, 10, 100, 1);
+
+    assertThat(underTest.pollChange(NOW)).isTrue();
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(200);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(0);
+
+    underTest.onBulkRejected();
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(100);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void increases_are_applied_at_most_once_per_interval() {
+    respond(10);
+    assertThat(underTest.pollChange(NOW)).isTrue();
+    assertThat(underTest.getAppliedBulkSizeInBytes()).isEqualTo(800);
+
+    respond(10);
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(1_000);
+    assertThat(underTest.pollChange(NOW + MIN_CHANGE_INTERVAL - 1)).isFalse();
+    assertThat(underTest.getAppliedBulkSizeInBytes()).isEqualTo(800);
+
+    assertThat(underTest.pollChange(NOW + MIN_CHANGE_INTERVAL)).isTrue();
+    assertThat(underTest.getAppliedBulkSizeInBytes()).isEqualTo(1_000);
+  }
+
+  @Test
+  public void decreases_are_applied_immediately() {
+    respond(10);
+    assertThat(underTest.pollChange(NOW)).isTrue();
+
+    underTest.onBulkRejected();
+
+    assertThat(underTest.pollChange(NOW + 1)).isTrue();
+    assertThat(underTest.getAppliedBulkSizeInBytes()).isEqualTo(400);
+    assertThat(underTest.getAppliedConcurrentRequests()).isEqualTo(0);
+  }
+
+  @Test
+  public void changes_cancelling_each_other_are_not_applied() {
+    respond(10);
+    respond(TARGET_LATENCY + 1);
+
+    assertThat(underTest.getBulkSizeInBytes()).isEqualTo(400);
+    assertThat(underTest.pollChange(NOW)).isFalse();
+  }
+
+  @Test
+  public void metrics_are_accumulated() {
+    underTest.onBulkResponse(10, 3, 100, 0);
+    underTest.onBulkResponse(20, 5, 200, 2);
+    underTest.onBulkRejected();
+
+    assertThat(underTest.getBulks()).isEqualTo(3);
+    assertThat(underTest.getItems()).isEqualTo(8);
+    assertThat(underTest.getBytes()).isEqualTo(300);
+    assertThat(underTest.getRejections()).isEqualTo(3);
+    assertThat(underTest.getLatencyMs()).isEqualTo(30);
+  }
+
+  private void respond(long latency) {
+    IntStream.range(0, WINDOW).forEach(i -> underTest.onBulkResponse(latency, 1, 10, 0));
+  }
+}
@@ -30,6 +30,8 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.db.DbTester;
 import org.sonar.server.es.BulkIndexer.Size;
 
@@ -46,6 +48,8 @@ public class BulkIndexerTest {
   public EsTester esTester = new EsTester(new FakeIndexDefinition().setReplicas(1));
   @Rule
   public DbTester dbTester = DbTester.create(testSystem2);
+  @Rule
+  public LogTester logTester = new LogTester();
 
   @Test
   public void index_nothing() {
@@ -96,6 +100,46 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void large_indexers_running_in_parallel_share_temporary_settings() {
+    BulkIndexer.SharedIndexSettings sharedSettings = new BulkIndexer.SharedIndexSettings();
+    BulkIndexer indexer1 = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, sharedSettings, IndexingListener.FAIL_ON_ERROR);
+    BulkIndexer indexer2 = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, sharedSettings, IndexingListener.FAIL_ON_ERROR);
+    indexer1.start();
+    indexer2.start();
+    indexer1.add(newIndexRequest(1));
+    indexer2.add(newIndexRequest(2));
+
+    indexer1.stop();
+    // replicas are still disabled while indexer2 is running
+    assertThat(replicas()).isEqualTo(0);
+
+    indexer2.stop();
+    assertThat(replicas()).isEqualTo(1);
+    assertThat(count()).isEqualTo(2);
+
+    // settings are not shared with the indexers of other runs
+    BulkIndexer otherRun = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, new BulkIndexer.SharedIndexSettings(), IndexingListener.FAIL_ON_ERROR);
+    otherRun.start();
+    assertThat(replicas()).isEqualTo(0);
+    otherRun.stop();
+    assertThat(replicas()).isEqualTo(1);
+  }
+
+  @Test
+  public void large_indexing_logs_throughput() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX_TYPE_FAKE, Size.LARGE);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(logTester.logs(LoggerLevel.INFO))
+      .filteredOn(log -> log.startsWith("Index [fakes]: 10 documents in "))
+      .hasSize(1);
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
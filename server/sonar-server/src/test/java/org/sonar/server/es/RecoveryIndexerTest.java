@@ -296,12 +296,173 @@ public class RecoveryIndexerTest {
     underTest.recover();
 
     assertThatQueueHasSize(0);
+    // the document is indexed once
     assertThat(indexer.called).hasSize(1);
     assertThat(indexer.called.get(0)).extracting(EsQueueDto::getUuid)
-      .containsExactlyInAnyOrder(item1.getUuid(), item2.getUuid(), item3.getUuid());
+      .hasSize(1)
+      .isSubsetOf(item1.getUuid(), item2.getUuid(), item3.getUuid());
 
-    assertThatLogsContain(TRACE, "Elasticsearch recovery - processing 3 [foos/foo]");
-    assertThatLogsContain(INFO, "Elasticsearch recovery - 3 documents processed [0 failures]");
+    assertThatLogsContain(TRACE, "Elasticsearch recovery - processing 1 [foos/foo]");
+    assertThatLogsContain(INFO, "Elasticsearch recovery - 1 documents processed [0 failures]");
+    assertThatLogsContain(INFO, "Elasticsearch recovery - 2 redundant items coalesced");
+    assertThat(underTest.getCoalescedItems()).isEqualTo(2);
+  }
+
+  @Test
+  public void indexer_receives_one_item_per_document() {
+    insertItem(FOO_TYPE, "f1");
+    insertItem(FOO_TYPE, "f1");
+    insertItem(FOO_TYPE, "f2");
+    insertItem(FOO_TYPE, "f1");
+    insertItem(FOO_TYPE, "f2");
+    advanceInTime();
+
+    SuccessfulFakeIndexer indexer = new SuccessfulFakeIndexer(FOO_TYPE);
+    underTest = newRecoveryIndexer(indexer);
+    underTest.recover();
+
+    assertThatQueueHasSize(0);
+    assertThat(indexer.called).hasSize(1);
+    assertThat(indexer.called.get(0)).extracting(EsQueueDto::getDocId).containsExactlyInAnyOrder("f1", "f2");
+    assertThat(underTest.getCoalescedItems()).isEqualTo(3);
+  }
+
+  @Test
+  public void duplicates_of_batch_are_not_deleted_when_indexing_fails() {
+    insertItem(FOO_TYPE, "f1");
+    insertItem(FOO_TYPE, "f1");
+    advanceInTime();
+
+    PartiallyFailingIndexer indexer = new PartiallyFailingIndexer(FOO_TYPE, 0);
+    underTest = newRecoveryIndexer(indexer);
+    underTest.recover();
+
+    assertThat(indexer.called).hasSize(1);
+    assertThatQueueHasSize(2);
+    assertThat(underTest.getCoalescedItems()).isEqualTo(0);
+  }
+
+  @Test
+  public void items_of_document_already_recovered_during_run_are_deleted_without_being_indexed() {
+    EsQueueDto item1 = insertItem(FOO_TYPE, "f1");
+    insertItem(FOO_TYPE, "f2");
+    system2.setNow(system2.now() + 1_000L);
+    EsQueueDto item2 = insertItem(FOO_TYPE, item1.getDocId());
+    advanceInTime();
+
+    SuccessfulFakeIndexer indexer = new SuccessfulFakeIndexer(FOO_TYPE);
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.minAgeInMs", "1")
+      .setProperty("sonar.search.recovery.loopLimit", "1");
+    underTest = newRecoveryIndexer(settings.asConfig(), indexer);
+    underTest.recover();
+
+    assertThatQueueHasSize(0);
+    // most recent item is indexed first, the older one of the same document is not indexed
+    assertThat(indexer.called).hasSize(2);
+    assertThat(indexer.called.get(0)).extracting(EsQueueDto::getUuid).containsExactly(item2.getUuid());
+    assertThat(indexer.called.get(1)).extracting(EsQueueDto::getDocId).containsExactly("f2");
+    assertThatLogsContain(INFO, "Elasticsearch recovery - 1 redundant items coalesced");
+    assertThat(underTest.getCoalescedItems()).isEqualTo(1);
+  }
+
+  @Test
+  public void items_of_document_that_failed_to_be_recovered_are_not_coalesced() {
+    EsQueueDto oldItem = insertItem(FOO_TYPE, "f1");
+    system2.setNow(system2.now() + 1_000L);
+    EsQueueDto newItem = insertItem(FOO_TYPE, oldItem.getDocId());
+    IntStream.range(0, 3).forEach(i -> {
+      system2.setNow(system2.now() + 1_000L);
+      insertItem(FOO_TYPE, "other" + i);
+    });
+    advanceInTime();
+
+    // first batch: the 3 other documents are recovered, but not the most recent item of f1.
+    // second batch: f1 is indexed again from its most recent item, then its old item is deleted.
+    PartiallyFailingIndexer indexer = new PartiallyFailingIndexer(FOO_TYPE, 3, 2);
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.minAgeInMs", "1")
+      .setProperty("sonar.search.recovery.loopLimit", "4");
+    underTest = newRecoveryIndexer(settings.asConfig(), indexer);
+    underTest.recover();
+
+    assertThatQueueHasSize(0);
+    assertThat(indexer.called).hasSize(5);
+    assertThat(indexer.indexed).extracting(EsQueueDto::getUuid).contains(newItem.getUuid()).doesNotContain(oldItem.getUuid());
+    // old item of f1 in the second batch
+    assertThat(underTest.getCoalescedItems()).isEqualTo(1);
+  }
+
+  @Test
+  public void hard_failure_of_a_type_does_not_prevent_recovery_of_other_types() {
+    insertItem(FOO_TYPE, "f1");
+    IndexType barType = new IndexType("bars", "bar");
+    EsQueueDto bar = insertItem(barType, "b1");
+    advanceInTime();
+
+    HardFailingFakeIndexer fooIndexer = new HardFailingFakeIndexer(FOO_TYPE);
+    SuccessfulFakeIndexer barIndexer = new SuccessfulFakeIndexer(barType);
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.minAgeInMs", "1")
+      .setProperty("sonar.search.recovery.parallelism", "2");
+    underTest = newRecoveryIndexer(settings.asConfig(), fooIndexer, barIndexer);
+    underTest.recover();
+
+    assertThatQueueHasSize(1);
+    assertThatLogsContain(ERROR, "Elasticsearch recovery - fail to recover documents [foos/foo]");
+    assertThat(barIndexer.called).hasSize(1);
+    assertThat(barIndexer.called.get(0)).extracting(EsQueueDto::getUuid).containsExactly(bar.getUuid());
+    assertThatLogsContain(INFO, "Elasticsearch recovery - 1 documents processed [0 failures]");
+  }
+
+  @Test
+  public void most_recent_items_are_recovered_first() {
+    EsQueueDto oldest = insertItem(FOO_TYPE, "f1");
+    system2.setNow(system2.now() + 1_000L);
+    EsQueueDto newest = insertItem(FOO_TYPE, "f2");
+    advanceInTime();
+
+    SuccessfulFakeIndexer indexer = new SuccessfulFakeIndexer(FOO_TYPE);
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.minAgeInMs", "1")
+      .setProperty("sonar.search.recovery.loopLimit", "1");
+    underTest = newRecoveryIndexer(settings.asConfig(), indexer);
+    underTest.recover();
+
+    assertThatQueueHasSize(0);
+    assertThat(indexer.called).hasSize(2);
+    assertThat(indexer.called.get(0)).extracting(EsQueueDto::getUuid).containsExactly(newest.getUuid());
+    assertThat(indexer.called.get(1)).extracting(EsQueueDto::getUuid).containsExactly(oldest.getUuid());
+  }
+
+  @Test
+  public void loop_limit_is_adapted_to_duration_of_indexing() {
+    MapSettings settings = new MapSettings()
+      .setProperty("sonar.search.recovery.loopLimit", "1000")
+      .setProperty("sonar.search.recovery.minLoopLimit", "100")
+      .setProperty("sonar.search.recovery.targetLoopDurationInMs", "1000");
+    underTest = newRecoveryIndexer(settings.asConfig());
+
+    // too slow
+    assertThat(underTest.adaptLoopLimit(1000, 1001)).isEqualTo(500);
+    assertThat(underTest.adaptLoopLimit(150, 5000)).isEqualTo(100);
+    // fast enough
+    assertThat(underTest.adaptLoopLimit(500, 499)).isEqualTo(1000);
+    assertThat(underTest.adaptLoopLimit(800, 10)).isEqualTo(1000);
+    // close to target
+    assertThat(underTest.adaptLoopLimit(400, 800)).isEqualTo(400);
+  }
+
+  @Test
+  public void getBacklogSize_returns_number_of_items_in_queue() {
+    underTest = newRecoveryIndexer();
+    assertThat(underTest.getBacklogSize()).isEqualTo(0L);
+
+    insertItem(FOO_TYPE, "f1");
+    insertItem(FOO_TYPE, "f2");
+
+    // recent items are also part of backlog
+    assertThat(underTest.getBacklogSize()).isEqualTo(2L);
   }
 
   private class FailingAlwaysOnSameElementIndexer implements ResilientIndexer {
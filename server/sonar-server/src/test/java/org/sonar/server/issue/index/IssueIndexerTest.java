@@ -105,6 +105,19 @@ public class IssueIndexerTest {
     assertThatIndexHasOnly(issue1, issue2);
   }
 
+  @Test
+  public void indexOnStartup_in_parallel_adds_issues_of_all_projects_to_index() {
+    IssueDto issue1 = db.issues().insertIssue(organization);
+    IssueDto issue2 = db.issues().insertIssue(organization);
+    IssueDto issue3 = db.issues().insertIssue(organization);
+    MapSettings settings = new MapSettings().setProperty("sonar.search.issues.startupIndexing.parallelism", 2);
+    underTest = new IssueIndexer(es.client(), db.getDbClient(), new IssueIteratorFactory(db.getDbClient()), settings.asConfig());
+
+    underTest.indexOnStartup(emptySet());
+
+    assertThatIndexHasOnly(issue1, issue2, issue3);
+  }
+
   @Test
   public void verify_indexed_fields() {
     RuleDefinitionDto rule = db.rules().insert();
@@ -130,6 +130,20 @@ public class IssueIteratorFactoryTest {
     assertThat(issuesByKey).hasSize(2);
   }
 
+  @Test
+  public void iterator_over_issues_from_range_of_projects() {
+    dbTester.prepareDbUnit(getClass(), "many_projects.xml");
+
+    assertThat(issuesByKey(factory -> factory.createForProjectUuidRange(new ProjectUuidRange(null, "THE_PROJECT_2"))))
+      .containsOnlyKeys("ABCDE", "BCDEF");
+    assertThat(issuesByKey(factory -> factory.createForProjectUuidRange(new ProjectUuidRange("THE_PROJECT_2", null))))
+      .containsOnlyKeys("EDCBA");
+    assertThat(issuesByKey(factory -> factory.createForProjectUuidRange(new ProjectUuidRange("THE_PROJECT_1", "THE_PROJECT_2"))))
+      .containsOnlyKeys("ABCDE", "BCDEF");
+    assertThat(issuesByKey(factory -> factory.createForProjectUuidRange(new ProjectUuidRange(null, null))))
+      .containsOnlyKeys("ABCDE", "BCDEF", "EDCBA");
+  }
+
   @Test
   public void extract_directory_path() {
     dbTester.prepareDbUnit(getClass(), "extract_directory_path.xml");
@@ -0,0 +1,73 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectUuidRangeTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void single_range_covers_all_values() {
+    assertThat(toStrings(ProjectUuidRange.partition(emptyList(), 4))).containsExactly("[, [");
+    assertThat(toStrings(ProjectUuidRange.partition(asList("A", "B", "C"), 1))).containsExactly("[, [");
+    assertThat(toStrings(ProjectUuidRange.partition(asList("A"), 4))).containsExactly("[, [");
+  }
+
+  @Test
+  public void ranges_are_contiguous_and_first_and_last_ranges_are_unbounded() {
+    assertThat(toStrings(ProjectUuidRange.partition(asList("A", "B", "C", "D", "E", "F"), 3)))
+      .containsExactly("[, C[", "[C, E[", "[E, [");
+  }
+
+  @Test
+  public void number_of_ranges_is_limited_by_number_of_values() {
+    assertThat(toStrings(ProjectUuidRange.partition(asList("A", "B", "C"), 10)))
+      .containsExactly("[, B[", "[B, C[", "[C, [");
+  }
+
+  @Test
+  public void values_are_evenly_distributed() {
+    assertThat(toStrings(ProjectUuidRange.partition(asList("A", "B", "C", "D", "E", "F", "G"), 3)))
+      .containsExactly("[, C[", "[C, E[", "[E, [");
+  }
+
+  @Test
+  public void fail_if_number_of_ranges_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of ranges must be positive: 0");
+
+    ProjectUuidRange.partition(asList("A", "B"), 0);
+  }
+
+  private static List<String> toStrings(List<ProjectUuidRange> ranges) {
+    return ranges.stream().map(ProjectUuidRange::toString).collect(Collectors.toList());
+  }
+}
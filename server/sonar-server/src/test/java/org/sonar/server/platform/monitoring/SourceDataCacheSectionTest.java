@@ -0,0 +1,57 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
+import org.sonar.server.source.SourceDataCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.platform.monitoring.SystemInfoTesting.assertThatAttributeIs;
+
+public class SourceDataCacheSectionTest {
+
+  private SourceDataCache cache = new SourceDataCache(new MapSettings().asConfig());
+  private SourceDataCacheSection underTest = new SourceDataCacheSection(cache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.toProtobuf().getName()).isEqualTo("Web Source Cache");
+  }
+
+  @Test
+  public void usage_of_cache() {
+    cache.put("FILE_1", "HASH_1", DbFileSources.Data.newBuilder().build());
+    cache.get("FILE_1", "HASH_1");
+    cache.get("FILE_1", "HASH_2");
+    cache.get("FILE_2", "HASH_1");
+
+    ProtobufSystemInfo.Section section = underTest.toProtobuf();
+
+    assertThatAttributeIs(section, "Enabled", true);
+    assertThatAttributeIs(section, "Max Size", "50 MB");
+    assertThatAttributeIs(section, "Files", 1L);
+    assertThatAttributeIs(section, "Hits", 1L);
+    assertThatAttributeIs(section, "Misses", 2L);
+    assertThatAttributeIs(section, "Evictions", 0L);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceDataCacheTest {
+
+  private static final DbFileSources.Data DATA = DbFileSources.Data.newBuilder()
+    .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("SOURCE_1"))
+    .build();
+
+  private MapSettings settings = new MapSettings();
+
+  @Test
+  public void max_size_is_50MB_by_default() {
+    SourceDataCache underTest = new SourceDataCache(settings.asConfig());
+
+    assertThat(underTest.isEnabled()).isTrue();
+    assertThat(underTest.getMaxSizeInBytes()).isEqualTo(50L * 1024 * 1024);
+  }
+
+  @Test
+  public void get_returns_data_put_with_same_file_uuid_and_data_hash() {
+    SourceDataCache underTest = new SourceDataCache(settings.asConfig());
+
+    underTest.put("FILE_1", "HASH_1", DATA);
+
+    assertThat(underTest.get("FILE_1", "HASH_1")).isSameAs(DATA);
+    assertThat(underTest.get("FILE_1", "HASH_2")).isNull();
+    assertThat(underTest.get("FILE_2", "HASH_1")).isNull();
+    assertThat(underTest.getSize()).isEqualTo(1);
+    assertThat(underTest.getStats().hitCount()).isEqualTo(1);
+    assertThat(underTest.getStats().missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void put_does_nothing_if_cache_is_disabled() {
+    settings.setProperty(SourceDataCache.MAX_SIZE_IN_MB_PROPERTY, 0);
+    SourceDataCache underTest = new SourceDataCache(settings.asConfig());
+
+    underTest.put("FILE_1", "HASH_1", DATA);
+
+    assertThat(underTest.isEnabled()).isFalse();
+    assertThat(underTest.get("FILE_1", "HASH_1")).isNull();
+    assertThat(underTest.getSize()).isEqualTo(0);
+    assertThat(underTest.isCacheable(1L)).isFalse();
+  }
+
+  @Test
+  public void put_does_nothing_if_data_is_bigger_than_half_of_a_segment() {
+    settings.setProperty(SourceDataCache.MAX_SIZE_IN_MB_PROPERTY, 1);
+    SourceDataCache underTest = new SourceDataCache(settings.asConfig());
+    DbFileSources.Data.Builder bigData = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= 2_000; i++) {
+      bigData.addLines(DbFileSources.Line.newBuilder().setLine(i).setSource(StringUtils.repeat("a", 100)));
+    }
+
+    underTest.put("FILE_1", "HASH_1", bigData.build());
+
+    assertThat(underTest.get("FILE_1", "HASH_1")).isNull();
+    assertThat(underTest.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void data_is_cacheable_if_its_compressed_size_is_small_enough() {
+    settings.setProperty(SourceDataCache.MAX_SIZE_IN_MB_PROPERTY, 1);
+    SourceDataCache underTest = new SourceDataCache(settings.asConfig());
+
+    // 1MB split in 4 segments, at most half of a segment per entry, compression ratio 4
+    assertThat(underTest.isCacheable(32L * 1024)).isTrue();
+    assertThat(underTest.isCacheable(32L * 1024 + 1)).isFalse();
+  }
+}
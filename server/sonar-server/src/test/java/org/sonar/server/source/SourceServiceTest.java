@@ -27,6 +27,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.protobuf.DbFileSources;
@@ -49,7 +50,10 @@ public class SourceServiceTest {
 
   HtmlSourceDecorator htmlDecorator = mock(HtmlSourceDecorator.class);
 
-  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator);
+  MapSettings settings = new MapSettings();
+  SourceDataCache cache = new SourceDataCache(settings.asConfig());
+
+  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, cache);
 
   @Before
   public void injectFakeLines() throws IOException {
@@ -71,6 +75,83 @@ public class SourceServiceTest {
     assertThat(lines.get(2).getLine()).isEqualTo(7);
   }
 
+  @Test
+  public void get_range_of_lines_of_file_stored_in_chunks() throws Exception {
+    FileSourceDto dto = new FileSourceDto()
+      .setFileUuid("CHUNKED_FILE_UUID")
+      .setProjectUuid("PROJECT_UUID")
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setBinaryData(FileSourceDto.encodeSourceData(FileSourceTesting.newFakeData(10).build(), 3));
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), dto);
+    dbTester.commit();
+
+    Optional<Iterable<DbFileSources.Line>> linesOpt = underTest.getLines(dbTester.getSession(), "CHUNKED_FILE_UUID", 3, 8);
+
+    assertThat(linesOpt.get()).extracting(DbFileSources.Line::getLine).containsExactly(3, 4, 5, 6, 7, 8);
+  }
+
+  @Test
+  public void getLines_reads_source_data_from_cache_when_data_hash_is_unchanged() throws Exception {
+    insertFileWithDataHash("CACHED_FILE_UUID", "HASH_1", 10);
+
+    assertThat(underTest.getLines(dbTester.getSession(), "CACHED_FILE_UUID", 1, 2).get()).hasSize(2);
+    assertThat(underTest.getLines(dbTester.getSession(), "CACHED_FILE_UUID", 5, 7).get())
+      .extracting(DbFileSources.Line::getLine).containsExactly(5, 6, 7);
+
+    assertThat(cache.getStats().missCount()).isEqualTo(1);
+    assertThat(cache.getStats().hitCount()).isEqualTo(1);
+    assertThat(cache.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void getLines_does_not_return_cached_source_data_if_data_hash_changed() throws Exception {
+    insertFileWithDataHash("CACHED_FILE_UUID", "HASH_1", 10);
+    underTest.getLines(dbTester.getSession(), "CACHED_FILE_UUID", 1, 2);
+
+    FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "CACHED_FILE_UUID");
+    dto.setSourceData(FileSourceTesting.newFakeData(3).build());
+    dto.setDataHash("HASH_2");
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto);
+    dbTester.commit();
+
+    assertThat(underTest.getLines(dbTester.getSession(), "CACHED_FILE_UUID", 1, 10).get()).hasSize(3);
+    assertThat(cache.getStats().hitCount()).isEqualTo(0);
+    assertThat(cache.getStats().missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getLines_does_not_populate_cache_if_disabled() throws Exception {
+    settings.setProperty(SourceDataCache.MAX_SIZE_IN_MB_PROPERTY, 0);
+    cache = new SourceDataCache(settings.asConfig());
+    underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, cache);
+    insertFileWithDataHash("CACHED_FILE_UUID", "HASH_1", 10);
+
+    underTest.getLines(dbTester.getSession(), "CACHED_FILE_UUID", 1, 2);
+    assertThat(underTest.getLines(dbTester.getSession(), "CACHED_FILE_UUID", 5, 7).get()).hasSize(3);
+
+    assertThat(cache.getSize()).isEqualTo(0);
+    assertThat(cache.getStats().hitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void getLines_does_not_populate_cache_with_data_too_big_to_be_cached() throws Exception {
+    settings.setProperty(SourceDataCache.MAX_SIZE_IN_MB_PROPERTY, 1);
+    cache = new SourceDataCache(settings.asConfig());
+    underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, cache);
+    FileSourceDto dto = new FileSourceDto()
+      .setFileUuid("BIG_FILE_UUID")
+      .setProjectUuid("PROJECT_UUID")
+      .setDataHash("HASH_1");
+    dto.setSourceData(FileSourceTesting.newRandomData(1_000).build());
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), dto);
+    dbTester.commit();
+
+    assertThat(underTest.getLines(dbTester.getSession(), "BIG_FILE_UUID", 5, 7).get())
+      .extracting(DbFileSources.Line::getLine).containsExactly(5, 6, 7);
+
+    assertThat(cache.getSize()).isEqualTo(0);
+  }
+
   @Test
   public void get_range_of_lines_as_raw_text() throws Exception {
     Optional<Iterable<String>> linesOpt = underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 5, 7);
@@ -120,4 +201,13 @@ public class SourceServiceTest {
     assertThat(lines.isPresent()).isFalse();
   }
 
+  private void insertFileWithDataHash(String fileUuid, String dataHash, int numberOfLines) throws IOException {
+    FileSourceDto dto = new FileSourceDto()
+      .setFileUuid(fileUuid)
+      .setProjectUuid("PROJECT_UUID")
+      .setDataHash(dataHash);
+    dto.setSourceData(FileSourceTesting.newFakeData(numberOfLines).build());
+    dbTester.getDbClient().fileSourceDao().insert(dbTester.getSession(), dto);
+    dbTester.commit();
+  }
 }
@@ -19,15 +19,20 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
@@ -52,6 +57,103 @@ public class DiskCacheTest {
     }
   }
 
+  @Test
+  public void append_with_multiple_appenders() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    cache.newAppender().append("foo").close();
+    cache.newAppender().append("bar").append("baz").close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  @Test
+  public void write_and_read_multiple_blocks() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    String bigValue = StringUtils.repeat("a", DiskCache.BLOCK_SIZE);
+    List<String> expected = new ArrayList<>();
+    try (DiskCache<String>.DiskAppender appender = cache.newAppender()) {
+      for (int i = 0; i < 1_000; i++) {
+        String value = i % 100 == 0 ? bigValue + i : ("value" + i);
+        appender.append(value);
+        expected.add(value);
+      }
+    }
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test
+  public void use_custom_codec() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new Utf8Codec());
+    cache.newAppender()
+      .append("foo")
+      .append("")
+      .append("bar")
+      .close();
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "", "bar");
+    }
+  }
+
+  @Test
+  public void traverse_by_index_key() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new Utf8Codec(), s -> s.substring(0, 1));
+    cache.newAppender()
+      .append("a1")
+      .append("a2")
+      .append("b1")
+      .append("a3")
+      .close();
+    cache.newAppender()
+      .append("c1")
+      .append("a4")
+      .close();
+
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).containsExactly("a1", "a2", "a3", "a4");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("c")) {
+      assertThat(traverse).containsExactly("c1");
+    }
+    try (CloseableIterator<String> traverse = cache.traverse("unknown")) {
+      assertThat(traverse).isEmpty();
+    }
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("a1", "a2", "b1", "a3", "c1", "a4");
+    }
+  }
+
+  @Test
+  public void traverse_by_index_key_with_multiple_blocks_per_key() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new Utf8Codec(), s -> s.substring(0, 1));
+    String bigValue = StringUtils.repeat("x", DiskCache.BLOCK_SIZE);
+    cache.newAppender()
+      .append("a" + bigValue)
+      .append("a1")
+      .append("b1")
+      .close();
+
+    try (CloseableIterator<String> traverse = cache.traverse("a")) {
+      assertThat(traverse).containsExactly("a" + bigValue, "a1");
+    }
+  }
+
+  @Test
+  public void fail_to_traverse_by_index_key_if_cache_is_not_indexed() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE);
+    try {
+      cache.traverse("a");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Cache is not indexed");
+    }
+  }
+
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
@@ -77,4 +179,16 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  private static class Utf8Codec implements DiskCacheCodec<String> {
+    @Override
+    public void encode(String object, OutputStream output) throws IOException {
+      output.write(object.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String decode(byte[] bytes, int offset, int length) {
+      return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+  }
 }
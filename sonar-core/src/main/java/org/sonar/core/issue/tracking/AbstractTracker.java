@@ -19,11 +19,15 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.issue.Issue;
@@ -33,28 +37,30 @@ import static java.util.Comparator.comparing;
 
 public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
 
-  protected void match(Tracking<RAW, BASE> tracking, Function<Trackable, SearchKey> searchKeyFactory) {
+  protected void match(Tracking<RAW, BASE> tracking, SearchKeyFieldsCache fieldsCache, Function<SearchKeyFields, SearchKey> searchKeyFactory) {
 
     if (tracking.isComplete()) {
       return;
     }
 
-    Multimap<SearchKey, BASE> baseSearch = ArrayListMultimap.create();
+    Map<SearchKey, Candidates<BASE>> baseSearch = new HashMap<>();
     for (BASE base : tracking.getUnmatchedBases()) {
-      baseSearch.put(searchKeyFactory.apply(base), base);
+      baseSearch.computeIfAbsent(searchKeyFactory.apply(fieldsCache.get(base)), k -> new Candidates<>()).add(base);
+    }
+    if (baseSearch.isEmpty()) {
+      return;
     }
 
+    Comparator<BASE> candidateOrder = comparing(this::statusRank).reversed()
+      .thenComparing(comparing(Trackable::getCreationDate));
     for (RAW raw : tracking.getUnmatchedRaws()) {
-      SearchKey rawKey = searchKeyFactory.apply(raw);
-      Collection<BASE> bases = baseSearch.get(rawKey);
-      bases.stream()
-        .sorted(comparing(this::statusRank).reversed()
-          .thenComparing(comparing(Trackable::getCreationDate)))
-        .findFirst()
-        .ifPresent(match -> {
+      Candidates<BASE> candidates = baseSearch.get(searchKeyFactory.apply(fieldsCache.get(raw)));
+      if (candidates != null) {
+        BASE match = candidates.poll(candidateOrder);
+        if (match != null) {
           tracking.match(raw, match);
-          baseSearch.remove(rawKey, match);
-        });
+        }
+      }
     }
   }
 
@@ -69,18 +75,85 @@ public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  protected interface SearchKey {
+  /**
+   * Base issues sharing the same search key. They are sorted only once, when the first raw issue
+   * with this key is looked up, then consumed in order.
+   */
+  private static class Candidates<BASE> {
+    private final List<BASE> bases = new ArrayList<>(1);
+    private boolean sorted = false;
+    private int next = 0;
+
+    void add(BASE base) {
+      bases.add(base);
+    }
+
+    @CheckForNull
+    BASE poll(Comparator<BASE> order) {
+      if (next >= bases.size()) {
+        return null;
+      }
+      if (!sorted) {
+        bases.sort(order);
+        sorted = true;
+      }
+      BASE base = bases.get(next);
+      next++;
+      return base;
+    }
   }
 
-  protected static class LineAndLineHashKey implements SearchKey {
+  /**
+   * Fields of an issue used by search keys, with their hash codes. They are computed once per issue and tracking run,
+   * then shared by the search keys of all the matching passes.
+   */
+  protected static final class SearchKeyFields {
     private final RuleKey ruleKey;
-    private final String lineHash;
     private final Integer line;
+    private final String lineHash;
+    private final String message;
+    private final int ruleKeyHashCode;
+    private final int lineHashCode;
+    private final int lineHashHashCode;
+    private final int messageHashCode;
 
-    protected LineAndLineHashKey(Trackable trackable) {
+    private SearchKeyFields(Trackable trackable) {
       this.ruleKey = trackable.getRuleKey();
       this.line = trackable.getLine();
       this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
+      this.message = trackable.getMessage();
+      this.ruleKeyHashCode = ruleKey.hashCode();
+      this.lineHashCode = line != null ? line : 0;
+      this.lineHashHashCode = lineHash.hashCode();
+      this.messageHashCode = Objects.hashCode(message);
+    }
+  }
+
+  /**
+   * Fields of the search keys of the issues of a single tracking run
+   */
+  protected static final class SearchKeyFieldsCache {
+    private final Map<Trackable, SearchKeyFields> fieldsByTrackable = new IdentityHashMap<>();
+
+    SearchKeyFields get(Trackable trackable) {
+      return fieldsByTrackable.computeIfAbsent(trackable, SearchKeyFields::new);
+    }
+  }
+
+  /**
+   * Keys are created from the {@link SearchKeyFields} of issues, so that their hash code is computed without
+   * reading nor hashing the fields of issues again.
+   */
+  protected interface SearchKey {
+  }
+
+  protected static class LineAndLineHashKey implements SearchKey {
+    private final SearchKeyFields fields;
+    private final int hashCode;
+
+    protected LineAndLineHashKey(SearchKeyFields fields) {
+      this.fields = fields;
+      this.hashCode = 31 * (31 * fields.ruleKeyHashCode + fields.lineHashHashCode) + fields.lineHashCode;
     }
 
     @Override
@@ -88,28 +161,26 @@ public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
       if (this == o) {
         return true;
       }
-      LineAndLineHashKey that = (LineAndLineHashKey) o;
+      SearchKeyFields that = ((LineAndLineHashKey) o).fields;
       // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
+      return Objects.equals(fields.line, that.line)
+        && fields.lineHash.equals(that.lineHash)
+        && fields.ruleKey.equals(that.ruleKey);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(ruleKey, lineHash, line != null ? line : 0);
+      return hashCode;
     }
   }
 
   protected static class LineHashAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final String lineHash;
+    private final SearchKeyFields fields;
+    private final int hashCode;
 
-    LineHashAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
+    LineHashAndMessageKey(SearchKeyFields fields) {
+      this.fields = fields;
+      this.hashCode = 31 * (31 * fields.ruleKeyHashCode + fields.messageHashCode) + fields.lineHashHashCode;
     }
 
     @Override
@@ -117,28 +188,26 @@ public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
       if (this == o) {
         return true;
       }
-      LineHashAndMessageKey that = (LineHashAndMessageKey) o;
+      SearchKeyFields that = ((LineHashAndMessageKey) o).fields;
       // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
+      return fields.lineHash.equals(that.lineHash)
+        && fields.message.equals(that.message)
+        && fields.ruleKey.equals(that.ruleKey);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(ruleKey, message, lineHash);
+      return hashCode;
     }
   }
 
   protected static class LineAndMessageKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String message;
-    private final Integer line;
+    private final SearchKeyFields fields;
+    private final int hashCode;
 
-    LineAndMessageKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.message = trackable.getMessage();
-      this.line = trackable.getLine();
+    LineAndMessageKey(SearchKeyFields fields) {
+      this.fields = fields;
+      this.hashCode = 31 * (31 * fields.ruleKeyHashCode + fields.messageHashCode) + fields.lineHashCode;
     }
 
     @Override
@@ -146,26 +215,26 @@ public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
       if (this == o) {
         return true;
       }
-      LineAndMessageKey that = (LineAndMessageKey) o;
+      SearchKeyFields that = ((LineAndMessageKey) o).fields;
       // start with most discriminant field
-      return Objects.equals(line, that.line)
-        && message.equals(that.message)
-        && ruleKey.equals(that.ruleKey);
+      return Objects.equals(fields.line, that.line)
+        && fields.message.equals(that.message)
+        && fields.ruleKey.equals(that.ruleKey);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(ruleKey, message, line != null ? line : 0);
+      return hashCode;
     }
   }
 
   protected static class LineHashKey implements SearchKey {
-    private final RuleKey ruleKey;
-    private final String lineHash;
+    private final SearchKeyFields fields;
+    private final int hashCode;
 
-    LineHashKey(Trackable trackable) {
-      this.ruleKey = trackable.getRuleKey();
-      this.lineHash = StringUtils.defaultString(trackable.getLineHash(), "");
+    LineHashKey(SearchKeyFields fields) {
+      this.fields = fields;
+      this.hashCode = 31 * fields.ruleKeyHashCode + fields.lineHashHashCode;
     }
 
     @Override
@@ -173,15 +242,15 @@ public class AbstractTracker<RAW extends Trackable, BASE extends Trackable> {
       if (this == o) {
         return true;
       }
-      LineHashKey that = (LineHashKey) o;
+      SearchKeyFields that = ((LineHashKey) o).fields;
       // start with most discriminant field
-      return lineHash.equals(that.lineHash)
-        && ruleKey.equals(that.ruleKey);
+      return fields.lineHash.equals(that.lineHash)
+        && fields.ruleKey.equals(that.ruleKey);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(ruleKey, lineHash);
+      return hashCode;
     }
   }
 
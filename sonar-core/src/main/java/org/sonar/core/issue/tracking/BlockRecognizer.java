@@ -19,9 +19,8 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -39,11 +38,11 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     BlockHashSequence rawHashSequence = rawInput.getBlockHashSequence();
     BlockHashSequence baseHashSequence = baseInput.getBlockHashSequence();
 
-    Multimap<Integer, RAW> rawsByLine = groupByLine(tracking.getUnmatchedRaws(), rawHashSequence);
-    Multimap<Integer, BASE> basesByLine = groupByLine(tracking.getUnmatchedBases(), baseHashSequence);
+    TrackablesByLine<RAW> rawsByLine = groupByLine(tracking.getUnmatchedRaws(), rawHashSequence);
+    TrackablesByLine<BASE> basesByLine = groupByLine(tracking.getUnmatchedBases(), baseHashSequence);
     Map<Integer, HashOccurrence> occurrencesByHash = new HashMap<>();
 
-    for (Integer line : basesByLine.keySet()) {
+    for (int line : basesByLine.lines()) {
       int hash = baseHashSequence.getBlockHashForLine(line);
       HashOccurrence hashOccurrence = occurrencesByHash.get(hash);
       if (hashOccurrence == null) {
@@ -57,7 +56,7 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       }
     }
 
-    for (Integer line : rawsByLine.keySet()) {
+    for (int line : rawsByLine.lines()) {
       int hash = rawHashSequence.getBlockHashForLine(line);
       HashOccurrence hashOccurrence = occurrencesByHash.get(hash);
       if (hashOccurrence != null) {
@@ -70,19 +69,21 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       if (hashOccurrence.baseCount == 1 && hashOccurrence.rawCount == 1) {
         // Guaranteed that baseLine has been moved to rawLine, so we can map all issues on baseLine to all issues on rawLine
         map(rawsByLine.get(hashOccurrence.rawLine), basesByLine.get(hashOccurrence.baseLine), tracking);
-        basesByLine.removeAll(hashOccurrence.baseLine);
-        rawsByLine.removeAll(hashOccurrence.rawLine);
+        basesByLine.remove(hashOccurrence.baseLine);
+        rawsByLine.remove(hashOccurrence.rawLine);
       }
     }
 
     // Check if remaining number of lines exceeds threshold. It avoids processing too many combinations.
-    if (basesByLine.keySet().size() * rawsByLine.keySet().size() >= 250_000) {
+    if ((long) basesByLine.size() * rawsByLine.size() >= 250_000) {
       return;
     }
 
-    List<LinePair> possibleLinePairs = Lists.newArrayList();
-    for (Integer baseLine : basesByLine.keySet()) {
-      for (Integer rawLine : rawsByLine.keySet()) {
+    int[] baseLines = basesByLine.lines();
+    int[] rawLines = rawsByLine.lines();
+    List<LinePair> possibleLinePairs = new ArrayList<>(baseLines.length * rawLines.length);
+    for (int baseLine : baseLines) {
+      for (int rawLine : rawLines) {
         int weight = lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
         possibleLinePairs.add(new LinePair(baseLine, rawLine, weight));
       }
@@ -132,8 +133,8 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     }
   }
 
-  private static <T extends Trackable> Multimap<Integer, T> groupByLine(Iterable<T> trackables, BlockHashSequence hashSequence) {
-    Multimap<Integer, T> result = LinkedHashMultimap.create();
+  private static <T extends Trackable> TrackablesByLine<T> groupByLine(Iterable<T> trackables, BlockHashSequence hashSequence) {
+    TrackablesByLine<T> result = new TrackablesByLine<>(hashSequence.length());
     for (T trackable : trackables) {
       Integer line = trackable.getLine();
       if (hashSequence.hasLine(line)) {
@@ -143,6 +144,69 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     return result;
   }
 
+  /**
+   * Trackables grouped by line. Buckets are indexed by line number, and lines are returned
+   * in the order of their first occurrence.
+   */
+  private static class TrackablesByLine<T> {
+    private final List<List<T>> byLine;
+    private int[] lines = new int[16];
+    private int lineCount = 0;
+    private int size = 0;
+
+    TrackablesByLine(int numberOfLines) {
+      this.byLine = new ArrayList<>(Collections.nCopies(numberOfLines + 1, null));
+    }
+
+    void put(int line, T trackable) {
+      List<T> bucket = byLine.get(line);
+      if (bucket == null) {
+        bucket = new ArrayList<>(1);
+        byLine.set(line, bucket);
+        if (lineCount == lines.length) {
+          lines = Arrays.copyOf(lines, lineCount * 2);
+        }
+        lines[lineCount] = line;
+        lineCount++;
+        size++;
+      }
+      bucket.add(trackable);
+    }
+
+    List<T> get(int line) {
+      List<T> bucket = byLine.get(line);
+      return bucket == null ? Collections.emptyList() : bucket;
+    }
+
+    void remove(int line) {
+      if (byLine.set(line, null) != null) {
+        size--;
+      }
+    }
+
+    /**
+     * Number of lines having at least one trackable
+     */
+    int size() {
+      return size;
+    }
+
+    /**
+     * Lines having at least one trackable
+     */
+    int[] lines() {
+      int[] result = new int[size];
+      int i = 0;
+      for (int l = 0; l < lineCount; l++) {
+        if (byLine.get(lines[l]) != null) {
+          result[i] = lines[l];
+          i++;
+        }
+      }
+      return result;
+    }
+  }
+
   private static class LinePair {
     int baseLine;
     int rawLine;
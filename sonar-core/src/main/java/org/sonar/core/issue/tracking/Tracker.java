@@ -28,22 +28,23 @@ public class Tracker<RAW extends Trackable, BASE extends Trackable> extends Abst
 
   public Tracking<RAW, BASE> track(Input<RAW> rawInput, Input<BASE> baseInput) {
     Tracking<RAW, BASE> tracking = new Tracking<>(rawInput.getIssues(), baseInput.getIssues());
+    SearchKeyFieldsCache fieldsCache = new SearchKeyFieldsCache();
 
     // 1. match issues with same rule, same line and same line hash, but not necessarily with same message
-    match(tracking, LineAndLineHashKey::new);
+    match(tracking, fieldsCache, LineAndLineHashKey::new);
 
     // 2. detect code moves by comparing blocks of codes
     detectCodeMoves(rawInput, baseInput, tracking);
 
     // 3. match issues with same rule, same message and same line hash
-    match(tracking, LineHashAndMessageKey::new);
+    match(tracking, fieldsCache, LineHashAndMessageKey::new);
 
     // 4. match issues with same rule, same line and same message
-    match(tracking, LineAndMessageKey::new);
+    match(tracking, fieldsCache, LineAndMessageKey::new);
 
     // 5. match issues with same rule and same line hash but different line and different message.
     // See SONAR-2812
-    match(tracking, LineHashKey::new);
+    match(tracking, fieldsCache, LineHashKey::new);
 
     return tracking;
   }
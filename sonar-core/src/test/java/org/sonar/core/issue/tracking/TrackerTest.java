@@ -20,8 +20,10 @@
 package org.sonar.core.issue.tracking;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -382,6 +384,51 @@ public class TrackerTest {
     assertThat(tracking.baseFor(raw1)).isEqualTo(base1);
   }
 
+  @Test
+  public void resolved_then_oldest_base_issue_is_matched_first_when_several_have_the_same_key() {
+    FakeInput baseInput = new FakeInput("H1");
+    Issue openBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_OPEN, new Date(1_000L));
+    Issue newResolvedBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_RESOLVED, new Date(3_000L));
+    Issue oldResolvedBase = new Issue(1, "H1", RULE_SYSTEM_PRINT, "msg", org.sonar.api.issue.Issue.STATUS_RESOLVED, new Date(2_000L));
+    baseInput.addIssue(openBase).addIssue(newResolvedBase).addIssue(oldResolvedBase);
+
+    FakeInput rawInput = new FakeInput("H1");
+    Issue raw1 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw2 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+    Issue raw3 = rawInput.createIssueOnLine(1, RULE_SYSTEM_PRINT, "msg");
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+    assertThat(tracking.baseFor(raw1)).isSameAs(oldResolvedBase);
+    assertThat(tracking.baseFor(raw2)).isSameAs(newResolvedBase);
+    assertThat(tracking.baseFor(raw3)).isSameAs(openBase);
+  }
+
+  /**
+   * Generated code usually has many identical lines, and so many issues with the same keys
+   */
+  @Test
+  public void match_all_issues_of_file_with_many_identical_lines() {
+    int nbLines = 20_000;
+    String[] baseHashes = new String[nbLines];
+    String[] rawHashes = new String[nbLines + 2];
+    Arrays.fill(baseHashes, "H");
+    Arrays.fill(rawHashes, "H");
+    rawHashes[0] = "NEW1";
+    rawHashes[1] = "NEW2";
+    FakeInput baseInput = new FakeInput(baseHashes);
+    FakeInput rawInput = new FakeInput(rawHashes);
+    for (int line = 1; line <= nbLines; line++) {
+      baseInput.createIssueOnLine(line, RULE_SYSTEM_PRINT, "msg " + (line % 10));
+      rawInput.createIssueOnLine(line + 2, RULE_SYSTEM_PRINT, "msg " + (line % 10));
+    }
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    assertThat(tracking.getMatchedRaws()).hasSize(nbLines);
+    assertThat(tracking.getUnmatchedBases()).isEmpty();
+    assertThat(new HashSet<>(tracking.getMatchedRaws().values())).hasSize(nbLines);
+  }
+
   private static class Issue implements Trackable {
     private final RuleKey ruleKey;
     private final Integer line;
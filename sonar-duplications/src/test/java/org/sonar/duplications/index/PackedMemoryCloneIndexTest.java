@@ -28,6 +28,9 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.is;
@@ -110,6 +113,27 @@ public class PackedMemoryCloneIndexTest {
     
   }
 
+  /**
+   * Given: sorted index.
+   * Expected: queries by hash from several threads should not interfere.
+   */
+  @Test
+  public void should_find_blocks_concurrently() {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("a", i));
+      index.insert(newBlock("b", i % 10));
+    }
+    index.iterator();
+
+    List<Integer> sizes = IntStream.range(0, 10_000).parallel()
+      .mapToObj(i -> index.getBySequenceHash(new ByteArray((long) i % 20)).size())
+      .collect(Collectors.toList());
+
+    for (int i = 0; i < sizes.size(); i++) {
+      assertThat(sizes.get(i), is(i % 20 < 10 ? 101 : 1));
+    }
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
@@ -177,5 +177,15 @@ public interface FileSystem {
      * @since 6.3
      */
     Iterable<InputFile> getFilesByExtension(String extension);
+
+    /**
+     * @since 7.0
+     */
+    Iterable<InputFile> getFilesByLanguage(String language);
+
+    /**
+     * @since 7.0
+     */
+    Iterable<InputFile> getFilesByType(InputFile.Type type);
   }
 }
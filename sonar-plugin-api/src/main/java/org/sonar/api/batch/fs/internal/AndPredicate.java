@@ -83,10 +83,25 @@ class AndPredicate extends AbstractFilePredicate implements OperatorPredicate {
     if (predicates.isEmpty()) {
       return index.inputFiles();
     }
-    // Optimization, use get on first predicate then filter with next predicates
-    Iterable<InputFile> result = predicates.get(0).get(index);
-    for (int i = 1; i < predicates.size(); i++) {
-      result = predicates.get(i).filter(result);
+    // Optimization, use get on the most selective indexed predicate then filter with the other predicates
+    int selected = 0;
+    Iterable<InputFile> candidates = predicates.get(0).get(index);
+    for (int i = 1; i < predicates.size() && predicates.get(i).priority() >= USE_INDEX; i++) {
+      if (!(candidates instanceof Collection) || ((Collection<InputFile>) candidates).isEmpty()) {
+        // size of candidates is unknown or can't be improved
+        break;
+      }
+      Iterable<InputFile> otherCandidates = predicates.get(i).get(index);
+      if (otherCandidates instanceof Collection && ((Collection<InputFile>) otherCandidates).size() < ((Collection<InputFile>) candidates).size()) {
+        selected = i;
+        candidates = otherCandidates;
+      }
+    }
+    Iterable<InputFile> result = candidates;
+    for (int i = 0; i < predicates.size(); i++) {
+      if (i != selected) {
+        result = predicates.get(i).filter(result);
+      }
     }
     return result;
   }
@@ -21,8 +21,11 @@ package org.sonar.api.batch.fs.internal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem.Index;
 import org.sonar.api.batch.fs.InputFile;
 
 /**
@@ -54,6 +57,28 @@ class OrPredicate extends AbstractFilePredicate implements OperatorPredicate {
     return result;
   }
 
+  @Override
+  public Iterable<InputFile> get(Index index) {
+    if (!isIndexed()) {
+      return super.get(index);
+    }
+    // Optimization, merge the files returned by the indexes of all predicates
+    Set<InputFile> result = new LinkedHashSet<>();
+    for (FilePredicate predicate : predicates) {
+      ((OptimizedFilePredicate) predicate).get(index).forEach(result::add);
+    }
+    return result;
+  }
+
+  @Override
+  public int priority() {
+    return isIndexed() ? USE_INDEX : DEFAULT_PRIORITY;
+  }
+
+  private boolean isIndexed() {
+    return predicates.stream().allMatch(p -> p instanceof OptimizedFilePredicate && ((OptimizedFilePredicate) p).priority() >= USE_INDEX);
+  }
+
   @Override
   public boolean apply(InputFile f) {
     for (FilePredicate predicate : predicates) {
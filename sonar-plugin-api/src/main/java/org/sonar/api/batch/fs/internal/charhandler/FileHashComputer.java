@@ -19,12 +19,7 @@
  */
 package org.sonar.api.batch.fs.internal.charhandler;
 
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
 import javax.annotation.CheckForNull;
@@ -35,43 +30,38 @@ import org.apache.commons.codec.digest.DigestUtils;
 public class FileHashComputer extends CharHandler {
   private static final char LINE_FEED = '\n';
 
-  
+
   private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-  private StringBuilder sb = new StringBuilder();
-  private final CharsetEncoder encoder;
+  private final Utf8LineBuffer line = new Utf8LineBuffer();
   private final String filePath;
 
   public FileHashComputer(String filePath) {
-    encoder = StandardCharsets.UTF_8.newEncoder()
-      .onMalformedInput(CodingErrorAction.REPLACE)
-      .onUnmappableCharacter(CodingErrorAction.REPLACE);
     this.filePath = filePath;
   }
 
   @Override
   public void handleIgnoreEoL(char c) {
-    sb.append(c);
+    line.append(c);
   }
 
   @Override
   public void newLine() {
-    sb.append(LINE_FEED);
+    line.append(LINE_FEED);
     processBuffer();
-    sb.setLength(0);
+    line.clear();
   }
 
   @Override
   public void eof() {
-    if (sb.length() > 0) {
+    if (line.length() > 0) {
       processBuffer();
     }
   }
 
   private void processBuffer() {
     try {
-      if (sb.length() > 0) {
-        ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-        globalMd5Digest.update(encoded.array(), 0, encoded.limit());
+      if (line.length() > 0) {
+        line.updateDigest(globalMd5Digest);
       }
     } catch (CharacterCodingException e) {
       throw new IllegalStateException("Error encoding line hash in file: " + filePath, e);
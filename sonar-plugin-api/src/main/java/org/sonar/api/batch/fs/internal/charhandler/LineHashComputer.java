@@ -20,12 +20,7 @@
 package org.sonar.api.batch.fs.internal.charhandler;
 
 import java.io.File;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
 import org.apache.commons.codec.digest.DigestUtils;
@@ -33,8 +28,7 @@ import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
 
 public class LineHashComputer extends CharHandler {
   private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-  private final CharsetEncoder encoder;
-  private final StringBuilder sb = new StringBuilder();
+  private final Utf8LineBuffer buffer = new Utf8LineBuffer();
   private final LineHashConsumer consumer;
   private final File file;
   private int line = 1;
@@ -42,22 +36,19 @@ public class LineHashComputer extends CharHandler {
   public LineHashComputer(LineHashConsumer consumer, File f) {
     this.consumer = consumer;
     this.file = f;
-    this.encoder = StandardCharsets.UTF_8.newEncoder()
-      .onMalformedInput(CodingErrorAction.REPLACE)
-      .onUnmappableCharacter(CodingErrorAction.REPLACE);
   }
 
   @Override
   public void handleIgnoreEoL(char c) {
     if (!Character.isWhitespace(c)) {
-      sb.append(c);
+      buffer.append(c);
     }
   }
 
   @Override
   public void newLine() {
     processBuffer();
-    sb.setLength(0);
+    buffer.clear();
     line++;
   }
 
@@ -70,9 +61,8 @@ public class LineHashComputer extends CharHandler {
 
   private void processBuffer() {
     try {
-      if (sb.length() > 0) {
-        ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-        lineMd5Digest.update(encoded.array(), 0, encoded.limit());
+      if (buffer.length() > 0) {
+        buffer.updateDigest(lineMd5Digest);
         consumer.consume(line, lineMd5Digest.digest());
       }
     } catch (CharacterCodingException e) {
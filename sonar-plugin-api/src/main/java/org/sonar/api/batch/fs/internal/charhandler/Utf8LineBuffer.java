@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal.charhandler;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Buffer of the chars of a line, which can be fed to a {@link MessageDigest} as UTF-8 bytes.
+ * Buffers are reused from one line to the next one, and lines made of ASCII chars only are
+ * converted without going through the {@link CharsetEncoder}.
+ */
+class Utf8LineBuffer {
+
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private final CharsetEncoder encoder;
+  private char[] chars = new char[DEFAULT_CAPACITY];
+  private CharBuffer charBuffer = CharBuffer.wrap(chars);
+  private ByteBuffer byteBuffer = ByteBuffer.allocate(DEFAULT_CAPACITY);
+  private int length = 0;
+  private boolean ascii = true;
+
+  Utf8LineBuffer() {
+    encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  void append(char c) {
+    if (length == chars.length) {
+      chars = Arrays.copyOf(chars, length * 2);
+      charBuffer = CharBuffer.wrap(chars);
+    }
+    chars[length] = c;
+    length++;
+    ascii &= c < 0x80;
+  }
+
+  int length() {
+    return length;
+  }
+
+  void clear() {
+    length = 0;
+    ascii = true;
+  }
+
+  /**
+   * Updates the digest with the UTF-8 encoding of the buffered chars. Malformed input is replaced,
+   * like {@link CharsetEncoder#encode(CharBuffer)} does.
+   */
+  void updateDigest(MessageDigest digest) throws CharacterCodingException {
+    if (ascii) {
+      ensureByteCapacity(length);
+      byte[] bytes = byteBuffer.array();
+      for (int i = 0; i < length; i++) {
+        bytes[i] = (byte) chars[i];
+      }
+      digest.update(bytes, 0, length);
+    } else {
+      ensureByteCapacity((int) (length * encoder.maxBytesPerChar()));
+      charBuffer.limit(length).position(0);
+      byteBuffer.clear();
+      encoder.reset();
+      CoderResult result = encoder.encode(charBuffer, byteBuffer, true);
+      if (!result.isUnderflow()) {
+        result.throwException();
+      }
+      result = encoder.flush(byteBuffer);
+      if (!result.isUnderflow()) {
+        result.throwException();
+      }
+      digest.update(byteBuffer.array(), 0, byteBuffer.position());
+    }
+  }
+
+  private void ensureByteCapacity(int capacity) {
+    if (byteBuffer.capacity() < capacity) {
+      byteBuffer = ByteBuffer.allocate(Math.max(capacity, byteBuffer.capacity() * 2));
+    }
+  }
+}
@@ -96,4 +96,13 @@ public interface SensorDescriptor {
    * @since 6.5
    */
   SensorDescriptor onlyWhenConfiguration(Predicate<Configuration> predicate);
+
+  /**
+   * Declare that this {@link Sensor} can be executed concurrently with other thread-safe sensors of the same module.
+   * The {@link Sensor} must not depend on data saved by other sensors and must not share mutable state with them.
+   * It is ignored by the platform unless parallel execution of sensors is enabled.
+   * Default is to execute sensor alone.
+   * @since 7.0
+   */
+  SensorDescriptor threadSafe();
 }
@@ -19,12 +19,20 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.sonar.api.batch.fs.FilePredicate;
-
-import java.util.Arrays;
+import org.sonar.api.batch.fs.FileSystem.Index;
+import org.sonar.api.batch.fs.InputFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class AndPredicateTest {
 
@@ -72,4 +80,40 @@ public class AndPredicateTest {
     assertThat(andPredicate).isEqualTo(FalsePredicate.FALSE);
   }
 
+  @Test
+  public void getUsesMostSelectiveIndex() {
+    InputFile javaMain = new TestInputFileBuilder("foo", "src/Foo.java").setLanguage("java").setType(InputFile.Type.MAIN).build();
+    InputFile javaTest = new TestInputFileBuilder("foo", "test/FooTest.java").setLanguage("java").setType(InputFile.Type.TEST).build();
+    InputFile xoo1 = new TestInputFileBuilder("foo", "src/Foo1.xoo").setLanguage("xoo").setType(InputFile.Type.MAIN).build();
+    InputFile xoo2 = new TestInputFileBuilder("foo", "src/Foo2.xoo").setLanguage("xoo").setType(InputFile.Type.MAIN).build();
+    InputFile xoo3 = new TestInputFileBuilder("foo", "src/Foo3.xoo").setLanguage("xoo").setType(InputFile.Type.MAIN).build();
+    Index index = mock(Index.class);
+    when(index.getFilesByType(InputFile.Type.MAIN)).thenReturn(Arrays.asList(javaMain, xoo1, xoo2, xoo3));
+    when(index.getFilesByLanguage("java")).thenReturn(Arrays.asList(javaMain, javaTest));
+    AtomicInteger applied = new AtomicInteger();
+    FilePredicate notIndexed = f -> applied.incrementAndGet() > 0;
+
+    FilePredicate andPredicate = AndPredicate.create(Arrays.asList(notIndexed, new TypePredicate(InputFile.Type.MAIN), new LanguagePredicate("java")));
+
+    List<InputFile> result = new ArrayList<>();
+    ((AndPredicate) andPredicate).get(index).forEach(result::add);
+
+    assertThat(result).containsExactly(javaMain);
+    // only the files of the language index are filtered
+    assertThat(applied.get()).isEqualTo(1);
+    verify(index, never()).inputFiles();
+  }
+
+  @Test
+  public void getFiltersAllFilesWhenNoIndex() {
+    InputFile file = new TestInputFileBuilder("foo", "src/Foo.java").build();
+    Index index = mock(Index.class);
+    when(index.inputFiles()).thenReturn(Arrays.asList(file));
+    PathPatternPredicate pathPatternPredicate = new PathPatternPredicate(PathPattern.create("src/**"));
+
+    FilePredicate andPredicate = AndPredicate.create(Arrays.asList(pathPatternPredicate, f -> true));
+
+    assertThat(((AndPredicate) andPredicate).get(index)).containsExactly(file);
+  }
+
 }
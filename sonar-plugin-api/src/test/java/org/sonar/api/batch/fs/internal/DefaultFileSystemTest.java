@@ -27,6 +27,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -113,6 +114,23 @@ public class DefaultFileSystemTest {
     assertThat(fs.languages()).containsOnly("java", "php");
   }
 
+  @Test
+  public void files_by_language_and_type() {
+    InputFile javaMain = new TestInputFileBuilder("foo", "src/Bar.java").setLanguage("java").build();
+    InputFile javaTest = new TestInputFileBuilder("foo", "test/BarTest.java").setLanguage("java").setType(InputFile.Type.TEST).build();
+    InputFile phpTest = new TestInputFileBuilder("foo", "test/BarTest.php").setLanguage("php").setType(InputFile.Type.TEST).build();
+    fs.add(javaMain);
+    fs.add(javaTest);
+    fs.add(phpTest);
+    fs.add(new TestInputFileBuilder("foo", "src/readme.txt").build());
+
+    assertThat(fs.inputFiles(fs.predicates().and(fs.predicates().hasLanguage("java"), fs.predicates().hasType(InputFile.Type.TEST)))).containsExactly(javaTest);
+    assertThat(fs.inputFiles(fs.predicates().and(fs.predicates().hasLanguages("java", "php"), fs.predicates().hasType(InputFile.Type.TEST))))
+      .containsExactlyInAnyOrder(javaTest, phpTest);
+    assertThat(fs.inputFiles(fs.predicates().hasType(InputFile.Type.MAIN))).hasSize(2);
+    assertThat(fs.inputFiles(fs.predicates().hasLanguage("cobol"))).isEmpty();
+  }
+
   @Test
   public void filesWithDefaultPredicate() {
     DefaultInputFile file1 = new TestInputFileBuilder("foo", "src/Foo.php").setLanguage("php").build();
@@ -23,10 +23,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -37,6 +40,7 @@ import org.sonar.api.utils.log.LoggerLevel;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 
 public class FileMetadataTest {
@@ -110,6 +114,20 @@ public class FileMetadataTest {
     assertThat(metadata.originalLineOffsets()).containsOnly(0, 5, 10, 18);
   }
 
+  @Test
+  public void windows_eol_across_read_buffers() throws Exception {
+    File tempFile = temp.newFile();
+    // CR is the last char of the first read buffer and LF the first char of the second one
+    String firstLine = StringUtils.repeat("a", 8191);
+    FileUtils.write(tempFile, firstLine + "\r\nbar\r\n", StandardCharsets.UTF_8, true);
+
+    Metadata metadata = new FileMetadata().readMetadata(new FileInputStream(tempFile), StandardCharsets.UTF_8, tempFile.getName());
+    assertThat(metadata.lines()).isEqualTo(3);
+    assertThat(metadata.nonBlankLines()).isEqualTo(2);
+    assertThat(metadata.hash()).isEqualTo(md5Hex(firstLine + "\nbar\n"));
+    assertThat(metadata.originalLineOffsets()).containsOnly(0, 8193, 8198);
+  }
+
   @Test
   public void unix_without_latest_eol() throws Exception {
     File tempFile = temp.newFile();
@@ -240,6 +258,21 @@ public class FileMetadataTest {
     });
   }
 
+  @Test
+  public void compute_line_hashes_of_non_ascii_lines() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "föo\nb\u1D11E r\nbaz", StandardCharsets.UTF_8, true);
+
+    DefaultInputFile f = new TestInputFileBuilder("foo", tempFile.getName())
+      .setModuleBaseDir(tempFile.getParentFile().toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+    Map<Integer, String> hashes = new HashMap<>();
+    FileMetadata.computeLineHashesForIssueTracking(f, (lineIdx, hash) -> hashes.put(lineIdx, Hex.encodeHexString(hash)));
+
+    assertThat(hashes).containsOnly(entry(1, md5Hex("föo")), entry(2, md5Hex("b\u1D11Er")), entry(3, md5Hex("baz")));
+  }
+
   @Test
   public void dont_fail_on_empty_file() throws Exception {
     File tempFile = temp.newFile();
@@ -19,12 +19,17 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import java.util.Arrays;
 import org.junit.Test;
 import org.sonar.api.batch.fs.FilePredicate;
-
-import java.util.Arrays;
+import org.sonar.api.batch.fs.FileSystem.Index;
+import org.sonar.api.batch.fs.InputFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class OrPredicateTest {
 
@@ -62,4 +67,34 @@ public class OrPredicateTest {
     assertThat(andPredicate).isEqualTo(TruePredicate.TRUE);
   }
 
+  @Test
+  public void mergeIndexesWhenAllOperandsAreIndexed() {
+    InputFile java = new TestInputFileBuilder("foo", "src/Foo.java").setLanguage("java").build();
+    InputFile xoo = new TestInputFileBuilder("foo", "src/Foo.xoo").setLanguage("xoo").build();
+    Index index = mock(Index.class);
+    when(index.getFilesByLanguage("java")).thenReturn(Arrays.asList(java));
+    when(index.getFilesByLanguage("xoo")).thenReturn(Arrays.asList(xoo));
+    when(index.getFilesByExtension("xoo")).thenReturn(Arrays.asList(xoo));
+
+    OrPredicate orPredicate = (OrPredicate) OrPredicate.create(Arrays.asList(new LanguagePredicate("java"), new LanguagePredicate("xoo"),
+      new FileExtensionPredicate("xoo")));
+
+    assertThat(orPredicate.priority()).isEqualTo(AbstractFilePredicate.USE_INDEX);
+    assertThat(orPredicate.get(index)).containsExactly(java, xoo);
+    verify(index, never()).inputFiles();
+  }
+
+  @Test
+  public void filterAllFilesWhenAnOperandIsNotIndexed() {
+    InputFile java = new TestInputFileBuilder("foo", "src/Foo.java").setLanguage("java").build();
+    InputFile xoo = new TestInputFileBuilder("foo", "src/Foo.xoo").setLanguage("xoo").build();
+    Index index = mock(Index.class);
+    when(index.inputFiles()).thenReturn(Arrays.asList(java, xoo));
+
+    OrPredicate orPredicate = (OrPredicate) OrPredicate.create(Arrays.asList(new LanguagePredicate("java"), new PathPatternPredicate(PathPattern.create("**/*.xoo"))));
+
+    assertThat(orPredicate.priority()).isEqualTo(AbstractFilePredicate.DEFAULT_PRIORITY);
+    assertThat(orPredicate.get(index)).containsExactly(java, xoo);
+  }
+
 }
@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal.charhandler;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Utf8LineBufferTest {
+
+  private Utf8LineBuffer underTest = new Utf8LineBuffer();
+
+  @Test
+  public void digest_ascii_chars() throws Exception {
+    assertThat(digest("foo")).isEqualTo(md5Hex("foo"));
+  }
+
+  @Test
+  public void digest_non_ascii_chars() throws Exception {
+    assertThat(digest("f\u00f6o \u1D11E")).isEqualTo(md5Hex("f\u00f6o \u1D11E".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void replace_malformed_chars_like_charset_encoder() throws Exception {
+    // lone surrogate
+    String line = "a\uD800b";
+
+    ByteBuffer expected = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .encode(CharBuffer.wrap(line));
+    assertThat(digest(line)).isEqualTo(md5Hex(Arrays.copyOf(expected.array(), expected.limit())));
+  }
+
+  @Test
+  public void reuse_buffer_after_clear() throws Exception {
+    digest("b\u00e0r");
+    underTest.clear();
+
+    assertThat(underTest.length()).isEqualTo(0);
+    assertThat(digest("foo")).isEqualTo(md5Hex("foo"));
+  }
+
+  @Test
+  public void grow() throws Exception {
+    String longLine = StringUtils.repeat("f\u00f6", 1000);
+
+    assertThat(digest(longLine)).isEqualTo(md5Hex(longLine.getBytes(StandardCharsets.UTF_8)));
+    assertThat(underTest.length()).isEqualTo(2000);
+  }
+
+  private String digest(String line) throws Exception {
+    for (char c : line.toCharArray()) {
+      underTest.append(c);
+    }
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    underTest.updateDigest(digest);
+    return Hex.encodeHexString(digest.digest());
+  }
+}
@@ -22,14 +22,19 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -55,6 +60,7 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * Duplications of several files are computed concurrently, see {@link CpdSettings#getParallelism()}.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -62,6 +68,7 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60 * 1000;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  private static final int MAX_PENDING_DETECTIONS_PER_THREAD = 4;
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
@@ -98,21 +105,34 @@ public class CpdExecutor {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    int parallelism = settings.getParallelism();
+    ExecutorService executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setNameFormat("CPD-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      // detections run ahead of the file being saved, in a bounded window so that results are saved in the order of the index
+      Deque<FileDetection> pending = new ArrayDeque<>();
 
-      while (it.hasNext()) {
-        ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
-        count++;
+      while (it.hasNext() || !pending.isEmpty()) {
+        while (it.hasNext() && pending.size() < MAX_PENDING_DETECTIONS_PER_THREAD * parallelism) {
+          ResourceBlocks resourceBlocks = it.next();
+          FileDetection detection = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+          if (detection != null) {
+            pending.add(detection);
+          } else {
+            count++;
+          }
+        }
+        if (!pending.isEmpty()) {
+          saveCpdAnalysis(pending.poll(), timeout);
+          count++;
+        }
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
@@ -121,24 +141,33 @@ public class CpdExecutor {
   }
 
   @VisibleForTesting
-  void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+  @CheckForNull
+  FileDetection submitCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
-    InputFile inputFile = (InputFile) component;
+    FileDetection detection = new FileDetection(component);
+    detection.result = executorService.submit(() -> {
+      detection.startNanos = System.nanoTime();
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    });
+    return detection;
+  }
+
+  private void saveCpdAnalysis(FileDetection detection, long timeout) {
+    InputFile inputFile = (InputFile) detection.component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = waitForDetection(detection, timeout);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      detection.result.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -153,7 +182,27 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(detection.component, filtered);
+  }
+
+  /**
+   * The timeout applies from the start of the detection, which can be queued behind the detections of other files.
+   * Detections still queued after the timeout are abandoned, as the threads may be busy with cancelled detections.
+   */
+  private static List<CloneGroup> waitForDetection(FileDetection detection, long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+    try {
+      return detection.result.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      long startNanos = detection.startNanos;
+      if (startNanos == FileDetection.NOT_STARTED) {
+        throw e;
+      }
+      long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      if (remaining <= 0) {
+        throw e;
+      }
+      return detection.result.get(remaining, TimeUnit.MILLISECONDS);
+    }
   }
 
   @VisibleForTesting
@@ -212,4 +261,17 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  @VisibleForTesting
+  static class FileDetection {
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final DefaultInputComponent component;
+    private Future<List<CloneGroup>> result;
+    private volatile long startNanos = NOT_STARTED;
+
+    private FileDetection(DefaultInputComponent component) {
+      this.component = component;
+    }
+  }
 }
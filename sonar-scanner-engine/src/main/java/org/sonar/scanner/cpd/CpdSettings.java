@@ -26,6 +26,8 @@ import org.sonar.api.config.Configuration;
 import org.sonar.duplications.block.BlockChunker;
 
 public class CpdSettings {
+  static final String PARALLELISM_PROPERTY = "sonar.cpd.parallelism";
+
   private final Configuration settings;
   private final String branch;
 
@@ -49,4 +51,11 @@ public class CpdSettings {
   int getMinimumTokens(String languageKey) {
     return settings.getInt("sonar.cpd." + languageKey + ".minimumTokens").orElse(100);
   }
+
+  /**
+   * Number of threads computing the duplications of files. Defaults to 1.
+   */
+  int getParallelism() {
+    return Math.max(1, settings.getInt(PARALLELISM_PROPERTY).orElse(1));
+  }
 }
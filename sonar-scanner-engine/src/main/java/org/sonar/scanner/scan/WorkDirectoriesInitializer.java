@@ -28,6 +28,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.core.util.FileUtils;
 import org.sonar.home.cache.DirectoryLock;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 /**
  * Clean and create working directories of each module.
@@ -51,7 +52,7 @@ public class WorkDirectoriesInitializer {
       cleanAllWorkingDirs(sub);
     }
     if (Files.exists(module.getWorkDir())) {
-      deleteAllRecursivelyExceptLockFile(module.getWorkDir());
+      deleteAllRecursivelyExceptLockAndCacheFiles(module.getWorkDir());
     }
   }
 
@@ -66,7 +67,7 @@ public class WorkDirectoriesInitializer {
     }
   }
 
-  private static void deleteAllRecursivelyExceptLockFile(Path dirToDelete) {
+  private static void deleteAllRecursivelyExceptLockAndCacheFiles(Path dirToDelete) {
     try (DirectoryStream<Path> stream = list(dirToDelete)) {
 
       Iterator<Path> it = stream.iterator();
@@ -79,6 +80,9 @@ public class WorkDirectoriesInitializer {
   }
 
   private static DirectoryStream<Path> list(Path dir) throws IOException {
-    return Files.newDirectoryStream(dir, entry -> !DirectoryLock.LOCK_FILE_NAME.equals(entry.getFileName().toString()));
+    return Files.newDirectoryStream(dir, entry -> {
+      String fileName = entry.getFileName().toString();
+      return !DirectoryLock.LOCK_FILE_NAME.equals(fileName) && !FileMetadataCache.FILE_NAME.equals(fileName);
+    });
   }
 }
@@ -0,0 +1,305 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.concurrent.Immutable;
+import org.picocontainer.Startable;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Metadata of files computed by the previous analysis of the project, so that files which did not change
+ * since then are not read again. It is stored in the working directory of the root module and kept
+ * when the working directories are cleaned.
+ * A cached entry is used only if the size and the last modification date of the file, as well as the
+ * default encoding, did not change.
+ */
+public class FileMetadataCache implements Startable {
+
+  public static final String ENABLED_PROPERTY = "sonar.fileMetadataCache.enabled";
+  /**
+   * Ratio, between 0 and 1, of the cached entries which are verified by reading the file again. Default is 0.
+   */
+  public static final String VALIDATION_RATIO_PROPERTY = "sonar.fileMetadataCache.validationRatio";
+  public static final String FILE_NAME = "file-metadata.cache";
+
+  private static final Logger LOG = Loggers.get(FileMetadataCache.class);
+  private static final int VERSION = 1;
+  // a file modified just before being read could be modified again without changing its size
+  // nor its last modification date, given the precision of the file system
+  private static final long MIN_FILE_AGE_MS = 2_000L;
+
+  private final Path file;
+  private final boolean enabled;
+  private final double validationRatio;
+  private final System2 system2;
+  private Map<String, Record> previousRecords = new HashMap<>();
+  private final Map<String, Record> records = new ConcurrentHashMap<>();
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+  private final AtomicInteger outdated = new AtomicInteger();
+
+  public FileMetadataCache(InputModuleHierarchy hierarchy, Configuration settings, System2 system2) {
+    this.file = hierarchy.root().getWorkDir().resolve(FILE_NAME);
+    this.enabled = settings.getBoolean(ENABLED_PROPERTY).orElse(false);
+    this.validationRatio = settings.get(VALIDATION_RATIO_PROPERTY).map(Double::parseDouble).orElse(0.0);
+    this.system2 = system2;
+  }
+
+  @Override
+  public void start() {
+    if (enabled) {
+      previousRecords = load(file);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (enabled) {
+      LOG.info("File metadata cache: {} hits, {} misses, {} outdated", hits.get(), misses.get(), outdated.get());
+      save(file, records);
+    }
+  }
+
+  /**
+   * Returns the metadata of the file stored by the previous analysis, if any and if the file did not change.
+   * Otherwise, the metadata is computed by the given generator and cached for the next analysis.
+   */
+  public Entry get(Path inputFile, Charset defaultEncoding, Supplier<Entry> generator) {
+    if (!enabled) {
+      return generator.get();
+    }
+    // attributes must be read before the content, so that a change during the read is detected by the next analysis
+    BasicFileAttributes attributes = readAttributes(inputFile);
+    if (attributes == null) {
+      return generator.get();
+    }
+    String key = inputFile.toAbsolutePath().toString();
+    Record previous = previousRecords.get(key);
+    if (previous != null && previous.matches(attributes, defaultEncoding)) {
+      if (!shouldValidate()) {
+        hits.incrementAndGet();
+        records.put(key, previous);
+        return previous.entry;
+      }
+      Entry entry = generator.get();
+      if (previous.entry.isSameAs(entry)) {
+        hits.incrementAndGet();
+      } else {
+        LOG.warn("Cached metadata of file '{}' is outdated", inputFile);
+        outdated.incrementAndGet();
+      }
+      cache(key, attributes, defaultEncoding, entry);
+      return entry;
+    }
+    misses.incrementAndGet();
+    Entry entry = generator.get();
+    cache(key, attributes, defaultEncoding, entry);
+    return entry;
+  }
+
+  private boolean shouldValidate() {
+    return validationRatio > 0 && ThreadLocalRandom.current().nextDouble() < validationRatio;
+  }
+
+  private void cache(String key, BasicFileAttributes attributes, Charset defaultEncoding, Entry entry) {
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    if (system2.now() - lastModified >= MIN_FILE_AGE_MS) {
+      records.put(key, new Record(attributes.size(), lastModified, defaultEncoding.name(), entry));
+    }
+  }
+
+  @CheckForNull
+  private static BasicFileAttributes readAttributes(Path inputFile) {
+    try {
+      return Files.readAttributes(inputFile, BasicFileAttributes.class);
+    } catch (IOException e) {
+      LOG.debug("Fail to read attributes of file '{}'", inputFile, e);
+      return null;
+    }
+  }
+
+  private static Map<String, Record> load(Path file) {
+    Map<String, Record> result = new HashMap<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != VERSION) {
+        LOG.debug("Ignore file metadata cache of a previous version");
+        return result;
+      }
+      int size = in.readInt();
+      for (int i = 0; i < size; i++) {
+        String key = in.readUTF();
+        result.put(key, Record.readFrom(in));
+      }
+    } catch (NoSuchFileException e) {
+      LOG.debug("No file metadata cache");
+    } catch (Exception e) {
+      LOG.warn("Fail to load file metadata cache: " + file, e);
+      result.clear();
+    }
+    return result;
+  }
+
+  private static void save(Path file, Map<String, Record> records) {
+    Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(VERSION);
+        out.writeInt(records.size());
+        for (Map.Entry<String, Record> record : records.entrySet()) {
+          out.writeUTF(record.getKey());
+          record.getValue().writeTo(out);
+        }
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (Exception e) {
+      LOG.warn("Fail to save file metadata cache: " + file, e);
+    }
+  }
+
+  @Immutable
+  public static final class Entry {
+    private final Charset charset;
+    private final Metadata metadata;
+
+    public Entry(Charset charset, Metadata metadata) {
+      this.charset = charset;
+      this.metadata = metadata;
+    }
+
+    public Charset charset() {
+      return charset;
+    }
+
+    public Metadata metadata() {
+      return metadata;
+    }
+
+    boolean isSameAs(Entry other) {
+      return charset.equals(other.charset)
+        && metadata.lines() == other.metadata.lines()
+        && metadata.nonBlankLines() == other.metadata.nonBlankLines()
+        && metadata.hash().equals(other.metadata.hash())
+        && metadata.lastValidOffset() == other.metadata.lastValidOffset()
+        && Arrays.equals(metadata.originalLineOffsets(), other.metadata.originalLineOffsets());
+    }
+  }
+
+  @Immutable
+  private static final class Record {
+    private final long size;
+    private final long lastModified;
+    private final String defaultEncoding;
+    private final Entry entry;
+
+    private Record(long size, long lastModified, String defaultEncoding, Entry entry) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.defaultEncoding = defaultEncoding;
+      this.entry = entry;
+    }
+
+    private boolean matches(BasicFileAttributes attributes, Charset encoding) {
+      return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis() && defaultEncoding.equals(encoding.name());
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+      out.writeLong(size);
+      out.writeLong(lastModified);
+      out.writeUTF(defaultEncoding);
+      out.writeUTF(entry.charset.name());
+      Metadata metadata = entry.metadata;
+      out.writeInt(metadata.lines());
+      out.writeInt(metadata.nonBlankLines());
+      out.writeUTF(metadata.hash());
+      out.writeInt(metadata.lastValidOffset());
+      int[] offsets = metadata.originalLineOffsets();
+      out.writeInt(offsets.length);
+      int previousOffset = 0;
+      for (int offset : offsets) {
+        // lines are usually short, so lengths take less space than offsets
+        writeVarInt(out, offset - previousOffset);
+        previousOffset = offset;
+      }
+    }
+
+    private static Record readFrom(DataInputStream in) throws IOException {
+      long size = in.readLong();
+      long lastModified = in.readLong();
+      String defaultEncoding = in.readUTF();
+      Charset charset = Charset.forName(in.readUTF());
+      int lines = in.readInt();
+      int nonBlankLines = in.readInt();
+      String hash = in.readUTF();
+      int lastValidOffset = in.readInt();
+      int[] offsets = new int[in.readInt()];
+      int previousOffset = 0;
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = previousOffset + readVarInt(in);
+        previousOffset = offsets[i];
+      }
+      return new Record(size, lastModified, defaultEncoding, new Entry(charset, new Metadata(lines, nonBlankLines, hash, offsets, lastValidOffset)));
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+      int v = value;
+      while ((v & ~0x7F) != 0) {
+        out.writeByte((v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      out.writeByte(v);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+      int value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = in.readUnsignedByte();
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+  }
+}
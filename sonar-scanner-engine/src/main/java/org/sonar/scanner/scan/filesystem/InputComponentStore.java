@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputDir;
@@ -61,8 +62,10 @@ public class InputComponentStore {
   // indexed by key with branch
   private final Map<String, InputModule> inputModuleCache = new HashMap<>();
   private final Map<String, InputComponent> inputComponents = new HashMap<>();
-  private final SetMultimap<String, InputFile> filesByNameCache = LinkedHashMultimap.create();
-  private final SetMultimap<String, InputFile> filesByExtensionCache = LinkedHashMultimap.create();
+  private final FileIndex<String> filesByNameCache = new FileIndex<>();
+  private final FileIndex<String> filesByExtensionCache = new FileIndex<>();
+  private final FileIndex<String> filesByLanguageCache = new FileIndex<>();
+  private final FileIndex<InputFile.Type> filesByTypeCache = new FileIndex<>();
   private final InputModule root;
   private final BranchConfiguration branchConfiguration;
 
@@ -110,12 +113,18 @@ public class InputComponentStore {
   public InputComponentStore removeModule(String moduleKey) {
     inputFileCache.row(moduleKey).clear();
     inputDirCache.row(moduleKey).clear();
+    filesByNameCache.removeModule(moduleKey);
+    filesByExtensionCache.removeModule(moduleKey);
+    filesByLanguageCache.removeModule(moduleKey);
+    filesByTypeCache.removeModule(moduleKey);
     return this;
   }
 
   public InputComponentStore remove(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
-    inputFileCache.remove(file.moduleKey(), file.getModuleRelativePath());
+    if (inputFileCache.remove(file.moduleKey(), file.getModuleRelativePath()) != null) {
+      removeFromIndexes(file);
+    }
     return this;
   }
 
@@ -128,14 +137,26 @@ public class InputComponentStore {
   public InputComponentStore put(InputFile inputFile) {
     DefaultInputFile file = (DefaultInputFile) inputFile;
     addToLanguageCache(file);
-    inputFileCache.put(file.moduleKey(), file.getModuleRelativePath(), inputFile);
+    InputFile previous = inputFileCache.put(file.moduleKey(), file.getModuleRelativePath(), inputFile);
+    if (previous != null && previous != inputFile) {
+      removeFromIndexes((DefaultInputFile) previous);
+    }
     globalInputFileCache.put(file.getProjectRelativePath(), inputFile);
     inputComponents.put(inputFile.key(), inputFile);
-    filesByNameCache.put(inputFile.filename(), inputFile);
-    filesByExtensionCache.put(FileExtensionPredicate.getExtension(inputFile), inputFile);
+    filesByNameCache.put(file.moduleKey(), inputFile.filename(), inputFile);
+    filesByExtensionCache.put(file.moduleKey(), FileExtensionPredicate.getExtension(inputFile), inputFile);
+    filesByLanguageCache.put(file.moduleKey(), inputFile.language(), inputFile);
+    filesByTypeCache.put(file.moduleKey(), inputFile.type(), inputFile);
     return this;
   }
 
+  private void removeFromIndexes(DefaultInputFile file) {
+    filesByNameCache.remove(file.moduleKey(), file.filename(), file);
+    filesByExtensionCache.remove(file.moduleKey(), FileExtensionPredicate.getExtension(file), file);
+    filesByLanguageCache.remove(file.moduleKey(), file.language(), file);
+    filesByTypeCache.remove(file.moduleKey(), file.type(), file);
+  }
+
   private void addToLanguageCache(DefaultInputFile inputFile) {
     String language = inputFile.language();
     if (language != null) {
@@ -200,10 +221,34 @@ public class InputComponentStore {
     return filesByNameCache.get(filename);
   }
 
+  public Iterable<InputFile> getFilesByName(String moduleKey, String filename) {
+    return filesByNameCache.get(moduleKey, filename);
+  }
+
   public Iterable<InputFile> getFilesByExtension(String extension) {
     return filesByExtensionCache.get(extension);
   }
 
+  public Iterable<InputFile> getFilesByExtension(String moduleKey, String extension) {
+    return filesByExtensionCache.get(moduleKey, extension);
+  }
+
+  public Iterable<InputFile> getFilesByLanguage(String language) {
+    return filesByLanguageCache.get(language);
+  }
+
+  public Iterable<InputFile> getFilesByLanguage(String moduleKey, String language) {
+    return filesByLanguageCache.get(moduleKey, language);
+  }
+
+  public Iterable<InputFile> getFilesByType(InputFile.Type type) {
+    return filesByTypeCache.get(type);
+  }
+
+  public Iterable<InputFile> getFilesByType(String moduleKey, InputFile.Type type) {
+    return filesByTypeCache.get(moduleKey, type);
+  }
+
   public SortedSet<String> getLanguages() {
     return globalLanguagesCache;
   }
@@ -211,4 +256,46 @@ public class InputComponentStore {
   public SortedSet<String> getLanguages(String moduleKey) {
     return languagesCache.getOrDefault(moduleKey, Collections.emptySortedSet());
   }
+
+  /**
+   * Files indexed by one of their attributes, for the whole project and for each module. Used by
+   * {@link org.sonar.api.batch.fs.FilePredicate}s to avoid a scan of all files.
+   */
+  private static class FileIndex<K> {
+    private final SetMultimap<K, InputFile> files = LinkedHashMultimap.create();
+    private final Map<String, SetMultimap<K, InputFile>> filesByModule = new HashMap<>();
+
+    void put(String moduleKey, @Nullable K key, InputFile inputFile) {
+      if (key != null) {
+        files.put(key, inputFile);
+        filesByModule.computeIfAbsent(moduleKey, k -> LinkedHashMultimap.create()).put(key, inputFile);
+      }
+    }
+
+    void remove(String moduleKey, @Nullable K key, InputFile inputFile) {
+      if (key != null) {
+        files.remove(key, inputFile);
+        SetMultimap<K, InputFile> moduleFiles = filesByModule.get(moduleKey);
+        if (moduleFiles != null) {
+          moduleFiles.remove(key, inputFile);
+        }
+      }
+    }
+
+    void removeModule(String moduleKey) {
+      SetMultimap<K, InputFile> moduleFiles = filesByModule.remove(moduleKey);
+      if (moduleFiles != null) {
+        moduleFiles.entries().forEach(e -> files.remove(e.getKey(), e.getValue()));
+      }
+    }
+
+    Collection<InputFile> get(K key) {
+      return files.get(key);
+    }
+
+    Collection<InputFile> get(String moduleKey, K key) {
+      SetMultimap<K, InputFile> moduleFiles = filesByModule.get(moduleKey);
+      return moduleFiles != null ? moduleFiles.get(key) : Collections.emptySet();
+    }
+  }
 }
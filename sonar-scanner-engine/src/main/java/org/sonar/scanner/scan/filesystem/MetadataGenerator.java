@@ -22,6 +22,7 @@ package org.sonar.scanner.scan.filesystem;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile.Type;
@@ -29,6 +30,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.batch.fs.internal.charhandler.CharHandler;
 import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
 
 public class MetadataGenerator {
@@ -43,31 +45,34 @@ public class MetadataGenerator {
   private final FileMetadata fileMetadata;
   private final DefaultInputModule inputModule;
   private final IssueExclusionsLoader exclusionsScanner;
+  private final FileMetadataCache cache;
 
-  public MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner) {
+  public MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner,
+    FileMetadataCache cache) {
     this.inputModule = inputModule;
     this.statusDetection = statusDetection;
     this.fileMetadata = fileMetadata;
     this.exclusionsScanner = exclusionsScanner;
+    this.cache = cache;
   }
 
   /**
    * Sets all metadata in the file, including charset and status.
-   * It is an expensive computation, reading the entire file.
+   * It is an expensive computation, reading the entire file, unless metadata is found in {@link FileMetadataCache}.
    */
   public void setMetadata(final DefaultInputFile inputFile, Charset defaultEncoding) {
-    CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding);
     try {
-      Charset charset;
-      if (charsetDetector.run()) {
-        charset = charsetDetector.charset();
+      CharHandler exclusionsHandler = exclusionsScanner.createCharHandlerFor(inputFile.key());
+      FileMetadataCache.Entry entry;
+      if (exclusionsHandler == null) {
+        entry = cache.get(inputFile.path(), defaultEncoding, () -> readMetadata(inputFile, defaultEncoding, null));
       } else {
-        LOG.debug("Failed to detect a valid charset for file '{}'. Using default charset.", inputFile);
-        charset = defaultEncoding;
+        // content of the file is needed by issue exclusions, so it can't be skipped
+        entry = readMetadata(inputFile, defaultEncoding, exclusionsHandler);
       }
-      InputStream is = charsetDetector.inputStream();
+      Charset charset = entry.charset();
+      Metadata metadata = entry.metadata();
       inputFile.setCharset(charset);
-      Metadata metadata = fileMetadata.readMetadata(is, charset, inputFile.absolutePath(), exclusionsScanner.createCharHandlerFor(inputFile.key()));
       inputFile.setMetadata(metadata);
       inputFile.setStatus(statusDetection.status(inputModule.definition().getKeyWithBranch(), inputFile, metadata.hash()));
       LOG.debug("'{}' generated metadata {} with charset '{}'", inputFile, inputFile.type() == Type.TEST ? "as test " : "", charset);
@@ -76,4 +81,18 @@ public class MetadataGenerator {
     }
   }
 
+  private FileMetadataCache.Entry readMetadata(DefaultInputFile inputFile, Charset defaultEncoding, @Nullable CharHandler exclusionsHandler) {
+    CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding);
+    Charset charset;
+    if (charsetDetector.run()) {
+      charset = charsetDetector.charset();
+    } else {
+      LOG.debug("Failed to detect a valid charset for file '{}'. Using default charset.", inputFile);
+      charset = defaultEncoding;
+    }
+    InputStream is = charsetDetector.inputStream();
+    Metadata metadata = fileMetadata.readMetadata(is, charset, inputFile.absolutePath(), exclusionsHandler);
+    return new FileMetadataCache.Entry(charset, metadata);
+  }
+
 }
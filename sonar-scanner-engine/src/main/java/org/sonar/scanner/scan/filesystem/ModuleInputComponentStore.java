@@ -88,11 +88,37 @@ public class ModuleInputComponentStore extends DefaultFileSystem.Cache {
 
   @Override
   public Iterable<InputFile> getFilesByName(String filename) {
-    return inputComponentStore.getFilesByName(filename);
+    if (strategy.isGlobal()) {
+      return inputComponentStore.getFilesByName(filename);
+    } else {
+      return inputComponentStore.getFilesByName(moduleKey, filename);
+    }
   }
 
   @Override
   public Iterable<InputFile> getFilesByExtension(String extension) {
-    return inputComponentStore.getFilesByExtension(extension);
+    if (strategy.isGlobal()) {
+      return inputComponentStore.getFilesByExtension(extension);
+    } else {
+      return inputComponentStore.getFilesByExtension(moduleKey, extension);
+    }
+  }
+
+  @Override
+  public Iterable<InputFile> getFilesByLanguage(String language) {
+    if (strategy.isGlobal()) {
+      return inputComponentStore.getFilesByLanguage(language);
+    } else {
+      return inputComponentStore.getFilesByLanguage(moduleKey, language);
+    }
+  }
+
+  @Override
+  public Iterable<InputFile> getFilesByType(InputFile.Type type) {
+    if (strategy.isGlobal()) {
+      return inputComponentStore.getFilesByType(type);
+    } else {
+      return inputComponentStore.getFilesByType(moduleKey, type);
+    }
   }
 }
@@ -84,6 +84,7 @@ public class CpdExecutorTest {
 
     branchConfig = mock(BranchConfiguration.class);
     settings = mock(CpdSettings.class);
+    when(settings.getParallelism()).thenReturn(1);
     publisher = mock(ReportPublisher.class);
     when(publisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
 
@@ -204,7 +205,7 @@ public class CpdExecutorTest {
 
   @Test
   public void failOnMissingComponent() {
-    executor.runCpdAnalysis(null, "unknown", Collections.emptyList(), 1);
+    assertThat(executor.submitCpdAnalysis(null, "unknown", Collections.emptyList())).isNull();
     readDuplications(0);
     assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Resource not found in component store: unknown. Skipping CPD computation for it");
   }
@@ -235,6 +236,37 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void computeDuplicationsConcurrently() {
+    when(settings.getParallelism()).thenReturn(4);
+    List<DefaultInputFile> components = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      DefaultInputFile component = createComponent("src/Bar" + i + ".php", 100);
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 10; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray(new byte[] {(byte) j, 0, 0, 0, 0, 0, 0, 0}))
+          .build());
+      }
+      index.insert((InputFile) component, blocks);
+      components.add(component);
+    }
+
+    executor.execute(60_000);
+
+    for (DefaultInputFile component : components) {
+      List<Duplication> dups = new ArrayList<>();
+      reader.readComponentDuplications(component.batchId()).forEachRemaining(dups::add);
+      assertThat(dups).hasSize(1);
+      assertDuplication(dups.get(0), 1, 11, components.size() - 1);
+    }
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
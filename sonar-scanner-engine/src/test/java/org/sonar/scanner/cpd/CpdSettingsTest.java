@@ -59,4 +59,16 @@ public class CpdSettingsTest {
     assertThat(cpdSettings.getMinimumTokens("java")).isEqualTo(42);
     assertThat(cpdSettings.getMinimumTokens("php")).isEqualTo(33);
   }
+
+  @Test
+  public void parallelism() {
+    when(configuration.getInt(CpdSettings.PARALLELISM_PROPERTY)).thenReturn(Optional.empty());
+    assertThat(cpdSettings.getParallelism()).isEqualTo(1);
+
+    when(configuration.getInt(CpdSettings.PARALLELISM_PROPERTY)).thenReturn(Optional.of(4));
+    assertThat(cpdSettings.getParallelism()).isEqualTo(4);
+
+    when(configuration.getInt(CpdSettings.PARALLELISM_PROPERTY)).thenReturn(Optional.of(0));
+    assertThat(cpdSettings.getParallelism()).isEqualTo(1);
+  }
 }
@@ -20,10 +20,16 @@
 package org.sonar.scanner.phases;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
@@ -32,9 +38,14 @@ import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
 import org.sonar.api.batch.fs.internal.SensorStrategy;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.MessageException;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -45,12 +56,17 @@ import static org.mockito.Mockito.when;
 public class SensorsExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   private SensorsExecutor rootModuleExecutor;
   private SensorsExecutor subModuleExecutor;
   private SensorContext context;
 
   private SensorStrategy strategy = new SensorStrategy();
+  private ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+  private DefaultInputModule rootModule;
+  private InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
 
   private TestSensor perModuleSensor = new TestSensor(strategy);
   private TestSensor globalSensor = new TestSensor(strategy);
@@ -81,21 +97,19 @@ public class SensorsExecutorTest {
   public void setUp() throws IOException {
     context = mock(SensorContext.class);
 
-    ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
     when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Collections.singleton(perModuleSensor));
     when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.singleton(globalSensor));
 
     ProjectDefinition childDef = ProjectDefinition.create().setKey("sub").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
     ProjectDefinition rootDef = ProjectDefinition.create().setKey("root").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder());
 
-    DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
+    rootModule = TestInputFileBuilder.newDefaultInputModule(rootDef);
     DefaultInputModule subModule = TestInputFileBuilder.newDefaultInputModule(childDef);
 
-    InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
     when(hierarchy.isRoot(rootModule)).thenReturn(true);
 
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy);
-    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy);
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
+    subModuleExecutor = new SensorsExecutor(selector, subModule, hierarchy, mock(EventBus.class), strategy, new MapSettings().asConfig());
   }
 
   @Test
@@ -116,4 +130,110 @@ public class SensorsExecutorTest {
     assertThat(globalSensor.called).isTrue();
     assertThat(globalSensor.global).isTrue();
   }
+
+  @Test
+  public void execute_thread_safe_sensors_concurrently_when_parallelism_is_enabled() {
+    CountDownLatch latch = new CountDownLatch(2);
+    ConcurrentSensor sensor1 = new ConcurrentSensor(latch);
+    ConcurrentSensor sensor2 = new ConcurrentSensor(latch);
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false))).thenReturn(Arrays.asList(wrap(sensor1), wrap(sensor2)));
+
+    newExecutor(2).execute(context);
+
+    assertThat(sensor1.metOtherSensor).isTrue();
+    assertThat(sensor2.metOtherSensor).isTrue();
+  }
+
+  @Test
+  public void execute_sensors_sequentially_by_default() {
+    List<String> threads = new CopyOnWriteArrayList<>();
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false)))
+      .thenReturn(Arrays.asList(wrap(new RecordingSensor(threads, true)), wrap(new RecordingSensor(threads, true))));
+
+    rootModuleExecutor.execute(context);
+
+    assertThat(threads).containsExactly(Thread.currentThread().getName(), Thread.currentThread().getName());
+  }
+
+  @Test
+  public void execute_sensors_which_are_not_thread_safe_alone_and_in_order() {
+    List<String> threads = new CopyOnWriteArrayList<>();
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false)))
+      .thenReturn(Arrays.asList(wrap(new RecordingSensor(threads, false)), perModuleSensor, wrap(new RecordingSensor(threads, false))));
+
+    newExecutor(4).execute(context);
+
+    assertThat(perModuleSensor.called).isTrue();
+    assertThat(threads).containsExactly(Thread.currentThread().getName(), Thread.currentThread().getName());
+  }
+
+  @Test
+  public void propagate_failure_of_concurrent_sensor() {
+    org.sonar.api.batch.sensor.Sensor failingSensor = new RecordingSensor(new CopyOnWriteArrayList<>(), true) {
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        throw MessageException.of("failure");
+      }
+    };
+    when(selector.selectSensors(any(DefaultInputModule.class), eq(false)))
+      .thenReturn(Arrays.asList(wrap(failingSensor), wrap(new RecordingSensor(new CopyOnWriteArrayList<>(), true))));
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("failure");
+
+    newExecutor(2).execute(context);
+  }
+
+  private SensorsExecutor newExecutor(int parallelism) {
+    MapSettings settings = new MapSettings().setProperty(SensorsExecutor.PARALLELISM_PROPERTY, parallelism);
+    return new SensorsExecutor(selector, rootModule, hierarchy, mock(EventBus.class), strategy, settings.asConfig());
+  }
+
+  private static Sensor wrap(org.sonar.api.batch.sensor.Sensor sensor) {
+    SensorOptimizer optimizer = mock(SensorOptimizer.class);
+    return new SensorWrapper(sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), optimizer);
+  }
+
+  private static class RecordingSensor implements org.sonar.api.batch.sensor.Sensor {
+    private final List<String> threads;
+    private final boolean threadSafe;
+
+    RecordingSensor(List<String> threads, boolean threadSafe) {
+      this.threads = threads;
+      this.threadSafe = threadSafe;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name("recording");
+      if (threadSafe) {
+        descriptor.threadSafe();
+      }
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      threads.add(Thread.currentThread().getName());
+    }
+  }
+
+  private static class ConcurrentSensor extends RecordingSensor {
+    private final CountDownLatch latch;
+    private volatile boolean metOtherSensor;
+
+    ConcurrentSensor(CountDownLatch latch) {
+      super(new CopyOnWriteArrayList<>(), true);
+      this.latch = latch;
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      latch.countDown();
+      try {
+        metOtherSensor = latch.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 }
@@ -0,0 +1,204 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.batch.fs.internal.InputModuleHierarchy;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileMetadataCacheTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private System2 system2 = mock(System2.class);
+  private InputModuleHierarchy hierarchy = mock(InputModuleHierarchy.class);
+  private MapSettings settings = new MapSettings().setProperty(FileMetadataCache.ENABLED_PROPERTY, true);
+  private Path workDir;
+  private Path file;
+  private FileMetadataCache.Entry entry = new FileMetadataCache.Entry(StandardCharsets.UTF_8, new Metadata(3, 2, "hash", new int[] {0, 4, 300}, 310));
+  private AtomicInteger reads = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = temp.newFolder().toPath();
+    DefaultInputModule root = mock(DefaultInputModule.class);
+    when(root.getWorkDir()).thenReturn(workDir);
+    when(hierarchy.root()).thenReturn(root);
+    when(system2.now()).thenReturn(NOW);
+    file = temp.newFile().toPath();
+    Files.write(file, "foo".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 10_000L));
+  }
+
+  @Test
+  public void read_files_when_cache_is_disabled() {
+    settings.setProperty(FileMetadataCache.ENABLED_PROPERTY, false);
+
+    analyse(entry);
+    FileMetadataCache.Entry result = analyse(entry);
+
+    assertThat(result).isSameAs(entry);
+    assertThat(reads.get()).isEqualTo(2);
+    assertThat(workDir.resolve(FileMetadataCache.FILE_NAME)).doesNotExist();
+  }
+
+  @Test
+  public void do_not_read_file_which_did_not_change_since_previous_analysis() {
+    analyse(entry);
+    FileMetadataCache.Entry result = analyse(entry);
+
+    assertThat(reads.get()).isEqualTo(1);
+    assertSameEntry(result, entry);
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("File metadata cache: 1 hits, 0 misses, 0 outdated");
+  }
+
+  @Test
+  public void read_file_whose_size_changed() throws IOException {
+    analyse(entry);
+    Files.write(file, "foo2".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 10_000L));
+
+    analyse(entry);
+
+    assertThat(reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void read_file_whose_last_modification_date_changed() throws IOException {
+    analyse(entry);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 5_000L));
+
+    analyse(entry);
+
+    assertThat(reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void read_file_if_default_encoding_changed() {
+    analyse(entry);
+
+    FileMetadataCache underTest = new FileMetadataCache(hierarchy, settings.asConfig(), system2);
+    underTest.start();
+    underTest.get(file, StandardCharsets.ISO_8859_1, () -> read(entry));
+    underTest.stop();
+
+    assertThat(reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void do_not_cache_recently_modified_file() throws IOException {
+    Files.setLastModifiedTime(file, FileTime.fromMillis(NOW - 1_000L));
+
+    analyse(entry);
+    analyse(entry);
+
+    assertThat(reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void forget_files_which_are_not_analysed_anymore() throws IOException {
+    analyse(entry);
+    FileMetadataCache underTest = new FileMetadataCache(hierarchy, settings.asConfig(), system2);
+    underTest.start();
+    underTest.stop();
+
+    analyse(entry);
+
+    assertThat(reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void validate_cached_entries() {
+    settings.setProperty(FileMetadataCache.VALIDATION_RATIO_PROPERTY, "1");
+    analyse(entry);
+
+    FileMetadataCache.Entry sameEntry = new FileMetadataCache.Entry(StandardCharsets.UTF_8, new Metadata(3, 2, "hash", new int[] {0, 4, 300}, 310));
+    analyse(sameEntry);
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+
+    FileMetadataCache.Entry otherEntry = new FileMetadataCache.Entry(StandardCharsets.UTF_8, new Metadata(3, 2, "other", new int[] {0, 4, 300}, 310));
+    FileMetadataCache.Entry result = analyse(otherEntry);
+
+    assertThat(reads.get()).isEqualTo(3);
+    assertThat(result).isSameAs(otherEntry);
+    assertThat(logTester.logs(LoggerLevel.WARN)).containsExactly("Cached metadata of file '" + file + "' is outdated");
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("File metadata cache: 0 hits, 0 misses, 1 outdated");
+  }
+
+  @Test
+  public void ignore_corrupted_cache() throws IOException {
+    Files.write(workDir.resolve(FileMetadataCache.FILE_NAME), new byte[] {0, 0, 0, 1, 0, 0, 0, 5});
+
+    FileMetadataCache.Entry result = analyse(entry);
+
+    assertThat(result).isSameAs(entry);
+    assertThat(logTester.logs(LoggerLevel.WARN)).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.WARN).get(0)).startsWith("Fail to load file metadata cache");
+
+    analyse(entry);
+    assertThat(reads.get()).isEqualTo(1);
+  }
+
+  private FileMetadataCache.Entry analyse(FileMetadataCache.Entry fileEntry) {
+    FileMetadataCache underTest = new FileMetadataCache(hierarchy, settings.asConfig(), system2);
+    underTest.start();
+    FileMetadataCache.Entry result = underTest.get(file, StandardCharsets.UTF_8, () -> read(fileEntry));
+    underTest.stop();
+    return result;
+  }
+
+  private FileMetadataCache.Entry read(FileMetadataCache.Entry fileEntry) {
+    reads.incrementAndGet();
+    return fileEntry;
+  }
+
+  private static void assertSameEntry(FileMetadataCache.Entry actual, FileMetadataCache.Entry expected) {
+    assertThat(actual.charset()).isEqualTo(expected.charset());
+    assertThat(actual.metadata().lines()).isEqualTo(expected.metadata().lines());
+    assertThat(actual.metadata().nonBlankLines()).isEqualTo(expected.metadata().nonBlankLines());
+    assertThat(actual.metadata().hash()).isEqualTo(expected.metadata().hash());
+    assertThat(actual.metadata().originalLineOffsets()).containsExactly(expected.metadata().originalLineOffsets());
+    assertThat(actual.metadata().lastValidOffset()).isEqualTo(expected.metadata().lastValidOffset());
+  }
+}
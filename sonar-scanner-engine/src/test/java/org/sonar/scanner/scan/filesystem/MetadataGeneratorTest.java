@@ -20,9 +20,11 @@
 package org.sonar.scanner.scan.filesystem;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.function.Supplier;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -36,6 +38,7 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.Metadata;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
 import org.sonar.api.utils.PathUtils;
 import org.sonar.scanner.issue.ignore.pattern.IssueExclusionPatternInitializer;
@@ -44,6 +47,8 @@ import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -56,6 +61,9 @@ public class MetadataGeneratorTest {
   @Mock
   private DefaultModuleFileSystem fs;
 
+  @Mock
+  private FileMetadataCache cache;
+
   private FileMetadata metadata;
   private MetadataGenerator generator;
 
@@ -63,9 +71,10 @@ public class MetadataGeneratorTest {
   public void setUp() throws IOException {
     MockitoAnnotations.initMocks(this);
     metadata = new FileMetadata();
+    when(cache.get(any(Path.class), any(Charset.class), any())).then(invocation -> ((Supplier<?>) invocation.getArguments()[2]).get());
     IssueExclusionsLoader issueExclusionsLoader = new IssueExclusionsLoader(mock(IssueExclusionPatternInitializer.class), mock(PatternMatcher.class));
     generator = new MetadataGenerator(new DefaultInputModule(ProjectDefinition.create().setKey("module").setBaseDir(temp.newFolder()).setWorkDir(temp.newFolder())),
-      statusDetection, metadata, issueExclusionsLoader);
+      statusDetection, metadata, issueExclusionsLoader, cache);
   }
 
   @Test
@@ -98,6 +107,20 @@ public class MetadataGeneratorTest {
     return inputFile;
   }
 
+  @Test
+  public void use_cached_metadata() {
+    Metadata cachedMetadata = new Metadata(3, 2, "hash", new int[] {0, 4, 8}, 10);
+    doReturn(new FileMetadataCache.Entry(StandardCharsets.UTF_16, cachedMetadata)).when(cache).get(any(Path.class), any(Charset.class), any());
+
+    // file does not exist, so metadata can't be read from it
+    DefaultInputFile inputFile = createInputFileWithMetadata(temp.getRoot().toPath(), "missing.xoo");
+
+    assertThat(inputFile.charset()).isEqualTo(StandardCharsets.UTF_16);
+    assertThat(inputFile.lines()).isEqualTo(3);
+    assertThat(inputFile.nonBlankLines()).isEqualTo(2);
+    assertThat(inputFile.hash()).isEqualTo("hash");
+  }
+
   @Test
   public void start_with_bom() throws Exception {
     Path tempFile = temp.newFile().toPath();
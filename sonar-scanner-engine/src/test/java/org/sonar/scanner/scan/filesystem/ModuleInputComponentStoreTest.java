@@ -113,8 +113,83 @@ public class ModuleInputComponentStoreTest {
     assertThat(store.getFilesByExtension("nonexistent")).isEmpty();
   }
 
+  @Test
+  public void should_cache_files_by_language_and_type() {
+    ModuleInputComponentStore store = newModuleInputComponentStore();
+
+    InputFile main = new TestInputFileBuilder(moduleKey, "src/Program.java").setLanguage("java").build();
+    store.doAdd(main);
+
+    InputFile test = new TestInputFileBuilder(moduleKey, "test/ProgramTest.java").setLanguage("java").setType(InputFile.Type.TEST).build();
+    store.doAdd(test);
+
+    InputFile noLanguage = new TestInputFileBuilder(moduleKey, "src/readme.txt").build();
+    store.doAdd(noLanguage);
+
+    assertThat(store.getFilesByLanguage("java")).containsExactly(main, test);
+    assertThat(store.getFilesByLanguage("xoo")).isEmpty();
+    assertThat(store.getFilesByType(InputFile.Type.MAIN)).containsExactly(main, noLanguage);
+    assertThat(store.getFilesByType(InputFile.Type.TEST)).containsExactly(test);
+  }
+
+  @Test
+  public void should_only_find_files_of_module_with_non_global_strategy() {
+    SensorStrategy strategy = new SensorStrategy();
+    ModuleInputComponentStore store = newModuleInputComponentStore(strategy);
+    InputFile inputFile = new TestInputFileBuilder(moduleKey, "src/Program.java").setLanguage("java").build();
+    store.doAdd(inputFile);
+    InputFile otherModuleFile = new TestInputFileBuilder("other", "lib/Program.java").setLanguage("java").build();
+    componentStore.put(otherModuleFile);
+
+    assertThat(store.getFilesByName("Program.java")).containsExactly(inputFile);
+    assertThat(store.getFilesByExtension("java")).containsExactly(inputFile);
+    assertThat(store.getFilesByLanguage("java")).containsExactly(inputFile);
+    assertThat(store.getFilesByType(InputFile.Type.MAIN)).containsExactly(inputFile);
+
+    strategy.setGlobal(true);
+
+    assertThat(store.getFilesByName("Program.java")).containsExactly(inputFile, otherModuleFile);
+    assertThat(store.getFilesByExtension("java")).containsExactly(inputFile, otherModuleFile);
+    assertThat(store.getFilesByLanguage("java")).containsExactly(inputFile, otherModuleFile);
+    assertThat(store.getFilesByType(InputFile.Type.MAIN)).containsExactly(inputFile, otherModuleFile);
+  }
+
+  @Test
+  public void should_remove_files_from_caches() {
+    ModuleInputComponentStore store = newModuleInputComponentStore();
+    InputFile inputFile = new TestInputFileBuilder(moduleKey, "src/Program.java").setLanguage("java").build();
+    store.doAdd(inputFile);
+    InputFile otherModuleFile = new TestInputFileBuilder("other", "lib/Program.java").setLanguage("java").build();
+    componentStore.put(otherModuleFile);
+
+    componentStore.remove(inputFile);
+    componentStore.removeModule("other");
+
+    assertThat(store.getFilesByName("Program.java")).isEmpty();
+    assertThat(componentStore.getFilesByExtension("java")).isEmpty();
+    assertThat(componentStore.getFilesByLanguage("java")).isEmpty();
+    assertThat(componentStore.getFilesByType(InputFile.Type.MAIN)).isEmpty();
+  }
+
+  @Test
+  public void should_replace_file_with_same_path_in_caches() {
+    ModuleInputComponentStore store = newModuleInputComponentStore();
+    store.doAdd(new TestInputFileBuilder(moduleKey, "src/Program.java").setLanguage("java").build());
+    InputFile replacement = new TestInputFileBuilder(moduleKey, "src/Program.java").setLanguage("java").setType(InputFile.Type.TEST).build();
+    store.doAdd(replacement);
+
+    assertThat(store.getFilesByLanguage("java")).containsExactly(replacement);
+    assertThat(store.getFilesByType(InputFile.Type.MAIN)).isEmpty();
+  }
+
   private ModuleInputComponentStore newModuleInputComponentStore() {
-    return new ModuleInputComponentStore(mock(InputModule.class), componentStore, mock(SensorStrategy.class));
+    return newModuleInputComponentStore(mock(SensorStrategy.class));
+  }
+
+  private ModuleInputComponentStore newModuleInputComponentStore(SensorStrategy strategy) {
+    InputModule module = mock(InputModule.class);
+    when(module.key()).thenReturn(moduleKey);
+    return new ModuleInputComponentStore(module, componentStore, strategy);
   }
 
   @Test
@@ -73,7 +73,10 @@ public class ScannerReportWriter {
     return file;
   }
 
-  public void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
+  /**
+   * Synchronized so that issues of the same component can be appended by concurrent producers.
+   */
+  public synchronized void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
     File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
     try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
       issue.writeDelimitedTo(out);